@@ -1,6 +1,6 @@
 package fi.jannetahkola.palikka.core.auth.authenticator;
 
-import fi.jannetahkola.palikka.core.auth.data.RevokedTokenRepository;
+import fi.jannetahkola.palikka.core.auth.data.RevokedTokenService;
 import fi.jannetahkola.palikka.core.auth.jwt.JwtService;
 import fi.jannetahkola.palikka.core.auth.jwt.PalikkaJwtType;
 import fi.jannetahkola.palikka.core.integration.users.UsersClient;
@@ -14,21 +14,35 @@ public class JwtAuthenticationProvider {
     private final Map<PalikkaJwtType, JwtAuthenticator> authenticators = new EnumMap<>(PalikkaJwtType.class);
     private final JwtService jwtService;
     private final UsersClient usersClient;
-    private final RevokedTokenRepository revokedTokenRepository;
+    private final RevokedTokenService revokedTokenService;
 
+    private final boolean embeddedAuthoritiesEnabled;
+
+    public JwtAuthenticationProvider(JwtService jwtService,
+                                     UsersClient usersClient,
+                                     RevokedTokenService revokedTokenService) {
+        this(jwtService, usersClient, revokedTokenService, false);
+    }
+
+    /**
+     * @param embeddedAuthoritiesEnabled Whether user tokens with embedded authorities are authorized from their
+     *                                   claims instead of fetching the user from {@link UsersClient}
+     */
     public JwtAuthenticationProvider(JwtService jwtService,
                                      UsersClient usersClient,
-                                     RevokedTokenRepository revokedTokenRepository) {
+                                     RevokedTokenService revokedTokenService,
+                                     boolean embeddedAuthoritiesEnabled) {
         this.jwtService = jwtService;
         this.usersClient = usersClient;
-        this.revokedTokenRepository = revokedTokenRepository;
+        this.revokedTokenService = revokedTokenService;
+        this.embeddedAuthoritiesEnabled = embeddedAuthoritiesEnabled;
         registerAuthenticators();
     }
 
     public void authenticate(String token) {
         log.debug("Authenticating");
         jwtService.parse(token).ifPresentOrElse(verifiedJwt -> {
-            if (revokedTokenRepository.existsById(verifiedJwt.getClaims().getJWTID())) {
+            if (revokedTokenService.isRevoked(verifiedJwt.getClaims().getJWTID())) {
                 log.debug("Authentication failed - revoked token, token={}", token);
                 return;
             }
@@ -43,7 +57,7 @@ public class JwtAuthenticationProvider {
 
     private void registerAuthenticators() {
         if (jwtService.consumesTokenOfType(PalikkaJwtType.USER)) {
-            authenticators.putIfAbsent(PalikkaJwtType.USER, new UserJwtAuthenticator(usersClient));
+            authenticators.putIfAbsent(PalikkaJwtType.USER, new UserJwtAuthenticator(usersClient, embeddedAuthoritiesEnabled));
         }
         if (jwtService.consumesTokenOfType(PalikkaJwtType.SYSTEM)) {
             authenticators.putIfAbsent(PalikkaJwtType.SYSTEM, new SystemJwtAuthenticator());
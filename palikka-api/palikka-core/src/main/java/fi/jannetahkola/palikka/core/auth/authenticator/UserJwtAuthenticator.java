@@ -3,8 +3,10 @@ package fi.jannetahkola.palikka.core.auth.authenticator;
 import com.nimbusds.jwt.JWTClaimsSet;
 import fi.jannetahkola.palikka.core.auth.PalikkaAuthenticationDetails;
 import fi.jannetahkola.palikka.core.auth.PalikkaPrincipal;
+import fi.jannetahkola.palikka.core.auth.jwt.UserAuthorityClaims;
 import fi.jannetahkola.palikka.core.auth.jwt.VerifiedJwt;
 import fi.jannetahkola.palikka.core.integration.users.Role;
+import fi.jannetahkola.palikka.core.integration.users.User;
 import fi.jannetahkola.palikka.core.integration.users.UsersClient;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -14,15 +16,28 @@ import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 
+import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 
 @Slf4j
 @RequiredArgsConstructor
 public class UserJwtAuthenticator implements JwtAuthenticator {
+    /**
+     * Token generation of the user at the time the token was issued. Tokens without it are treated as generation 0.
+     */
+    public static final String TOKEN_GENERATION_CLAIM = "gen";
+
     private final UsersClient usersClient;
 
+    /**
+     * Whether tokens with embedded authorities are authorized from their claims without calling {@link UsersClient}.
+     */
+    private final boolean embeddedAuthoritiesEnabled;
+
     @Override
     public void authenticate(VerifiedJwt verifiedJwt) {
         log.debug("Authenticating user token");
@@ -48,6 +63,20 @@ public class UserJwtAuthenticator implements JwtAuthenticator {
         }
 
         var userId = Integer.valueOf(claims.getSubject());
+        if (embeddedAuthoritiesEnabled) {
+            Optional<String> username = UserAuthorityClaims.getUsername(claims);
+            Optional<Set<String>> embeddedAuthorities = UserAuthorityClaims.getAuthorities(claims);
+            if (username.isPresent() && embeddedAuthorities.isPresent()) {
+                List<GrantedAuthority> authorities = embeddedAuthorities.get().stream()
+                        .<GrantedAuthority>map(SimpleGrantedAuthority::new)
+                        .toList();
+                log.debug("Using authorities embedded in token for user id '{}'", userId);
+                return new UsernamePasswordAuthenticationToken(
+                        new PalikkaPrincipal(userId, username.get()), null, authorities);
+            }
+            log.debug("No authorities embedded in token for user id '{}', fetching user", userId);
+        }
+
         var user = usersClient.getUser(userId);
         if (user == null) {
             log.debug("Authentication failed - user id '{}' doesn't exist", userId);
@@ -57,6 +86,10 @@ public class UserJwtAuthenticator implements JwtAuthenticator {
             log.debug("Authentication failed - user id '{}' is inactive", user.getId());
             return null;
         }
+        if (!isCurrentGeneration(claims, user)) {
+            log.debug("Authentication failed - token generation of user id '{}' revoked", user.getId());
+            return null;
+        }
 
         // Add roles and privileges to authorities
         Collection<Role> userRoles = usersClient.getUserRoles(userId);
@@ -71,4 +104,22 @@ public class UserJwtAuthenticator implements JwtAuthenticator {
         PalikkaPrincipal principal = new PalikkaPrincipal(userId, user.getUsername());
         return new UsernamePasswordAuthenticationToken(principal, null, authorities);
     }
+
+    /**
+     * @param claims Claims of a user token
+     * @param user User the token was issued to
+     * @return True if the token was issued after the tokens of the user were last revoked
+     */
+    public static boolean isCurrentGeneration(JWTClaimsSet claims, User user) {
+        if (user.getTokenGeneration() == null) {
+            return true;
+        }
+        try {
+            Long tokenGeneration = claims.getLongClaim(TOKEN_GENERATION_CLAIM);
+            return (tokenGeneration != null ? tokenGeneration : 0L) >= user.getTokenGeneration();
+        } catch (ParseException e) {
+            log.debug("Unable to read token generation", e);
+            return false;
+        }
+    }
 }
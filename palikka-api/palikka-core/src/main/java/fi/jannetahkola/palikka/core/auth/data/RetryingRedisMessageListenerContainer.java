@@ -0,0 +1,63 @@
+package fi.jannetahkola.palikka.core.auth.data;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Listener container that doesn't fail startup when Redis is unavailable. The container fails fast if the first
+ * subscription attempt fails, so a failed start is retried in the background until it succeeds or the container is
+ * stopped. Listeners must cope with not being subscribed in the meantime, e.g. {@link RevokedTokenService} falls back
+ * to the repository.
+ */
+@Slf4j
+public class RetryingRedisMessageListenerContainer extends RedisMessageListenerContainer {
+    private final Duration retryInterval;
+    private final ScheduledExecutorService retryExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "redis-listener-start");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private boolean stopped;
+
+    /**
+     * @param retryInterval Time to wait before trying to start again after a failed start
+     */
+    public RetryingRedisMessageListenerContainer(Duration retryInterval) {
+        this.retryInterval = retryInterval;
+    }
+
+    @Override
+    public synchronized void start() {
+        stopped = false;
+        tryStart();
+    }
+
+    @Override
+    public synchronized void stop(Runnable callback) {
+        stopped = true;
+        super.stop(callback);
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        retryExecutor.shutdownNow();
+        super.destroy();
+    }
+
+    private synchronized void tryStart() {
+        if (stopped) return;
+        try {
+            super.start();
+        } catch (RuntimeException e) {
+            super.stop(() -> { }); // Clears the started flag so that starting can be tried again
+            log.warn("Failed to subscribe to Redis, retrying in {}: {}", retryInterval, e.getMessage());
+            retryExecutor.schedule(this::tryStart, retryInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package fi.jannetahkola.palikka.core.auth.data;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.SubscriptionListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a local copy of revoked token ids so that checking whether a token has been revoked doesn't need a Redis
+ * round-trip on every request. Revocations are stored in {@link RevokedTokenRepository} as before and also published
+ * to {@link #CHANNEL}, which every instance subscribes to.
+ * <br><br>
+ * Until the subscription has been confirmed and the existing revocations loaded, or whenever the subscription is
+ * lost, lookups fall back to the repository. A dropped connection isn't always reported to subscribers, so every
+ * instance also sends itself a heartbeat on its own channel. If a heartbeat doesn't come back before the next one is
+ * due, the subscription is considered lost until the revocations have been loaded again. Expired revocations are
+ * forgotten on the same schedule.
+ */
+@Slf4j
+public class RevokedTokenService implements MessageListener, SubscriptionListener, AutoCloseable {
+    public static final String CHANNEL = "palikka:revoked-tokens";
+
+    static final Duration DEFAULT_MAINTENANCE_INTERVAL = Duration.ofSeconds(10);
+
+    private final RevokedTokenRepository revokedTokenRepository;
+    private final StringRedisTemplate redisTemplate;
+    private final Clock clock;
+
+    /**
+     * Revoked token ids mapped to the time after which they no longer need to be remembered.
+     */
+    private final Map<String, Instant> revokedTokens = new ConcurrentHashMap<>();
+
+    private volatile boolean synced;
+
+    private final String heartbeatChannel = CHANNEL + ":heartbeat:" + UUID.randomUUID();
+    private final ScheduledExecutorService maintenanceExecutor;
+    private long heartbeatsSent; // Only accessed from maintain()
+    private volatile long lastHeartbeatReceived;
+
+    public RevokedTokenService(RevokedTokenRepository revokedTokenRepository, StringRedisTemplate redisTemplate) {
+        this(revokedTokenRepository, redisTemplate, Clock.systemUTC(), DEFAULT_MAINTENANCE_INTERVAL);
+    }
+
+    /**
+     * @param maintenanceInterval Interval of sending heartbeats and forgetting expired revocations
+     */
+    public RevokedTokenService(RevokedTokenRepository revokedTokenRepository,
+                               StringRedisTemplate redisTemplate,
+                               Clock clock,
+                               Duration maintenanceInterval) {
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.redisTemplate = redisTemplate;
+        this.clock = clock;
+        this.maintenanceExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "revoked-token-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = maintenanceInterval.toMillis();
+        maintenanceExecutor.scheduleWithFixedDelay(this::maintain, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return Topics the service must be subscribed to, i.e. {@link #CHANNEL} and the heartbeat channel of this
+     * instance
+     */
+    public List<ChannelTopic> getTopics() {
+        return List.of(new ChannelTopic(CHANNEL), new ChannelTopic(heartbeatChannel));
+    }
+
+    public boolean isRevoked(String tokenId) {
+        Instant forgetAt = revokedTokens.get(tokenId);
+        if (forgetAt != null) {
+            if (clock.instant().isBefore(forgetAt)) {
+                return true;
+            }
+            revokedTokens.remove(tokenId, forgetAt);
+        }
+        if (synced) {
+            return false;
+        }
+        log.debug("Revoked tokens not synced, checking token id={} from repository", tokenId);
+        return revokedTokenRepository.existsById(tokenId);
+    }
+
+    /**
+     * Revokes the token and notifies other instances.
+     * @param tokenId Identifier of the token
+     * @param timeToLive How long the revocation needs to be remembered, i.e. at least the token's remaining validity
+     * @return True if revoked, false if the token was already revoked
+     */
+    public boolean revoke(String tokenId, Duration timeToLive) {
+        if (revokedTokenRepository.existsById(tokenId)) {
+            return false;
+        }
+        RevokedTokenEntity revokedTokenEntity = new RevokedTokenEntity();
+        revokedTokenEntity.setTokenId(tokenId);
+        revokedTokenEntity.setTtlSeconds(timeToLive.getSeconds());
+        revokedTokenRepository.save(revokedTokenEntity);
+
+        Instant forgetAt = clock.instant().plus(timeToLive);
+        remember(tokenId, forgetAt);
+        redisTemplate.convertAndSend(CHANNEL, tokenId + " " + forgetAt.getEpochSecond());
+        return true;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        if (heartbeatChannel.equals(new String(message.getChannel(), StandardCharsets.UTF_8))) {
+            onHeartbeat(body);
+            return;
+        }
+        String[] parts = body.split(" ");
+        if (parts.length != 2) {
+            log.warn("Ignoring malformed revoked token message={}", body);
+            return;
+        }
+        try {
+            remember(parts[0], Instant.ofEpochSecond(Long.parseLong(parts[1])));
+            log.debug("Received revoked token id={}", parts[0]);
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring malformed revoked token message={}", body);
+        }
+    }
+
+    @Override
+    public void onChannelSubscribed(byte[] channel, long count) {
+        if (CHANNEL.equals(new String(channel, StandardCharsets.UTF_8))) {
+            sync();
+        }
+    }
+
+    @Override
+    public void onChannelUnsubscribed(byte[] channel, long count) {
+        synced = false;
+        log.info("Revoked tokens no longer synced");
+    }
+
+    public boolean isSynced() {
+        return synced;
+    }
+
+    @Override
+    public void close() {
+        maintenanceExecutor.shutdownNow();
+    }
+
+    /**
+     * Checks that the previous heartbeat came back, sends the next one and forgets expired revocations. Runs on the
+     * maintenance thread.
+     */
+    void maintain() {
+        try {
+            if (synced && heartbeatsSent > lastHeartbeatReceived) {
+                synced = false;
+                log.warn("Revoked tokens heartbeat not received, no longer synced");
+            }
+            redisTemplate.convertAndSend(heartbeatChannel, Long.toString(++heartbeatsSent));
+        } catch (RuntimeException e) {
+            synced = false;
+            log.warn("Failed to send revoked tokens heartbeat, no longer synced", e);
+        }
+        forgetExpired();
+    }
+
+    private void onHeartbeat(String body) {
+        try {
+            lastHeartbeatReceived = Long.parseLong(body);
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring malformed revoked tokens heartbeat={}", body);
+            return;
+        }
+        if (!synced) {
+            // The subscription works again but messages may have been missed, so load everything again
+            sync();
+        }
+    }
+
+    /**
+     * Loads the existing revocations. Only called after subscribing so that nothing revoked in between is missed.
+     */
+    private void sync() {
+        Instant now = clock.instant();
+        int loaded = 0;
+        for (RevokedTokenEntity entity : revokedTokenRepository.findAll()) {
+            if (entity == null || entity.getTokenId() == null) continue; // Expired between listing and loading
+            long ttlSeconds = entity.getTtlSeconds() != null ? entity.getTtlSeconds() : 0;
+            remember(entity.getTokenId(), now.plusSeconds(Math.max(ttlSeconds, 0)));
+            loaded++;
+        }
+        forgetExpired();
+        synced = true;
+        log.info("Revoked tokens synced, loaded={}", loaded);
+    }
+
+    private void remember(String tokenId, Instant forgetAt) {
+        revokedTokens.merge(tokenId, forgetAt, (a, b) -> a.isAfter(b) ? a : b);
+    }
+
+    private void forgetExpired() {
+        Instant now = clock.instant();
+        revokedTokens.entrySet().removeIf(entry -> !now.isBefore(entry.getValue()));
+    }
+
+    int getRememberedCount() {
+        return revokedTokens.size();
+    }
+}
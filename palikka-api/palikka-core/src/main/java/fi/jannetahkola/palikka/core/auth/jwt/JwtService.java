@@ -1,9 +1,12 @@
 package fi.jannetahkola.palikka.core.auth.jwt;
 
 import com.nimbusds.jose.*;
+import com.nimbusds.jose.crypto.ECDSASigner;
+import com.nimbusds.jose.crypto.ECDSAVerifier;
 import com.nimbusds.jose.crypto.RSASSASigner;
 import com.nimbusds.jose.proc.BadJOSEException;
 import com.nimbusds.jose.proc.DefaultJOSEObjectTypeVerifier;
+import com.nimbusds.jose.proc.JWSKeySelector;
 import com.nimbusds.jose.proc.SecurityContext;
 import com.nimbusds.jwt.JWTClaimsSet;
 import com.nimbusds.jwt.SignedJWT;
@@ -16,8 +19,12 @@ import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.util.StringUtils;
 
+import java.security.Key;
 import java.security.KeyPair;
+import java.security.PrivateKey;
 import java.security.PublicKey;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
 import java.text.ParseException;
 import java.time.Instant;
 import java.util.*;
@@ -28,9 +35,13 @@ public class JwtService {
     private final JwtProperties properties;
     private final Map<PalikkaJwtType, ConfigurableJWTProcessor<SecurityContext>> jwtProcessors = new EnumMap<>(PalikkaJwtType.class);
     private final Map<PalikkaJwtType, JWSSigner> jwsSigners = new EnumMap<>(PalikkaJwtType.class);
+    private final VerifiedJwtCache verifiedJwtCache;
 
     public JwtService(JwtProperties properties) {
         this.properties = properties;
+        this.verifiedJwtCache = Boolean.TRUE.equals(properties.getCache().getEnabled())
+                ? new VerifiedJwtCache(properties.getCache().getMaxSize())
+                : null;
         initUserTokenSupport();
         initSystemTokenSupport();
     }
@@ -58,36 +69,23 @@ public class JwtService {
         }
     }
 
+    /**
+     * Parses and verifies the token. Tokens that have been verified before are returned from a cache until they
+     * expire, if caching is enabled. Revocation is not checked here.
+     */
     public Optional<VerifiedJwt> parse(String token) {
         if (!StringUtils.hasText(token)) return Optional.empty();
-        try {
-            JWSHeader header = SignedJWT.parse(token).getHeader();
-            String ptyp = (String) Objects.requireNonNull(
-                    header.getCustomParam("ptyp"), "Missing palikka token type");
-            PalikkaJwtType palikkaJwtType = PalikkaJwtType.valueOf(ptyp);
-
-            if (!jwtProcessors.containsKey(palikkaJwtType)) {
-                log.info("Token verification failed - support for token type '{}' not initialized", palikkaJwtType);
-                return Optional.empty();
+        if (verifiedJwtCache != null) {
+            Optional<VerifiedJwt> cached = verifiedJwtCache.get(token);
+            if (cached.isPresent()) {
+                return cached;
             }
-
-            JWTClaimsSet claims = jwtProcessors.get(PalikkaJwtType.valueOf(ptyp)).process(token, null);
-
-            return Optional.of(
-                    VerifiedJwt.builder()
-                            .claims(claims)
-                            .header(header)
-                            .type(palikkaJwtType)
-                            .token(token)
-                            .build());
-        } catch (BadJOSEException | ParseException e) {
-            log.info("Token verification failed - bad token. Token='{}'", token, e);
-        } catch (JOSEException e) {
-            log.info("Token verification failed - JOSE exception. Token={}", token, e);
-        } catch (Exception e) {
-            log.info("Token verification failed. Token={} ", token, e);
         }
-        return Optional.empty();
+        Optional<VerifiedJwt> verifiedJwt = verify(token);
+        if (verifiedJwtCache != null) {
+            verifiedJwt.ifPresent(verifiedJwtCache::put);
+        }
+        return verifiedJwt;
     }
 
     public Optional<SignedJWT> sign(JWTClaimsSet.Builder claims, PalikkaJwtType jwtType) {
@@ -127,7 +125,7 @@ public class JwtService {
                         .plusSeconds(signingProperties.getValidityTime().getSeconds())));
             }
 
-            JWSHeader.Builder header = new JWSHeader.Builder(JWSAlgorithm.RS512)
+            JWSHeader.Builder header = new JWSHeader.Builder(toJwsAlgorithm(tokenProperties.getAlgorithm()))
                     .keyID(signingProperties.getKeyAlias())
                     .type(JOSEObjectType.JWT)
                     .customParam("ptyp", jwtType);
@@ -141,6 +139,38 @@ public class JwtService {
         return Optional.empty();
     }
 
+    private Optional<VerifiedJwt> verify(String token) {
+        try {
+            SignedJWT signedJWT = SignedJWT.parse(token);
+            JWSHeader header = signedJWT.getHeader();
+            String ptyp = (String) Objects.requireNonNull(
+                    header.getCustomParam("ptyp"), "Missing palikka token type");
+            PalikkaJwtType palikkaJwtType = PalikkaJwtType.valueOf(ptyp);
+
+            if (!jwtProcessors.containsKey(palikkaJwtType)) {
+                log.info("Token verification failed - support for token type '{}' not initialized", palikkaJwtType);
+                return Optional.empty();
+            }
+
+            JWTClaimsSet claims = jwtProcessors.get(palikkaJwtType).process(signedJWT, null);
+
+            return Optional.of(
+                    VerifiedJwt.builder()
+                            .claims(claims)
+                            .header(header)
+                            .type(palikkaJwtType)
+                            .token(token)
+                            .build());
+        } catch (BadJOSEException | ParseException e) {
+            log.info("Token verification failed - bad token. Token='{}'", token, e);
+        } catch (JOSEException e) {
+            log.info("Token verification failed - JOSE exception. Token={}", token, e);
+        } catch (Exception e) {
+            log.info("Token verification failed. Token={} ", token, e);
+        }
+        return Optional.empty();
+    }
+
     private void initUserTokenSupport() {
         var tokenType = PalikkaJwtType.USER;
         log.info("Initializing support for palikka token type {}", tokenType);
@@ -201,6 +231,8 @@ public class JwtService {
         JwtProperties.KeyStoreProperties signingKeyStoreProperties = properties.getKeystore().getSigning();
         JwtProperties.KeyStoreProperties verificationKeyStoreProperties = properties.getKeystore().getVerification();
 
+        JWSAlgorithm algorithm = toJwsAlgorithm(tokenProperties.getAlgorithm());
+
         if (signingProperties != null) {
             String errorPrefix = "Incomplete configuration - signing support configured for token type " + tokenType;
             if (signingKeyStoreProperties == null) {
@@ -214,9 +246,9 @@ public class JwtService {
                 throw new IllegalStateException(errorPrefix + " but validity time missing");
             }
             final KeyPair keyPair = KeyUtil.loadKeyPairFromPropertiesOrError(signingKeyStoreProperties, tokenProperties);
-            jwsSigners.putIfAbsent(tokenType, new RSASSASigner(keyPair.getPrivate()));
-            jwtProcessor.setJWSKeySelector((jwsHeader, securityContext) -> List.of(keyPair.getPublic())); // Could load these from JWS header but whatever
-            log.info("Producer support for token type {} initialized", tokenType);
+            jwsSigners.putIfAbsent(tokenType, createSigner(keyPair.getPrivate(), algorithm, tokenType));
+            jwtProcessor.setJWSKeySelector(keySelector(keyPair.getPublic(), algorithm, tokenType)); // Could load these from JWS header but whatever
+            log.info("Producer support for token type {} initialized with algorithm {}", tokenType, algorithm);
         } else {
             if (verificationProperties == null) {
                 // Some properties like issuer were given but both signing and verification are missing
@@ -229,8 +261,47 @@ public class JwtService {
                                 + tokenType + " but verification keystore configuration missing");
             }
             PublicKey key = KeyUtil.loadPublicKeyFromPropertiesOrError(verificationKeyStoreProperties, tokenProperties);
-            jwtProcessor.setJWSKeySelector((jwsHeader, securityContext) -> List.of(key));
-            log.info("Consumer support for token type {} initialized", tokenType);
+            jwtProcessor.setJWSKeySelector(keySelector(key, algorithm, tokenType));
+            log.info("Consumer support for token type {} initialized with algorithm {}", tokenType, algorithm);
+        }
+    }
+
+    private static JWSAlgorithm toJwsAlgorithm(JwtProperties.SigningAlgorithm algorithm) {
+        return JWSAlgorithm.parse(algorithm.name());
+    }
+
+    private static JWSSigner createSigner(PrivateKey privateKey, JWSAlgorithm algorithm, PalikkaJwtType tokenType) {
+        try {
+            JWSSigner signer = privateKey instanceof ECPrivateKey ecPrivateKey
+                    ? new ECDSASigner(ecPrivateKey)
+                    : new RSASSASigner(privateKey);
+            if (!signer.supportedJWSAlgorithms().contains(algorithm)) {
+                throw new IllegalStateException(
+                        "Signing key of token type " + tokenType + " doesn't support algorithm " + algorithm);
+            }
+            return signer;
+        } catch (JOSEException e) {
+            throw new IllegalStateException("Failed to create signer for token type " + tokenType, e);
+        }
+    }
+
+    /**
+     * Only selects the key for tokens signed with the configured algorithm, so that tokens signed with any other
+     * algorithm fail verification.
+     */
+    private static JWSKeySelector<SecurityContext> keySelector(PublicKey key,
+                                                               JWSAlgorithm algorithm,
+                                                               PalikkaJwtType tokenType) {
+        try {
+            if (key instanceof ECPublicKey ecPublicKey
+                    && !new ECDSAVerifier(ecPublicKey).supportedJWSAlgorithms().contains(algorithm)) {
+                throw new IllegalStateException(
+                        "Verification key of token type " + tokenType + " doesn't support algorithm " + algorithm);
+            }
+        } catch (JOSEException e) {
+            throw new IllegalStateException("Invalid verification key for token type " + tokenType, e);
         }
+        List<Key> keys = List.of(key);
+        return (jwsHeader, securityContext) -> algorithm.equals(jwsHeader.getAlgorithm()) ? keys : List.of();
     }
 }
@@ -0,0 +1,118 @@
+package fi.jannetahkola.palikka.core.auth.jwt;
+
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import lombok.extern.slf4j.Slf4j;
+
+import java.text.ParseException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Provides a signed {@link PalikkaJwtType#SYSTEM} token for outbound requests. The same token is handed out until half
+ * of its validity time has passed, after which it is refreshed ahead of its expiry.
+ * <br><br>
+ * Only one caller signs at a time. While a refresh is in progress, other callers keep getting the previous token as
+ * long as it hasn't expired, and callers without a valid token wait for the refresh instead of signing one of
+ * their own.
+ */
+@Slf4j
+public class SystemTokenProvider {
+    private final JwtService jwtService;
+    private final Clock clock;
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    private final AtomicLong signCount = new AtomicLong();
+
+    private volatile CachedToken current;
+
+    public SystemTokenProvider(JwtService jwtService) {
+        this(jwtService, Clock.systemUTC());
+    }
+
+    public SystemTokenProvider(JwtService jwtService, Clock clock) {
+        this.jwtService = jwtService;
+        this.clock = clock;
+    }
+
+    /**
+     * @return Serialized system token, or empty if signing failed and there's no valid token to fall back to
+     */
+    public Optional<String> getToken() {
+        CachedToken token = current;
+        Instant now = clock.instant();
+        if (token != null && now.isBefore(token.refreshAt())) {
+            return Optional.of(token.value());
+        }
+
+        if (token != null && now.isBefore(token.expiresAt())) {
+            if (!refreshLock.tryLock()) {
+                // Someone else is already refreshing, the current token is still good
+                return Optional.of(token.value());
+            }
+        } else {
+            refreshLock.lock();
+        }
+
+        try {
+            CachedToken latest = current;
+            now = clock.instant();
+            if (latest != null && now.isBefore(latest.refreshAt())) {
+                return Optional.of(latest.value()); // Refreshed while waiting for the lock
+            }
+            CachedToken refreshed = refresh();
+            if (refreshed != null) {
+                current = refreshed;
+                return Optional.of(refreshed.value());
+            }
+            if (latest != null && now.isBefore(latest.expiresAt())) {
+                log.warn("System token refresh failed, using the current token until it expires at {}",
+                        latest.expiresAt());
+                return Optional.of(latest.value());
+            }
+            return Optional.empty();
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * Discards the current token so that the next call to {@link #getToken()} signs a new one.
+     */
+    public void invalidate() {
+        current = null;
+    }
+
+    /**
+     * @return Number of tokens signed by this provider
+     */
+    public long getSignCount() {
+        return signCount.get();
+    }
+
+    private CachedToken refresh() {
+        Optional<SignedJWT> signedJwtMaybe = jwtService.sign(new JWTClaimsSet.Builder(), PalikkaJwtType.SYSTEM);
+        if (signedJwtMaybe.isEmpty()) {
+            return null;
+        }
+        signCount.incrementAndGet();
+        SignedJWT signedJwt = signedJwtMaybe.get();
+        try {
+            JWTClaimsSet claims = signedJwt.getJWTClaimsSet();
+            Instant issuedAt = claims.getIssueTime().toInstant();
+            Instant expiresAt = claims.getExpirationTime().toInstant();
+            Instant refreshAt = issuedAt.plus(Duration.between(issuedAt, expiresAt).dividedBy(2));
+            log.debug("Signed a new system token, refresh at {}, expires at {}", refreshAt, expiresAt);
+            return new CachedToken(signedJwt.serialize(), refreshAt, expiresAt);
+        } catch (ParseException e) {
+            log.error("System token refresh failed - unable to read claims", e);
+            return null;
+        }
+    }
+
+    private record CachedToken(String value, Instant refreshAt, Instant expiresAt) {
+    }
+}
@@ -0,0 +1,83 @@
+package fi.jannetahkola.palikka.core.auth.jwt;
+
+import com.nimbusds.jwt.JWTClaimsSet;
+import lombok.experimental.UtilityClass;
+
+import java.text.ParseException;
+import java.util.*;
+
+/**
+ * Compact encoding of a user's roles and privileges as {@link PalikkaJwtType#USER} token claims, so that consumers
+ * can authorize the user from the token alone. Roles are stored without the "ROLE_" prefix and privileges are grouped
+ * by domain:
+ * <pre>
+ * "unm": "admin",
+ * "rol": ["ADMIN"],
+ * "prv": {"COMMAND": ["time", "weather"]}
+ * </pre>
+ */
+@UtilityClass
+public class UserAuthorityClaims {
+    public static final String USERNAME_CLAIM = "unm";
+    public static final String ROLES_CLAIM = "rol";
+    public static final String PRIVILEGES_CLAIM = "prv";
+
+    private static final String ROLE_PREFIX = "ROLE_";
+
+    /**
+     * @param claims Claims to add to
+     * @param username Username of the user
+     * @param roles Role names, e.g. ROLE_ADMIN
+     * @param privileges Privilege names grouped by domain, e.g. COMMAND -> weather
+     */
+    public void embed(JWTClaimsSet.Builder claims,
+                      String username,
+                      Collection<String> roles,
+                      Map<String, ? extends Collection<String>> privileges) {
+        List<String> compactRoles = roles.stream()
+                .map(role -> role.startsWith(ROLE_PREFIX) ? role.substring(ROLE_PREFIX.length()) : role)
+                .sorted()
+                .toList();
+        Map<String, List<String>> compactPrivileges = new TreeMap<>();
+        privileges.forEach((domain, names) -> compactPrivileges.put(domain, names.stream().sorted().toList()));
+        claims.claim(USERNAME_CLAIM, username)
+                .claim(ROLES_CLAIM, compactRoles)
+                .claim(PRIVILEGES_CLAIM, compactPrivileges);
+    }
+
+    /**
+     * @return Username embedded in the claims, or empty if there are no embedded authorities
+     */
+    public Optional<String> getUsername(JWTClaimsSet claims) {
+        try {
+            return Optional.ofNullable(claims.getStringClaim(USERNAME_CLAIM));
+        } catch (ParseException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * @return Role names and privileges as authority strings, e.g. ROLE_ADMIN and COMMAND_weather, or empty if the
+     * claims don't contain embedded authorities or they are malformed
+     */
+    public Optional<Set<String>> getAuthorities(JWTClaimsSet claims) {
+        try {
+            List<String> roles = claims.getStringListClaim(ROLES_CLAIM);
+            Map<String, Object> privileges = claims.getJSONObjectClaim(PRIVILEGES_CLAIM);
+            if (roles == null || privileges == null) {
+                return Optional.empty();
+            }
+            Set<String> authorities = new HashSet<>();
+            roles.forEach(role -> authorities.add(ROLE_PREFIX + role));
+            for (Map.Entry<String, Object> entry : privileges.entrySet()) {
+                if (!(entry.getValue() instanceof Collection<?> names)) {
+                    return Optional.empty();
+                }
+                names.forEach(name -> authorities.add(entry.getKey() + "_" + name));
+            }
+            return Optional.of(authorities);
+        } catch (ParseException e) {
+            return Optional.empty();
+        }
+    }
+}
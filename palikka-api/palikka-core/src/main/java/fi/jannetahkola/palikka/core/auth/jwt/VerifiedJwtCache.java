@@ -0,0 +1,117 @@
+package fi.jannetahkola.palikka.core.auth.jwt;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of tokens that have already passed verification, so that the same token doesn't have to be parsed
+ * and its signature verified again on every request. Entries are keyed by a SHA-256 hash of the token and are only
+ * returned until the token expires. The least recently used entry is evicted once the cache is full.
+ * <br><br>
+ * Only successful verifications are cached. Revocation is not a concern of this cache, so callers still need to
+ * check whether a token returned from here has been revoked.
+ */
+@Slf4j
+public class VerifiedJwtCache {
+    private final Clock clock;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Access ordered so that iteration order is from least to most recently used. Guarded by itself.
+     */
+    private final LinkedHashMap<String, Entry> entries;
+
+    public VerifiedJwtCache(int maxSize) {
+        this(maxSize, Clock.systemUTC());
+    }
+
+    public VerifiedJwtCache(int maxSize, Clock clock) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Max size must be positive, was " + maxSize);
+        }
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public Optional<VerifiedJwt> get(String token) {
+        String key = hash(token);
+        Instant now = clock.instant();
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (now.isBefore(entry.expiresAt()) && entry.verifiedJwt().getToken().equals(token)) {
+                    hits.incrementAndGet();
+                    return Optional.of(entry.verifiedJwt());
+                }
+                entries.remove(key);
+            }
+        }
+        misses.incrementAndGet();
+        return Optional.empty();
+    }
+
+    public void put(VerifiedJwt verifiedJwt) {
+        if (verifiedJwt.getClaims().getExpirationTime() == null) {
+            return; // Never cache tokens that don't expire
+        }
+        Instant expiresAt = verifiedJwt.getClaims().getExpirationTime().toInstant();
+        if (!clock.instant().isBefore(expiresAt)) {
+            return;
+        }
+        String key = hash(verifiedJwt.getToken());
+        synchronized (entries) {
+            entries.put(key, new Entry(verifiedJwt, expiresAt));
+        }
+    }
+
+    public void invalidate(String token) {
+        String key = hash(token);
+        synchronized (entries) {
+            entries.remove(key);
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            // Every JVM is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record Entry(VerifiedJwt verifiedJwt, Instant expiresAt) {
+    }
+}
@@ -1,19 +1,34 @@
 package fi.jannetahkola.palikka.core.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import fi.jannetahkola.palikka.core.auth.PalikkaAuthenticationFilterConfigurer;
 import fi.jannetahkola.palikka.core.auth.authenticator.JwtAuthenticationProvider;
+import fi.jannetahkola.palikka.core.auth.data.RetryingRedisMessageListenerContainer;
 import fi.jannetahkola.palikka.core.auth.data.RevokedTokenRepository;
+import fi.jannetahkola.palikka.core.auth.data.RevokedTokenService;
 import fi.jannetahkola.palikka.core.auth.jwt.JwtService;
+import fi.jannetahkola.palikka.core.config.properties.JwtProperties;
 import fi.jannetahkola.palikka.core.config.properties.RedisProperties;
 import fi.jannetahkola.palikka.core.integration.users.UsersClient;
+import fi.jannetahkola.palikka.core.integration.users.events.UserAuthorizationEventListener;
+import fi.jannetahkola.palikka.core.integration.users.events.UserAuthorizationEventPublisher;
+import fi.jannetahkola.palikka.core.integration.users.events.UserAuthorizationEventSubscriber;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.repository.configuration.EnableRedisRepositories;
 
+import java.time.Duration;
+
 @EnableRedisRepositories(basePackageClasses = RevokedTokenRepository.class)
+@Slf4j
 public class AuthenticationConfig {
     @Bean
     PalikkaAuthenticationFilterConfigurer authenticationFilterConfigurer(JwtAuthenticationProvider jwtAuthenticationProvider) {
@@ -23,7 +38,46 @@ public class AuthenticationConfig {
     @Bean
     JwtAuthenticationProvider jwtAuthenticationProvider(JwtService jwtService,
                                                         UsersClient usersClient,
-                                                        RevokedTokenRepository revokedTokenRepository) {
-        return new JwtAuthenticationProvider(jwtService, usersClient, revokedTokenRepository);
+                                                        RevokedTokenService revokedTokenService) {
+        JwtProperties.TokenProperties userTokenProperties = jwtService.getProperties().getToken().getUser();
+        boolean embeddedAuthoritiesEnabled = userTokenProperties != null
+                && Boolean.TRUE.equals(userTokenProperties.getEmbedAuthorities());
+        if (embeddedAuthoritiesEnabled) {
+            log.info("------ Embedded user token authorities ENABLED ------");
+        }
+        return new JwtAuthenticationProvider(jwtService, usersClient, revokedTokenService, embeddedAuthoritiesEnabled);
+    }
+
+    @Bean
+    RevokedTokenService revokedTokenService(RevokedTokenRepository revokedTokenRepository,
+                                            RedisConnectionFactory redisConnectionFactory) {
+        return new RevokedTokenService(revokedTokenRepository, new StringRedisTemplate(redisConnectionFactory));
+    }
+
+    @Bean
+    UserAuthorizationEventPublisher userAuthorizationEventPublisher(RedisConnectionFactory redisConnectionFactory) {
+        return new UserAuthorizationEventPublisher(new StringRedisTemplate(redisConnectionFactory), new ObjectMapper());
+    }
+
+    @Bean
+    UserAuthorizationEventSubscriber userAuthorizationEventSubscriber(
+            ObjectProvider<UserAuthorizationEventListener> listeners) {
+        UserAuthorizationEventSubscriber subscriber =
+                new UserAuthorizationEventSubscriber(listeners.orderedStream().toList(), new ObjectMapper());
+        log.info("User authorization event listeners={}", subscriber.getListenerCount());
+        return subscriber;
+    }
+
+    @Bean
+    RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory redisConnectionFactory,
+                                                                RevokedTokenService revokedTokenService,
+                                                                UserAuthorizationEventSubscriber userAuthorizationEventSubscriber) {
+        // Revoked tokens are checked from the repository until subscribed, so don't fail startup without Redis
+        RedisMessageListenerContainer container = new RetryingRedisMessageListenerContainer(Duration.ofSeconds(5));
+        container.setConnectionFactory(redisConnectionFactory);
+        container.addMessageListener(revokedTokenService, revokedTokenService.getTopics());
+        container.addMessageListener(userAuthorizationEventSubscriber,
+                new ChannelTopic(UserAuthorizationEventSubscriber.CHANNEL));
+        return container;
     }
 }
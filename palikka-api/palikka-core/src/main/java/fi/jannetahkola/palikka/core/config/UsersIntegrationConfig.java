@@ -1,13 +1,18 @@
 package fi.jannetahkola.palikka.core.config;
 
 import fi.jannetahkola.palikka.core.auth.jwt.JwtService;
+import fi.jannetahkola.palikka.core.auth.jwt.SystemTokenProvider;
 import fi.jannetahkola.palikka.core.config.properties.RemoteUsersIntegrationProperties;
+import fi.jannetahkola.palikka.core.integration.users.CachingUsersClient;
 import fi.jannetahkola.palikka.core.integration.users.RemoteUsersClient;
 import fi.jannetahkola.palikka.core.integration.users.UsersClient;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
 
 @Slf4j
 @EnableConfigurationProperties(RemoteUsersIntegrationProperties.class)
@@ -22,6 +27,22 @@ public class UsersIntegrationConfig {
             throw new IllegalStateException("Remote users integration requires JWT configuration for system tokens");
         }
         log.info("------ Remote users client ENABLED ------");
-        return new RemoteUsersClient(properties, jwtService);
+        log.info("Remote users client HTTP properties={}", properties.getHttp());
+        return new RemoteUsersClient(properties, new SystemTokenProvider(jwtService));
+    }
+
+    @Bean
+    @Primary
+    @ConditionalOnBean(RemoteUsersClient.class)
+    @ConditionalOnProperty(
+            value = "palikka.integration.users-api.cache.enabled",
+            havingValue = "true",
+            matchIfMissing = true
+    )
+    CachingUsersClient cachingUsersClient(RemoteUsersIntegrationProperties properties, RemoteUsersClient usersClient) {
+        RemoteUsersIntegrationProperties.CacheProperties cacheProperties = properties.getCache();
+        log.info("------ Remote users client caching ENABLED ------");
+        log.info("Remote users client cache properties={}", cacheProperties);
+        return new CachingUsersClient(usersClient, cacheProperties.getMaxSize(), cacheProperties.getTimeToLive());
     }
 }
@@ -3,7 +3,9 @@ package fi.jannetahkola.palikka.core.config.properties;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
 import lombok.Data;
+import lombok.Getter;
 import lombok.ToString;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.validation.annotation.Validated;
@@ -26,6 +28,30 @@ public class JwtProperties {
     @NotNull
     JwtProperties.KeyStorePropertiesGroup keystore = new KeyStorePropertiesGroup();
 
+    /**
+     * Cache of verified tokens. Enabled by default.
+     */
+    @NotNull
+    VerifiedTokenCacheProperties cache = new VerifiedTokenCacheProperties();
+
+    @Data
+    @Valid
+    public static class VerifiedTokenCacheProperties {
+        /**
+         * Enable caching of verified tokens until they expire, so that repeated requests with the same token skip
+         * parsing and signature verification. Defaults to true.
+         */
+        @NotNull
+        Boolean enabled = true;
+
+        /**
+         * Maximum number of verified tokens to cache. Defaults to 10000.
+         */
+        @NotNull
+        @Positive
+        Integer maxSize = 10000;
+    }
+
     @Data
     @Valid
     public static class KeyStorePropertiesGroup {
@@ -70,6 +96,42 @@ public class JwtProperties {
 
         @NotBlank
         String issuer;
+
+        /**
+         * JWS algorithm used to sign and verify tokens of this type. The configured key must be of the matching type,
+         * i.e. an RSA key for RS* algorithms and an EC key on the matching curve for ES* algorithms. Tokens signed
+         * with any other algorithm are rejected. Defaults to RS512.
+         */
+        @NotNull
+        SigningAlgorithm algorithm = SigningAlgorithm.RS512;
+
+        /**
+         * Only applies to user tokens. When signing, the user's roles and privileges are embedded in the token as
+         * claims. When consuming, tokens with embedded authorities are authorized from the claims alone without
+         * fetching the user. Revoking all tokens of a user or deactivating a user then only takes effect once the
+         * user's tokens expire, so use together with a short validity time. Defaults to false.
+         */
+        @NotNull
+        Boolean embedAuthorities = false;
+    }
+
+    public enum SigningAlgorithm {
+        RS256("RSA"),
+        RS384("RSA"),
+        RS512("RSA"),
+        ES256("EC"),
+        ES384("EC"),
+        ES512("EC");
+
+        /**
+         * Algorithm name of the {@link java.security.Key} required by this signing algorithm.
+         */
+        @Getter
+        private final String keyType;
+
+        SigningAlgorithm(String keyType) {
+            this.keyType = keyType;
+        }
     }
 
     @Data
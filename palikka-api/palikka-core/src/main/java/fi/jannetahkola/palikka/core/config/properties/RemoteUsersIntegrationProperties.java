@@ -1,11 +1,14 @@
 package fi.jannetahkola.palikka.core.config.properties;
 
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.validation.annotation.Validated;
 
 import java.net.URI;
+import java.time.Duration;
 
 @Data
 @ConfigurationProperties("palikka.integration.users-api")
@@ -13,4 +16,62 @@ import java.net.URI;
 public class RemoteUsersIntegrationProperties {
     @NotNull
     private URI baseUri;
+
+    /**
+     * Caching of user authorization data. Enabled by default.
+     */
+    @NotNull
+    private CacheProperties cache = new CacheProperties();
+
+    /**
+     * HTTP transport used for requests to the users API. Connections are pooled and kept alive.
+     */
+    @NotNull
+    private HttpProperties http = new HttpProperties();
+
+    @Data
+    @Valid
+    public static class CacheProperties {
+        /**
+         * Enable caching of users and their roles. Defaults to true.
+         */
+        @NotNull
+        private Boolean enabled = true;
+
+        /**
+         * Maximum number of users to cache. Least recently used users are evicted first. Defaults to 1000.
+         */
+        @NotNull
+        @Positive
+        private Integer maxSize = 1000;
+
+        /**
+         * How long a cached user is used before it's fetched again. Changes published by the users API invalidate
+         * cached users right away, so this mainly bounds staleness if events are lost. Defaults to 5 minutes.
+         */
+        @NotNull
+        private Duration timeToLive = Duration.ofMinutes(5);
+    }
+
+    @Data
+    @Valid
+    public static class HttpProperties {
+        /**
+         * Timeout for establishing a connection. Defaults to 2 seconds.
+         */
+        @NotNull
+        private Duration connectTimeout = Duration.ofSeconds(2);
+
+        /**
+         * Timeout for receiving a response once the request has been sent. Defaults to 5 seconds.
+         */
+        @NotNull
+        private Duration readTimeout = Duration.ofSeconds(5);
+
+        /**
+         * Prefer HTTP/2 and fall back to HTTP/1.1 when the server doesn't support it. Defaults to true.
+         */
+        @NotNull
+        private Boolean http2Enabled = true;
+    }
 }
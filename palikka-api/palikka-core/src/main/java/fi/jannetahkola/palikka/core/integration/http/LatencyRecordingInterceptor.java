@@ -0,0 +1,79 @@
+package fi.jannetahkola.palikka.core.integration.http;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the latency of each request made through a {@link org.springframework.web.client.RestTemplate}. The time
+ * measured covers sending the request and receiving the response status and headers, reading the body is excluded.
+ */
+@Slf4j
+public class LatencyRecordingInterceptor implements ClientHttpRequestInterceptor {
+    private final String name;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * @param name Name of the integration, used in log messages
+     */
+    public LatencyRecordingInterceptor(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request,
+                                        byte[] body,
+                                        ClientHttpRequestExecution execution) throws IOException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            ClientHttpResponse response = execution.execute(request, body);
+            failed = response.getStatusCode().isError();
+            return response;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            record(elapsed, failed);
+            log.debug("{} {} {} took {} ms, failed={}",
+                    name, request.getMethod(), request.getURI().getPath(), elapsed / 1_000_000, failed);
+        }
+    }
+
+    public LatencyStats getStats() {
+        long count = requests.sum();
+        long total = totalNanos.sum();
+        return new LatencyStats(
+                count,
+                failures.sum(),
+                Duration.ofNanos(count > 0 ? total / count : 0),
+                Duration.ofNanos(maxNanos.get()));
+    }
+
+    private void record(long elapsedNanos, boolean failed) {
+        requests.increment();
+        totalNanos.add(elapsedNanos);
+        if (failed) {
+            failures.increment();
+        }
+        maxNanos.accumulateAndGet(elapsedNanos, Math::max);
+    }
+
+    /**
+     * @param requests Number of requests made
+     * @param failures Requests that failed on an exception or an error status
+     * @param average Average latency
+     * @param max Highest latency
+     */
+    public record LatencyStats(long requests, long failures, Duration average, Duration max) {
+    }
+}
@@ -0,0 +1,33 @@
+package fi.jannetahkola.palikka.core.integration.http;
+
+import lombok.experimental.UtilityClass;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+/**
+ * Creates {@link RestTemplate} instances backed by a single JDK {@link HttpClient}. The client keeps connections
+ * alive and reuses them across requests, so the TCP and TLS handshakes are only paid for when a new connection is
+ * needed. Instances are meant to be created once per integration and shared.
+ */
+@UtilityClass
+public class PooledHttpTransport {
+    public static RestTemplate newRestTemplate(Duration connectTimeout,
+                                               Duration readTimeout,
+                                               boolean http2Enabled,
+                                               LatencyRecordingInterceptor latencyRecordingInterceptor) {
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(http2Enabled ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(readTimeout);
+
+        RestTemplate restTemplate = new RestTemplate(requestFactory);
+        restTemplate.getInterceptors().add(latencyRecordingInterceptor);
+        return restTemplate;
+    }
+}
@@ -0,0 +1,188 @@
+package fi.jannetahkola.palikka.core.integration.users;
+
+import fi.jannetahkola.palikka.core.integration.users.events.UserAuthorizationChangedEvent;
+import fi.jannetahkola.palikka.core.integration.users.events.UserAuthorizationEventListener;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.Ordered;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link UsersClient} decorator that keeps a bounded, time-limited {@link UserAuthorizationSnapshot} per user so that
+ * authenticating and authorizing the same user repeatedly doesn't call the delegate every time. The least recently
+ * used snapshot is evicted once the cache is full.
+ * <br><br>
+ * Users that can't be found are not cached.
+ * <br><br>
+ * Snapshots are invalidated as soon as a {@link UserAuthorizationChangedEvent} arrives for the user, which is why
+ * this listener runs before any other that might reload the user.
+ */
+@Slf4j
+public class CachingUsersClient implements UsersClient, UserAuthorizationEventListener, Ordered {
+    private final UsersClient delegate;
+    private final Duration timeToLive;
+    private final Clock clock;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+
+    /**
+     * Bumped on every invalidation so that a load that started before it doesn't cache what it loaded.
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * Access ordered so that iteration order is from least to most recently used. Guarded by itself.
+     */
+    private final LinkedHashMap<Integer, UserAuthorizationSnapshot> snapshots;
+
+    public CachingUsersClient(UsersClient delegate, int maxSize, Duration timeToLive) {
+        this(delegate, maxSize, timeToLive, Clock.systemUTC());
+    }
+
+    public CachingUsersClient(UsersClient delegate, int maxSize, Duration timeToLive, Clock clock) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Max size must be positive, was " + maxSize);
+        }
+        this.delegate = delegate;
+        this.timeToLive = timeToLive;
+        this.clock = clock;
+        this.snapshots = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, UserAuthorizationSnapshot> eldest) {
+                if (size() > maxSize) {
+                    evictions.incrementAndGet();
+                    log.debug("Evicted authorization snapshot for user id={}", eldest.getKey());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public User getUser(Integer userId) {
+        try {
+            return getUserAuthorization(userId)
+                    .map(UserAuthorizationSnapshot::getUser)
+                    .orElse(null);
+        } catch (UsersClientException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public Collection<Role> getUserRoles(Integer userId) {
+        try {
+            return getUserAuthorization(userId)
+                    .map(UserAuthorizationSnapshot::getRoles)
+                    .orElse(Collections.emptyList());
+        } catch (UsersClientException e) {
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Returns the cached snapshot for the user, or loads it from the delegate if missing or expired.
+     * @param userId Identifier of the user
+     * @return Snapshot, or empty if the user doesn't exist
+     * @throws UsersClientException If the user isn't cached and can't be loaded. Failures are not cached.
+     */
+    @Override
+    public Optional<UserAuthorizationSnapshot> getUserAuthorization(Integer userId) {
+        Instant now = clock.instant();
+        synchronized (snapshots) {
+            UserAuthorizationSnapshot snapshot = snapshots.get(userId);
+            if (snapshot != null) {
+                if (now.isBefore(snapshot.getLoadedAt().plus(timeToLive))) {
+                    hits.incrementAndGet();
+                    return Optional.of(snapshot);
+                }
+                snapshots.remove(userId);
+                expirations.incrementAndGet();
+            }
+        }
+        misses.incrementAndGet();
+        long invalidationsBeforeLoad = invalidations.get();
+        // Load outside the lock so a slow delegate doesn't block lookups for other users
+        UserAuthorizationSnapshot snapshot = load(userId, now);
+        if (snapshot != null && invalidations.get() == invalidationsBeforeLoad) {
+            synchronized (snapshots) {
+                snapshots.put(userId, snapshot);
+            }
+        }
+        return Optional.ofNullable(snapshot);
+    }
+
+    public void invalidate(Integer userId) {
+        invalidations.incrementAndGet();
+        synchronized (snapshots) {
+            snapshots.remove(userId);
+        }
+        log.debug("Invalidated authorization snapshot for user id={}", userId);
+    }
+
+    public void invalidateAll() {
+        invalidations.incrementAndGet();
+        synchronized (snapshots) {
+            snapshots.clear();
+        }
+        log.debug("Invalidated all authorization snapshots");
+    }
+
+    @Override
+    public void onUserAuthorizationChanged(UserAuthorizationChangedEvent event) {
+        event.userIds().forEach(this::invalidate);
+    }
+
+    @Override
+    public void onEventsMissed() {
+        invalidateAll();
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    public int size() {
+        synchronized (snapshots) {
+            return snapshots.size();
+        }
+    }
+
+    public CacheStats getStats() {
+        return new CacheStats(hits.get(), misses.get(), evictions.get(), expirations.get(), size());
+    }
+
+    private UserAuthorizationSnapshot load(Integer userId, Instant now) {
+        UserAuthorizationSnapshot snapshot = delegate.getUserAuthorization(userId)
+                .map(loaded -> loaded.toBuilder()
+                        .roles(Collections.unmodifiableCollection(loaded.getRoles()))
+                        .loadedAt(now)
+                        .build())
+                .orElse(null);
+        log.debug("Loaded authorization snapshot for user id={}, found={}", userId, snapshot != null);
+        return snapshot;
+    }
+
+    /**
+     * @param hits Lookups served from the cache
+     * @param misses Lookups that had to call the delegate
+     * @param evictions Snapshots removed because the cache was full
+     * @param expirations Snapshots removed because they were older than the time to live
+     * @param size Current number of cached snapshots
+     */
+    public record CacheStats(long hits, long misses, long evictions, long expirations, int size) {
+    }
+}
@@ -1,30 +1,31 @@
 package fi.jannetahkola.palikka.core.integration.users;
 
-import com.nimbusds.jwt.JWTClaimsSet;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
 import fi.jannetahkola.palikka.core.auth.jwt.JwtService;
-import fi.jannetahkola.palikka.core.auth.jwt.PalikkaJwtType;
+import fi.jannetahkola.palikka.core.auth.jwt.SystemTokenProvider;
 import fi.jannetahkola.palikka.core.config.properties.RemoteUsersIntegrationProperties;
+import fi.jannetahkola.palikka.core.integration.http.LatencyRecordingInterceptor;
+import fi.jannetahkola.palikka.core.integration.http.PooledHttpTransport;
 import jakarta.validation.ConstraintViolation;
 import jakarta.validation.Validation;
 import jakarta.validation.Validator;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.hateoas.CollectionModel;
-import org.springframework.hateoas.EntityModel;
-import org.springframework.hateoas.MediaTypes;
-import org.springframework.hateoas.client.Traverson;
-import org.springframework.hateoas.server.core.TypeReferences;
+import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
-
-import java.net.URI;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.Set;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.time.Instant;
+import java.util.*;
 import java.util.stream.Collectors;
 
-import static org.springframework.hateoas.client.Hop.rel;
-
 @Slf4j
 public class RemoteUsersClient implements UsersClient {
+    private static final String USER_AUTHORIZATION_PATH = "/users-api/users/{id}/authorization";
     private static final Validator VALIDATOR;
 
     static {
@@ -34,77 +35,108 @@ public class RemoteUsersClient implements UsersClient {
     }
 
     private final RemoteUsersIntegrationProperties properties;
-    private final JwtService jwtService;
+    private final SystemTokenProvider systemTokenProvider;
+    private final LatencyRecordingInterceptor latencyRecordingInterceptor;
+    private final RestTemplate restTemplate;
 
     public RemoteUsersClient(RemoteUsersIntegrationProperties properties,
                              JwtService jwtService) {
+        this(properties, new SystemTokenProvider(jwtService));
+    }
+
+    public RemoteUsersClient(RemoteUsersIntegrationProperties properties,
+                             SystemTokenProvider systemTokenProvider) {
+        RemoteUsersIntegrationProperties.HttpProperties httpProperties = properties.getHttp();
         this.properties = properties;
-        this.jwtService = jwtService;
+        this.systemTokenProvider = systemTokenProvider;
+        this.latencyRecordingInterceptor = new LatencyRecordingInterceptor("users-api");
+        this.restTemplate = PooledHttpTransport.newRestTemplate(
+                httpProperties.getConnectTimeout(),
+                httpProperties.getReadTimeout(),
+                httpProperties.getHttp2Enabled(),
+                latencyRecordingInterceptor);
+    }
+
+    /**
+     * @return Latency of requests made to the users API so far
+     */
+    public LatencyRecordingInterceptor.LatencyStats getLatencyStats() {
+        return latencyRecordingInterceptor.getStats();
     }
 
     @Override
     public User getUser(Integer userId) {
         log.debug(">> GET user, user id={}", userId);
-
         try {
-            URI baseUri = properties.getBaseUri().resolve("/users-api/users");
-            HttpHeaders httpHeaders = new HttpHeaders();
-            jwtService.sign(new JWTClaimsSet.Builder(), PalikkaJwtType.SYSTEM)
-                    .ifPresent(signedJWT -> httpHeaders.setBearerAuth(signedJWT.serialize()));
-            log.debug(">> GET user - Bearer auth present={}", httpHeaders.containsKey(HttpHeaders.AUTHORIZATION));
-
-            var modelType = new TypeReferences.EntityModelType<User>() {};
-            Traverson traverson = new Traverson(baseUri, MediaTypes.HAL_JSON);
-            EntityModel<User> userModel = traverson
-                    .follow(rel("item").withParameter("id", userId))
-                    .withHeaders(httpHeaders)
-                    .toObject(modelType);
-
-            if (userModel == null) return null;
-
-            User user = userModel.getContent();
-            Set<ConstraintViolation<User>> violations = VALIDATOR.validate(user);
-
-            if (violations.isEmpty()) {
-                log.debug("<< GET user - ok");
-                return user;
-            }
-
-            log.warn("<< GET user - response has constraint violations={}", violations);
-        } catch (Exception e) {
-            log.error("<< GET user - request failed on exception", e);
+            return getUserAuthorization(userId)
+                    .map(UserAuthorizationSnapshot::getUser)
+                    .orElse(null);
+        } catch (UsersClientException e) {
+            return null;
         }
-
-        return null;
     }
 
     @Override
     public Collection<Role> getUserRoles(Integer userId) {
         log.debug(">> GET user roles, user id={}", userId);
-
         try {
-            URI baseUri = properties.getBaseUri().resolve("/users-api/users");
-            HttpHeaders httpHeaders = new HttpHeaders();
-            jwtService.sign(new JWTClaimsSet.Builder(), PalikkaJwtType.SYSTEM)
-                    .ifPresent(signedJWT -> httpHeaders.setBearerAuth(signedJWT.serialize()));
-            log.debug(">> GET user roles - Bearer auth present={}", httpHeaders.containsKey(HttpHeaders.AUTHORIZATION));
-
-            var modelType = new TypeReferences.CollectionModelType<Role>() {};
-
-            Traverson traverson = new Traverson(baseUri, MediaTypes.HAL_JSON);
-            CollectionModel<Role> roleCollectionModel = traverson
-                    .follow(rel("item").withParameter("id", userId))
-                    .follow("user_roles")
-                    .withHeaders(httpHeaders)
-                    .toObject(modelType);
+            return getUserAuthorization(userId)
+                    .map(UserAuthorizationSnapshot::getRoles)
+                    .orElse(Collections.emptyList());
+        } catch (UsersClientException e) {
+            return Collections.emptyList();
+        }
+    }
 
-            if (roleCollectionModel == null) return Collections.emptyList();
+    /**
+     * Fetches the user, its roles and privileges with a single request.
+     * @return Snapshot, or empty if the users API responds that the user doesn't exist
+     * @throws UsersClientException If the request fails or the response is invalid
+     */
+    @Override
+    public Optional<UserAuthorizationSnapshot> getUserAuthorization(Integer userId) {
+        log.debug(">> GET user authorization, user id={}", userId);
 
-            Collection<Role> roleCollection = roleCollectionModel.getContent();
+        try {
+            HttpHeaders httpHeaders = new HttpHeaders();
+            httpHeaders.setAccept(List.of(MediaType.APPLICATION_JSON));
+            systemTokenProvider.getToken().ifPresent(httpHeaders::setBearerAuth);
+            log.debug(">> GET user authorization - Bearer auth present={}",
+                    httpHeaders.containsKey(HttpHeaders.AUTHORIZATION));
+
+            String uriTemplate = UriComponentsBuilder.fromUri(properties.getBaseUri())
+                    .path(USER_AUTHORIZATION_PATH)
+                    .toUriString();
+            UserAuthorizationResponse response = restTemplate.exchange(
+                    uriTemplate,
+                    HttpMethod.GET,
+                    new HttpEntity<>(httpHeaders),
+                    UserAuthorizationResponse.class,
+                    userId
+            ).getBody();
+
+            if (response == null) throw new UsersClientException("Empty user authorization response");
+
+            User user = User.builder()
+                    .id(response.id())
+                    .username(response.username())
+                    .active(response.active())
+                    .root(response.root())
+                    .tokenGeneration(response.tokenGeneration())
+                    .roles(response.roles() != null
+                            ? response.roles().stream().map(Role::getName).collect(Collectors.toSet())
+                            : null)
+                    .build();
+            Collection<Role> roles = response.roles() != null ? response.roles() : List.of();
 
             // todo figure out why validation doesn't work here for nested collections
-            Set<ConstraintViolation<Collection<Role>>> roleViolations = VALIDATOR.validate(roleCollection);
-            Set<ConstraintViolation<Privilege>> privilegeViolations = roleCollection.stream()
+            Set<ConstraintViolation<User>> userViolations = VALIDATOR.validate(user);
+            Set<ConstraintViolation<Role>> roleViolations = roles.stream()
+                    .map(role -> VALIDATOR.validate(role))
+                    .flatMap(Collection::stream)
+                    .collect(Collectors.toSet());
+            Set<ConstraintViolation<Privilege>> privilegeViolations = roles.stream()
+                    .filter(role -> role.getPrivileges() != null)
                     .map(role -> role.getPrivileges().stream()
                             .map(privilege -> VALIDATOR.validate(privilege))
                             .flatMap(Collection::stream)
@@ -112,17 +144,40 @@ public class RemoteUsersClient implements UsersClient {
                     .flatMap(Set::stream)
                     .collect(Collectors.toSet());
 
-            if (roleViolations.isEmpty() && privilegeViolations.isEmpty()) {
-                log.debug("<< GET user roles - ok");
-                return roleCollection;
+            if (userViolations.isEmpty() && roleViolations.isEmpty() && privilegeViolations.isEmpty()) {
+                log.debug("<< GET user authorization - ok");
+                return Optional.of(UserAuthorizationSnapshot.builder()
+                        .user(user)
+                        .roles(roles)
+                        .loadedAt(Instant.now())
+                        .build());
             }
 
-            log.warn("<< GET user roles - response has constraint violations, " +
-                    "roles={}, privileges={}", roleViolations, privilegeViolations);
+            log.warn("<< GET user authorization - response has constraint violations, user={}, " +
+                    "roles={}, privileges={}", userViolations, roleViolations, privilegeViolations);
+            throw new UsersClientException("User authorization response has constraint violations");
+        } catch (HttpClientErrorException.NotFound e) {
+            log.debug("<< GET user authorization - user not found");
+            return Optional.empty();
+        } catch (HttpClientErrorException.Unauthorized e) {
+            log.error("<< GET user authorization - system token rejected", e);
+            systemTokenProvider.invalidate();
+            throw new UsersClientException("System token rejected", e);
+        } catch (UsersClientException e) {
+            throw e;
         } catch (Exception e) {
-            log.error("<< GET user roles - request failed on exception", e);
+            log.error("<< GET user authorization - request failed on exception", e);
+            throw new UsersClientException("Failed to get user authorization", e);
         }
+    }
 
-        return Collections.emptyList();
+    @JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+    record UserAuthorizationResponse(Integer id,
+                                     String username,
+                                     Boolean active,
+                                     Boolean root,
+                                     Long tokenGeneration,
+                                     List<Role> roles,
+                                     Set<String> privileges) {
     }
 }
@@ -31,6 +31,11 @@ public class User {
 
     private Set<String> roles;
 
+    /**
+     * Generation that the user's tokens need to have to be accepted. Null if not provided by the users API.
+     */
+    private Long tokenGeneration;
+
     public Optional<Set<String>> getRoles() {
         return roles != null ? Optional.of(roles) : Optional.empty();
     }
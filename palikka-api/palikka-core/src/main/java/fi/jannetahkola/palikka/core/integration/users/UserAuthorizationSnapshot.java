@@ -0,0 +1,52 @@
+package fi.jannetahkola.palikka.core.integration.users;
+
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Value;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Point-in-time view of everything needed to authorize a user: the user itself, its roles and the privileges
+ * of those roles.
+ */
+@Builder(toBuilder = true)
+@Value
+public class UserAuthorizationSnapshot {
+    @NonNull
+    User user;
+
+    @NonNull
+    @Builder.Default
+    Collection<Role> roles = List.of();
+
+    @NonNull
+    Instant loadedAt;
+
+    /**
+     * @return Role names and privileges as authority strings, e.g. ROLE_ADMIN and COMMAND_weather.
+     */
+    public Set<String> getAuthorities() {
+        Set<String> authorities = roles.stream()
+                .map(Role::getName)
+                .collect(Collectors.toCollection(HashSet::new));
+        authorities.addAll(getPrivileges());
+        return authorities;
+    }
+
+    /**
+     * @return Privileges of all roles flattened into authority strings, e.g. COMMAND_weather.
+     */
+    public Set<String> getPrivileges() {
+        return roles.stream()
+                .filter(role -> role.getPrivileges() != null)
+                .flatMap(role -> role.getPrivileges().stream())
+                .map(privilege -> privilege.getDomain() + "_" + privilege.getName())
+                .collect(Collectors.toSet());
+    }
+}
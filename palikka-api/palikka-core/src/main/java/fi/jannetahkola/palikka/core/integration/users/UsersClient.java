@@ -1,9 +1,36 @@
 package fi.jannetahkola.palikka.core.integration.users;
 
+import java.time.Instant;
 import java.util.Collection;
+import java.util.Optional;
 
 public interface UsersClient {
+    /**
+     * @return User, or null if the user doesn't exist or can't be loaded
+     */
     User getUser(Integer userId);
 
+    /**
+     * @return Roles of the user, or empty if the user doesn't exist or can't be loaded
+     */
     Collection<Role> getUserRoles(Integer userId);
+
+    /**
+     * Loads the user together with its roles. Implementations that can do this with a single request should
+     * override this.
+     * @param userId Identifier of the user
+     * @return Snapshot, or empty if the user doesn't exist
+     * @throws UsersClientException If the user can't be loaded
+     */
+    default Optional<UserAuthorizationSnapshot> getUserAuthorization(Integer userId) {
+        User user = getUser(userId);
+        if (user == null) {
+            return Optional.empty();
+        }
+        return Optional.of(UserAuthorizationSnapshot.builder()
+                .user(user)
+                .roles(getUserRoles(userId))
+                .loadedAt(Instant.now())
+                .build());
+    }
 }
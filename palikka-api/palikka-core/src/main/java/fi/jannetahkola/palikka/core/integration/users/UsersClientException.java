@@ -0,0 +1,15 @@
+package fi.jannetahkola.palikka.core.integration.users;
+
+/**
+ * Thrown when a user can't be loaded, e.g. because the users API is unavailable or responds unexpectedly. Unlike a
+ * user that doesn't exist, this says nothing about the user.
+ */
+public class UsersClientException extends RuntimeException {
+    public UsersClientException(String message) {
+        super(message);
+    }
+
+    public UsersClientException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
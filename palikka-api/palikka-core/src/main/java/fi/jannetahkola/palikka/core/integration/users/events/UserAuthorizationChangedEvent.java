@@ -0,0 +1,36 @@
+package fi.jannetahkola.palikka.core.integration.users.events;
+
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+
+import java.util.Set;
+
+/**
+ * Published by the users API when something that affects how users are authorized changes.
+ * @param userIds Users affected by the change
+ * @param reason What changed
+ */
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+public record UserAuthorizationChangedEvent(Set<Integer> userIds, Reason reason) {
+    public enum Reason {
+        /**
+         * Roles were added to or removed from the users.
+         */
+        ROLES_CHANGED,
+
+        /**
+         * Privileges were added to or removed from a role of the users.
+         */
+        PRIVILEGES_CHANGED,
+
+        /**
+         * The users were activated or deactivated.
+         */
+        ACTIVE_CHANGED,
+
+        /**
+         * All tokens issued to the users so far were revoked.
+         */
+        TOKENS_REVOKED
+    }
+}
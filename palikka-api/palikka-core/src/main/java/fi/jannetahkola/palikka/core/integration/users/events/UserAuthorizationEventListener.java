@@ -0,0 +1,16 @@
+package fi.jannetahkola.palikka.core.integration.users.events;
+
+/**
+ * Implemented by beans that hold on to user authorization data and need to know when it changes. Listeners are
+ * called in their {@link org.springframework.core.Ordered order} on the subscriber thread.
+ */
+public interface UserAuthorizationEventListener {
+    void onUserAuthorizationChanged(UserAuthorizationChangedEvent event);
+
+    /**
+     * Called when events may have been missed, e.g. after the subscription has been re-established. Any
+     * authorization data held by the listener should be considered stale.
+     */
+    default void onEventsMissed() {
+    }
+}
@@ -0,0 +1,33 @@
+package fi.jannetahkola.palikka.core.integration.users.events;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.Set;
+
+/**
+ * Publishes {@link UserAuthorizationChangedEvent}s to {@link UserAuthorizationEventSubscriber#CHANNEL}.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class UserAuthorizationEventPublisher {
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+
+    public void publish(Set<Integer> userIds, UserAuthorizationChangedEvent.Reason reason) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        UserAuthorizationChangedEvent event = new UserAuthorizationChangedEvent(userIds, reason);
+        try {
+            redisTemplate.convertAndSend(UserAuthorizationEventSubscriber.CHANNEL, objectMapper.writeValueAsString(event));
+            log.debug("Published user authorization event={}", event);
+        } catch (JsonProcessingException | RuntimeException e) {
+            // Caches elsewhere catch up once their entries expire, don't fail the change itself
+            log.error("Failed to publish user authorization event={}", event, e);
+        }
+    }
+}
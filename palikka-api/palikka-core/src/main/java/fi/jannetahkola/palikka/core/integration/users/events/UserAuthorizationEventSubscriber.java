@@ -0,0 +1,64 @@
+package fi.jannetahkola.palikka.core.integration.users.events;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.SubscriptionListener;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Receives {@link UserAuthorizationChangedEvent}s from {@link #CHANNEL} and passes them on to the registered
+ * {@link UserAuthorizationEventListener}s.
+ */
+@Slf4j
+public class UserAuthorizationEventSubscriber implements MessageListener, SubscriptionListener {
+    public static final String CHANNEL = "palikka:user-authorization";
+
+    private final List<UserAuthorizationEventListener> listeners;
+    private final ObjectMapper objectMapper;
+    private final AtomicBoolean subscribedBefore = new AtomicBoolean();
+
+    public UserAuthorizationEventSubscriber(List<UserAuthorizationEventListener> listeners, ObjectMapper objectMapper) {
+        this.listeners = List.copyOf(listeners);
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        UserAuthorizationChangedEvent event;
+        try {
+            event = objectMapper.readValue(message.getBody(), UserAuthorizationChangedEvent.class);
+        } catch (IOException e) {
+            log.warn("Ignoring malformed user authorization event", e);
+            return;
+        }
+        if (event.userIds() == null) {
+            log.warn("Ignoring user authorization event without users, event={}", event);
+            return;
+        }
+        log.debug("Received user authorization event={}", event);
+        for (UserAuthorizationEventListener listener : listeners) {
+            try {
+                listener.onUserAuthorizationChanged(event);
+            } catch (RuntimeException e) {
+                log.error("User authorization event listener failed, listener={}", listener.getClass().getName(), e);
+            }
+        }
+    }
+
+    @Override
+    public void onChannelSubscribed(byte[] channel, long count) {
+        if (!subscribedBefore.compareAndSet(false, true)) {
+            log.info("User authorization events re-subscribed, treating held authorization data as stale");
+            listeners.forEach(UserAuthorizationEventListener::onEventsMissed);
+        }
+    }
+
+    public int getListenerCount() {
+        return listeners.size();
+    }
+}
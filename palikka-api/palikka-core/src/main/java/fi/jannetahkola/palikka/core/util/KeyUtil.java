@@ -62,7 +62,9 @@ public class KeyUtil {
                  UnrecoverableKeyException e) {
             log.error("Failed to private load key pair from keystore properties={}, token properties={}", keystoreProperties, tokenProperties);
         }
-        return Objects.requireNonNull(keyPair);
+        Objects.requireNonNull(keyPair);
+        requireKeyType(keyPair.getPrivate(), tokenProperties.getSigning().getKeyAlias(), tokenProperties.getAlgorithm());
+        return keyPair;
     }
 
     public PublicKey loadPublicKeyFromPropertiesOrError(JwtProperties.KeyStoreProperties keystoreProperties,
@@ -77,6 +79,19 @@ public class KeyUtil {
         } catch (IOException | KeyStoreException | CertificateException | NoSuchAlgorithmException e) {
             log.error("Failed to public load key from keystore properties={}, token properties={}", keystoreProperties, tokenProperties);
         }
-        return Objects.requireNonNull(key);
+        Objects.requireNonNull(key);
+        requireKeyType(key, tokenProperties.getVerification().getKeyAlias(), tokenProperties.getAlgorithm());
+        return key;
+    }
+
+    /**
+     * @throws IllegalStateException If the key can't be used with the algorithm, e.g. an RSA key is configured for ES256
+     */
+    public void requireKeyType(Key key, String keyAlias, JwtProperties.SigningAlgorithm algorithm) {
+        if (!algorithm.getKeyType().equals(key.getAlgorithm())) {
+            throw new IllegalStateException(
+                    "Key '" + keyAlias + "' is of type " + key.getAlgorithm()
+                            + " but algorithm " + algorithm + " requires a key of type " + algorithm.getKeyType());
+        }
     }
 }
@@ -5,8 +5,9 @@ import com.nimbusds.jose.JWSHeader;
 import com.nimbusds.jwt.JWTClaimsSet;
 import fi.jannetahkola.palikka.core.auth.authenticator.JwtAuthenticationProvider;
 import fi.jannetahkola.palikka.core.auth.jwt.JwtService;
-import fi.jannetahkola.palikka.core.auth.data.RevokedTokenRepository;
+import fi.jannetahkola.palikka.core.auth.data.RevokedTokenService;
 import fi.jannetahkola.palikka.core.auth.jwt.PalikkaJwtType;
+import fi.jannetahkola.palikka.core.auth.jwt.UserAuthorityClaims;
 import fi.jannetahkola.palikka.core.auth.jwt.VerifiedJwt;
 import fi.jannetahkola.palikka.core.integration.users.Privilege;
 import fi.jannetahkola.palikka.core.integration.users.Role;
@@ -29,6 +30,7 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.context.SecurityContextImpl;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
@@ -63,14 +65,14 @@ class PalikkaAuthenticationFilterTests {
     RemoteUsersClient usersClient;
 
     @Mock
-    RevokedTokenRepository revokedTokenRepository;
+    RevokedTokenService revokedTokenService;
 
     PalikkaAuthenticationFilter filter;
 
     @BeforeEach
     void beforeEach() {
         when(jwtService.consumesTokenOfType(any())).thenReturn(true);
-        JwtAuthenticationProvider jwtAuthenticationProvider = new JwtAuthenticationProvider(jwtService, usersClient, revokedTokenRepository);
+        JwtAuthenticationProvider jwtAuthenticationProvider = new JwtAuthenticationProvider(jwtService, usersClient, revokedTokenService);
         filter = new PalikkaAuthenticationFilter(jwtAuthenticationProvider);
     }
 
@@ -157,11 +159,35 @@ class PalikkaAuthenticationFilterTests {
         }
     }
 
+    @SneakyThrows
+    @Test
+    void testValidTokenButRevokedTokenGeneration() {
+        when(jwtService.parse(any())).thenReturn(Optional.of(USER_JWT)); // No generation claim, i.e. generation 0
+        when(usersClient.getUser(any())).thenReturn(
+                User.builder().id(1).username("user").active(true).root(false).tokenGeneration(1L).build());
+
+        try (MockedStatic<SecurityContextHolder> securityContextMock = Mockito.mockStatic(SecurityContextHolder.class)) {
+            securityContextMock.when(SecurityContextHolder::getContext).thenReturn(new SecurityContextImpl());
+
+            MockHttpServletRequest req = new MockHttpServletRequest();
+            MockHttpServletResponse res = new MockHttpServletResponse();
+            MockFilterChain chain = new MockFilterChain();
+
+            req.addHeader(HttpHeaders.AUTHORIZATION, "Bearer valid-token");
+            filter.doFilterInternal(req, res, chain);
+
+            verify(jwtService, times(1)).parse(any());
+            verify(usersClient, times(1)).getUser(any());
+            verify(usersClient, times(0)).getUserRoles(any());
+            securityContextMock.verify(SecurityContextHolder::getContext, times(0));
+        }
+    }
+
     @SneakyThrows
     @Test
     void testRevokedToken() {
         when(jwtService.parse(any())).thenReturn(Optional.of(USER_JWT));
-        when(revokedTokenRepository.existsById(any())).thenReturn(true);
+        when(revokedTokenService.isRevoked(any())).thenReturn(true);
 
         try (MockedStatic<SecurityContextHolder> securityContextMock = Mockito.mockStatic(SecurityContextHolder.class)) {
             securityContextMock.when(SecurityContextHolder::getContext).thenReturn(new SecurityContextImpl());
@@ -254,4 +280,63 @@ class PalikkaAuthenticationFilterTests {
             assertThat(authentication.isAuthenticated()).isTrue();
         }
     }
+
+    @SneakyThrows
+    @Test
+    void testValidTokenWithEmbeddedAuthorities() {
+        JWTClaimsSet.Builder claims = new JWTClaimsSet.Builder().subject(String.valueOf(1));
+        UserAuthorityClaims.embed(claims, "user", List.of("ROLE_ADMIN"), Map.of("COMMAND", List.of("weather")));
+        VerifiedJwt jwt = VerifiedJwt.builder()
+                .claims(claims.build())
+                .header(new JWSHeader.Builder(JWSAlgorithm.RS512).build())
+                .type(PalikkaJwtType.USER)
+                .token("")
+                .build();
+        when(jwtService.parse(any())).thenReturn(Optional.of(jwt));
+        filter = new PalikkaAuthenticationFilter(
+                new JwtAuthenticationProvider(jwtService, usersClient, revokedTokenService, true));
+
+        try (MockedStatic<SecurityContextHolder> securityContextMock = Mockito.mockStatic(SecurityContextHolder.class)) {
+            securityContextMock.when(SecurityContextHolder::getContext).thenReturn(new SecurityContextImpl());
+
+            MockHttpServletRequest req = new MockHttpServletRequest();
+            MockHttpServletResponse res = new MockHttpServletResponse();
+            MockFilterChain chain = new MockFilterChain();
+
+            req.addHeader(HttpHeaders.AUTHORIZATION, "Bearer valid-token");
+            filter.doFilterInternal(req, res, chain);
+
+            verify(jwtService, times(1)).parse(any());
+            verify(usersClient, times(0)).getUser(any());
+            verify(usersClient, times(0)).getUserRoles(any());
+
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            assertThat(authentication.isAuthenticated()).isTrue();
+            assertThat(authentication.getName()).isEqualTo("1");
+            assertThat(authentication.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList())
+                    .containsExactlyInAnyOrder("ROLE_ADMIN", "COMMAND_weather");
+        }
+    }
+
+    @SneakyThrows
+    @Test
+    void testValidTokenWithoutEmbeddedAuthorities_whenEmbeddedAuthoritiesEnabled_thenUserFetched() {
+        when(jwtService.parse(any())).thenReturn(Optional.of(USER_JWT));
+        when(usersClient.getUser(any())).thenReturn(null);
+        filter = new PalikkaAuthenticationFilter(
+                new JwtAuthenticationProvider(jwtService, usersClient, revokedTokenService, true));
+
+        try (MockedStatic<SecurityContextHolder> securityContextMock = Mockito.mockStatic(SecurityContextHolder.class)) {
+            securityContextMock.when(SecurityContextHolder::getContext).thenReturn(new SecurityContextImpl());
+
+            MockHttpServletRequest req = new MockHttpServletRequest();
+            MockHttpServletResponse res = new MockHttpServletResponse();
+            MockFilterChain chain = new MockFilterChain();
+
+            req.addHeader(HttpHeaders.AUTHORIZATION, "Bearer valid-token");
+            filter.doFilterInternal(req, res, chain);
+
+            verify(usersClient, times(1)).getUser(any());
+        }
+    }
 }
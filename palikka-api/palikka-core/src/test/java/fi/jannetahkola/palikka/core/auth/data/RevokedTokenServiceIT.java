@@ -0,0 +1,148 @@
+package fi.jannetahkola.palikka.core.auth.data;
+
+import fi.jannetahkola.palikka.core.config.meta.EnableAuthenticationSupport;
+import fi.jannetahkola.palikka.core.config.meta.EnableRemoteUsersIntegration;
+import fi.jannetahkola.palikka.core.config.properties.RedisProperties;
+import fi.jannetahkola.palikka.core.testutils.redis.EmbeddedRedisServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.TestSocketUtils;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.MOCK,
+        properties = {
+                "palikka.jwt.keystore.signing.path=keystore-dev.p12",
+                "palikka.jwt.keystore.signing.pass=password",
+                "palikka.jwt.keystore.signing.type=pkcs12",
+
+                "palikka.jwt.token.user.signing.key-alias=jwt-usr",
+                "palikka.jwt.token.user.signing.key-pass=password",
+                "palikka.jwt.token.user.signing.validity-time=10s",
+                "palikka.jwt.token.user.issuer=palikka-dev-user",
+
+                "palikka.jwt.token.system.signing.key-alias=jwt-sys",
+                "palikka.jwt.token.system.signing.key-pass=password",
+                "palikka.jwt.token.system.signing.validity-time=10s",
+                "palikka.jwt.token.system.issuer=palikka-dev-system",
+
+                "palikka.integration.users-api.base-uri=http://test/"
+        })
+@EnableAuthenticationSupport
+@EnableRemoteUsersIntegration
+class RevokedTokenServiceIT {
+    static EmbeddedRedisServer embeddedRedisServer;
+
+    static {
+        RedisProperties redisProperties = new RedisProperties();
+        redisProperties.setHost("localhost");
+        redisProperties.setPort(TestSocketUtils.findAvailableTcpPort());
+        embeddedRedisServer = new EmbeddedRedisServer(redisProperties);
+    }
+
+    @Autowired
+    RevokedTokenService revokedTokenService;
+
+    @Autowired
+    RevokedTokenRepository revokedTokenRepository;
+
+    @Autowired
+    RedisConnectionFactory redisConnectionFactory;
+
+    RevokedTokenService otherInstance;
+    RedisMessageListenerContainer otherInstanceContainer;
+
+    @BeforeAll
+    static void beforeAll() {
+        embeddedRedisServer.start();
+    }
+
+    @AfterAll
+    static void afterAll() {
+        embeddedRedisServer.stop();
+    }
+
+    @DynamicPropertySource
+    static void dynamicPropertySource(DynamicPropertyRegistry registry) {
+        registry.add("palikka.redis.host", embeddedRedisServer::getHost);
+        registry.add("palikka.redis.port", embeddedRedisServer::getPort);
+    }
+
+    @BeforeEach
+    void beforeEach() {
+        otherInstance = new RevokedTokenService(revokedTokenRepository, new StringRedisTemplate(redisConnectionFactory));
+        otherInstanceContainer = new RedisMessageListenerContainer();
+        otherInstanceContainer.setConnectionFactory(redisConnectionFactory);
+        otherInstanceContainer.addMessageListener(otherInstance, otherInstance.getTopics());
+        otherInstanceContainer.afterPropertiesSet();
+        otherInstanceContainer.start();
+        await().atMost(Duration.ofSeconds(5)).until(() -> revokedTokenService.isSynced() && otherInstance.isSynced());
+    }
+
+    @AfterEach
+    void afterEach() throws Exception {
+        otherInstanceContainer.stop();
+        otherInstanceContainer.destroy();
+        otherInstance.close();
+    }
+
+    @Test
+    void givenTokenRevoked_thenOtherInstanceNotified() {
+        String tokenId = UUID.randomUUID().toString();
+        assertThat(otherInstance.isRevoked(tokenId)).isFalse();
+
+        assertThat(revokedTokenService.revoke(tokenId, Duration.ofSeconds(10))).isTrue();
+        assertThat(revokedTokenService.isRevoked(tokenId)).isTrue();
+        assertThat(revokedTokenRepository.existsById(tokenId)).isTrue();
+        await().atMost(Duration.ofSeconds(5)).until(() -> otherInstance.isRevoked(tokenId));
+    }
+
+    @Test
+    void givenTokenAlreadyRevoked_thenNotRevokedAgain() {
+        String tokenId = UUID.randomUUID().toString();
+        assertThat(revokedTokenService.revoke(tokenId, Duration.ofSeconds(10))).isTrue();
+        assertThat(otherInstance.revoke(tokenId, Duration.ofSeconds(10))).isFalse();
+    }
+
+    @Test
+    void givenTokenRevokedBeforeSubscribing_thenLoadedOnSubscribe() throws Exception {
+        String tokenId = UUID.randomUUID().toString();
+        otherInstanceContainer.stop();
+        revokedTokenService.revoke(tokenId, Duration.ofSeconds(10));
+
+        RevokedTokenService lateInstance =
+                new RevokedTokenService(revokedTokenRepository, new StringRedisTemplate(redisConnectionFactory));
+        assertThat(lateInstance.isSynced()).isFalse();
+        assertThat(lateInstance.isRevoked(tokenId)).isTrue(); // From the repository
+
+        RedisMessageListenerContainer lateContainer = new RedisMessageListenerContainer();
+        lateContainer.setConnectionFactory(redisConnectionFactory);
+        lateContainer.addMessageListener(lateInstance, lateInstance.getTopics());
+        lateContainer.afterPropertiesSet();
+        lateContainer.start();
+        try {
+            await().atMost(Duration.ofSeconds(5)).until(lateInstance::isSynced);
+            revokedTokenRepository.deleteById(tokenId);
+            assertThat(lateInstance.isRevoked(tokenId)).isTrue(); // From the near-cache
+        } finally {
+            lateContainer.stop();
+            lateContainer.destroy();
+            lateInstance.close();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package fi.jannetahkola.palikka.core.auth.data;
+
+import fi.jannetahkola.palikka.core.testutils.time.MutableClock;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class RevokedTokenServiceTests {
+    final MutableClock clock = new MutableClock(Instant.parse("2024-01-01T00:00:00Z"));
+    final RevokedTokenRepository repository = mock(RevokedTokenRepository.class);
+    final StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+    final RevokedTokenService service =
+            new RevokedTokenService(repository, redisTemplate, clock, Duration.ofHours(1));
+
+    @AfterEach
+    void afterEach() {
+        service.close();
+    }
+
+    @Test
+    void givenHeartbeatNotReceived_thenNoLongerSynced() {
+        subscribe();
+        service.maintain();
+        assertThat(service.isSynced()).isTrue();
+
+        service.maintain(); // Previous heartbeat never came back
+        assertThat(service.isSynced()).isFalse();
+
+        when(repository.existsById("token")).thenReturn(true);
+        assertThat(service.isRevoked("token")).isTrue();
+    }
+
+    @Test
+    void givenHeartbeatReceived_thenStaysSynced() {
+        subscribe();
+        service.maintain();
+        receiveHeartbeat(1);
+        service.maintain();
+        assertThat(service.isSynced()).isTrue();
+    }
+
+    @Test
+    void givenHeartbeatReceivedWhileNotSynced_thenSyncedAgain() {
+        subscribe();
+        service.maintain();
+        service.maintain();
+        assertThat(service.isSynced()).isFalse();
+
+        when(repository.findAll()).thenReturn(List.of(entity("missed", 60)));
+        receiveHeartbeat(2);
+        assertThat(service.isSynced()).isTrue();
+        assertThat(service.isRevoked("missed")).isTrue();
+        verify(repository, never()).existsById(anyString());
+    }
+
+    @Test
+    void givenHeartbeatFailsToSend_thenNoLongerSynced() {
+        subscribe();
+        doThrow(new RedisConnectionFailureException("down")).when(redisTemplate).convertAndSend(anyString(), anyString());
+        service.maintain();
+        assertThat(service.isSynced()).isFalse();
+    }
+
+    @Test
+    void givenRevocationsExpired_thenForgottenOnMaintenance() {
+        when(repository.findAll()).thenReturn(List.of(entity("short", 10), entity("long", 60)));
+        subscribe();
+        assertThat(service.getRememberedCount()).isEqualTo(2);
+
+        clock.setInstant(clock.instant().plusSeconds(30));
+        service.maintain();
+        assertThat(service.getRememberedCount()).isEqualTo(1);
+        assertThat(service.isRevoked("long")).isTrue();
+    }
+
+    void subscribe() {
+        service.onChannelSubscribed(RevokedTokenService.CHANNEL.getBytes(StandardCharsets.UTF_8), 1);
+        assertThat(service.isSynced()).isTrue();
+    }
+
+    void receiveHeartbeat(long heartbeat) {
+        ArgumentCaptor<String> channel = ArgumentCaptor.forClass(String.class);
+        verify(redisTemplate, atLeastOnce()).convertAndSend(channel.capture(), eq(Long.toString(heartbeat)));
+        service.onMessage(new DefaultMessage(
+                channel.getValue().getBytes(StandardCharsets.UTF_8),
+                Long.toString(heartbeat).getBytes(StandardCharsets.UTF_8)), null);
+    }
+
+    static RevokedTokenEntity entity(String tokenId, long ttlSeconds) {
+        RevokedTokenEntity entity = new RevokedTokenEntity();
+        entity.setTokenId(tokenId);
+        entity.setTtlSeconds(ttlSeconds);
+        return entity;
+    }
+}
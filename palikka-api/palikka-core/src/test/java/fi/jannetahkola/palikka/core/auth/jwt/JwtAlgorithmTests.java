@@ -0,0 +1,145 @@
+package fi.jannetahkola.palikka.core.auth.jwt;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import fi.jannetahkola.palikka.core.config.properties.JwtProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class JwtAlgorithmTests {
+    private static final int ROUNDS = 200;
+
+    @Test
+    void givenEs256_thenTokenSignedAndVerified() {
+        JwtService producer = producer("jwt-usr-ec", JwtProperties.SigningAlgorithm.ES256);
+        JwtService consumer = consumer("jwt-usr-ec", JwtProperties.SigningAlgorithm.ES256);
+
+        SignedJWT signedJwt = producer.sign(new JWTClaimsSet.Builder().subject("1"), PalikkaJwtType.USER).orElseThrow();
+
+        assertThat(signedJwt.getHeader().getAlgorithm()).isEqualTo(JWSAlgorithm.ES256);
+        assertThat(producer.parse(signedJwt.serialize())).isPresent();
+        assertThat(consumer.parse(signedJwt.serialize())).isPresent();
+    }
+
+    @Test
+    void givenConsumerWithDifferentAlgorithm_thenVerificationFails() {
+        JwtService producer = producer("jwt-usr", JwtProperties.SigningAlgorithm.RS512);
+        JwtService consumer = consumer("jwt-usr", JwtProperties.SigningAlgorithm.RS256);
+
+        String token = producer.sign(new JWTClaimsSet.Builder().subject("1"), PalikkaJwtType.USER)
+                .orElseThrow()
+                .serialize();
+
+        assertThat(producer.parse(token)).isPresent();
+        assertThat(consumer.parse(token)).isEmpty();
+    }
+
+    @Test
+    void givenKeyTypeNotMatchingAlgorithm_thenInitializationFails() {
+        assertThatThrownBy(() -> producer("jwt-usr", JwtProperties.SigningAlgorithm.ES256))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("requires a key of type EC");
+        assertThatThrownBy(() -> consumer("jwt-usr-ec", JwtProperties.SigningAlgorithm.RS512))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("requires a key of type RSA");
+    }
+
+    @Test
+    void givenEcKeyOnDifferentCurve_thenInitializationFails() {
+        assertThatThrownBy(() -> producer("jwt-usr-ec", JwtProperties.SigningAlgorithm.ES384))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("doesn't support algorithm ES384");
+    }
+
+    /**
+     * Rough comparison of sign and verify throughput, logged for reference. Verification is measured with the cache
+     * disabled so that every round does the signature check. Tagged as a benchmark, so it's left out of regular builds.
+     */
+    @Test
+    @Tag("benchmark")
+    void compareSignAndVerifyThroughput() {
+        for (var entry : new Object[][]{
+                {"jwt-usr", JwtProperties.SigningAlgorithm.RS512},
+                {"jwt-usr-ec", JwtProperties.SigningAlgorithm.ES256}}) {
+            String keyAlias = (String) entry[0];
+            JwtProperties.SigningAlgorithm algorithm = (JwtProperties.SigningAlgorithm) entry[1];
+            JwtService producer = producer(keyAlias, algorithm);
+            JwtService consumer = consumer(keyAlias, algorithm);
+
+            String token = null;
+            long signStart = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                token = producer.sign(new JWTClaimsSet.Builder().subject("1"), PalikkaJwtType.USER)
+                        .orElseThrow()
+                        .serialize();
+            }
+            long signNanos = System.nanoTime() - signStart;
+
+            long verifyStart = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                assertThat(consumer.parse(token)).isPresent();
+            }
+            long verifyNanos = System.nanoTime() - verifyStart;
+
+            log.info("{}: sign {} ops/s, verify {} ops/s", algorithm,
+                    opsPerSecond(signNanos), opsPerSecond(verifyNanos));
+        }
+    }
+
+    private static long opsPerSecond(long nanos) {
+        return ROUNDS * 1_000_000_000L / Math.max(nanos, 1);
+    }
+
+    private static JwtService producer(String keyAlias, JwtProperties.SigningAlgorithm algorithm) {
+        JwtProperties jwtProperties = new JwtProperties();
+        jwtProperties.getKeystore().setSigning(keyStoreProperties("keystore-dev.p12"));
+        jwtProperties.getCache().setEnabled(false);
+
+        JwtProperties.TokenKeyProperties tokenKeyProperties = new JwtProperties.TokenKeyProperties();
+        tokenKeyProperties.setKeyAlias(keyAlias);
+        tokenKeyProperties.setKeyPass("password");
+        tokenKeyProperties.setValidityTime(Duration.ofSeconds(10));
+        JwtProperties.TokenProperties tokenProperties = tokenProperties(algorithm);
+        tokenProperties.setSigning(tokenKeyProperties);
+        jwtProperties.getToken().setUser(tokenProperties);
+
+        return new JwtService(jwtProperties);
+    }
+
+    private static JwtService consumer(String keyAlias, JwtProperties.SigningAlgorithm algorithm) {
+        JwtProperties jwtProperties = new JwtProperties();
+        jwtProperties.getKeystore().setVerification(keyStoreProperties("truststore-dev.p12"));
+        jwtProperties.getCache().setEnabled(false);
+
+        JwtProperties.TokenKeyProperties tokenKeyProperties = new JwtProperties.TokenKeyProperties();
+        tokenKeyProperties.setKeyAlias(keyAlias);
+        JwtProperties.TokenProperties tokenProperties = tokenProperties(algorithm);
+        tokenProperties.setVerification(tokenKeyProperties);
+        jwtProperties.getToken().setUser(tokenProperties);
+
+        return new JwtService(jwtProperties);
+    }
+
+    private static JwtProperties.TokenProperties tokenProperties(JwtProperties.SigningAlgorithm algorithm) {
+        JwtProperties.TokenProperties tokenProperties = new JwtProperties.TokenProperties();
+        tokenProperties.setIssuer("palikka-dev-user");
+        tokenProperties.setAlgorithm(algorithm);
+        return tokenProperties;
+    }
+
+    private static JwtProperties.KeyStoreProperties keyStoreProperties(String path) {
+        JwtProperties.KeyStoreProperties keyStoreProperties = new JwtProperties.KeyStoreProperties();
+        keyStoreProperties.setPath(path);
+        keyStoreProperties.setPass("password");
+        keyStoreProperties.setType("pkcs12");
+        return keyStoreProperties;
+    }
+}
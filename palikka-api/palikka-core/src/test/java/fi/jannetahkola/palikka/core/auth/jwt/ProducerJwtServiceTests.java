@@ -210,6 +210,17 @@ class ProducerJwtServiceTests {
         assertThat(claims.getSubject()).isEqualTo(String.valueOf(1));
     }
 
+    @Test
+    void testVerifiedTokenCached() {
+        String token = jwtService.sign(
+                new JWTClaimsSet.Builder().subject(String.valueOf(1)), PalikkaJwtType.USER)
+                .orElseThrow()
+                .serialize();
+
+        VerifiedJwt verifiedJwt = jwtService.parse(token).orElseThrow();
+        assertThat(jwtService.parse(token)).containsSame(verifiedJwt);
+    }
+
     private static Stream<Arguments> provideInvalidClaimsParamsForUserToken() {
         Supplier<JWTClaimsSet.Builder> defaultJwtClaimsSetBuilder = () ->
                 new JWTClaimsSet.Builder()
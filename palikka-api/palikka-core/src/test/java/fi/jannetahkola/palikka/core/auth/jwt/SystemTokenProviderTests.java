@@ -0,0 +1,133 @@
+package fi.jannetahkola.palikka.core.auth.jwt;
+
+import com.nimbusds.jwt.JWTClaimsSet;
+import fi.jannetahkola.palikka.core.config.properties.JwtProperties;
+import fi.jannetahkola.palikka.core.testutils.time.MutableClock;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+class SystemTokenProviderTests {
+    JwtService jwtService;
+    MutableClock clock;
+
+    @BeforeEach
+    void beforeEach() {
+        JwtProperties jwtProperties = new JwtProperties();
+        JwtProperties.KeyStoreProperties keystoreProperties = new JwtProperties.KeyStoreProperties();
+        keystoreProperties.setPath("keystore-dev.p12");
+        keystoreProperties.setPass("password");
+        keystoreProperties.setType("pkcs12");
+        jwtProperties.getKeystore().setSigning(keystoreProperties);
+
+        JwtProperties.TokenProperties tokenProperties = new JwtProperties.TokenProperties();
+        tokenProperties.setIssuer("palikka-dev-system");
+        JwtProperties.TokenKeyProperties tokenKeyProperties = new JwtProperties.TokenKeyProperties();
+        tokenKeyProperties.setKeyAlias("jwt-sys");
+        tokenKeyProperties.setKeyPass("password");
+        tokenKeyProperties.setValidityTime(Duration.ofSeconds(10));
+        tokenProperties.setSigning(tokenKeyProperties);
+        jwtProperties.getToken().setSystem(tokenProperties);
+
+        jwtService = new JwtService(jwtProperties);
+        clock = new MutableClock(Instant.now());
+    }
+
+    @Test
+    void givenRepeatedCalls_thenSameTokenReturned() {
+        SystemTokenProvider provider = new SystemTokenProvider(jwtService, clock);
+
+        String token = provider.getToken().orElseThrow();
+        assertThat(provider.getToken()).hasValue(token);
+        assertThat(provider.getSignCount()).isEqualTo(1);
+        assertThat(jwtService.parse(token)).isPresent();
+    }
+
+    @Test
+    void givenHalfOfValidityTimePassed_thenTokenRefreshed() {
+        SystemTokenProvider provider = new SystemTokenProvider(jwtService, clock);
+
+        String token = provider.getToken().orElseThrow();
+        clock.advance(Duration.ofSeconds(4));
+        assertThat(provider.getToken()).hasValue(token);
+
+        clock.advance(Duration.ofSeconds(2));
+        assertThat(provider.getToken()).isPresent().get().isNotEqualTo(token);
+        assertThat(provider.getSignCount()).isEqualTo(2);
+    }
+
+    @Test
+    void givenInvalidate_thenNewTokenSigned() {
+        SystemTokenProvider provider = new SystemTokenProvider(jwtService, clock);
+
+        String token = provider.getToken().orElseThrow();
+        provider.invalidate();
+        assertThat(provider.getToken()).isPresent().get().isNotEqualTo(token);
+        assertThat(provider.getSignCount()).isEqualTo(2);
+    }
+
+    @Test
+    void givenConcurrentCalls_thenTokenSignedOnce() throws Exception {
+        SystemTokenProvider provider = new SystemTokenProvider(jwtService, clock);
+        int threads = 16;
+        CyclicBarrier barrier = new CyclicBarrier(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String>> futures = executor.invokeAll(
+                    Collections.nCopies(threads, (Callable<String>) () -> {
+                        barrier.await(5, TimeUnit.SECONDS);
+                        return provider.getToken().orElseThrow();
+                    }));
+            Set<String> tokens = new HashSet<>();
+            for (Future<String> future : futures) {
+                tokens.add(future.get(5, TimeUnit.SECONDS));
+            }
+            assertThat(tokens).hasSize(1);
+            assertThat(provider.getSignCount()).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Logs a rough comparison of the cost per outbound request with and without caching the token. Only runs with the
+     * benchmark profile.
+     */
+    @Test
+    @Tag("benchmark")
+    void compareCachedTokenWithSigning() {
+        int requests = 200;
+        SystemTokenProvider provider = new SystemTokenProvider(jwtService);
+        provider.getToken(); // Warm up both paths
+        jwtService.sign(new JWTClaimsSet.Builder(), PalikkaJwtType.SYSTEM);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            jwtService.sign(new JWTClaimsSet.Builder(), PalikkaJwtType.SYSTEM)
+                    .orElseThrow()
+                    .serialize();
+        }
+        long signingNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            provider.getToken().orElseThrow();
+        }
+        long cachedNanos = System.nanoTime() - start;
+
+        log.info("Per request: signing={}us, cached={}us",
+                signingNanos / requests / 1000, cachedNanos / requests / 1000);
+    }
+}
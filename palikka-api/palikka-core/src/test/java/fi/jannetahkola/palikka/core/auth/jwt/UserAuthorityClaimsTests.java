@@ -0,0 +1,45 @@
+package fi.jannetahkola.palikka.core.auth.jwt;
+
+import com.nimbusds.jwt.JWTClaimsSet;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserAuthorityClaimsTests {
+    @Test
+    void givenEmbeddedAuthorities_whenClaimsSerialized_thenAuthoritiesRestored() throws Exception {
+        JWTClaimsSet.Builder builder = new JWTClaimsSet.Builder().subject("1");
+        UserAuthorityClaims.embed(builder, "admin", List.of("ROLE_ADMIN", "ROLE_USER"),
+                Map.of("COMMAND", List.of("weather", "time"), "GAME", List.of("start")));
+
+        JWTClaimsSet claims = JWTClaimsSet.parse(builder.build().toString());
+
+        assertThat(claims.getStringListClaim(UserAuthorityClaims.ROLES_CLAIM)).containsExactly("ADMIN", "USER");
+        assertThat(UserAuthorityClaims.getUsername(claims)).contains("admin");
+        assertThat(UserAuthorityClaims.getAuthorities(claims).orElseThrow()).containsExactlyInAnyOrder(
+                "ROLE_ADMIN", "ROLE_USER", "COMMAND_weather", "COMMAND_time", "GAME_start");
+    }
+
+    @Test
+    void givenNoEmbeddedAuthorities_thenEmpty() {
+        JWTClaimsSet claims = new JWTClaimsSet.Builder().subject("1").build();
+
+        assertThat(UserAuthorityClaims.getUsername(claims)).isEmpty();
+        assertThat(UserAuthorityClaims.getAuthorities(claims)).isEmpty();
+    }
+
+    @Test
+    void givenMalformedPrivileges_thenEmpty() {
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .subject("1")
+                .claim(UserAuthorityClaims.USERNAME_CLAIM, "admin")
+                .claim(UserAuthorityClaims.ROLES_CLAIM, List.of("ADMIN"))
+                .claim(UserAuthorityClaims.PRIVILEGES_CLAIM, Map.of("COMMAND", "weather"))
+                .build();
+
+        assertThat(UserAuthorityClaims.getAuthorities(claims)).isEmpty();
+    }
+}
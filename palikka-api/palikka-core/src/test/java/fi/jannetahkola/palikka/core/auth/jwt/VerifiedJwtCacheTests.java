@@ -0,0 +1,69 @@
+package fi.jannetahkola.palikka.core.auth.jwt;
+
+import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jwt.JWTClaimsSet;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VerifiedJwtCacheTests {
+    static final Instant NOW = Instant.parse("2024-01-01T00:00:00Z");
+
+    @Test
+    void givenCachedToken_thenReturnedUntilExpiry() {
+        VerifiedJwt verifiedJwt = newVerifiedJwt("token-1", NOW.plusSeconds(10));
+
+        VerifiedJwtCache cache = new VerifiedJwtCache(10, Clock.fixed(NOW, ZoneOffset.UTC));
+        cache.put(verifiedJwt);
+        assertThat(cache.get("token-1")).containsSame(verifiedJwt);
+        assertThat(cache.get("token-2")).isEmpty();
+
+        VerifiedJwtCache laterCache = new VerifiedJwtCache(10, Clock.fixed(NOW.plusSeconds(10), ZoneOffset.UTC));
+        laterCache.put(verifiedJwt);
+        assertThat(laterCache.get("token-1")).isEmpty();
+        assertThat(laterCache.size()).isZero();
+    }
+
+    @Test
+    void givenCacheFull_thenLeastRecentlyUsedEvicted() {
+        VerifiedJwtCache cache = new VerifiedJwtCache(2, Clock.fixed(NOW, ZoneOffset.UTC));
+        Instant expiresAt = NOW.plus(Duration.ofMinutes(1));
+        cache.put(newVerifiedJwt("token-1", expiresAt));
+        cache.put(newVerifiedJwt("token-2", expiresAt));
+        cache.get("token-1");
+        cache.put(newVerifiedJwt("token-3", expiresAt));
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.get("token-1")).isPresent();
+        assertThat(cache.get("token-2")).isEmpty();
+        assertThat(cache.get("token-3")).isPresent();
+    }
+
+    @Test
+    void givenInvalidate_thenTokenRemoved() {
+        VerifiedJwtCache cache = new VerifiedJwtCache(10, Clock.fixed(NOW, ZoneOffset.UTC));
+        cache.put(newVerifiedJwt("token-1", NOW.plusSeconds(10)));
+        cache.invalidate("token-1");
+        assertThat(cache.get("token-1")).isEmpty();
+    }
+
+    static VerifiedJwt newVerifiedJwt(String token, Instant expiresAt) {
+        return VerifiedJwt.builder()
+                .type(PalikkaJwtType.USER)
+                .header(new JWSHeader.Builder(JWSAlgorithm.RS512).type(JOSEObjectType.JWT).build())
+                .claims(new JWTClaimsSet.Builder()
+                        .subject("1")
+                        .expirationTime(Date.from(expiresAt))
+                        .build())
+                .token(token)
+                .build();
+    }
+}
@@ -2,6 +2,7 @@ package fi.jannetahkola.palikka.core.config;
 
 import fi.jannetahkola.palikka.core.auth.PalikkaAuthenticationFilterConfigurer;
 import fi.jannetahkola.palikka.core.auth.data.RevokedTokenRepository;
+import fi.jannetahkola.palikka.core.auth.data.RevokedTokenService;
 import fi.jannetahkola.palikka.core.auth.jwt.JwtService;
 import fi.jannetahkola.palikka.core.config.meta.EnableAuthenticationSupport;
 import fi.jannetahkola.palikka.core.config.meta.EnableRemoteUsersIntegration;
@@ -49,5 +50,6 @@ class AuthenticationSupportEnabledTests {
         assertThat(context.getBean(LettuceConnectionFactory.class)).isNotNull();
         assertThat(context.getBean(RedisTemplate.class)).isNotNull();
         assertThat(context.getBean(RevokedTokenRepository.class)).isNotNull();
+        assertThat(context.getBean(RevokedTokenService.class)).isNotNull();
     }
 }
@@ -0,0 +1,154 @@
+package fi.jannetahkola.palikka.core.integration;
+
+import fi.jannetahkola.palikka.core.integration.users.CachingUsersClient;
+import fi.jannetahkola.palikka.core.integration.users.Privilege;
+import fi.jannetahkola.palikka.core.integration.users.Role;
+import fi.jannetahkola.palikka.core.integration.users.User;
+import fi.jannetahkola.palikka.core.integration.users.UsersClient;
+import fi.jannetahkola.palikka.core.integration.users.UsersClientException;
+import fi.jannetahkola.palikka.core.integration.users.events.UserAuthorizationChangedEvent;
+import fi.jannetahkola.palikka.core.testutils.time.MutableClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+class CachingUsersClientTests {
+    UsersClient delegate;
+    MutableClock clock;
+
+    @BeforeEach
+    void beforeEach() {
+        delegate = mock(UsersClient.class);
+        when(delegate.getUser(anyInt())).thenAnswer(invocation -> User.builder()
+                .id(invocation.getArgument(0))
+                .username("user")
+                .active(true)
+                .root(false)
+                .build());
+        when(delegate.getUserRoles(anyInt())).thenReturn(List.of(Role.builder()
+                .id(1)
+                .name("ROLE_ADMIN")
+                .privileges(Set.of(new Privilege(1, "COMMAND", "weather")))
+                .build()));
+        when(delegate.getUserAuthorization(anyInt())).thenCallRealMethod();
+        clock = new MutableClock(Instant.parse("2024-01-01T00:00:00Z"));
+    }
+
+    @Test
+    void givenRepeatedLookups_thenDelegateCalledOnce() {
+        CachingUsersClient client = new CachingUsersClient(delegate, 10, Duration.ofSeconds(30), clock);
+
+        assertThat(client.getUser(1)).isNotNull();
+        assertThat(client.getUserRoles(1)).hasSize(1);
+        assertThat(client.getUserRoles(1)).hasSize(1);
+        assertThat(client.getUserAuthorization(1).orElseThrow().getAuthorities())
+                .containsExactlyInAnyOrder("ROLE_ADMIN", "COMMAND_weather");
+
+        verify(delegate, times(1)).getUser(1);
+        verify(delegate, times(1)).getUserRoles(1);
+        assertThat(client.getStats().hits()).isEqualTo(3);
+        assertThat(client.getStats().misses()).isEqualTo(1);
+    }
+
+    @Test
+    void givenLookup_whenTimeToLiveElapsed_thenSnapshotReloaded() {
+        CachingUsersClient client = new CachingUsersClient(delegate, 10, Duration.ofSeconds(30), clock);
+
+        client.getUser(1);
+        clock.advance(Duration.ofSeconds(31));
+        client.getUser(1);
+
+        verify(delegate, times(2)).getUser(1);
+        assertThat(client.getStats().expirations()).isEqualTo(1);
+    }
+
+    @Test
+    void givenDelegateFails_thenFailurePassedOnAndNotCached() {
+        CachingUsersClient client = new CachingUsersClient(delegate, 10, Duration.ofSeconds(30), clock);
+        when(delegate.getUserAuthorization(1)).thenThrow(new UsersClientException("Connection refused"));
+
+        assertThatThrownBy(() -> client.getUserAuthorization(1)).isInstanceOf(UsersClientException.class);
+        assertThat(client.getUser(1)).isNull();
+        assertThat(client.getUserRoles(1)).isEmpty();
+        assertThat(client.size()).isZero();
+    }
+
+    @Test
+    void givenLookups_whenMaxSizeExceeded_thenLeastRecentlyUsedEvicted() {
+        CachingUsersClient client = new CachingUsersClient(delegate, 2, Duration.ofSeconds(30), clock);
+
+        client.getUser(1);
+        client.getUser(2);
+        client.getUser(1); // 2 is now the least recently used
+        client.getUser(3);
+
+        assertThat(client.size()).isEqualTo(2);
+        assertThat(client.getStats().evictions()).isEqualTo(1);
+
+        client.getUser(1);
+        verify(delegate, times(1)).getUser(1);
+        client.getUser(2);
+        verify(delegate, times(2)).getUser(2);
+    }
+
+    @Test
+    void givenLookup_whenUserNotFound_thenNotCached() {
+        when(delegate.getUser(any())).thenReturn(null);
+        CachingUsersClient client = new CachingUsersClient(delegate, 10, Duration.ofSeconds(30), clock);
+
+        assertThat(client.getUser(1)).isNull();
+        assertThat(client.getUserRoles(1)).isEmpty();
+
+        verify(delegate, times(2)).getUser(1);
+        verify(delegate, never()).getUserRoles(any());
+        assertThat(client.size()).isZero();
+    }
+
+    @Test
+    void givenInvalidate_thenSnapshotReloaded() {
+        CachingUsersClient client = new CachingUsersClient(delegate, 10, Duration.ofSeconds(30), clock);
+
+        client.getUser(1);
+        client.invalidate(1);
+        client.getUser(1);
+
+        verify(delegate, times(2)).getUser(1);
+    }
+
+    @Test
+    void givenUserAuthorizationChangedEvent_thenOnlyAffectedSnapshotsReloaded() {
+        CachingUsersClient client = new CachingUsersClient(delegate, 10, Duration.ofSeconds(30), clock);
+
+        client.getUser(1);
+        client.getUser(2);
+        client.onUserAuthorizationChanged(
+                new UserAuthorizationChangedEvent(Set.of(1), UserAuthorizationChangedEvent.Reason.ROLES_CHANGED));
+        client.getUser(1);
+        client.getUser(2);
+
+        verify(delegate, times(2)).getUser(1);
+        verify(delegate, times(1)).getUser(2);
+    }
+
+    @Test
+    void givenInvalidateDuringLoad_thenLoadedSnapshotNotCached() {
+        CachingUsersClient client = new CachingUsersClient(delegate, 10, Duration.ofSeconds(30), clock);
+        when(delegate.getUser(1)).thenAnswer(invocation -> {
+            client.invalidate(1); // Change arrives while the previous state is being loaded
+            return User.builder().id(1).username("user").active(true).root(false).build();
+        });
+
+        assertThat(client.getUser(1)).isNotNull();
+        assertThat(client.size()).isZero();
+    }
+}
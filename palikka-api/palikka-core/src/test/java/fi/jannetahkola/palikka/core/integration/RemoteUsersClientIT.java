@@ -3,10 +3,11 @@ package fi.jannetahkola.palikka.core.integration;
 import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
 import fi.jannetahkola.palikka.core.TestSpringBootConfig;
 import fi.jannetahkola.palikka.core.config.meta.EnableRemoteUsersIntegration;
-import fi.jannetahkola.palikka.core.integration.users.Privilege;
 import fi.jannetahkola.palikka.core.integration.users.RemoteUsersClient;
 import fi.jannetahkola.palikka.core.integration.users.Role;
 import fi.jannetahkola.palikka.core.integration.users.User;
+import fi.jannetahkola.palikka.core.integration.users.UserAuthorizationSnapshot;
+import fi.jannetahkola.palikka.core.integration.users.UsersClientException;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.api.extension.RegisterExtension;
@@ -15,8 +16,8 @@ import org.springframework.boot.autoconfigure.web.client.RestTemplateAutoConfigu
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.system.CapturedOutput;
 import org.springframework.boot.test.system.OutputCaptureExtension;
-import org.springframework.hateoas.MediaTypes;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
@@ -27,6 +28,7 @@ import java.util.Set;
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
 import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @SpringBootTest(
         webEnvironment = SpringBootTest.WebEnvironment.MOCK,
@@ -40,7 +42,9 @@ import static org.assertj.core.api.Assertions.assertThat;
                 "palikka.jwt.token.system.signing.key-alias=jwt-sys",
                 "palikka.jwt.token.system.signing.key-pass=password",
                 "palikka.jwt.token.system.signing.validity-time=10s",
-                "palikka.jwt.token.system.issuer=palikka-dev-system"
+                "palikka.jwt.token.system.issuer=palikka-dev-system",
+
+                "palikka.integration.users-api.http.read-timeout=1s"
         })
 // Specify context explicitly so other test apps won't get loaded
 @ContextConfiguration(classes = {TestSpringBootConfig.class, RestTemplateAutoConfiguration.class})
@@ -62,8 +66,7 @@ class RemoteUsersClientIT {
 
     @Test
     void givenGetUserRequest_thenOkResponse() {
-        stubForUsersOkResponse();
-        stubForUserOkResponse();
+        stubForUserAuthorizationOkResponse();
 
         User user = usersClient.getUser(1);
         assertThat(user).isNotNull();
@@ -71,40 +74,40 @@ class RemoteUsersClientIT {
         assertThat(user.getUsername()).isEqualTo("mock-user-1");
         assertThat(user.getActive()).isTrue();
         assertThat(user.getRoot()).isTrue();
+        assertThat(user.getTokenGeneration()).isZero();
         assertThat(user.getRoles()).isPresent();
         assertThat(user.getRoles().get()).containsAll(Set.of("ROLE_ADMIN"));
+
+        wireMockServer.verify(1, getRequestedFor(urlEqualTo("/users-api/users/1/authorization"))
+                .withHeader(HttpHeaders.AUTHORIZATION, matching("Bearer .+")));
     }
 
     @Test
     void givenGetUserRequest_whenUserNotFound_thenNullObjectReturned(CapturedOutput capturedOutput) {
-        stubForUsersOkResponse();
-        stubForUserNotFoundResponse();
+        stubForUserAuthorizationNotFoundResponse();
 
         assertThat(usersClient.getUser(1)).isNull();
-        assertThat(capturedOutput.getAll()).contains("<< GET user - response has constraint violations");
+        assertThat(capturedOutput.getAll()).contains("<< GET user authorization - user not found");
     }
 
     @Test
     void givenGetUserRequest_whenInvalidResponseBody_thenNullObjectReturned(CapturedOutput capturedOutput) {
-        stubForUsersOkResponse();
         wireMockServer.stubFor(
-                get(urlMatching("/users-api/users/1"))
+                get(urlEqualTo("/users-api/users/1/authorization"))
                         .willReturn(
                                 aResponse()
                                         .withStatus(200)
                                         .withBodyFile("user_notfound.json")
-                                        .withHeader(HttpHeaders.CONTENT_TYPE, MediaTypes.HAL_JSON_VALUE)));
+                                        .withHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)));
 
         User user = usersClient.getUser(1);
         assertThat(user).isNull();
-        assertThat(capturedOutput.getAll()).contains("<< GET user - response has constraint violations");
+        assertThat(capturedOutput.getAll()).contains("<< GET user authorization - response has constraint violations");
     }
 
     @Test
     void givenGetUserRolesRequest_thenOkResponse() {
-        stubForUsersOkResponse();
-        stubForUserOkResponse();
-        stubForUserRolesOkResponse();
+        stubForUserAuthorizationOkResponse();
 
         Collection<Role> userRoles = usersClient.getUserRoles(1);
         assertThat(userRoles).isNotEmpty();
@@ -122,28 +125,22 @@ class RemoteUsersClientIT {
     }
 
     @Test
-    void givenGetUserRolesRequest_whenUserNotFound_thenEmptyCollectionReturned(CapturedOutput capturedOutput) {
-        stubForUsersOkResponse();
-        stubForUserNotFoundResponse();
-        stubForUserRolesOkResponse();
+    void givenGetUserRolesRequest_whenUserNotFound_thenEmptyCollectionReturned() {
+        stubForUserAuthorizationNotFoundResponse();
 
         Collection<Role> userRoles = usersClient.getUserRoles(1);
         assertThat(userRoles).isEmpty();
-        assertThat(capturedOutput.getAll()).contains(
-                "java.lang.IllegalStateException: Expected to find link with rel 'user_roles' in response");
     }
 
     @Test
     void givenGetUserRolesRequest_whenResponseInvalid_thenEmptyCollectionReturned(CapturedOutput capturedOutput) {
-        stubForUsersOkResponse();
-        stubForUserOkResponse();
         wireMockServer.stubFor(
-                get(urlMatching("/users-api/users/1/roles"))
+                get(urlEqualTo("/users-api/users/1/authorization"))
                         .willReturn(
                                 aResponse()
                                         .withStatus(200)
-                                        .withBodyFile("user_roles_ok_invalid.json")
-                                        .withHeader(HttpHeaders.CONTENT_TYPE, MediaTypes.HAL_JSON_VALUE)));
+                                        .withBodyFile("user_authorization_ok_invalid.json")
+                                        .withHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)));
 
         Collection<Role> userRoles = usersClient.getUserRoles(1);
         assertThat(userRoles).isEmpty();
@@ -151,43 +148,81 @@ class RemoteUsersClientIT {
                 "response has constraint violations");
     }
 
-    static void stubForUsersOkResponse() {
+    @Test
+    void givenGetUserAuthorizationRequest_thenSingleRequestMade() {
+        stubForUserAuthorizationOkResponse();
+
+        UserAuthorizationSnapshot snapshot = usersClient.getUserAuthorization(1).orElseThrow();
+        assertThat(snapshot.getUser().getId()).isEqualTo(1);
+        assertThat(snapshot.getAuthorities()).contains("ROLE_ADMIN", "COMMAND_weather");
+
+        wireMockServer.verify(1, getRequestedFor(anyUrl()));
+    }
+
+    @Test
+    void givenGetUserAuthorizationRequest_whenUserNotFound_thenEmptyReturned() {
+        stubForUserAuthorizationNotFoundResponse();
+
+        assertThat(usersClient.getUserAuthorization(1)).isEmpty();
+    }
+
+    @Test
+    void givenGetUserAuthorizationRequest_whenServerError_thenExceptionThrown() {
         wireMockServer.stubFor(
-                get(urlMatching("/users-api/users"))
-                        .willReturn(
-                                aResponse()
-                                        .withStatus(200)
-                                        .withBodyFile("users_ok.json")
-                                        .withHeader(HttpHeaders.CONTENT_TYPE, MediaTypes.HAL_JSON_VALUE)));
+                get(urlEqualTo("/users-api/users/1/authorization"))
+                        .willReturn(aResponse().withStatus(503)));
+
+        assertThatThrownBy(() -> usersClient.getUserAuthorization(1))
+                .isInstanceOf(UsersClientException.class);
+        assertThat(usersClient.getUser(1)).isNull();
     }
 
-    static void stubForUserOkResponse() {
+    @Test
+    void givenRequests_thenLatencyRecorded() {
+        stubForUserAuthorizationOkResponse();
+        long requestsBefore = usersClient.getLatencyStats().requests();
+
+        usersClient.getUser(1);
+        usersClient.getUser(1);
+
+        assertThat(usersClient.getLatencyStats().requests()).isEqualTo(requestsBefore + 2);
+        assertThat(usersClient.getLatencyStats().max()).isPositive();
+    }
+
+    @Test
+    void givenGetUserRequest_whenResponseTooSlow_thenNullObjectReturned(CapturedOutput capturedOutput) {
         wireMockServer.stubFor(
-                get(urlMatching("/users-api/users/1"))
+                get(urlEqualTo("/users-api/users/1/authorization"))
                         .willReturn(
                                 aResponse()
                                         .withStatus(200)
-                                        .withBodyFile("user_ok.json")
-                                        .withHeader(HttpHeaders.CONTENT_TYPE, MediaTypes.HAL_JSON_VALUE)));
+                                        .withFixedDelay(2000)
+                                        .withBodyFile("user_authorization_ok.json")
+                                        .withHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)));
+        long failuresBefore = usersClient.getLatencyStats().failures();
+
+        assertThat(usersClient.getUser(1)).isNull();
+        assertThat(capturedOutput.getAll()).contains("<< GET user authorization - request failed on exception");
+        assertThat(usersClient.getLatencyStats().failures()).isEqualTo(failuresBefore + 1);
     }
 
-    static void stubForUserRolesOkResponse() {
+    static void stubForUserAuthorizationOkResponse() {
         wireMockServer.stubFor(
-                get(urlMatching("/users-api/users/1/roles"))
+                get(urlEqualTo("/users-api/users/1/authorization"))
                         .willReturn(
                                 aResponse()
                                         .withStatus(200)
-                                        .withBodyFile("user_roles_ok.json")
-                                        .withHeader(HttpHeaders.CONTENT_TYPE, MediaTypes.HAL_JSON_VALUE)));
+                                        .withBodyFile("user_authorization_ok.json")
+                                        .withHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)));
     }
 
-    static void stubForUserNotFoundResponse() {
+    static void stubForUserAuthorizationNotFoundResponse() {
         wireMockServer.stubFor(
-                get(urlMatching("/users-api/users/1"))
+                get(urlEqualTo("/users-api/users/1/authorization"))
                         .willReturn(
                                 aResponse()
-                                        .withStatus(200)
+                                        .withStatus(404)
                                         .withBodyFile("user_notfound.json")
-                                        .withHeader(HttpHeaders.CONTENT_TYPE, MediaTypes.HAL_JSON_VALUE)));
+                                        .withHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_PROBLEM_JSON_VALUE)));
     }
 }
@@ -0,0 +1,67 @@
+package fi.jannetahkola.palikka.core.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fi.jannetahkola.palikka.core.integration.users.events.UserAuthorizationChangedEvent;
+import fi.jannetahkola.palikka.core.integration.users.events.UserAuthorizationEventListener;
+import fi.jannetahkola.palikka.core.integration.users.events.UserAuthorizationEventSubscriber;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.data.redis.connection.DefaultMessage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class UserAuthorizationEventSubscriberTests {
+    UserAuthorizationEventListener first = mock(UserAuthorizationEventListener.class);
+    UserAuthorizationEventListener second = mock(UserAuthorizationEventListener.class);
+    UserAuthorizationEventSubscriber subscriber =
+            new UserAuthorizationEventSubscriber(List.of(first, second), new ObjectMapper());
+
+    @Test
+    void givenEvent_thenListenersCalledInOrder() {
+        subscriber.onMessage(message("{\"user_ids\":[1,2],\"reason\":\"ROLES_CHANGED\"}"), null);
+
+        UserAuthorizationChangedEvent expected =
+                new UserAuthorizationChangedEvent(Set.of(1, 2), UserAuthorizationChangedEvent.Reason.ROLES_CHANGED);
+        InOrder inOrder = inOrder(first, second);
+        inOrder.verify(first).onUserAuthorizationChanged(expected);
+        inOrder.verify(second).onUserAuthorizationChanged(expected);
+    }
+
+    @Test
+    void givenListenerFails_thenOtherListenersStillCalled() {
+        doThrow(new IllegalStateException("fail")).when(first).onUserAuthorizationChanged(any());
+
+        subscriber.onMessage(message("{\"user_ids\":[1],\"reason\":\"ACTIVE_CHANGED\"}"), null);
+
+        verify(second).onUserAuthorizationChanged(any());
+    }
+
+    @Test
+    void givenMalformedEvent_thenIgnored() {
+        subscriber.onMessage(message("not json"), null);
+        subscriber.onMessage(message("{\"reason\":\"ACTIVE_CHANGED\"}"), null);
+
+        verifyNoInteractions(first, second);
+    }
+
+    @Test
+    void givenResubscribed_thenListenersToldEventsMissed() {
+        subscriber.onChannelSubscribed(new byte[0], 1);
+        verify(first, never()).onEventsMissed();
+
+        subscriber.onChannelSubscribed(new byte[0], 1);
+        verify(first).onEventsMissed();
+        verify(second).onEventsMissed();
+    }
+
+    private static DefaultMessage message(String body) {
+        return new DefaultMessage(
+                UserAuthorizationEventSubscriber.CHANNEL.getBytes(StandardCharsets.UTF_8),
+                body.getBytes(StandardCharsets.UTF_8));
+    }
+}
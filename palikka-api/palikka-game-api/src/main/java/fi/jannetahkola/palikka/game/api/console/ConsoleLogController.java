@@ -0,0 +1,74 @@
+package fi.jannetahkola.palikka.game.api.console;
+
+import fi.jannetahkola.palikka.core.api.exception.BadRequestException;
+import fi.jannetahkola.palikka.game.api.console.model.ConsoleLogResponse;
+import fi.jannetahkola.palikka.game.process.log.ConsoleLog;
+import fi.jannetahkola.palikka.game.process.log.ConsoleLogRecord;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Pages through the console output persisted on disk. Only one of the <code>after</code>, <code>before</code> and
+ * <code>from</code> parameters may be given. Without any of them the latest page is returned.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/game/console-log")
+@RequiredArgsConstructor
+@ConditionalOnProperty(value = "palikka.game.console-log.enabled", havingValue = "true")
+public class ConsoleLogController {
+    static final int MAX_LIMIT = 1000;
+
+    private final ConsoleLog consoleLog;
+
+    @GetMapping
+    @PreAuthorize("hasAnyRole('ADMIN', 'USER', 'VIEWER')")
+    public ConsoleLogResponse getConsoleLog(
+            @RequestParam(value = "after", required = false) Long after,
+            @RequestParam(value = "before", required = false) Long before,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(value = "limit", defaultValue = "100") int limit) throws IOException {
+        if (Stream.of(after, before, from).filter(p -> p != null).count() > 1) {
+            throw new BadRequestException("Only one of 'after', 'before' and 'from' can be given");
+        }
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new BadRequestException("Limit must be between 1 and " + MAX_LIMIT);
+        }
+
+        List<ConsoleLogRecord> records;
+        if (after != null) {
+            records = consoleLog.readAfter(after, limit);
+        } else if (before != null) {
+            records = consoleLog.readBefore(before, limit);
+        } else if (from != null) {
+            records = consoleLog.readFrom(from, limit);
+        } else {
+            records = consoleLog.readBefore(consoleLog.getLastSequence() + 1, limit);
+        }
+        log.debug("Returning {} console log lines", records.size());
+
+        return ConsoleLogResponse.builder()
+                .firstSeq(consoleLog.getFirstSequence())
+                .lastSeq(consoleLog.getLastSequence())
+                .lines(records.stream()
+                        .map(record -> ConsoleLogResponse.Line.builder()
+                                .seq(record.sequence())
+                                .timestamp(Instant.ofEpochMilli(record.timestamp()))
+                                .data(record.line())
+                                .build())
+                        .toList())
+                .build();
+    }
+}
@@ -0,0 +1,35 @@
+package fi.jannetahkola.palikka.game.api.console.model;
+
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Instant;
+import java.util.List;
+
+@Value
+@Builder
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+public class ConsoleLogResponse {
+    /**
+     * Sequence number of the oldest line available in the log.
+     */
+    long firstSeq;
+
+    /**
+     * Sequence number of the newest line available in the log.
+     */
+    long lastSeq;
+
+    List<Line> lines;
+
+    @Value
+    @Builder
+    @JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+    public static class Line {
+        long seq;
+        Instant timestamp;
+        String data;
+    }
+}
@@ -0,0 +1,106 @@
+package fi.jannetahkola.palikka.game.api.game;
+
+import fi.jannetahkola.palikka.game.process.ConsoleLineFilter;
+import fi.jannetahkola.palikka.game.process.ConsoleLinePrefix;
+import fi.jannetahkola.palikka.game.util.ConsoleHistory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Game log subscriptions that only receive lines matching a filter. Subscriptions with equal filters are grouped, so
+ * each line is parsed once and matched once per distinct filter, no matter how many sessions share the filter.
+ * <p>
+ * Lines without the log prefix, such as stack trace lines, match if the previous line with a prefix matched, so that
+ * e.g. an error is delivered together with its stack trace.
+ * <p>
+ * Each session can have one filtered subscription, as the messages are targeted at the session rather than a specific
+ * subscription. A new subscription replaces the previous one.
+ */
+class FilteredLogSubscriptions {
+    private final Map<String, Subscription> subscriptionsBySession = new ConcurrentHashMap<>();
+    private final Map<ConsoleLineFilter, FilterGroup> groups = new ConcurrentHashMap<>();
+
+    void add(Subscription subscription) {
+        Subscription previous = subscriptionsBySession.put(subscription.sessionId(), subscription);
+        if (previous != null) removeFromGroup(previous);
+        groups.compute(subscription.filter(), (filter, group) -> {
+            FilterGroup result = group != null ? group : new FilterGroup(filter);
+            result.subscriptions.add(subscription);
+            return result;
+        });
+    }
+
+    /**
+     * @param subscriptionId Identifier of the subscription within the session, or null to remove any subscription of
+     *                       the session
+     */
+    void remove(String sessionId, String subscriptionId) {
+        Subscription subscription = subscriptionsBySession.get(sessionId);
+        if (subscription == null
+                || (subscriptionId != null && !subscriptionId.equals(subscription.subscriptionId()))) {
+            return;
+        }
+        if (subscriptionsBySession.remove(sessionId, subscription)) {
+            removeFromGroup(subscription);
+        }
+    }
+
+    int size() {
+        return subscriptionsBySession.size();
+    }
+
+    /**
+     * Matches the lines against every distinct filter. Must only be called from a single thread at a time, as the
+     * matching of lines without a prefix depends on the previously matched lines.
+     * @param consumer Receives the subscriptions of each filter that matched any lines, with the matching lines in
+     *                 sequence order
+     */
+    void match(List<ConsoleHistory.Entry> lines, BiConsumer<Set<Subscription>, List<ConsoleHistory.Entry>> consumer) {
+        if (groups.isEmpty()) return;
+        ConsoleLinePrefix[] prefixes = new ConsoleLinePrefix[lines.size()];
+        for (int i = 0; i < lines.size(); i++) {
+            prefixes[i] = ConsoleLinePrefix.parse(lines.get(i).line());
+        }
+        for (FilterGroup group : groups.values()) {
+            List<ConsoleHistory.Entry> matching = new ArrayList<>();
+            for (int i = 0; i < lines.size(); i++) {
+                ConsoleHistory.Entry entry = lines.get(i);
+                if (prefixes[i] != null) {
+                    group.lastMatched = group.filter.matches(entry.line(), prefixes[i]);
+                }
+                if (group.lastMatched) matching.add(entry);
+            }
+            if (!matching.isEmpty() && !group.subscriptions.isEmpty()) {
+                consumer.accept(group.subscriptions, matching);
+            }
+        }
+    }
+
+    private void removeFromGroup(Subscription subscription) {
+        groups.computeIfPresent(subscription.filter(), (filter, group) -> {
+            group.subscriptions.remove(subscription);
+            return group.subscriptions.isEmpty() ? null : group;
+        });
+    }
+
+    /**
+     * @param user Name of the subscribed principal
+     */
+    record Subscription(String sessionId, String subscriptionId, String user, ConsoleLineFilter filter) {
+    }
+
+    private static class FilterGroup {
+        private final ConsoleLineFilter filter;
+        private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+        private boolean lastMatched; // Only accessed by the matching thread
+
+        private FilterGroup(ConsoleLineFilter filter) {
+            this.filter = filter;
+        }
+    }
+}
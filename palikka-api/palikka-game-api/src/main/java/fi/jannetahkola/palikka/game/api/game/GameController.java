@@ -3,22 +3,40 @@ package fi.jannetahkola.palikka.game.api.game;
 import fi.jannetahkola.palikka.game.api.game.model.GameLifecycleMessage;
 import fi.jannetahkola.palikka.game.api.game.model.GameLogMessage;
 import fi.jannetahkola.palikka.game.api.game.model.GameOutputMessage;
+import fi.jannetahkola.palikka.game.api.game.model.GameStatusMessage;
 import fi.jannetahkola.palikka.game.api.game.model.GameUserReplyMessage;
+import fi.jannetahkola.palikka.game.process.ConsoleLineFilter;
 import fi.jannetahkola.palikka.game.service.GameProcessService;
+import fi.jannetahkola.palikka.game.service.GameStatusService;
+import fi.jannetahkola.palikka.game.service.RconService;
+import fi.jannetahkola.palikka.game.util.ConsoleHistory;
 import fi.jannetahkola.palikka.game.websocket.GameMessageValidator;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.messaging.simp.annotation.SubscribeMapping;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
 
 import java.security.Principal;
+import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Controller
@@ -41,9 +59,45 @@ public class GameController {
      */
     private static final String DEST_GAME_LOGS = "/topic/game/logs";
 
+    /**
+     * Destination to target the game status topic. Only published to when the status changes.
+     */
+    private static final String DEST_GAME_STATUS = "/topic/game/status";
+
+    /**
+     * User destination for game logs filtered by the subscription headers {@link #HEADER_LEVEL},
+     * {@link #HEADER_THREAD} and {@link #HEADER_REGEX}. Only the lines matching the filter are sent to the session.
+     */
+    private static final String DEST_USER_GAME_LOGS = "/queue/game/logs";
+    private static final String DEST_USER_GAME_LOGS_SUBSCRIPTION = "/user" + DEST_USER_GAME_LOGS;
+
+    /**
+     * Optional header of the game logs subscription. Sequence number of the last line the client has received.
+     */
+    private static final String HEADER_SINCE = "since";
+
+    /**
+     * Header of the filtered game logs subscription. Comma separated log levels to include, e.g. WARN,ERROR.
+     */
+    private static final String HEADER_LEVEL = "level";
+
+    /**
+     * Header of the filtered game logs subscription. Start of the thread name to include, e.g. Server thread.
+     */
+    private static final String HEADER_THREAD = "thread";
+
+    /**
+     * Header of the filtered game logs subscription. Regex to find in the message of the line, after the time, thread
+     * and level.
+     */
+    private static final String HEADER_REGEX = "regex";
+
     private final SimpMessagingTemplate messagingTemplate;
     private final GameProcessService gameProcessService;
+    private final GameStatusService gameStatusService;
     private final GameMessageValidator gameMessageValidator;
+    private final RconService rconService;
+    private final FilteredLogSubscriptions filteredLogSubscriptions = new FilteredLogSubscriptions();
 
     @PostConstruct
     void postConstruct() {
@@ -54,33 +108,118 @@ public class GameController {
                     .build();
             messagingTemplate.convertAndSend(DEST_GAME_LIFECYCLE, msg);
         });
-        gameProcessService.registerInputListener(input -> {
-            log.debug("Publishing game input event to subscribers");
-            GameLogMessage msg = GameLogMessage.builder()
-                    .data(input)
-                    .build();
-            messagingTemplate.convertAndSend(DEST_GAME_LOGS, msg);
+        gameStatusService.registerStatusListener((previous, current) -> {
+            if (previous == null) return; // Subscribers get the full status when subscribing
+            GameStatusMessage msg = GameStatusMessage.delta(
+                    previous.status(), previous.etag(), current.status(), current.etag());
+            if (msg != null) {
+                log.debug("Publishing game status change to subscribers");
+                messagingTemplate.convertAndSend(DEST_GAME_STATUS, msg);
+            }
+        });
+        gameProcessService.registerInputListener(batch -> {
+            log.debug("Publishing {} game input lines to subscribers", batch.size());
+            forEachRun(batch, this::publishLogs);
+            filteredLogSubscriptions.match(batch, (subscriptions, lines) ->
+                    forEachRun(lines, run -> publishFilteredLogs(subscriptions, run)));
         });
     }
 
+    /**
+     * Registers the filter of a filtered game logs subscription. There's no history replay for filtered
+     * subscriptions, clients can read missed lines from the console log instead.
+     */
+    @EventListener
+    public void handleSessionSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        if (!DEST_USER_GAME_LOGS_SUBSCRIPTION.equals(accessor.getDestination()) || event.getUser() == null) return;
+
+        String user = event.getUser().getName();
+        ConsoleLineFilter filter;
+        try {
+            filter = ConsoleLineFilter.of(
+                    accessor.getFirstNativeHeader(HEADER_LEVEL),
+                    accessor.getFirstNativeHeader(HEADER_THREAD),
+                    accessor.getFirstNativeHeader(HEADER_REGEX));
+            if (filter == null) {
+                throw new IllegalArgumentException("Filtered logs subscription requires a " + HEADER_LEVEL + ", "
+                        + HEADER_THREAD + " or " + HEADER_REGEX + " header");
+            }
+        } catch (IllegalArgumentException e) {
+            log.info("Rejected filtered game logs subscription with principal '{}': {}", user, e.getMessage());
+            GameUserReplyMessage reply = GameUserReplyMessage.builder()
+                    .typ(GameUserReplyMessage.Type.ERROR)
+                    .data(e.getMessage())
+                    .build();
+            messagingTemplate.convertAndSendToUser(user, DEST_USER, reply);
+            return;
+        }
+        filteredLogSubscriptions.add(new FilteredLogSubscriptions.Subscription(
+                accessor.getSessionId(), accessor.getSubscriptionId(), user, filter));
+        log.info("New filtered game logs subscription with principal '{}', filter={}", user, filter);
+    }
+
+    @EventListener
+    public void handleSessionUnsubscribe(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        filteredLogSubscriptions.remove(accessor.getSessionId(), accessor.getSubscriptionId());
+    }
+
+    @EventListener
+    public void handleSessionDisconnect(SessionDisconnectEvent event) {
+        filteredLogSubscriptions.remove(event.getSessionId(), null);
+    }
+
     @SubscribeMapping("/game/lifecycle")
     public void subscribeToGameLifecycle(Principal principal) {
         log.info("New game lifecycle subscription with principal '{}'", principal.getName());
     }
 
+    /**
+     * Replies to the subscriber with the full status. Only changes are published through the topic after that.
+     */
+    @SubscribeMapping("/game/status")
+    public GameStatusMessage subscribeToGameStatus(Principal principal) {
+        log.info("New game status subscription with principal '{}'", principal.getName());
+        GameStatusService.Snapshot snapshot = gameStatusService.getSnapshot();
+        return GameStatusMessage.full(snapshot.status(), snapshot.etag());
+    }
+
+    /**
+     * Replays the input history to the subscriber before live delivery through the topic. A client resuming a
+     * previous subscription can pass the sequence number of the last line it received in the "since" header to only
+     * get the lines it missed. Lines may be received both in the history and through the topic around the time of
+     * subscribing, so clients should skip lines with a sequence number they have already seen. If the lines right after "since" are
+     * no longer in history, the reply is flagged as truncated.
+     */
     @SubscribeMapping("/game/logs")
-    public void subscribeToGame(Principal principal) {
-        log.info("New game logs subscription with principal '{}'", principal.getName());
+    public void subscribeToGame(Principal principal,
+                                @Header(name = HEADER_SINCE, required = false) Long since) {
+        log.info("New game logs subscription with principal '{}', since={}", principal.getName(), since);
 
-        final List<String> inputList = gameProcessService.copyInputList();
+        GameProcessService.InputHistorySnapshot snapshot =
+                gameProcessService.copyInputHistoryAfter(since != null ? since : 0);
+        final List<ConsoleHistory.Entry> inputList = snapshot.entries();
+        if (since != null && snapshot.truncated()) {
+            log.info("Game logs subscription with principal '{}' resumed from since={} but history starts from {}",
+                    principal.getName(), since, snapshot.firstSequence());
+        }
 
         // Send the history in one batch to avoid any new messages
         // that come to the topic appearing in between the history entries
-        log.debug("Publishing game input history to user={}", principal.getName());
-        String inputHistory = String.join("\n", inputList);
+        log.debug("Publishing {} game input history entries to user={}", inputList.size(), principal.getName());
+        String inputHistory = inputList.stream()
+                .map(ConsoleHistory.Entry::line)
+                .collect(Collectors.joining("\n"));
+        long lastSequence = inputList.isEmpty()
+                ? gameProcessService.getLastInputSequence()
+                : inputList.get(inputList.size() - 1).sequence();
         GameUserReplyMessage inputHistoryMsg = GameUserReplyMessage.builder()
                 .typ(GameUserReplyMessage.Type.HISTORY)
                 .data(inputHistory)
+                .seq(lastSequence)
+                .firstSeq(snapshot.firstSequence())
+                .truncated(since != null ? snapshot.truncated() : null)
                 .build();
         messagingTemplate.convertAndSendToUser(principal.getName(), DEST_USER, inputHistoryMsg);
     }
@@ -103,6 +242,19 @@ public class GameController {
             return;
         }
 
+        if (rconService.isConnected()) {
+            log.info("Game message validated successfully, sending " +
+                    "to game over RCON as principal '{}'", authentication.getName());
+            rconService.execute(msg.getData()).whenComplete((output, e) -> {
+                GameUserReplyMessage reply = GameUserReplyMessage.builder()
+                        .typ(e == null ? GameUserReplyMessage.Type.RESULT : GameUserReplyMessage.Type.ERROR)
+                        .data(e == null ? output : toCommandErrorMessage(e))
+                        .build();
+                messagingTemplate.convertAndSendToUser(authentication.getName(), DEST_USER, reply);
+            });
+            return;
+        }
+
         log.info("Game message validated successfully, outputting " +
                 "to game as principal '{}'", authentication.getName());
         CompletableFuture.runAsync(() -> {
@@ -110,4 +262,53 @@ public class GameController {
             gameProcessService.addOutput(msg.getData());
         });
     }
+
+    private void publishLogs(List<ConsoleHistory.Entry> lines) {
+        messagingTemplate.convertAndSend(DEST_GAME_LOGS, toLogMessage(lines));
+    }
+
+    private void publishFilteredLogs(Collection<FilteredLogSubscriptions.Subscription> subscriptions,
+                                     List<ConsoleHistory.Entry> lines) {
+        GameLogMessage msg = toLogMessage(lines);
+        for (FilteredLogSubscriptions.Subscription subscription : subscriptions) {
+            // With the session id set, the user destination resolves to that session only
+            SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            headers.setSessionId(subscription.sessionId());
+            headers.setLeaveMutable(true);
+            messagingTemplate.convertAndSendToUser(
+                    subscription.user(), DEST_USER_GAME_LOGS, msg, headers.getMessageHeaders());
+        }
+    }
+
+    /**
+     * Lines may have been dropped or filtered out in between, so each run of consecutive lines is published
+     * separately for the clients to be able to derive the sequence numbers of every line.
+     */
+    private static void forEachRun(List<ConsoleHistory.Entry> lines, Consumer<List<ConsoleHistory.Entry>> consumer) {
+        int runStart = 0;
+        for (int i = 1; i <= lines.size(); i++) {
+            if (i == lines.size() || lines.get(i).sequence() != lines.get(i - 1).sequence() + 1) {
+                consumer.accept(lines.subList(runStart, i));
+                runStart = i;
+            }
+        }
+    }
+
+    private static String toCommandErrorMessage(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        log.info("Failed to send command over RCON: {}", cause.toString());
+        if (cause instanceof TimeoutException) {
+            return "Timed out waiting for the command output";
+        }
+        return "Failed to send command: " + cause.getMessage();
+    }
+
+    private static GameLogMessage toLogMessage(List<ConsoleHistory.Entry> lines) {
+        return GameLogMessage.builder()
+                .data(lines.size() == 1
+                        ? lines.get(0).line()
+                        : lines.stream().map(ConsoleHistory.Entry::line).collect(Collectors.joining("\n")))
+                .seq(lines.get(lines.size() - 1).sequence())
+                .build();
+    }
 }
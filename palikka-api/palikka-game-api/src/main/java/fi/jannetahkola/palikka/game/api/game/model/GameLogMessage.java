@@ -11,6 +11,16 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 @Builder
 public class GameLogMessage {
+    /**
+     * One or more consecutive console lines separated by line feeds.
+     */
     @NotBlank
     private String data;
+
+    /**
+     * Sequence number of the last line in {@link #data}. Increases by one for each line output by the game, so
+     * clients can detect duplicate and missed lines, and derive the sequence numbers of the preceding lines. Resets
+     * when the service restarts unless the console log is enabled.
+     */
+    private Long seq;
 }
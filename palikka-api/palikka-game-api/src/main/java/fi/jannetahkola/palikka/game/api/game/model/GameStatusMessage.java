@@ -0,0 +1,111 @@
+package fi.jannetahkola.palikka.game.api.game.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import fi.jannetahkola.palikka.game.api.status.model.GameStatusResponse;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Objects;
+
+/**
+ * Game status pushed to status subscribers. The first message after subscribing contains the full status. Later
+ * messages are deltas that only contain the fields that changed, other fields are omitted. A field that changes to
+ * null can't be sent in a delta, so the full status is sent instead, e.g. when the game goes offline.
+ * <p>
+ * A message without a {@link #previousEtag} is the full status and replaces the status known to the client, fields
+ * missing from it are null.
+ * <p>
+ * Each message has the {@link #etag} of the status after applying it, which matches the ETag of
+ * <code>GET /game/status</code>, and each delta the {@link #previousEtag} it applies to. A client whose last known
+ * ETag doesn't match the previous ETag of a delta has missed a change and should fetch the full status again.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class GameStatusMessage {
+    private String etag;
+    private String previousEtag;
+    private Boolean online;
+    private String version;
+    private String description;
+    private String motd;
+    private GameStatusResponse.Players players;
+    private String favicon;
+    private Boolean enforcesSecureChat;
+
+    public static GameStatusMessage full(GameStatusResponse status, String etag) {
+        return GameStatusMessage.builder()
+                .etag(etag)
+                .online(status.isOnline())
+                .version(status.getVersion())
+                .description(status.getDescription())
+                .motd(status.getMotd())
+                .players(status.getPlayers())
+                .favicon(status.getFavicon())
+                .enforcesSecureChat(status.getEnforcesSecureChat())
+                .build();
+    }
+
+    /**
+     * @return Message with the fields of the current status that differ from the previous status, or null if none
+     * differ. The full status if a field changed to null, as an omitted field means that it didn't change.
+     */
+    public static GameStatusMessage delta(GameStatusResponse previous,
+                                         String previousEtag,
+                                         GameStatusResponse current,
+                                         String etag) {
+        GameStatusMessage message = GameStatusMessage.builder().etag(etag).previousEtag(previousEtag).build();
+        boolean changed = false;
+        if (previous.isOnline() != current.isOnline()) {
+            message.setOnline(current.isOnline());
+            changed = true;
+        }
+        if (!Objects.equals(previous.getVersion(), current.getVersion())) {
+            message.setVersion(current.getVersion());
+            changed = true;
+        }
+        if (!Objects.equals(previous.getDescription(), current.getDescription())) {
+            message.setDescription(current.getDescription());
+            changed = true;
+        }
+        if (!Objects.equals(previous.getMotd(), current.getMotd())) {
+            message.setMotd(current.getMotd());
+            changed = true;
+        }
+        if (!Objects.equals(previous.getPlayers(), current.getPlayers())) {
+            message.setPlayers(current.getPlayers());
+            changed = true;
+        }
+        if (!Objects.equals(previous.getFavicon(), current.getFavicon())) {
+            message.setFavicon(current.getFavicon());
+            changed = true;
+        }
+        if (!Objects.equals(previous.getEnforcesSecureChat(), current.getEnforcesSecureChat())) {
+            message.setEnforcesSecureChat(current.getEnforcesSecureChat());
+            changed = true;
+        }
+        if (!changed) return null;
+        if (isAnyFieldCleared(previous, current)) return full(current, etag);
+        return message;
+    }
+
+    private static boolean isAnyFieldCleared(GameStatusResponse previous, GameStatusResponse current) {
+        return isCleared(previous.getVersion(), current.getVersion())
+                || isCleared(previous.getDescription(), current.getDescription())
+                || isCleared(previous.getMotd(), current.getMotd())
+                || isCleared(previous.getPlayers(), current.getPlayers())
+                || isCleared(previous.getFavicon(), current.getFavicon())
+                || isCleared(previous.getEnforcesSecureChat(), current.getEnforcesSecureChat());
+    }
+
+    private static boolean isCleared(Object previous, Object current) {
+        return previous != null && current == null;
+    }
+}
@@ -1,6 +1,7 @@
 package fi.jannetahkola.palikka.game.api.game.model;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonValue;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
@@ -19,14 +20,43 @@ public class GameUserReplyMessage {
     @NotBlank
     private String data;
 
+    /**
+     * Only for {@link Type#HISTORY}. Sequence number of the last line in {@link #getData()}. The lines have
+     * consecutive sequence numbers, so the first line's sequence number is this minus the line count plus one.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long seq;
+
+    /**
+     * Only for {@link Type#HISTORY}. Sequence number of the oldest line still retained in the input history.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long firstSeq;
+
+    /**
+     * Only for {@link Type#HISTORY} replies to subscriptions with a "since" header. True if the history no longer
+     * continues from the given sequence number, either because the lines right after it were already dropped from
+     * the history or because the sequence number is unknown, e.g. from before a restart. The missed lines may still
+     * be available from the console log.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Boolean truncated;
+
     public enum Type {
         ERROR("err"),
 
         /**
-         * The message contains the full input history in a single String, each input entry separated by a new line.
-         * Only sent once when subscribing.
+         * The message contains the input history in a single String, each input entry separated by a new line. Only
+         * sent once when subscribing. If the subscription has a "since" header, only lines after that sequence
+         * number are included, and {@link #getTruncated()} tells whether any lines in between are missing.
+         */
+        HISTORY("hist"),
+
+        /**
+         * The message contains the output of a command sent by the user. Only sent when commands are sent over RCON,
+         * otherwise the output only appears in the game logs.
          */
-        HISTORY("hist");
+        RESULT("res");
 
         final String value;
 
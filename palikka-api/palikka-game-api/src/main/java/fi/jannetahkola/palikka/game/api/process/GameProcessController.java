@@ -1,9 +1,12 @@
 package fi.jannetahkola.palikka.game.api.process;
 
 import fi.jannetahkola.palikka.game.api.process.model.GameProcessControlRequest;
+import fi.jannetahkola.palikka.game.api.process.model.GameProcessDispatchResponse;
 import fi.jannetahkola.palikka.game.api.process.model.GameProcessStatusResponse;
 import fi.jannetahkola.palikka.game.exception.GameProcessStartException;
+import fi.jannetahkola.palikka.game.process.task.OutputWriterMetrics;
 import fi.jannetahkola.palikka.game.service.GameProcessService;
+import fi.jannetahkola.palikka.game.util.DispatchQueue;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -12,6 +15,8 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Duration;
+
 @Slf4j
 @RestController
 @RequestMapping("/game/process")
@@ -48,6 +53,33 @@ public class GameProcessController {
         return ResponseEntity.ok(getStatusResponse());
     }
 
+    @GetMapping("/dispatch")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<GameProcessDispatchResponse> getDispatchMetrics() {
+        DispatchQueue.Stats stats = gameProcessService.getInputDispatchStats();
+        OutputWriterMetrics.Snapshot outputMetrics = gameProcessService.getOutputWriterMetrics();
+        return ResponseEntity.ok(GameProcessDispatchResponse.builder()
+                .queueDepth(stats.depth())
+                .queueCapacity(stats.capacity())
+                .offered(stats.offered())
+                .dropped(stats.dropped())
+                .delivered(stats.delivered())
+                .lastLagMs(stats.lastLag().toMillis())
+                .maxLagMs(stats.maxLag().toMillis())
+                .commandsWritten(outputMetrics.commands())
+                .commandWrites(outputMetrics.writes())
+                .maxCommandBatchSize(outputMetrics.maxBatchSize())
+                .averageCommandWaitMs(toMillis(outputMetrics.averageWait()))
+                .maxCommandWaitMs(toMillis(outputMetrics.maxWait()))
+                .averageCommandWriteMs(toMillis(outputMetrics.averageWrite()))
+                .maxCommandWriteMs(toMillis(outputMetrics.maxWrite()))
+                .build());
+    }
+
+    private static double toMillis(Duration duration) {
+        return duration.toNanos() / 1_000_000.0;
+    }
+
     private GameProcessStatusResponse getStatusResponse() {
         return GameProcessStatusResponse.builder()
                 .status(gameProcessService.getGameProcessStatus())
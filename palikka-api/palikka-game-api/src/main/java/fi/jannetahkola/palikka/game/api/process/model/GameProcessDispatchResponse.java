@@ -0,0 +1,30 @@
+package fi.jannetahkola.palikka.game.api.process.model;
+
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Metrics of publishing the game output to log subscribers, and of writing commands to the game.
+ */
+@Value
+@Builder
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+public class GameProcessDispatchResponse {
+    int queueDepth;
+    int queueCapacity;
+    long offered;
+    long dropped;
+    long delivered;
+    long lastLagMs;
+    long maxLagMs;
+
+    long commandsWritten;
+    long commandWrites;
+    int maxCommandBatchSize;
+    double averageCommandWaitMs;
+    double maxCommandWaitMs;
+    double averageCommandWriteMs;
+    double maxCommandWriteMs;
+}
@@ -1,85 +1,80 @@
 package fi.jannetahkola.palikka.game.api.status;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import fi.jannetahkola.palikka.game.api.status.model.FleetStatusResponse;
 import fi.jannetahkola.palikka.game.api.status.model.GameStatusResponse;
-import fi.jannetahkola.palikka.game.config.properties.GameProperties;
-import fi.jannetahkola.palikka.game.service.PacketService;
-import fi.jannetahkola.palikka.game.util.VarIntUtil;
-import fi.jannetahkola.palikka.game.service.factory.SocketFactory;
+import fi.jannetahkola.palikka.game.service.FleetStatusService;
+import fi.jannetahkola.palikka.game.service.GameStatusService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
-import java.io.IOException;
-import java.net.InetAddress;
-import java.net.InetSocketAddress;
-import java.net.Socket;
-import java.nio.ByteBuffer;
+import java.time.Clock;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @RestController
 @RequestMapping("/game/status")
 @RequiredArgsConstructor
 public class GameStatusController {
-    private final GameProperties properties;
-    private final SocketFactory socketFactory;
-    private final ObjectMapper objectMapper;
+    private final GameStatusService gameStatusService;
+    private final FleetStatusService fleetStatusService;
+    private final Clock clock = Clock.systemUTC();
 
+    /**
+     * Returns the latest status probed in the background. The ETag only changes when the status does, so clients
+     * polling with If-None-Match get a 304 response without a body while nothing changes. The Age header tells how
+     * many seconds ago the status was probed.
+     * <p>
+     * Handled asynchronously, so that a request waiting for a probe doesn't hold a request thread while the game
+     * takes up to the connect timeout to respond.
+     * @param refresh Probe the status now instead of returning the latest one. Concurrent requests share the probe.
+     */
     @GetMapping
     @PreAuthorize("hasAnyRole('ADMIN', 'USER', 'VIEWER')")
-    public GameStatusResponse getGameStatus() {
-        // See https://wiki.vg/Server_List_Ping
-        GameProperties.StatusProperties statusProperties = properties.getStatus();
-        log.debug("Fetching game status with config={}", statusProperties);
-
-        String host = statusProperties.getHost();
-        int port = statusProperties.getPort();
-        long connectTimeoutInMillis = statusProperties.getConnectTimeout().toMillis();
-
-        GameStatusResponse status = new GameStatusResponse();
-
-        try (Socket socket = socketFactory.newSocket()) {
-            // Game server runs on the same host by necessity so always use localhost
-            socket.connect(new InetSocketAddress(InetAddress.getLocalHost(), port), (int) connectTimeoutInMillis);
-            final DataOutputStream out = new DataOutputStream(socket.getOutputStream());
-            final DataInputStream in = new DataInputStream(socket.getInputStream());
-            PacketService.Packet handshakePacket = new PacketService().newHandshakePacket(host, port);
-            out.write(handshakePacket.getBytes());
-            status = readGameStatusFromStream(in, objectMapper);
-        } catch (IOException e) {
-            // It's not uncommon for this to fail because the game is down
-            log.debug("Failed to get game status", e);
-            status.setOnline(false);
-        }
-
-        status.setHost(host);
-        status.setPort(port);
-
-        log.debug("Returning game status={}", status);
-
-        return status;
+    public CompletableFuture<ResponseEntity<GameStatusResponse>> getGameStatus(
+            @RequestParam(defaultValue = "false") boolean refresh) {
+        CompletableFuture<GameStatusService.Snapshot> snapshot = refresh
+                ? gameStatusService.refresh()
+                : gameStatusService.getSnapshotAsync();
+        return snapshot.thenApply(current -> {
+            log.debug("Returning game status={}, etag={}", current.status(), current.etag());
+            // Conditional requests are handled by Spring based on the ETag
+            return ResponseEntity.ok()
+                    .eTag(current.etag())
+                    .cacheControl(CacheControl.noCache())
+                    .header(HttpHeaders.AGE, String.valueOf(current.age(clock).toSeconds()))
+                    .body(current.status());
+        });
     }
 
-    private static GameStatusResponse readGameStatusFromStream(DataInputStream in, ObjectMapper objectMapper) throws IOException {
-        log.debug("Reading server status from stream");
-        VarIntUtil.read(in); // Response length (not used)
-        final int responsePacketId = VarIntUtil.read(in); // Packet id
-        final int expectedPacketId = PacketService.PacketType.HANDSHAKE;
-        if (responsePacketId != expectedPacketId) {
-            throw new IllegalStateException(
-                    "Response packet id did not match; expected "
-                            + expectedPacketId + ", but was " + responsePacketId);
-        }
-        int responsePayloadLen = VarIntUtil.read(in);
-        byte[] buffer = ByteBuffer.allocate(responsePayloadLen).array();
-        in.readFully(buffer);
-        String statusString = new String(buffer);
-        log.debug("Received status from server={}", statusString);
-        return objectMapper.readValue(statusString, GameStatusResponse.class);
+    /**
+     * Returns the latest status of the configured fleet servers, probed in the background. Caching headers and
+     * asynchronous handling work like with {@link #getGameStatus(boolean)}.
+     * @param refresh Probe all servers now instead of returning the latest status. Concurrent requests share the
+     *                probe, which takes at most the fleet timeout.
+     */
+    @GetMapping("/fleet")
+    @PreAuthorize("hasAnyRole('ADMIN', 'USER', 'VIEWER')")
+    public CompletableFuture<ResponseEntity<FleetStatusResponse>> getFleetStatus(
+            @RequestParam(defaultValue = "false") boolean refresh) {
+        CompletableFuture<FleetStatusService.Snapshot> snapshot = refresh
+                ? fleetStatusService.refresh()
+                : fleetStatusService.getSnapshotAsync();
+        return snapshot.thenApply(current -> {
+            log.debug("Returning fleet status with {}/{} servers online, etag={}",
+                    current.status().getOnline(), current.status().getTotal(), current.etag());
+            return ResponseEntity.ok()
+                    .eTag(current.etag())
+                    .cacheControl(CacheControl.noCache())
+                    .header(HttpHeaders.AGE, String.valueOf(current.age(clock).toSeconds()))
+                    .body(current.status());
+        });
     }
 }
@@ -0,0 +1,19 @@
+package fi.jannetahkola.palikka.game.api.status.model;
+
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+public class FleetStatusResponse {
+    private int total;
+    private int online;
+
+    /**
+     * Status of each server, in the configured order.
+     */
+    private List<GameStatusResponse> servers;
+}
@@ -9,10 +9,12 @@ import fi.jannetahkola.palikka.core.config.meta.EnableRemoteUsersIntegration;
 import fi.jannetahkola.palikka.core.config.meta.EnableRequestAndResponseLoggingSupport;
 import fi.jannetahkola.palikka.core.integration.users.UsersClient;
 import fi.jannetahkola.palikka.game.config.properties.GameProperties;
+import fi.jannetahkola.palikka.game.process.log.ConsoleLog;
 import fi.jannetahkola.palikka.game.service.GameProcessService;
 import fi.jannetahkola.palikka.game.service.factory.ProcessFactory;
 import fi.jannetahkola.palikka.game.service.factory.SocketFactory;
 import fi.jannetahkola.palikka.game.websocket.*;
+import jakarta.servlet.DispatcherType;
 import lombok.SneakyThrows;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
@@ -31,6 +33,9 @@ import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 import org.springframework.web.socket.server.HandshakeHandler;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
 import java.util.Collections;
 import java.util.concurrent.Executor;
 
@@ -58,6 +63,10 @@ public class PalikkaGameApiAppConfig {
                         // This is the last resort if controller advice fails e.g. resolving the method
                         // handler parameter. Not customized currently so returns JSON.
                         .requestMatchers("/error").permitAll()
+                        // Results of asynchronous requests, e.g. status refresh, are dispatched without going
+                        // through the authentication filter again. The request was already authorized when it
+                        // reached the controller.
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .anyRequest().authenticated())
                 .exceptionHandling(exceptionHandling -> exceptionHandling
                         .authenticationEntryPoint(delegatedAuthenticationEntryPoint))
@@ -86,18 +95,19 @@ public class PalikkaGameApiAppConfig {
     }
 
     @Bean
-    SessionStore webSocketSessionStore(JwtService jwtService) {
-        return new SessionStore(jwtService);
+    SessionStore webSocketSessionStore(JwtService jwtService, UsersClient usersClient) {
+        return new SessionStore(jwtService, usersClient);
     }
 
     @Bean
-    GameMessageValidator gameMessageValidator(GameProcessService gameProcessService, UsersClient usersClient) {
-        return new GameMessageValidator(gameProcessService, usersClient);
+    GameMessageValidator gameMessageValidator(GameProcessService gameProcessService) {
+        return new GameMessageValidator(gameProcessService);
     }
 
     @Bean
-    PreSendAuthorizationChannelInterceptor preSendAuthorizationChannelInterceptor(JwtService jwtService) {
-        return new PreSendAuthorizationChannelInterceptor(jwtService);
+    PreSendAuthorizationChannelInterceptor preSendAuthorizationChannelInterceptor(JwtService jwtService,
+                                                                                  SessionStore sessionStore) {
+        return new PreSendAuthorizationChannelInterceptor(jwtService, sessionStore);
     }
 
     @Bean
@@ -123,6 +133,19 @@ public class PalikkaGameApiAppConfig {
         return executor;
     }
 
+    @Bean
+    @ConditionalOnProperty(value = "palikka.game.console-log.enabled", havingValue = "true")
+    ConsoleLog consoleLog(GameProperties gameProperties) throws IOException {
+        GameProperties.ConsoleLogProperties properties = gameProperties.getConsoleLog();
+        return new ConsoleLog(
+                Path.of(properties.getDirectory()),
+                properties.getSegmentSize().toBytes(),
+                properties.getMaxSize().toBytes(),
+                properties.getUncompressedSegments(),
+                (int) properties.getIndexInterval().toBytes(),
+                Clock.systemUTC());
+    }
+
     @Bean
     ProcessFactory processFactory() {
         return new ProcessFactory();
@@ -1,18 +1,27 @@
 package fi.jannetahkola.palikka.game.config.properties;
 
+import fi.jannetahkola.palikka.game.process.ConsoleEvent;
+import fi.jannetahkola.palikka.game.util.DispatchQueue;
 import fi.jannetahkola.palikka.game.websocket.SessionCleanUpScheduler;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.util.unit.DataSize;
 import org.springframework.validation.annotation.Validated;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
 
 @Data
 @ConfigurationProperties("palikka.game")
@@ -30,6 +39,317 @@ public class GameProperties {
     @NotNull
     SessionProperties session = new SessionProperties();
 
+    @NotNull
+    HistoryProperties history = new HistoryProperties();
+
+    @NotNull
+    ConsoleLogProperties consoleLog = new ConsoleLogProperties();
+
+    @NotNull
+    LogBatchProperties logBatch = new LogBatchProperties();
+
+    @NotNull
+    EventsProperties events = new EventsProperties();
+
+    @NotNull
+    DedupProperties dedup = new DedupProperties();
+
+    @NotNull
+    RconProperties rcon = new RconProperties();
+
+    @NotNull
+    FleetProperties fleet = new FleetProperties();
+
+    @Data
+    @Valid
+    public static class FleetProperties {
+        /**
+         * Game servers reported in the fleet status, each with a host and a port. The host is also sent to the
+         * server in the status request. Defaults to none.
+         */
+        @NotNull
+        List<@Valid TargetProperties> targets = new ArrayList<>();
+
+        /**
+         * Time each server has to respond, from opening the connection to receiving the whole status. Servers that
+         * don't respond in time are reported offline. Defaults to 2 seconds.
+         */
+        @NotNull
+        Duration timeout = Duration.ofSeconds(2);
+
+        /**
+         * Interval between background probes of all servers. Fleet status requests are served from the latest
+         * probe. Defaults to 10 seconds.
+         */
+        @NotNull
+        Duration pollInterval = Duration.ofSeconds(10);
+
+        /**
+         * Maximum number of servers probed at the same time, the rest wait for their turn. Each open connection
+         * holds a buffer that fits the largest status response, about 100 KB. Defaults to 64.
+         */
+        @NotNull
+        @Positive
+        Integer maxConcurrentProbes = 64;
+
+        @Data
+        @Valid
+        public static class TargetProperties {
+            /**
+             * Host of the game server, e.g. myserver.com.
+             */
+            @NotBlank
+            String host;
+
+            /**
+             * Port of the game server. Defaults to 25565.
+             */
+            @NotNull
+            Integer port = 25565;
+        }
+    }
+
+    @Data
+    @Valid
+    public static class RconProperties {
+        /**
+         * Send commands to the game over RCON instead of the game process input, so that the output of each command
+         * is replied to the user who sent it. Requires enable-rcon=true in server.properties. Commands are passed to
+         * the game process input while RCON is not connected. Defaults to false.
+         */
+        @NotNull
+        Boolean enabled = false;
+
+        /**
+         * Host of the RCON server. Defaults to localhost.
+         */
+        @NotBlank
+        String host = "localhost";
+
+        /**
+         * Port of the RCON server, rcon.port in server.properties. Defaults to 25575.
+         */
+        @NotNull
+        Integer port = 25575;
+
+        /**
+         * Password of the RCON server, rcon.password in server.properties. Required if RCON is enabled.
+         */
+        String password;
+
+        /**
+         * Duration of the connection and authentication timeout. Defaults to 2 seconds.
+         */
+        @NotNull
+        Duration connectTimeout = Duration.ofSeconds(2);
+
+        /**
+         * Maximum time to wait for the output of a command. A command without output closes the connection, as the
+         * output of later commands can't be relied on either. Defaults to 10 seconds.
+         */
+        @NotNull
+        Duration commandTimeout = Duration.ofSeconds(10);
+
+        /**
+         * Delay before reconnecting after the connection fails. Doubled after each failed attempt up to the maximum,
+         * and reset when the game starts. Defaults to 1 second.
+         */
+        @NotNull
+        Duration reconnectDelay = Duration.ofSeconds(1);
+
+        /**
+         * Maximum delay before reconnecting. Defaults to 30 seconds.
+         */
+        @NotNull
+        Duration maxReconnectDelay = Duration.ofSeconds(30);
+
+        /**
+         * Maximum number of commands sent before their output has been received. The vanilla server expects each
+         * request in a separate read from the connection, which requests sent back to back may not be, so values
+         * above 1 are only safe with servers that read the requests as a stream. Defaults to 1.
+         */
+        @NotNull
+        @Positive
+        Integer pipelineDepth = 1;
+    }
+
+    @Data
+    @Valid
+    public static class LogBatchProperties {
+        /**
+         * Maximum number of console lines published to log subscribers in a single message. Defaults to 100.
+         */
+        @NotNull
+        @Positive
+        Integer maxLines = 100;
+
+        /**
+         * Maximum time a console line waits for more lines before it's published to log subscribers. With 0, lines
+         * are only batched while publishing lags behind the game output. Defaults to 50ms.
+         */
+        @NotNull
+        Duration maxDelay = Duration.ofMillis(50);
+
+        /**
+         * Maximum number of console lines waiting to be published. The game output is never blocked by slow
+         * publishing, so lines are dropped from publishing when this is exceeded. Dropped lines are still kept in
+         * history and the console log. Defaults to 10000.
+         */
+        @NotNull
+        @Positive
+        Integer queueCapacity = 10000;
+
+        /**
+         * Which lines to drop when the queue is full. Defaults to DROP_OLDEST.
+         */
+        @NotNull
+        DispatchQueue.OverflowPolicy overflowPolicy = DispatchQueue.OverflowPolicy.DROP_OLDEST;
+    }
+
+    @Data
+    @Valid
+    public static class DedupProperties {
+        /**
+         * Collapse runs of repeated console lines into the first line and a line with the repeat count before they
+         * are stored in history and the console log, and published to subscribers. Defaults to false.
+         */
+        @NotNull
+        Boolean enabled = false;
+
+        /**
+         * Time from the first line of a run during which repeats are collapsed. A run that goes on for longer is
+         * passed on again once per window. Defaults to 5 seconds.
+         */
+        @NotNull
+        Duration window = Duration.ofSeconds(5);
+
+        /**
+         * Compare lines without their [HH:MM:SS] timestamp, so that repeats in different seconds are collapsed too.
+         * Defaults to true.
+         */
+        @NotNull
+        Boolean ignoreTimestamp = true;
+    }
+
+    @Data
+    @Valid
+    public static class EventsProperties {
+        /**
+         * Additional patterns for extracting events from console lines. Tried in order before the default patterns,
+         * so they can also override how the default event types are recognized. Defaults to none.
+         */
+        @NotNull
+        List<@Valid PatternProperties> patterns = new ArrayList<>();
+
+        /**
+         * Event types that the default patterns are not used for, e.g. CHAT. Defaults to none.
+         */
+        @NotNull
+        Set<ConsoleEvent.Type> disabledTypes = EnumSet.noneOf(ConsoleEvent.Type.class);
+
+        @Data
+        @Valid
+        public static class PatternProperties {
+            /**
+             * Type of the events produced by this pattern.
+             */
+            @NotNull
+            ConsoleEvent.Type type;
+
+            /**
+             * Required start of the logging thread name, e.g. Server thread. Matches any thread if not set.
+             */
+            String thread;
+
+            /**
+             * Required log level, e.g. INFO. Matches any level if not set.
+             */
+            String level;
+
+            /**
+             * Text that the message must contain before the regex is tried. Should be set for anything but rare
+             * lines, as the check is much cheaper than the regex.
+             */
+            String literal;
+
+            /**
+             * Regex that must match the whole message after the <code>[HH:MM:SS] [thread/LEVEL]: </code> prefix.
+             * Named groups are included in the event attributes.
+             */
+            @NotBlank
+            String regex;
+        }
+    }
+
+    @Data
+    @Valid
+    public static class ConsoleLogProperties {
+        /**
+         * Enable persisting console output on disk and the console log API. Defaults to false.
+         */
+        @NotNull
+        Boolean enabled = false;
+
+        /**
+         * Directory of the console log segment files. Created if it doesn't exist. Defaults to console-log.
+         */
+        @NotBlank
+        String directory = "console-log";
+
+        /**
+         * Size after which a new segment is started. Defaults to 16MB.
+         */
+        @NotNull
+        DataSize segmentSize = DataSize.ofMegabytes(16);
+
+        /**
+         * Maximum total size of the segment files on disk. The oldest segments are deleted first. Defaults to 512MB.
+         */
+        @NotNull
+        DataSize maxSize = DataSize.ofMegabytes(512);
+
+        /**
+         * Number of the most recent full segments kept uncompressed for faster reads. Older segments are compressed.
+         * Defaults to 2.
+         */
+        @NotNull
+        @PositiveOrZero
+        Integer uncompressedSegments = 2;
+
+        /**
+         * Approximate distance between sparse index entries of a segment. Smaller values make reads start closer to
+         * the requested line at the cost of a larger index. Defaults to 4KB.
+         */
+        @NotNull
+        DataSize indexInterval = DataSize.ofKilobytes(4);
+
+        /**
+         * Maximum number of console lines waiting to be written to disk. Lines are written on their own thread so
+         * that a slow disk doesn't hold up the game output, unless the disk falls this far behind. Lines are never
+         * dropped, reading the game output waits for room instead. Defaults to 10000.
+         */
+        @NotNull
+        @Positive
+        Integer queueCapacity = 10000;
+    }
+
+    @Data
+    @Valid
+    public static class HistoryProperties {
+        /**
+         * Maximum number of console lines kept in history. Oldest lines are evicted first. Defaults to 1000.
+         */
+        @NotNull
+        @Positive
+        Integer maxLines = 1000;
+
+        /**
+         * Maximum total size of console lines kept in history. Oldest lines are evicted first. Defaults to 1MB.
+         */
+        @NotNull
+        DataSize maxSize = DataSize.ofMegabytes(1);
+    }
+
     @Data
     @Valid
     public static class SessionProperties {
@@ -86,6 +406,13 @@ public class GameProperties {
          */
         @NotNull
         Duration connectTimeout = Duration.ofSeconds(2);
+
+        /**
+         * Interval between background status probes. Status requests are served from the latest probe, so this is
+         * how stale the status may be. Defaults to 5 seconds.
+         */
+        @NotNull
+        Duration pollInterval = Duration.ofSeconds(5);
     }
 
     @Data
@@ -0,0 +1,28 @@
+package fi.jannetahkola.palikka.game.process;
+
+import java.util.Map;
+
+/**
+ * Event extracted from a line of game console output.
+ * @param time Time of the line as printed by the game, e.g. 19:56:37
+ * @param thread Thread that printed the line, e.g. Server thread
+ * @param level Log level of the line, e.g. INFO
+ * @param message The line without the time, thread and level prefix
+ * @param attributes Values captured by the named groups of the pattern, e.g. player
+ */
+public record ConsoleEvent(Type type,
+                           String time,
+                           String thread,
+                           String level,
+                           String message,
+                           Map<String, String> attributes) {
+    public enum Type {
+        SERVER_STARTED,
+        SERVER_STOPPING,
+        PLAYER_JOINED,
+        PLAYER_LEFT,
+        CHAT,
+        TICK_LAG,
+        ERROR
+    }
+}
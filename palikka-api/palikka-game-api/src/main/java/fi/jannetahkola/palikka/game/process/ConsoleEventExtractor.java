@@ -0,0 +1,27 @@
+package fi.jannetahkola.palikka.game.process;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Extracts typed events from game console lines. The line prefix is parsed once per line and the patterns are tried
+ * in order, the first match producing the event. Lines without the log prefix, such as stack trace lines, never
+ * produce events. Thread safe.
+ */
+public class ConsoleEventExtractor {
+    private final ConsoleEventPattern[] patterns;
+
+    public ConsoleEventExtractor(List<ConsoleEventPattern> patterns) {
+        this.patterns = patterns.toArray(ConsoleEventPattern[]::new);
+    }
+
+    public Optional<ConsoleEvent> extract(String line) {
+        ConsoleLinePrefix prefix = ConsoleLinePrefix.parse(line);
+        if (prefix == null) return Optional.empty();
+        for (ConsoleEventPattern pattern : patterns) {
+            ConsoleEvent event = pattern.match(line, prefix);
+            if (event != null) return Optional.of(event);
+        }
+        return Optional.empty();
+    }
+}
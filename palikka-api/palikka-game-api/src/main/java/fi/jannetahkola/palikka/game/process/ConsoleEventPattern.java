@@ -0,0 +1,128 @@
+package fi.jannetahkola.palikka.game.process;
+
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Pattern of a console line that produces an event. The cheap checks on the thread, level and literal are done
+ * before the regex, so that the regex only runs on lines that are likely to match.
+ */
+public class ConsoleEventPattern {
+    // Declared before the default patterns that use it when constructed
+    private static final Pattern GROUP_NAME_PATTERN = Pattern.compile("\\(\\?<([a-zA-Z][a-zA-Z0-9]*)>");
+
+    public static final ConsoleEventPattern SERVER_STARTED = new ConsoleEventPattern(
+            ConsoleEvent.Type.SERVER_STARTED, "Server thread", "INFO", "Done (",
+            // The decimal separator of the startup time depends on the locale of the server, and the time is only
+            // captured when it can be parsed so that a different format doesn't stop the server from being detected
+            "Done (?:\\((?<startupTime>[0-9.,]+)s\\))?.*\"");
+    public static final ConsoleEventPattern SERVER_STOPPING = new ConsoleEventPattern(
+            ConsoleEvent.Type.SERVER_STOPPING, "Server thread", "INFO", "Stopping",
+            "Stopping (?:the )?server");
+    public static final ConsoleEventPattern PLAYER_JOINED = new ConsoleEventPattern(
+            ConsoleEvent.Type.PLAYER_JOINED, "Server thread", "INFO", " joined the game",
+            "(?<player>\\S+) joined the game");
+    public static final ConsoleEventPattern PLAYER_LEFT = new ConsoleEventPattern(
+            ConsoleEvent.Type.PLAYER_LEFT, "Server thread", "INFO", " left the game",
+            "(?<player>\\S+) left the game");
+    public static final ConsoleEventPattern CHAT = new ConsoleEventPattern(
+            ConsoleEvent.Type.CHAT, null, "INFO", "<",
+            "(?:\\[Not Secure] )?<(?<player>[^>]+)> (?<text>.*)");
+    public static final ConsoleEventPattern TICK_LAG = new ConsoleEventPattern(
+            ConsoleEvent.Type.TICK_LAG, "Server thread", "WARN", "Can't keep up!",
+            "Can't keep up! Is the server overloaded\\? Running (?<behindMs>\\d+)ms or (?<behindTicks>\\d+) ticks behind");
+    public static final ConsoleEventPattern ERROR = new ConsoleEventPattern(
+            ConsoleEvent.Type.ERROR, null, "ERROR", null, ".*");
+    public static final ConsoleEventPattern FATAL = new ConsoleEventPattern(
+            ConsoleEvent.Type.ERROR, null, "FATAL", null, ".*");
+
+    private final ConsoleEvent.Type type;
+    private final String threadPrefix;
+    private final String level;
+    private final String literal;
+    private final Pattern regex;
+    private final List<String> groupNames;
+
+    /**
+     * @param threadPrefix Required start of the thread name, or null for any thread
+     * @param level Required log level, or null for any level
+     * @param literal Text that the message must contain for the regex to be tried, or null to always try it
+     * @param regex Regex that must match the whole message. Named groups are captured as event attributes.
+     */
+    public ConsoleEventPattern(@NonNull ConsoleEvent.Type type,
+                               String threadPrefix,
+                               String level,
+                               String literal,
+                               @NonNull String regex) {
+        this.type = type;
+        this.threadPrefix = threadPrefix;
+        this.level = level;
+        this.literal = literal;
+        this.regex = Pattern.compile(regex);
+        List<String> names = new ArrayList<>();
+        Matcher matcher = GROUP_NAME_PATTERN.matcher(regex);
+        while (matcher.find()) {
+            names.add(matcher.group(1));
+        }
+        this.groupNames = List.copyOf(names);
+    }
+
+    public static List<ConsoleEventPattern> defaults() {
+        return List.of(SERVER_STARTED, SERVER_STOPPING, PLAYER_JOINED, PLAYER_LEFT, TICK_LAG, CHAT, ERROR, FATAL);
+    }
+
+    public ConsoleEvent.Type getType() {
+        return type;
+    }
+
+    /**
+     * @return True if the line matches this pattern
+     */
+    public boolean test(String line) {
+        ConsoleLinePrefix prefix = ConsoleLinePrefix.parse(line);
+        return prefix != null && match(line, prefix) != null;
+    }
+
+    /**
+     * @return The event if the line matches, otherwise null
+     */
+    ConsoleEvent match(String line, ConsoleLinePrefix prefix) {
+        if (level != null && !prefix.levelEquals(line, level)) return null;
+        if (threadPrefix != null && !prefix.threadStartsWith(line, threadPrefix)) return null;
+        if (literal != null && line.indexOf(literal, prefix.messageStart) < 0) return null;
+
+        Matcher matcher = regex.matcher(line).region(prefix.messageStart, line.length());
+        if (!matcher.matches()) return null;
+
+        Map<String, String> attributes;
+        if (groupNames.isEmpty()) {
+            attributes = Collections.emptyMap();
+        } else {
+            attributes = new HashMap<>(groupNames.size() * 2);
+            for (String name : groupNames) {
+                String value = matcher.group(name);
+                if (value != null) attributes.put(name, value);
+            }
+        }
+        return new ConsoleEvent(
+                type,
+                prefix.time(line),
+                prefix.thread(line),
+                prefix.level(line),
+                prefix.message(line),
+                Collections.unmodifiableMap(attributes));
+    }
+
+    @Override
+    public String toString() {
+        return "ConsoleEventPattern(type=" + type + ", thread=" + threadPrefix + ", level=" + level
+                + ", literal=" + literal + ", regex=" + regex + ")";
+    }
+}
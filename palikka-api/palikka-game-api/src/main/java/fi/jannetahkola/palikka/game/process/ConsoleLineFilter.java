@@ -0,0 +1,157 @@
+package fi.jannetahkola.palikka.game.process;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Filter of console lines by log level, thread and a regex on the message. Lines are matched against their parsed
+ * {@link ConsoleLinePrefix}, so the prefix of a line is parsed once no matter how many filters are applied to it.
+ * Equal filters can share the work of matching.
+ * <p>
+ * The regex is bounded both in length and in the work spent matching a single line, so that a pathological regex
+ * can't stall publishing the game output. A line that exceeds the budget is treated as not matching.
+ */
+public final class ConsoleLineFilter {
+    public static final int MAX_REGEX_LENGTH = 256;
+    static final int MAX_REGEX_STEPS = 100_000;
+
+    /**
+     * Sorted and upper case, or null for any level.
+     */
+    private final String[] levels;
+    private final String threadPrefix;
+    private final Pattern regex;
+
+    private ConsoleLineFilter(String[] levels, String threadPrefix, Pattern regex) {
+        this.levels = levels;
+        this.threadPrefix = threadPrefix;
+        this.regex = regex;
+    }
+
+    /**
+     * @param levels Comma separated log levels, e.g. WARN,ERROR. Matches any level if null or blank.
+     * @param threadPrefix Required start of the thread name, e.g. Server thread. Matches any thread if null or empty.
+     * @param regex Regex that must be found in the message. Matches any message if null or empty.
+     * @return The filter, or null if every parameter is empty and the filter would match every line
+     * @throws IllegalArgumentException If the regex is too long or invalid
+     */
+    public static ConsoleLineFilter of(String levels, String threadPrefix, String regex) {
+        String[] parsedLevels = null;
+        if (levels != null && !levels.isBlank()) {
+            parsedLevels = Arrays.stream(levels.split(","))
+                    .map(String::strip)
+                    .filter(level -> !level.isEmpty())
+                    .map(level -> level.toUpperCase(Locale.ROOT))
+                    .distinct()
+                    .sorted()
+                    .toArray(String[]::new);
+            if (parsedLevels.length == 0) parsedLevels = null;
+        }
+        Pattern compiled = null;
+        if (regex != null && !regex.isEmpty()) {
+            if (regex.length() > MAX_REGEX_LENGTH) {
+                throw new IllegalArgumentException("Regex must be at most " + MAX_REGEX_LENGTH + " characters");
+            }
+            try {
+                compiled = Pattern.compile(regex);
+            } catch (PatternSyntaxException e) {
+                throw new IllegalArgumentException("Invalid regex: " + e.getDescription());
+            }
+        }
+        if (threadPrefix != null && threadPrefix.isEmpty()) threadPrefix = null;
+        if (parsedLevels == null && threadPrefix == null && compiled == null) return null;
+        return new ConsoleLineFilter(parsedLevels, threadPrefix, compiled);
+    }
+
+    /**
+     * @param prefix Parsed prefix of the line
+     */
+    public boolean matches(String line, ConsoleLinePrefix prefix) {
+        if (levels != null && !matchesLevel(line, prefix)) return false;
+        if (threadPrefix != null && !prefix.threadStartsWith(line, threadPrefix)) return false;
+        if (regex == null) return true;
+        Matcher matcher = regex.matcher(new BoundedCharSequence(line, MAX_REGEX_STEPS))
+                .region(prefix.messageStart(), line.length());
+        try {
+            return matcher.find();
+        } catch (BoundedCharSequence.BudgetExceededException e) {
+            return false;
+        }
+    }
+
+    private boolean matchesLevel(String line, ConsoleLinePrefix prefix) {
+        for (String level : levels) {
+            if (prefix.levelEquals(line, level)) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ConsoleLineFilter that)) return false;
+        return Arrays.equals(levels, that.levels)
+                && Objects.equals(threadPrefix, that.threadPrefix)
+                && Objects.equals(regexString(), that.regexString());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(Arrays.hashCode(levels), threadPrefix, regexString());
+    }
+
+    @Override
+    public String toString() {
+        return "ConsoleLineFilter(levels=" + Arrays.toString(levels) + ", thread=" + threadPrefix
+                + ", regex=" + regexString() + ")";
+    }
+
+    private String regexString() {
+        return regex != null ? regex.pattern() : null;
+    }
+
+    /**
+     * Fails matching once the regex engine has read more characters than the budget allows, which bounds the
+     * backtracking of a single match.
+     */
+    private static final class BoundedCharSequence implements CharSequence {
+        private final String value;
+        private int budget;
+
+        private BoundedCharSequence(String value, int budget) {
+            this.value = value;
+            this.budget = budget;
+        }
+
+        @Override
+        public int length() {
+            return value.length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (--budget < 0) throw new BudgetExceededException();
+            return value.charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return value.subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return value;
+        }
+
+        private static final class BudgetExceededException extends RuntimeException {
+            private BudgetExceededException() {
+                super(null, null, false, false); // Thrown as control flow, no stack trace needed
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package fi.jannetahkola.palikka.game.process;
+
+/**
+ * Positions of the parts of the <code>[HH:MM:SS] [thread/LEVEL]: </code> prefix that the game prints on every log
+ * line. Parsed by hand so that lines can be filtered by thread and level without regexes or allocating substrings.
+ */
+public final class ConsoleLinePrefix {
+    private static final int THREAD_START = 12; // After "[HH:MM:SS] ["
+
+    final int threadEnd;
+    final int levelStart;
+    final int levelEnd;
+    final int messageStart;
+
+    private ConsoleLinePrefix(int threadEnd, int levelStart, int levelEnd, int messageStart) {
+        this.threadEnd = threadEnd;
+        this.levelStart = levelStart;
+        this.levelEnd = levelEnd;
+        this.messageStart = messageStart;
+    }
+
+    /**
+     * @return The prefix of the line, or null if the line doesn't start with one, e.g. for stack trace lines
+     */
+    public static ConsoleLinePrefix parse(String line) {
+        int length = line.length();
+        if (length < THREAD_START + 6 // Shortest possible prefix "[HH:MM:SS] [t/L]: "
+                || line.charAt(0) != '['
+                || !isDigit(line, 1) || !isDigit(line, 2) || line.charAt(3) != ':'
+                || !isDigit(line, 4) || !isDigit(line, 5) || line.charAt(6) != ':'
+                || !isDigit(line, 7) || !isDigit(line, 8)
+                || line.charAt(9) != ']' || line.charAt(10) != ' ' || line.charAt(11) != '[') {
+            return null;
+        }
+        int slash = -1;
+        for (int i = THREAD_START; i < length - 2; i++) {
+            char c = line.charAt(i);
+            if (c == '/') {
+                slash = i; // Thread names may contain slashes, the level is after the last one
+            } else if (c == ']' && line.charAt(i + 1) == ':' && line.charAt(i + 2) == ' ') {
+                if (slash < 0) return null;
+                return new ConsoleLinePrefix(slash, slash + 1, i, i + 3);
+            }
+        }
+        return null;
+    }
+
+    public String time(String line) {
+        return line.substring(1, 9);
+    }
+
+    public String thread(String line) {
+        return line.substring(THREAD_START, threadEnd);
+    }
+
+    public String level(String line) {
+        return line.substring(levelStart, levelEnd);
+    }
+
+    public String message(String line) {
+        return line.substring(messageStart);
+    }
+
+    /**
+     * @return Index of the message in the line, after the prefix
+     */
+    public int messageStart() {
+        return messageStart;
+    }
+
+    public boolean threadStartsWith(String line, String prefix) {
+        return prefix.length() <= threadEnd - THREAD_START && line.startsWith(prefix, THREAD_START);
+    }
+
+    public boolean levelEquals(String line, String level) {
+        return level.length() == levelEnd - levelStart && line.startsWith(level, levelStart);
+    }
+
+    private static boolean isDigit(String line, int index) {
+        char c = line.charAt(index);
+        return c >= '0' && c <= '9';
+    }
+}
@@ -3,6 +3,8 @@ package fi.jannetahkola.palikka.game.process;
 import fi.jannetahkola.palikka.game.process.exception.GameProcessAlreadyActiveException;
 import fi.jannetahkola.palikka.game.process.task.AsyncTaskSubmitter;
 import fi.jannetahkola.palikka.game.process.task.InputListenerTask;
+import fi.jannetahkola.palikka.game.process.task.OutputCommand;
+import fi.jannetahkola.palikka.game.process.task.OutputWriterMetrics;
 import fi.jannetahkola.palikka.game.process.task.OutputWriterTask;
 import lombok.Builder;
 import lombok.NonNull;
@@ -20,7 +22,8 @@ public class GameProcess {
 
     private final GameProcessExecutable executable;
     private final GameProcessHooks hooks;
-    private final BlockingQueue<String> outputQueue;
+    private final BlockingQueue<OutputCommand> outputQueue;
+    private final OutputWriterMetrics outputWriterMetrics = new OutputWriterMetrics();
     private final AtomicReference<Status> status = new AtomicReference<>(Status.INACTIVE);
 
     private Process process;
@@ -33,7 +36,7 @@ public class GameProcess {
 
     public GameProcess(@NonNull GameProcessExecutable executable,
                        @NonNull GameProcessHooks hooks,
-                       @NonNull BlockingQueue<String> outputQueue) {
+                       @NonNull BlockingQueue<OutputCommand> outputQueue) {
         this.executable = executable;
         this.hooks = hooks;
         this.outputQueue = outputQueue;
@@ -87,7 +90,7 @@ public class GameProcess {
     public boolean stop(long timeoutInMillis) throws InterruptedException {
         log.info("Stopping game process gracefully with timeout of {} ms", timeoutInMillis);
         if (isActive()) {
-            outputQueue.add("stop");
+            outputQueue.add(OutputCommand.of("stop"));
             boolean gracefulSuccess = process.waitFor(timeoutInMillis, TimeUnit.MILLISECONDS);
             if (gracefulSuccess)
                 log.info("Graceful stop success");
@@ -122,6 +125,10 @@ public class GameProcess {
         return status.get().equals(Status.ACTIVE);
     }
 
+    public OutputWriterMetrics getOutputWriterMetrics() {
+        return outputWriterMetrics;
+    }
+
     @Builder(toBuilder = true)
     @Value
     public static class GameProcessHooks {
@@ -145,6 +152,10 @@ public class GameProcess {
          */
         Runnable onGameExited;
 
+        /**
+         * Called with each line of the process output and each command written to the process. Output lines and
+         * commands are passed on from different threads, so this may be called concurrently.
+         */
         Consumer<String> onInput;
 
         public Optional<Runnable> getOnProcessStarted() {
@@ -177,15 +188,16 @@ public class GameProcess {
         return AsyncTaskSubmitter.submitAll(IO_EXECUTOR, List.of(
                 new InputListenerTask(process.getInputStream(), input -> {
                     hooks.getOnInput().ifPresent(onInputHook -> onInputHook.accept(input));
-                    // TODO These could be moved to another input listener task for performance
-                    if (!processStarted && GameProcessPatterns.SERVER_START_PATTERN.matcher(input).matches()) {
+                    // Prefiltered on the line prefix and a literal, so the regex rarely runs
+                    if (!processStarted && ConsoleEventPattern.SERVER_STARTED.test(input)) {
                         log.info("Start detected, ready for connections");
                         processStarted = true;
                         hooks.getOnGameStarted().ifPresent(Runnable::run);
                     }
                 }),
                 new OutputWriterTask(process.getOutputStream(), outputQueue,
-                        input -> hooks.getOnInput().ifPresent(onInputHook -> onInputHook.accept(input)))
+                        input -> hooks.getOnInput().ifPresent(onInputHook -> onInputHook.accept(input)),
+                        outputWriterMetrics)
         ));
     }
 
@@ -0,0 +1,145 @@
+package fi.jannetahkola.palikka.game.process;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Collapses runs of repeated console lines before they are stored and published. The first line of a run is passed
+ * on immediately, and the repeats that follow within the window are counted instead. When the run ends, because a
+ * different line arrives or the window passes, the last repeat is passed on once together with the repeat count. The
+ * line itself is passed on unchanged so that it can still be matched like any other line, and
+ * {@link #withRepeatCount(String, int)} formats it for display, e.g.
+ * <code>[12:00:05] [Server thread/WARN]: Can't keep up! ... [repeated 99 more times]</code>.
+ * <p>
+ * Lines can optionally be compared without their <code>[HH:MM:SS] </code> timestamp, so that lines repeated over
+ * several seconds are still collapsed. Thread safe, lines are passed on in the order they were accepted.
+ */
+@Slf4j
+public class RepeatedLineCollapser implements Closeable {
+    private static final int TIMESTAMP_LENGTH = "[HH:MM:SS] ".length();
+
+    private final long windowNanos;
+    private final boolean ignoreTimestamp;
+    private final ObjIntConsumer<String> downstream;
+    private final LongSupplier nanoTime;
+    private final ScheduledExecutorService scheduler;
+
+    // Guarded by this
+    private String runLine;
+    private long runStartNanos;
+    private long runId;
+    private String lastRepeat;
+    private int repeats;
+
+    /**
+     * @param window Time from the first line of a run during which repeats are collapsed
+     * @param ignoreTimestamp Compare lines without their timestamp
+     * @param downstream Receives the collapsed lines and the number of repeats they stand for, which is 0 for lines
+     *                   that aren't repeats. Called while holding the lock of this collapser, so it's never called
+     *                   concurrently.
+     */
+    public RepeatedLineCollapser(Duration window, boolean ignoreTimestamp, ObjIntConsumer<String> downstream) {
+        this(window, ignoreTimestamp, downstream, System::nanoTime);
+    }
+
+    RepeatedLineCollapser(Duration window,
+                          boolean ignoreTimestamp,
+                          ObjIntConsumer<String> downstream,
+                          LongSupplier nanoTime) {
+        if (window.isNegative() || window.isZero()) throw new IllegalArgumentException("Window must be positive");
+        this.windowNanos = window.toNanos();
+        this.ignoreTimestamp = ignoreTimestamp;
+        this.downstream = downstream;
+        this.nanoTime = nanoTime;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "game-input-collapser");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public synchronized void accept(String line) {
+        long now = nanoTime.getAsLong();
+        if (runLine != null && now - runStartNanos < windowNanos && isRepeat(runLine, line)) {
+            lastRepeat = line;
+            if (++repeats == 1) {
+                // Make sure the count is passed on even if no other lines arrive to end the run
+                long scheduledRunId = runId;
+                scheduler.schedule(() -> flush(scheduledRunId),
+                        runStartNanos + windowNanos - now, TimeUnit.NANOSECONDS);
+            }
+            return;
+        }
+        flushRepeats();
+        runLine = line;
+        runStartNanos = now;
+        runId++;
+        downstream.accept(line, 0);
+    }
+
+    /**
+     * @return The line with the repeat count appended, or the line as is if it isn't a repeat
+     */
+    public static String withRepeatCount(String line, int repeats) {
+        if (repeats == 0) return line;
+        return line + " [repeated " + repeats + (repeats == 1 ? " more time]" : " more times]");
+    }
+
+    /**
+     * Passes on the count of the current run, if any. Later repeats of the same line start a new run.
+     */
+    public synchronized void flush() {
+        flushRepeats();
+        runLine = null;
+    }
+
+    /**
+     * Flushes the current run and stops the timer.
+     */
+    @Override
+    public void close() {
+        flush();
+        scheduler.shutdownNow();
+    }
+
+    private synchronized void flush(long scheduledRunId) {
+        if (scheduledRunId == runId) flushRepeats();
+    }
+
+    private void flushRepeats() {
+        if (repeats == 0) return;
+        String line = lastRepeat;
+        int count = repeats;
+        repeats = 0;
+        lastRepeat = null;
+        try {
+            downstream.accept(line, count);
+        } catch (RuntimeException e) {
+            log.error("Failed to pass on collapsed line", e);
+        }
+    }
+
+    private boolean isRepeat(String previous, String line) {
+        if (previous.length() != line.length()) return false;
+        if (ignoreTimestamp && hasTimestamp(previous) && hasTimestamp(line)) {
+            return previous.regionMatches(TIMESTAMP_LENGTH, line, TIMESTAMP_LENGTH, line.length() - TIMESTAMP_LENGTH);
+        }
+        return previous.equals(line);
+    }
+
+    private static boolean hasTimestamp(String line) {
+        return line.length() >= TIMESTAMP_LENGTH
+                && line.charAt(0) == '['
+                && line.charAt(3) == ':'
+                && line.charAt(6) == ':'
+                && line.charAt(9) == ']'
+                && line.charAt(10) == ' ';
+    }
+}
@@ -0,0 +1,487 @@
+package fi.jannetahkola.palikka.game.process.log;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Append-only console log on disk, split into segments. The newest segment is appended to until it reaches the
+ * segment size, after which it's sealed with a sparse index written next to it and a new segment is started. Sealed
+ * segments older than the most recent ones are compressed, and the oldest segments are deleted once the log exceeds
+ * its maximum size. Compression and deletion run in the background so that appending isn't blocked. Lines are best
+ * appended in batches, which are written with a single write per segment.
+ * <p>
+ * Records are read by sequence number or timestamp. Uncompressed segments are read through memory mappings, starting
+ * from the closest sparse index entry, so that paging doesn't keep the log on the heap.
+ * <p>
+ * There must only be a single writer. Reads may happen concurrently from any thread.
+ */
+@Slf4j
+public class ConsoleLog implements Closeable {
+    private static final Pattern SEGMENT_FILE_PATTERN = Pattern.compile("^(\\d{20})(\\.log|\\.log\\.gz)$");
+
+    private final Path directory;
+    private final long segmentSize;
+    private final long maxSize;
+    private final int uncompressedSegments;
+    private final int indexInterval;
+    private final Clock clock;
+    private final ExecutorService maintenanceExecutor;
+
+    /**
+     * Segments from oldest to newest. The last one is the active segment. Replaced as a whole under the lock.
+     */
+    private volatile List<ConsoleLogSegment> segments;
+    private final Object segmentsLock = new Object();
+
+    private FileChannel activeChannel;
+    private long lastIndexedOffset;
+    private boolean closed;
+
+    /**
+     * @param directory Directory of the segment files. Created if it doesn't exist.
+     * @param segmentSize Size in bytes after which a new segment is started
+     * @param maxSize Maximum total size in bytes of the segment files on disk before the oldest are deleted
+     * @param uncompressedSegments Number of the most recent sealed segments to keep uncompressed
+     * @param indexInterval Approximate number of bytes between sparse index entries
+     */
+    public ConsoleLog(Path directory,
+                      long segmentSize,
+                      long maxSize,
+                      int uncompressedSegments,
+                      int indexInterval,
+                      Clock clock) throws IOException {
+        if (segmentSize < 1 || segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Segment size must be between 1 and " + Integer.MAX_VALUE + " bytes");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSize = maxSize;
+        this.uncompressedSegments = uncompressedSegments;
+        this.indexInterval = indexInterval;
+        this.clock = clock;
+        this.maintenanceExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "console-log-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Files.createDirectories(directory);
+        List<ConsoleLogSegment> recovered = recoverSegments();
+        long nextSequence = recovered.isEmpty() ? 1 : recovered.get(recovered.size() - 1).lastSequence + 1;
+        List<ConsoleLogSegment> initialSegments = new ArrayList<>(recovered);
+        initialSegments.add(openSegment(nextSequence));
+        this.segments = List.copyOf(initialSegments);
+        log.info("Console log opened in '{}' with {} sealed segments, next sequence={}",
+                directory, recovered.size(), nextSequence);
+        maintenanceExecutor.execute(this::maintain);
+    }
+
+    /**
+     * @return Sequence number of the newest record, or 0 if the log is empty
+     */
+    public long getLastSequence() {
+        List<ConsoleLogSegment> current = segments;
+        return current.get(current.size() - 1).lastSequence;
+    }
+
+    /**
+     * @return Sequence number of the oldest retained record, or {@link #getLastSequence()} + 1 if the log is empty
+     */
+    public long getFirstSequence() {
+        for (ConsoleLogSegment segment : segments) {
+            if (!segment.isEmpty()) return segment.firstSequence;
+        }
+        return getLastSequence() + 1;
+    }
+
+    /**
+     * Appends a console line with the current time as its timestamp. Sequence numbers must increase, but gaps are
+     * allowed. Line breaks in the line are replaced with spaces. Must only be called from a single thread.
+     */
+    public void append(long sequence, String line) throws IOException {
+        append(List.of(new ConsoleLogRecord(sequence, clock.millis(), line)));
+    }
+
+    /**
+     * Appends console records in the given order, each with its own timestamp. The records are written with a single
+     * write per segment they end up in. Sequence numbers must increase, but gaps are allowed. Nothing is appended if
+     * they don't. Timestamps are expected not to decrease, reading by time may skip records otherwise. Line breaks in
+     * the lines are replaced with spaces. Must only be called from a single thread.
+     */
+    public synchronized void append(List<ConsoleLogRecord> records) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Console log is closed");
+        }
+        ConsoleLogSegment active = segments.get(segments.size() - 1);
+        long previousSequence = active.lastSequence;
+        for (ConsoleLogRecord record : records) {
+            if (record.sequence() <= previousSequence) {
+                throw new IllegalArgumentException(
+                        "Sequence " + record.sequence() + " not after the last sequence " + previousSequence);
+            }
+            previousSequence = record.sequence();
+        }
+
+        List<ByteBuffer> buffers = new ArrayList<>(records.size());
+        int first = 0;
+        long offset = active.size;
+        for (int i = 0; i < records.size(); i++) {
+            ConsoleLogRecord record = records.get(i);
+            if (offset >= segmentSize) {
+                if (!buffers.isEmpty()) {
+                    write(active, records.subList(first, i), buffers);
+                    buffers.clear();
+                }
+                active = roll(active, record.sequence());
+                first = i;
+                offset = 0;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(
+                    ConsoleLogSegment.format(record.sequence(), record.timestamp(), sanitize(record.line())));
+            buffers.add(buffer);
+            offset += buffer.remaining();
+        }
+        if (!buffers.isEmpty()) {
+            write(active, records.subList(first, records.size()), buffers);
+        }
+    }
+
+    /**
+     * @return Up to limit records with a sequence number greater than the given one, oldest first
+     */
+    public List<ConsoleLogRecord> readAfter(long sequence, int limit) throws IOException {
+        return read(limit, current -> {
+            List<ConsoleLogRecord> records = new ArrayList<>();
+            for (ConsoleLogSegment segment : current) {
+                if (segment.lastSequence <= sequence) continue;
+                long offset = segment.index.floorOffsetBySequence(sequence + 1, segment.size);
+                boolean more = segment.read(offset, record -> {
+                    if (record.sequence() > sequence) records.add(record);
+                    return records.size() < limit;
+                });
+                if (!more) break;
+            }
+            return records;
+        });
+    }
+
+    /**
+     * @return Up to limit records with a sequence number less than the given one, oldest first
+     */
+    public List<ConsoleLogRecord> readBefore(long sequence, int limit) throws IOException {
+        return read(limit, current -> {
+            // Sequence numbers may have gaps, so walk the segments backwards one index interval at a time
+            ArrayDeque<ConsoleLogRecord> records = new ArrayDeque<>();
+            for (int i = current.size() - 1; i >= 0 && records.size() < limit; i--) {
+                ConsoleLogSegment segment = current.get(i);
+                if (segment.isEmpty() || segment.firstSequence >= sequence) continue;
+                if (segment.compressed) {
+                    readTail(segment, sequence, limit - records.size()).descendingIterator()
+                            .forEachRemaining(records::addFirst);
+                    continue;
+                }
+                long end = segment.size;
+                long start = segment.index.floorOffsetBySequence(sequence - 1, end);
+                while (records.size() < limit) {
+                    List<ConsoleLogRecord> chunk = new ArrayList<>();
+                    segment.read(start, end, record -> {
+                        if (record.sequence() >= sequence) return false;
+                        chunk.add(record);
+                        return true;
+                    });
+                    for (int j = chunk.size() - 1; j >= 0 && records.size() < limit; j--) {
+                        records.addFirst(chunk.get(j));
+                    }
+                    if (start == 0) break;
+                    end = start;
+                    start = segment.index.floorOffsetBySequence(Long.MAX_VALUE, end);
+                }
+            }
+            return List.copyOf(records);
+        });
+    }
+
+    /**
+     * Reads a compressed segment in a single pass, since it can't be read from an offset without decompressing
+     * everything before it.
+     * @return Up to limit of the last records with a sequence number less than the given one, oldest first
+     */
+    private static ArrayDeque<ConsoleLogRecord> readTail(ConsoleLogSegment segment,
+                                                         long sequence,
+                                                         int limit) throws IOException {
+        ArrayDeque<ConsoleLogRecord> records = new ArrayDeque<>(limit);
+        segment.read(0, record -> {
+            if (record.sequence() >= sequence) return false;
+            if (records.size() == limit) records.removeFirst();
+            records.addLast(record);
+            return true;
+        });
+        return records;
+    }
+
+    /**
+     * @return Up to limit records appended at or after the given time, oldest first
+     */
+    public List<ConsoleLogRecord> readFrom(Instant time, int limit) throws IOException {
+        long timestamp = time.toEpochMilli();
+        return read(limit, current -> {
+            List<ConsoleLogRecord> records = new ArrayList<>();
+            for (ConsoleLogSegment segment : current) {
+                if (segment.isEmpty() || segment.lastTimestamp < timestamp) continue;
+                long offset = segment.index.floorOffsetByTimestamp(timestamp, segment.size);
+                boolean more = segment.read(offset, record -> {
+                    if (record.timestamp() >= timestamp) records.add(record);
+                    return records.size() < limit;
+                });
+                if (!more) break;
+            }
+            return records;
+        });
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        maintenanceExecutor.shutdown();
+        try {
+            if (!maintenanceExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("Console log maintenance did not finish in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        ConsoleLogSegment active = segments.get(segments.size() - 1);
+        activeChannel.close();
+        if (active.isEmpty()) {
+            Files.deleteIfExists(active.path);
+        } else {
+            active.writeIndex(ConsoleLogSegment.indexPath(directory, active.firstSequence));
+        }
+        log.info("Console log closed");
+    }
+
+    private interface SegmentReader {
+        List<ConsoleLogRecord> read(List<ConsoleLogSegment> segments) throws IOException;
+    }
+
+    /**
+     * Reads from the current segments, retrying once if a segment was compressed or deleted during the read.
+     */
+    private List<ConsoleLogRecord> read(int limit, SegmentReader reader) throws IOException {
+        if (limit < 1) return List.of();
+        try {
+            return reader.read(segments);
+        } catch (NoSuchFileException e) {
+            log.debug("Console log segment changed during read, retrying", e);
+            return reader.read(segments);
+        }
+    }
+
+    /**
+     * Writes the formatted records to the active segment with a gathering write, then indexes them.
+     */
+    private void write(ConsoleLogSegment active,
+                       List<ConsoleLogRecord> records,
+                       List<ByteBuffer> formatted) throws IOException {
+        ByteBuffer[] buffers = formatted.toArray(ByteBuffer[]::new);
+        ByteBuffer last = buffers[buffers.length - 1];
+        while (last.hasRemaining()) {
+            activeChannel.write(buffers);
+        }
+
+        long offset = active.size;
+        for (int i = 0; i < buffers.length; i++) {
+            ConsoleLogRecord record = records.get(i);
+            if (offset == 0 || offset - lastIndexedOffset >= indexInterval) {
+                active.index.add(record.sequence(), record.timestamp(), offset);
+                lastIndexedOffset = offset;
+            }
+            if (offset == 0) {
+                active.firstTimestamp = record.timestamp();
+            }
+            offset += buffers[i].limit();
+        }
+        ConsoleLogRecord lastRecord = records.get(records.size() - 1);
+        active.lastSequence = lastRecord.sequence();
+        active.lastTimestamp = lastRecord.timestamp();
+        active.diskSize = offset;
+        active.size = offset; // Publish last
+    }
+
+    private ConsoleLogSegment roll(ConsoleLogSegment active, long nextSequence) throws IOException {
+        activeChannel.close();
+        active.writeIndex(ConsoleLogSegment.indexPath(directory, active.firstSequence));
+        ConsoleLogSegment next = openSegment(nextSequence);
+        synchronized (segmentsLock) {
+            List<ConsoleLogSegment> updated = new ArrayList<>(segments);
+            updated.add(next);
+            segments = List.copyOf(updated);
+        }
+        log.debug("Console log segment sealed={}, next={}", active, next);
+        maintenanceExecutor.execute(this::maintain);
+        return next;
+    }
+
+    private ConsoleLogSegment openSegment(long firstSequence) throws IOException {
+        Path path = directory.resolve(ConsoleLogSegment.fileName(firstSequence) + ConsoleLogSegment.LOG_SUFFIX);
+        activeChannel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        lastIndexedOffset = 0;
+        return new ConsoleLogSegment(firstSequence, path, false, new SparseIndex());
+    }
+
+    /**
+     * Compresses sealed segments that are no longer among the most recent ones and deletes the oldest segments while
+     * the log is too large. Runs on the maintenance thread only.
+     */
+    private void maintain() {
+        try {
+            List<ConsoleLogSegment> sealed = segments.subList(0, segments.size() - 1);
+            int compressUntil = sealed.size() - uncompressedSegments;
+            for (int i = 0; i < compressUntil; i++) {
+                ConsoleLogSegment segment = sealed.get(i);
+                if (!segment.compressed) {
+                    compress(segment);
+                }
+            }
+
+            List<ConsoleLogSegment> current = segments;
+            long totalSize = current.stream().mapToLong(segment -> segment.diskSize).sum();
+            int i = 0;
+            while (totalSize > maxSize && i < current.size() - 1) {
+                ConsoleLogSegment oldest = current.get(i++);
+                delete(oldest);
+                totalSize -= oldest.diskSize;
+            }
+        } catch (Exception e) {
+            log.error("Console log maintenance failed", e);
+        }
+    }
+
+    private void compress(ConsoleLogSegment segment) throws IOException {
+        Path compressedPath = directory.resolve(
+                ConsoleLogSegment.fileName(segment.firstSequence) + ConsoleLogSegment.COMPRESSED_SUFFIX);
+        Path tmp = compressedPath.resolveSibling(compressedPath.getFileName() + ".tmp");
+        try (InputStream in = Files.newInputStream(segment.path);
+             OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp), 64 * 1024)) {
+            in.transferTo(out);
+        }
+        Files.move(tmp, compressedPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        replace(segment, segment.toCompressed(compressedPath));
+        Files.delete(segment.path);
+        log.debug("Console log segment compressed={}", segment);
+    }
+
+    private void delete(ConsoleLogSegment segment) throws IOException {
+        synchronized (segmentsLock) {
+            List<ConsoleLogSegment> updated = new ArrayList<>(segments);
+            updated.removeIf(s -> s.firstSequence == segment.firstSequence);
+            segments = List.copyOf(updated);
+        }
+        Files.deleteIfExists(segment.path);
+        Files.deleteIfExists(ConsoleLogSegment.indexPath(directory, segment.firstSequence));
+        log.debug("Console log segment deleted={}", segment);
+    }
+
+    private void replace(ConsoleLogSegment segment, ConsoleLogSegment replacement) {
+        synchronized (segmentsLock) {
+            List<ConsoleLogSegment> updated = new ArrayList<>(segments);
+            updated.replaceAll(s -> s.firstSequence == segment.firstSequence ? replacement : s);
+            segments = List.copyOf(updated);
+        }
+    }
+
+    private List<ConsoleLogSegment> recoverSegments() throws IOException {
+        List<ConsoleLogSegment> recovered = new ArrayList<>();
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.toList();
+        }
+        for (Path file : files) {
+            if (file.getFileName().toString().endsWith(".tmp")) {
+                Files.delete(file); // Interrupted compression or index write
+            }
+        }
+        // Compressed segments first, so that an original left behind by interrupted compression can be detected
+        List<Path> segmentFiles = files.stream()
+                .filter(file -> SEGMENT_FILE_PATTERN.matcher(file.getFileName().toString()).matches())
+                .sorted(Comparator.comparing((Path file) -> file.getFileName().toString().substring(0, 20))
+                        .thenComparing(file -> !file.getFileName().toString().endsWith(".gz")))
+                .toList();
+        for (Path file : segmentFiles) {
+            Matcher matcher = SEGMENT_FILE_PATTERN.matcher(file.getFileName().toString());
+            if (!matcher.matches()) continue;
+            long firstSequence = Long.parseLong(matcher.group(1));
+            boolean compressed = ConsoleLogSegment.COMPRESSED_SUFFIX.equals(matcher.group(2));
+            if (!compressed && recovered.stream().anyMatch(s -> s.firstSequence == firstSequence)) {
+                Files.delete(file);
+                continue;
+            }
+            ConsoleLogSegment segment = recoverSegment(firstSequence, file, compressed);
+            if (segment.isEmpty()) {
+                Files.delete(file);
+                Files.deleteIfExists(ConsoleLogSegment.indexPath(directory, firstSequence));
+            } else {
+                recovered.add(segment);
+            }
+        }
+        return recovered;
+    }
+
+    private ConsoleLogSegment recoverSegment(long firstSequence, Path file, boolean compressed) throws IOException {
+        Path indexPath = ConsoleLogSegment.indexPath(directory, firstSequence);
+        if (Files.exists(indexPath)) {
+            return ConsoleLogSegment.loadIndex(firstSequence, file, compressed, indexPath);
+        }
+        log.info("Rebuilding console log index of segment '{}'", file);
+        ConsoleLogSegment segment = ConsoleLogSegment.recover(firstSequence, file, compressed, indexInterval);
+        if (!compressed && segment.size < Files.size(file)) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(segment.size); // Drop an incomplete record
+            }
+            segment.diskSize = segment.size;
+        }
+        if (!segment.isEmpty()) {
+            segment.writeIndex(indexPath);
+        }
+        return segment;
+    }
+
+    private static String sanitize(String line) {
+        return line.indexOf('\n') < 0 && line.indexOf('\r') < 0
+                ? line
+                : line.replace('\n', ' ').replace('\r', ' ');
+    }
+
+    /**
+     * For tests. Runs pending maintenance and waits for it to finish.
+     */
+    void awaitMaintenance() throws Exception {
+        maintenanceExecutor.submit(() -> { }).get(10, TimeUnit.SECONDS);
+    }
+
+    List<ConsoleLogSegment> getSegments() {
+        return segments;
+    }
+}
@@ -0,0 +1,9 @@
+package fi.jannetahkola.palikka.game.process.log;
+
+/**
+ * @param sequence Sequence number of the console line
+ * @param timestamp Time the line was read from the game output in epoch milliseconds
+ * @param line The console line
+ */
+public record ConsoleLogRecord(long sequence, long timestamp, String line) {
+}
@@ -0,0 +1,242 @@
+package fi.jannetahkola.palikka.game.process.log;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A segment of the console log. Records are stored one per line as <code>sequence\ttimestamp\tline\n</code>, so the
+ * segments can also be read with regular tools. Uncompressed segments are read through a memory mapping, compressed
+ * segments by streaming.
+ * <p>
+ * The metadata of a segment is only updated by the writer of the console log and published through volatile fields,
+ * with {@link #size} published last.
+ */
+class ConsoleLogSegment {
+    static final String LOG_SUFFIX = ".log";
+    static final String COMPRESSED_SUFFIX = ".log.gz";
+    static final String INDEX_SUFFIX = ".idx";
+
+    final long firstSequence;
+    final Path path;
+    final boolean compressed;
+    final SparseIndex index;
+
+    volatile long lastSequence;
+    volatile long firstTimestamp;
+    volatile long lastTimestamp;
+
+    /**
+     * Length of the complete records in bytes, uncompressed.
+     */
+    volatile long size;
+
+    /**
+     * Size of the segment file on disk.
+     */
+    volatile long diskSize;
+
+    ConsoleLogSegment(long firstSequence, Path path, boolean compressed, SparseIndex index) {
+        this.firstSequence = firstSequence;
+        this.path = path;
+        this.compressed = compressed;
+        this.index = index;
+        this.lastSequence = firstSequence - 1;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    static String fileName(long firstSequence) {
+        return String.format("%020d", firstSequence);
+    }
+
+    static Path indexPath(Path directory, long firstSequence) {
+        return directory.resolve(fileName(firstSequence) + INDEX_SUFFIX);
+    }
+
+    /**
+     * @return A copy of this segment pointing to the compressed file
+     */
+    ConsoleLogSegment toCompressed(Path compressedPath) throws IOException {
+        ConsoleLogSegment segment = new ConsoleLogSegment(firstSequence, compressedPath, true, index);
+        segment.lastSequence = lastSequence;
+        segment.firstTimestamp = firstTimestamp;
+        segment.lastTimestamp = lastTimestamp;
+        segment.diskSize = Files.size(compressedPath);
+        segment.size = size;
+        return segment;
+    }
+
+    /**
+     * Visits records starting from the given offset until the visitor returns false or the records run out.
+     * @return False if the visitor stopped the read
+     */
+    boolean read(long fromOffset, Predicate<ConsoleLogRecord> visitor) throws IOException {
+        return read(fromOffset, Long.MAX_VALUE, visitor);
+    }
+
+    /**
+     * Visits records between the given offsets until the visitor returns false or the records run out. Both offsets
+     * must be at the start of a record.
+     * @return False if the visitor stopped the read
+     */
+    boolean read(long fromOffset, long toOffset, Predicate<ConsoleLogRecord> visitor) throws IOException {
+        long end = Math.min(toOffset, size);
+        if (fromOffset >= end) return true;
+        return compressed
+                ? readCompressed(fromOffset, end, visitor)
+                : readMapped(fromOffset, end, visitor);
+    }
+
+    private boolean readMapped(long fromOffset, long end, Predicate<ConsoleLogRecord> visitor) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, end);
+        }
+        byte[] lineBuffer = new byte[256];
+        int position = (int) fromOffset;
+        int limit = (int) end;
+        while (position < limit) {
+            int length = 0;
+            byte b;
+            while (position < limit && (b = buffer.get(position++)) != '\n') {
+                if (length == lineBuffer.length) lineBuffer = Arrays.copyOf(lineBuffer, length * 2);
+                lineBuffer[length++] = b;
+            }
+            if (!visitor.test(parse(lineBuffer, length))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean readCompressed(long fromOffset, long end, Predicate<ConsoleLogRecord> visitor) throws IOException {
+        try (InputStream in = new BufferedInputStream(new GZIPInputStream(Files.newInputStream(path)), 64 * 1024)) {
+            in.skipNBytes(fromOffset);
+            byte[] lineBuffer = new byte[256];
+            long position = fromOffset;
+            while (position < end) {
+                int length = 0;
+                int b;
+                while ((b = in.read()) != -1 && b != '\n') {
+                    if (length == lineBuffer.length) lineBuffer = Arrays.copyOf(lineBuffer, length * 2);
+                    lineBuffer[length++] = (byte) b;
+                }
+                if (b == -1) {
+                    return true;
+                }
+                position += length + 1;
+                if (!visitor.test(parse(lineBuffer, length))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    static ConsoleLogRecord parse(byte[] bytes, int length) {
+        int i = 0;
+        long sequence = 0;
+        while (i < length && bytes[i] != '\t') {
+            sequence = sequence * 10 + (bytes[i++] - '0');
+        }
+        i++;
+        long timestamp = 0;
+        while (i < length && bytes[i] != '\t') {
+            timestamp = timestamp * 10 + (bytes[i++] - '0');
+        }
+        i++;
+        String line = i < length ? new String(bytes, i, length - i, StandardCharsets.UTF_8) : "";
+        return new ConsoleLogRecord(sequence, timestamp, line);
+    }
+
+    static byte[] format(long sequence, long timestamp, String line) {
+        return (sequence + "\t" + timestamp + "\t" + line + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Rebuilds the metadata and index of a segment by reading it. Only complete records are accounted for.
+     */
+    static ConsoleLogSegment recover(long firstSequence, Path path, boolean compressed, int indexInterval)
+            throws IOException {
+        ConsoleLogSegment segment = new ConsoleLogSegment(firstSequence, path, compressed, new SparseIndex());
+        try (InputStream in = new BufferedInputStream(compressed
+                ? new GZIPInputStream(Files.newInputStream(path))
+                : Files.newInputStream(path), 64 * 1024)) {
+            byte[] lineBuffer = new byte[256];
+            long offset = 0;
+            long lastIndexedOffset = -indexInterval;
+            while (true) {
+                int length = 0;
+                int b;
+                while ((b = in.read()) != -1 && b != '\n') {
+                    if (length == lineBuffer.length) lineBuffer = Arrays.copyOf(lineBuffer, length * 2);
+                    lineBuffer[length++] = (byte) b;
+                }
+                if (b == -1) {
+                    break; // Incomplete record, e.g. after a crash
+                }
+                ConsoleLogRecord record = parse(lineBuffer, length);
+                if (offset - lastIndexedOffset >= indexInterval) {
+                    segment.index.add(record.sequence(), record.timestamp(), offset);
+                    lastIndexedOffset = offset;
+                }
+                if (offset == 0) {
+                    segment.firstTimestamp = record.timestamp();
+                }
+                segment.lastSequence = record.sequence();
+                segment.lastTimestamp = record.timestamp();
+                offset += length + 1;
+            }
+            segment.size = offset;
+        }
+        segment.diskSize = Files.size(path);
+        return segment;
+    }
+
+    void writeIndex(Path indexPath) throws IOException {
+        Path tmp = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeLong(lastSequence);
+            out.writeLong(firstTimestamp);
+            out.writeLong(lastTimestamp);
+            out.writeLong(size);
+            index.writeTo(out);
+        }
+        Files.move(tmp, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static ConsoleLogSegment loadIndex(long firstSequence, Path path, boolean compressed, Path indexPath)
+            throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexPath)))) {
+            long lastSequence = in.readLong();
+            long firstTimestamp = in.readLong();
+            long lastTimestamp = in.readLong();
+            long size = in.readLong();
+            ConsoleLogSegment segment = new ConsoleLogSegment(
+                    firstSequence, path, compressed, SparseIndex.readFrom(in));
+            segment.lastSequence = lastSequence;
+            segment.firstTimestamp = firstTimestamp;
+            segment.lastTimestamp = lastTimestamp;
+            segment.size = size;
+            segment.diskSize = Files.size(path);
+            return segment;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ConsoleLogSegment(path=" + path + ", firstSequence=" + firstSequence
+                + ", lastSequence=" + lastSequence + ", size=" + size + ")";
+    }
+}
@@ -0,0 +1,106 @@
+package fi.jannetahkola.palikka.game.process.log;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Sparse index of a segment. Every entry maps the sequence number and timestamp of a record to its byte offset in the
+ * uncompressed segment, so that reads can start close to the requested record instead of scanning the whole segment.
+ * Entries are added in increasing sequence and offset order.
+ * <p>
+ * There must only be a single writer. Readers see a consistent prefix of the entries without locking because the
+ * arrays are only replaced by larger copies and the entry count is published last.
+ */
+class SparseIndex {
+    private volatile long[][] entries; // [sequences, timestamps, offsets]
+    private volatile int count;
+
+    SparseIndex() {
+        this(new long[3][64], 0);
+    }
+
+    private SparseIndex(long[][] entries, int count) {
+        this.entries = entries;
+        this.count = count;
+    }
+
+    void add(long sequence, long timestamp, long offset) {
+        long[][] current = entries;
+        int n = count;
+        if (n == current[0].length) {
+            int newLength = n * 2;
+            current = new long[][]{
+                    Arrays.copyOf(current[0], newLength),
+                    Arrays.copyOf(current[1], newLength),
+                    Arrays.copyOf(current[2], newLength)};
+        }
+        current[0][n] = sequence;
+        current[1][n] = timestamp;
+        current[2][n] = offset;
+        entries = current;
+        count = n + 1;
+    }
+
+    /**
+     * @return Offset of the last indexed record with a sequence number at most the given one and an offset below the
+     * limit, or 0 if there is none
+     */
+    long floorOffsetBySequence(long sequence, long offsetLimit) {
+        return floorOffset(0, sequence, offsetLimit);
+    }
+
+    /**
+     * @return Offset of the last indexed record with a timestamp before the given one and an offset below the limit,
+     * or 0 if there is none. Starting from a record strictly before the timestamp ensures no matching record is
+     * skipped when several records share a timestamp.
+     */
+    long floorOffsetByTimestamp(long timestamp, long offsetLimit) {
+        return floorOffset(1, timestamp - 1, offsetLimit);
+    }
+
+    private long floorOffset(int key, long value, long offsetLimit) {
+        int n = count;
+        long[][] current = entries;
+        int low = 0;
+        int high = n - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (current[key][mid] <= value && current[2][mid] < offsetLimit) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found < 0 ? 0 : current[2][found];
+    }
+
+    int size() {
+        return count;
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+        int n = count;
+        long[][] current = entries;
+        out.writeInt(n);
+        for (int i = 0; i < n; i++) {
+            out.writeLong(current[0][i]);
+            out.writeLong(current[1][i]);
+            out.writeLong(current[2][i]);
+        }
+    }
+
+    static SparseIndex readFrom(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        long[][] entries = new long[3][Math.max(n, 1)];
+        for (int i = 0; i < n; i++) {
+            entries[0][i] = in.readLong();
+            entries[1][i] = in.readLong();
+            entries[2][i] = in.readLong();
+        }
+        return new SparseIndex(entries, n);
+    }
+}
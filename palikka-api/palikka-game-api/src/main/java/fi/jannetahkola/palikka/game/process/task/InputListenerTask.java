@@ -1,22 +1,25 @@
 package fi.jannetahkola.palikka.game.process.task;
 
+import fi.jannetahkola.palikka.game.util.Utf8LineReader;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.InputStream;
-import java.util.Scanner;
 import java.util.function.Consumer;
 
+/**
+ * Reads the process output line by line. The output is decoded as UTF-8.
+ */
 @Slf4j
 public record InputListenerTask(@NonNull InputStream in, @NonNull Consumer<String> onInput) implements Runnable {
     @Override
     public void run() {
         log.info("Start");
-        Scanner scanner = new Scanner(in);
+        Utf8LineReader reader = new Utf8LineReader(in);
         try {
-            while (!Thread.currentThread().isInterrupted() && scanner.hasNextLine()) {
-                String line = scanner.nextLine();
-                onInput.accept(line);
+            CharSequence line;
+            while (!Thread.currentThread().isInterrupted() && (line = reader.readLine()) != null) {
+                onInput.accept(line.toString());
             }
         } catch (Exception e) {
             log.error("", e);
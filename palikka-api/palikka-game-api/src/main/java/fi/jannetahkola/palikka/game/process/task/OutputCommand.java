@@ -0,0 +1,12 @@
+package fi.jannetahkola.palikka.game.process.task;
+
+/**
+ * A command to write to the game process.
+ * @param command The command line, without a line terminator
+ * @param queuedNanos {@link System#nanoTime()} when the command was queued
+ */
+public record OutputCommand(String command, long queuedNanos) {
+    public static OutputCommand of(String command) {
+        return new OutputCommand(command, System.nanoTime());
+    }
+}
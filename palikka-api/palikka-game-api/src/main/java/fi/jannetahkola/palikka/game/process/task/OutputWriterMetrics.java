@@ -0,0 +1,60 @@
+package fi.jannetahkola.palikka.game.process.task;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics of writing commands to the game process. Updated by the single writer thread, read by any thread.
+ */
+public class OutputWriterMetrics {
+    private final AtomicLong commands = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong totalWriteNanos = new AtomicLong();
+    private volatile long maxWaitNanos;
+    private volatile long maxWriteNanos;
+    private volatile int maxBatchSize;
+
+    void recordWait(long waitNanos) {
+        commands.incrementAndGet();
+        totalWaitNanos.addAndGet(waitNanos);
+        if (waitNanos > maxWaitNanos) maxWaitNanos = waitNanos;
+    }
+
+    void recordWrite(int batchSize, long writeNanos) {
+        writes.incrementAndGet();
+        totalWriteNanos.addAndGet(writeNanos);
+        if (writeNanos > maxWriteNanos) maxWriteNanos = writeNanos;
+        if (batchSize > maxBatchSize) maxBatchSize = batchSize;
+    }
+
+    public Snapshot snapshot() {
+        long commandCount = commands.get();
+        long writeCount = writes.get();
+        return new Snapshot(
+                commandCount,
+                writeCount,
+                maxBatchSize,
+                Duration.ofNanos(commandCount == 0 ? 0 : totalWaitNanos.get() / commandCount),
+                Duration.ofNanos(maxWaitNanos),
+                Duration.ofNanos(writeCount == 0 ? 0 : totalWriteNanos.get() / writeCount),
+                Duration.ofNanos(maxWriteNanos));
+    }
+
+    /**
+     * @param commands Number of commands written
+     * @param writes Number of flushed writes. Commands queued at the same time are written together.
+     * @param averageWait Average time a command waited in the queue before being written
+     * @param averageWrite Average time to write and flush a batch of commands
+     */
+    public record Snapshot(long commands,
+                           long writes,
+                           int maxBatchSize,
+                           Duration averageWait,
+                           Duration maxWait,
+                           Duration averageWrite,
+                           Duration maxWrite) {
+        public static final Snapshot EMPTY =
+                new Snapshot(0, 0, 0, Duration.ZERO, Duration.ZERO, Duration.ZERO, Duration.ZERO);
+    }
+}
@@ -6,35 +6,63 @@ import lombok.extern.slf4j.Slf4j;
 import java.io.BufferedWriter;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.function.Consumer;
 
+/**
+ * Writes queued commands to the process. Commands queued while the previous write was in progress are written and
+ * flushed together, so that a burst of commands reaches the process in as few pipe writes as possible.
+ */
 @Slf4j
 public record OutputWriterTask(@NonNull OutputStream out,
-                              @NonNull BlockingQueue<String> outputQueue,
-                              Consumer<String> onOutput) implements Runnable {
+                               @NonNull BlockingQueue<OutputCommand> outputQueue,
+                               Consumer<String> onOutput,
+                               @NonNull OutputWriterMetrics metrics) implements Runnable {
+    /**
+     * Maximum number of commands written at once.
+     */
+    static final int MAX_BATCH_SIZE = 256;
+
+    /**
+     * Large enough for a typical burst to be written to the pipe at once.
+     */
+    static final int BUFFER_SIZE = 64 * 1024;
+
     @Override
     public void run() {
         log.info("Start");
-        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out));
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        List<OutputCommand> batch = new ArrayList<>();
         while (!Thread.currentThread().isInterrupted()) {
-            String output = null;
             try {
-                output = outputQueue.take();
-                log.debug("Writing output \"{}\"", output);
-                writer.write(output);
-                writer.newLine();
+                batch.add(outputQueue.take());
+                outputQueue.drainTo(batch, MAX_BATCH_SIZE - 1);
+                log.debug("Writing {} command(s)", batch.size());
+
+                long writeStart = System.nanoTime();
+                for (OutputCommand output : batch) {
+                    metrics.recordWait(writeStart - output.queuedNanos());
+                    writer.write(output.command());
+                    writer.newLine();
+                }
                 writer.flush();
+                metrics.recordWrite(batch.size(), System.nanoTime() - writeStart);
+
                 if (onOutput != null) {
                     // Do this last in case it throws - we still want to
                     // send the output
-                    onOutput.accept(output);
+                    batch.forEach(output -> onOutput.accept(output.command()));
                 }
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
                 break;
             } catch (Exception e) {
-                log.error("Error writing output \"{}\" into the stream: ", output, e);
+                log.error("Error writing {} command(s) into the stream: ", batch.size(), e);
+            } finally {
+                batch.clear();
             }
         }
         log.info("Stop");
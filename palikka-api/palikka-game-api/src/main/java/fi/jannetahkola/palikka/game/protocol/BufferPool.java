@@ -0,0 +1,65 @@
+package fi.jannetahkola.palikka.game.protocol;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of equally sized buffers, so that connections reuse buffers instead of allocating new ones for every
+ * request. A buffer is allocated when the pool is empty, and a released buffer is discarded when the pool is full.
+ */
+public class BufferPool {
+    private final ArrayBlockingQueue<ByteBuffer> buffers;
+    private final int bufferSize;
+    private final boolean direct;
+    private final AtomicLong allocated = new AtomicLong();
+
+    /**
+     * @param bufferSize Capacity of each buffer
+     * @param maxPooled Maximum number of idle buffers kept in the pool
+     * @param direct Whether to allocate direct buffers. Direct buffers avoid a copy when used with channels, heap
+     *               buffers when used with streams.
+     */
+    public BufferPool(int bufferSize, int maxPooled, boolean direct) {
+        if (bufferSize < 1) throw new IllegalArgumentException("Buffer size must be positive");
+        if (maxPooled < 1) throw new IllegalArgumentException("Max pooled must be positive");
+        this.buffers = new ArrayBlockingQueue<>(maxPooled);
+        this.bufferSize = bufferSize;
+        this.direct = direct;
+    }
+
+    /**
+     * @return Empty big-endian buffer. Should be released once no longer used.
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = buffers.poll();
+        if (buffer == null) {
+            allocated.incrementAndGet();
+            buffer = direct ? ByteBuffer.allocateDirect(bufferSize) : ByteBuffer.allocate(bufferSize);
+        }
+        return buffer.clear().order(ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Returns the buffer to the pool. The buffer must not be used after releasing it.
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer.capacity() != bufferSize || buffer.isDirect() != direct) {
+            throw new IllegalArgumentException("Buffer was not acquired from this pool");
+        }
+        buffers.offer(buffer);
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * @return Number of buffers allocated so far. Stays constant once the pool has warmed up, unless more buffers are
+     * in use at the same time than the pool keeps.
+     */
+    public long getAllocatedCount() {
+        return allocated.get();
+    }
+}
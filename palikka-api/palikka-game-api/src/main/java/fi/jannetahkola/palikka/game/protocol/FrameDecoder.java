@@ -0,0 +1,83 @@
+package fi.jannetahkola.palikka.game.protocol;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Splits bytes read from a channel into length prefixed frames, each containing one packet. Reads may return any
+ * number of bytes, so a frame is only returned once it has been read completely, which makes this suitable for
+ * non-blocking channels where a read returns whatever happens to be available.
+ * <p>
+ * Frames are read into the given buffer, which must fit the largest expected frame. Each frame is returned as a view
+ * over the buffer that is only valid until the next read. Not thread safe.
+ */
+public class FrameDecoder {
+    private final ByteBuffer buffer;
+    private final ByteBuffer frame;
+
+    /**
+     * @param buffer Buffer to read frames into, e.g. one acquired from a {@link BufferPool}. Its content is discarded.
+     */
+    public FrameDecoder(ByteBuffer buffer) {
+        this.buffer = buffer.clear().flip(); // Empty and ready to be read
+        this.frame = buffer.duplicate();
+    }
+
+    /**
+     * Reads whatever the channel has available. A non-blocking channel may read nothing.
+     * @return Number of bytes read, or -1 if the channel has reached end of stream
+     */
+    public int readFrom(ReadableByteChannel channel) throws IOException {
+        buffer.compact();
+        try {
+            return channel.read(buffer);
+        } finally {
+            buffer.flip();
+        }
+    }
+
+    /**
+     * Returns the next complete frame from the bytes read so far. Should be called until it returns null before
+     * reading more, as the buffer can't take more bytes while it's full of complete frames.
+     * @return View of the packet in the next frame, positioned at the packet id. Null if the frame hasn't been read
+     * completely yet.
+     * @throws ProtocolException If the frame length is invalid or the frame doesn't fit in the buffer
+     */
+    public ByteBuffer nextFrame() throws ProtocolException {
+        int position = buffer.position();
+        int limit = buffer.limit();
+        int length = 0;
+        int headerSize = 0;
+        byte read;
+        do {
+            if (headerSize == ProtocolCodec.MAX_FRAME_HEADER_SIZE) {
+                throw new ProtocolException("Frame length is too big");
+            }
+            if (position + headerSize >= limit) {
+                return null;
+            }
+            read = buffer.get(position + headerSize);
+            length |= (read & 0x7F) << (7 * headerSize);
+            headerSize++;
+        } while (read < 0);
+
+        if (headerSize + length > buffer.capacity()) {
+            throw new ProtocolException("Frame of " + length + " bytes doesn't fit in buffer of " + buffer.capacity() + " bytes");
+        }
+        int start = position + headerSize;
+        if (start + length > limit) {
+            return null;
+        }
+        frame.limit(start + length).position(start);
+        buffer.position(start + length);
+        return frame;
+    }
+
+    /**
+     * @return True if bytes of an incomplete frame have been read
+     */
+    public boolean hasPartialFrame() {
+        return buffer.hasRemaining();
+    }
+}
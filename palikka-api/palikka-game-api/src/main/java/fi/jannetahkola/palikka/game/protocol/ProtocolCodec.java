@@ -0,0 +1,235 @@
+package fi.jannetahkola.palikka.game.protocol;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes and decodes the data types of the <a href="https://wiki.vg/Protocol#Data_types">Minecraft protocol</a>
+ * directly in a {@link ByteBuffer}, without intermediate streams or arrays. Buffers must use the default big-endian
+ * byte order.
+ * <p>
+ * Writing fails with {@link BufferOverflowException} if the buffer doesn't have room for the value. Reading
+ * fails with {@link ProtocolException} if the buffer doesn't contain a valid value, which is the case when a packet
+ * is truncated. Use a {@link FrameDecoder} to wait for complete packets when reading from a channel.
+ */
+public final class ProtocolCodec {
+    public static final int MAX_VAR_INT_SIZE = 5;
+    public static final int MAX_VAR_LONG_SIZE = 10;
+
+    /**
+     * Packets are at most 2097151 bytes long, so the length prefix of a frame is at most 3 bytes.
+     */
+    public static final int MAX_FRAME_LENGTH = (1 << 21) - 1;
+    static final int MAX_FRAME_HEADER_SIZE = 3;
+
+    private ProtocolCodec() {
+        // util
+    }
+
+    /**
+     * @return Number of bytes needed to encode the value as a VarInt
+     */
+    public static int varIntSize(int value) {
+        // 7 bits per byte, and zero still takes one byte
+        return (31 - Integer.numberOfLeadingZeros(value | 1)) / 7 + 1;
+    }
+
+    /**
+     * @return Number of bytes needed to encode the value as a VarLong
+     */
+    public static int varLongSize(long value) {
+        return (63 - Long.numberOfLeadingZeros(value | 1)) / 7 + 1;
+    }
+
+    public static void writeVarInt(ByteBuffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    /**
+     * @throws ProtocolException If the VarInt is incomplete or longer than 5 bytes. The bytes read so far have been
+     * consumed.
+     */
+    public static int readVarInt(ByteBuffer in) throws ProtocolException {
+        int result = 0;
+        for (int shift = 0; shift < 7 * MAX_VAR_INT_SIZE; shift += 7) {
+            if (!in.hasRemaining()) {
+                throw new ProtocolException("VarInt is incomplete");
+            }
+            byte read = in.get();
+            result |= (read & 0x7F) << shift;
+            if (read >= 0) {
+                return result;
+            }
+        }
+        throw new ProtocolException("VarInt is too big");
+    }
+
+    public static void writeVarLong(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    /**
+     * @throws ProtocolException If the VarLong is incomplete or longer than 10 bytes. The bytes read so far have been
+     * consumed.
+     */
+    public static long readVarLong(ByteBuffer in) throws ProtocolException {
+        long result = 0;
+        for (int shift = 0; shift < 7 * MAX_VAR_LONG_SIZE; shift += 7) {
+            if (!in.hasRemaining()) {
+                throw new ProtocolException("VarLong is incomplete");
+            }
+            byte read = in.get();
+            result |= (long) (read & 0x7F) << shift;
+            if (read >= 0) {
+                return result;
+            }
+        }
+        throw new ProtocolException("VarLong is too big");
+    }
+
+    public static void writeUnsignedShort(ByteBuffer out, int value) {
+        out.putShort((short) value);
+    }
+
+    public static int readUnsignedShort(ByteBuffer in) throws ProtocolException {
+        if (in.remaining() < Short.BYTES) {
+            throw new ProtocolException("Unsigned short is incomplete");
+        }
+        return Short.toUnsignedInt(in.getShort());
+    }
+
+    /**
+     * Writes the value as a VarInt byte length followed by its UTF-8 bytes. Unpaired surrogates are written as
+     * <code>?</code> like {@link String#getBytes} does.
+     */
+    public static void writeString(ByteBuffer out, CharSequence value) {
+        writeVarInt(out, utf8Length(value));
+        writeUtf8(out, value);
+    }
+
+    /**
+     * Writes the UTF-8 bytes of the value without a length prefix, encoded like {@link #writeString}.
+     */
+    public static void writeUtf8(ByteBuffer out, CharSequence value) {
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                out.put((byte) c);
+            } else if (c < 0x800) {
+                out.put((byte) (0xC0 | (c >> 6)));
+                out.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    out.put((byte) (0xF0 | (codePoint >> 18)));
+                    out.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                    out.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                    out.put((byte) (0x80 | (codePoint & 0x3F)));
+                } else {
+                    out.put((byte) '?');
+                }
+            } else {
+                out.put((byte) (0xE0 | (c >> 12)));
+                out.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                out.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    /**
+     * @param maxLength Maximum accepted length of the string in bytes
+     * @throws ProtocolException If the string is incomplete or longer than the maximum length
+     */
+    public static String readString(ByteBuffer in, int maxLength) throws ProtocolException {
+        int length = readVarInt(in);
+        if (length < 0 || length > maxLength) {
+            throw new ProtocolException("String length " + length + " is not between 0 and " + maxLength);
+        }
+        if (length > in.remaining()) {
+            throw new ProtocolException("String is incomplete");
+        }
+        String value;
+        if (in.hasArray()) {
+            value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+
+    /**
+     * @return Number of bytes in the UTF-8 encoding of the value, as written by {@link #writeString}
+     */
+    public static int utf8Length(CharSequence value) {
+        int length = value.length();
+        int bytes = length;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x800) {
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    bytes += 2; // 4 bytes for 2 chars
+                    i++;
+                } else if (!Character.isSurrogate(c)) {
+                    bytes += 2;
+                }
+            } else if (c >= 0x80) {
+                bytes++;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Starts a frame by reserving room for its length prefix. The packet is then written after it, and the frame is
+     * completed with {@link #endFrame}.
+     * @return Start of the frame, to be passed to {@link #endFrame}
+     */
+    public static int beginFrame(ByteBuffer out) {
+        int start = out.position();
+        if (out.remaining() < MAX_FRAME_HEADER_SIZE) {
+            throw new BufferOverflowException();
+        }
+        out.position(start + MAX_FRAME_HEADER_SIZE);
+        return start;
+    }
+
+    /**
+     * Completes the frame started at the given position by writing the length of the packet written since, moving
+     * the packet next to the length prefix if the prefix needs less than the reserved room.
+     */
+    public static void endFrame(ByteBuffer out, int start) {
+        int packetStart = start + MAX_FRAME_HEADER_SIZE;
+        int length = out.position() - packetStart;
+        if (length > MAX_FRAME_LENGTH) {
+            throw new IllegalStateException("Packet of " + length + " bytes is too big");
+        }
+        int headerSize = varIntSize(length);
+        if (headerSize < MAX_FRAME_HEADER_SIZE) {
+            int target = start + headerSize;
+            if (out.hasArray()) {
+                System.arraycopy(out.array(), out.arrayOffset() + packetStart, out.array(), out.arrayOffset() + target, length);
+            } else {
+                // Moved towards the start, so copying in order never overwrites bytes not yet moved
+                for (int i = 0; i < length; i++) {
+                    out.put(target + i, out.get(packetStart + i));
+                }
+            }
+        }
+        out.position(start);
+        writeVarInt(out, length);
+        out.position(start + headerSize + length);
+    }
+}
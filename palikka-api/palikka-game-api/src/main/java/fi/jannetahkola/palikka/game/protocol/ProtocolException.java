@@ -0,0 +1,12 @@
+package fi.jannetahkola.palikka.game.protocol;
+
+import java.io.IOException;
+
+/**
+ * Thrown when received data doesn't follow the protocol, e.g. a VarInt is too long or a packet is truncated.
+ */
+public class ProtocolException extends IOException {
+    public ProtocolException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,91 @@
+package fi.jannetahkola.palikka.game.protocol;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Packets of the <a href="https://wiki.vg/RCON">RCON protocol</a>. Unlike the game protocol, RCON packets are
+ * prefixed with a little-endian int length, followed by the request id, the packet type and a null terminated body.
+ * Buffers must use {@link ByteOrder#LITTLE_ENDIAN} byte order.
+ */
+public final class RconProtocol {
+    // Request id and type before the body, and the body terminator and an empty string after it
+    private static final int MIN_PACKET_LENGTH = Integer.BYTES * 2 + 2;
+
+    public static final int TYPE_RESPONSE = 0;
+    public static final int TYPE_COMMAND = 2;
+    public static final int TYPE_AUTH_RESPONSE = 2;
+    public static final int TYPE_AUTH = 3;
+
+    /**
+     * Request id of the auth response when the password is wrong.
+     */
+    public static final int AUTH_FAILED_REQUEST_ID = -1;
+
+    /**
+     * Longest request body the vanilla server accepts, as it reads each request into a buffer of 1460 bytes.
+     */
+    public static final int MAX_REQUEST_BODY_LENGTH = 1460 - Integer.BYTES - MIN_PACKET_LENGTH;
+
+    /**
+     * The vanilla server splits longer responses into several packets with this many body bytes, and a last packet
+     * with the rest.
+     */
+    public static final int MAX_RESPONSE_BODY_LENGTH = 4096;
+
+    /**
+     * Fits the largest packet accepted from the server, with room for servers that split responses differently.
+     */
+    public static final int MAX_PACKET_SIZE = 8192;
+
+    private RconProtocol() {
+        // util
+    }
+
+    /**
+     * @throws java.nio.BufferOverflowException If the buffer doesn't have room for the packet
+     */
+    public static void writePacket(ByteBuffer out, int requestId, int type, CharSequence body) {
+        int start = out.position();
+        out.position(start + Integer.BYTES); // Length is written once known
+        out.putInt(requestId);
+        out.putInt(type);
+        ProtocolCodec.writeUtf8(out, body);
+        out.put((byte) 0);
+        out.put((byte) 0);
+        out.putInt(start, out.position() - start - Integer.BYTES);
+    }
+
+    /**
+     * Reads the next packet if it has been read completely.
+     * @param in Buffer with the bytes read so far, in read mode
+     * @return The packet, or null without consuming anything if the packet is incomplete
+     * @throws ProtocolException If the packet length is invalid
+     */
+    public static Packet readPacket(ByteBuffer in) throws ProtocolException {
+        if (in.remaining() < Integer.BYTES) {
+            return null;
+        }
+        int length = in.getInt(in.position());
+        if (length < MIN_PACKET_LENGTH || length > MAX_PACKET_SIZE - Integer.BYTES) {
+            throw new ProtocolException("Invalid RCON packet length " + length);
+        }
+        if (in.remaining() < Integer.BYTES + length) {
+            return null;
+        }
+        in.position(in.position() + Integer.BYTES);
+        int requestId = in.getInt();
+        int type = in.getInt();
+        byte[] body = new byte[length - MIN_PACKET_LENGTH];
+        in.get(body);
+        in.position(in.position() + 2); // Terminators
+        return new Packet(requestId, type, body);
+    }
+
+    public record Packet(int requestId, int type, byte[] body) {
+        public String bodyAsString() {
+            return new String(body, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package fi.jannetahkola.palikka.game.protocol;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Probes the status of any number of servers at the same time on a single thread. Each probe is a non-blocking
+ * connection registered with the same selector, so the number of threads stays the same regardless of the number of
+ * servers, and a server that doesn't respond only holds its own connection until it times out.
+ * <p>
+ * At most the given number of connections are open at the same time, the rest of the probes wait for their turn. The
+ * timeout of a probe starts when its connection is opened.
+ */
+@Slf4j
+public class StatusProber implements Closeable {
+    private final Selector selector;
+    private final int maxConnections;
+    private final BufferPool bufferPool;
+    private final Queue<Probe> submitted = new ConcurrentLinkedQueue<>();
+    private volatile boolean closed;
+
+    // Only accessed on the prober thread
+    private final Queue<Probe> waiting = new ArrayDeque<>();
+    private final PriorityQueue<Probe> deadlines = new PriorityQueue<>(Comparator.comparingLong(probe -> probe.deadline));
+    private int connections;
+
+    /**
+     * @param maxConnections Maximum number of connections open at the same time
+     * @param threadName Name of the prober thread
+     */
+    public StatusProber(int maxConnections, String threadName) throws IOException {
+        if (maxConnections < 1) throw new IllegalArgumentException("Max connections must be positive");
+        this.selector = Selector.open();
+        this.maxConnections = maxConnections;
+        // Direct buffers as they are only used with channels. At most one per open connection.
+        this.bufferPool = new BufferPool(StatusProtocol.MAX_RESPONSE_FRAME_SIZE, maxConnections, true);
+        Thread thread = new Thread(this::run, threadName);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @param address Resolved address to connect to
+     * @param host Host name sent to the server in the handshake
+     * @param port Port sent to the server in the handshake
+     * @param timeout Time the server has to respond once connecting has started
+     * @return JSON status response. Fails with {@link SocketTimeoutException} if the server doesn't respond in time,
+     * and with another {@link IOException} if it can't be reached or responds unexpectedly. Completed on the prober
+     * thread, so dependent stages must not block.
+     */
+    public CompletableFuture<byte[]> probe(InetSocketAddress address, String host, int port, Duration timeout) {
+        Probe probe = new Probe(address, host, port, timeout.toNanos());
+        submitted.add(probe);
+        selector.wakeup();
+        if (closed) {
+            // The prober thread may have stopped before seeing the probe
+            probe.future.completeExceptionally(new IOException("Status prober closed"));
+        }
+        return probe.future;
+    }
+
+    /**
+     * @return Number of buffers allocated so far, at most the max connections
+     */
+    public long getAllocatedBufferCount() {
+        return bufferPool.getAllocatedCount();
+    }
+
+    /**
+     * Fails the probes that haven't completed yet and stops the prober thread.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        selector.wakeup();
+    }
+
+    private void run() {
+        try {
+            while (!closed) {
+                expireProbes(); // First, as expired probes make room for waiting ones
+                startProbes();
+                selector.select(this::handle, millisUntilNextDeadline());
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("Status prober failed", e);
+        } finally {
+            closed = true;
+            IOException cause = new IOException("Status prober closed");
+            Probe probe;
+            while ((probe = deadlines.poll()) != null) finish(probe, null, cause);
+            while ((probe = waiting.poll()) != null) probe.future.completeExceptionally(cause);
+            while ((probe = submitted.poll()) != null) probe.future.completeExceptionally(cause);
+            try {
+                selector.close();
+            } catch (IOException e) {
+                log.debug("Failed to close selector", e);
+            }
+        }
+    }
+
+    private void startProbes() {
+        Probe probe;
+        while ((probe = submitted.poll()) != null) {
+            waiting.add(probe);
+        }
+        while (connections < maxConnections && (probe = waiting.poll()) != null) {
+            start(probe);
+        }
+    }
+
+    /**
+     * Fails the probes past their deadline.
+     */
+    private void expireProbes() {
+        long now = System.nanoTime();
+        Probe probe;
+        // Finished probes are removed once they reach the head instead of searching the queue
+        while ((probe = deadlines.peek()) != null && (probe.finished || probe.deadline - now <= 0)) {
+            deadlines.poll();
+            finish(probe, null, new SocketTimeoutException(
+                    "No status in " + TimeUnit.NANOSECONDS.toMillis(probe.timeoutNanos) + "ms"));
+        }
+    }
+
+    /**
+     * @return Milliseconds until the next deadline, or 0 if there are no open connections
+     */
+    private long millisUntilNextDeadline() {
+        Probe probe;
+        while ((probe = deadlines.peek()) != null && probe.finished) {
+            deadlines.poll();
+        }
+        if (probe == null) return 0;
+        // Rounded up so that the probe has expired when the select returns
+        return Math.max(1, TimeUnit.NANOSECONDS.toMillis(probe.deadline - System.nanoTime() + 999_999));
+    }
+
+    private void start(Probe probe) {
+        connections++;
+        probe.deadline = System.nanoTime() + probe.timeoutNanos;
+        deadlines.add(probe);
+        try {
+            probe.channel = SocketChannel.open();
+            probe.channel.configureBlocking(false);
+            probe.channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            probe.buffer = bufferPool.acquire();
+            StatusProtocol.writeStatusRequest(probe.buffer, probe.host, probe.port);
+            probe.buffer.flip();
+            // May connect right away on loopback, the request is written once the channel is selected as writable
+            int ops = probe.channel.connect(probe.address) ? SelectionKey.OP_WRITE : SelectionKey.OP_CONNECT;
+            probe.channel.register(selector, ops, probe);
+        } catch (IOException e) {
+            finish(probe, null, e);
+        } catch (RuntimeException e) {
+            // E.g. an unresolved address, which shouldn't stop the prober thread
+            finish(probe, null, new IOException("Failed to start status probe", e));
+        }
+    }
+
+    private void handle(SelectionKey key) {
+        Probe probe = (Probe) key.attachment();
+        try {
+            if (key.isConnectable()) {
+                if (probe.channel.finishConnect()) {
+                    key.interestOps(SelectionKey.OP_WRITE);
+                }
+            } else if (key.isWritable()) {
+                probe.channel.write(probe.buffer);
+                if (!probe.buffer.hasRemaining()) {
+                    probe.decoder = new FrameDecoder(probe.buffer); // Request sent, the buffer is reused for reading
+                    key.interestOps(SelectionKey.OP_READ);
+                }
+            } else if (key.isReadable()) {
+                read(probe);
+            }
+        } catch (IOException e) {
+            finish(probe, null, e);
+        }
+    }
+
+    private void read(Probe probe) throws IOException {
+        int read = probe.decoder.readFrom(probe.channel);
+        ByteBuffer frame = probe.decoder.nextFrame();
+        if (frame != null) {
+            byte[] status = new byte[StatusProtocol.readStatusResponse(frame)];
+            frame.get(status);
+            finish(probe, status, null);
+        } else if (read < 0) {
+            throw new EOFException("Connection closed before the status was received");
+        }
+    }
+
+    private void finish(Probe probe, byte[] status, IOException e) {
+        if (probe.finished) return;
+        probe.finished = true;
+        connections--;
+        if (probe.channel != null) {
+            try {
+                probe.channel.close(); // Also cancels the key
+            } catch (IOException closeException) {
+                log.debug("Failed to close status probe connection", closeException);
+            }
+        }
+        if (probe.buffer != null) {
+            bufferPool.release(probe.buffer);
+        }
+        if (e == null) {
+            probe.future.complete(status);
+        } else {
+            probe.future.completeExceptionally(e);
+        }
+    }
+
+    private static class Probe {
+        private final InetSocketAddress address;
+        private final String host;
+        private final int port;
+        private final long timeoutNanos;
+        private final CompletableFuture<byte[]> future = new CompletableFuture<>();
+
+        private long deadline;
+        private boolean finished;
+        private SocketChannel channel;
+        private ByteBuffer buffer;
+        private FrameDecoder decoder;
+
+        Probe(InetSocketAddress address, String host, int port, long timeoutNanos) {
+            this.address = address;
+            this.host = host;
+            this.port = port;
+            this.timeoutNanos = timeoutNanos;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package fi.jannetahkola.palikka.game.protocol;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Packets of the <a href="https://wiki.vg/Server_List_Ping">Server List Ping</a>, which clients use to query the
+ * status shown in the server list.
+ */
+public final class StatusProtocol {
+    public static final int HANDSHAKE_PACKET_ID = 0;
+    public static final int STATUS_REQUEST_PACKET_ID = 0;
+    public static final int STATUS_RESPONSE_PACKET_ID = 0;
+    public static final int PROTOCOL_VERSION = 754;
+    public static final int NEXT_STATE_STATUS = 1;
+
+    /**
+     * The response is a string of at most 32767 chars, so up to 3 bytes each.
+     */
+    public static final int MAX_RESPONSE_LENGTH = 32767 * 3;
+
+    /**
+     * Fits the longest possible status response frame.
+     */
+    public static final int MAX_RESPONSE_FRAME_SIZE = MAX_RESPONSE_LENGTH
+            + ProtocolCodec.MAX_VAR_INT_SIZE * 2
+            + ProtocolCodec.MAX_FRAME_HEADER_SIZE;
+
+    private StatusProtocol() {
+        // util
+    }
+
+    /**
+     * Writes the handshake followed by the status request, each in its own frame.
+     * @param host Host name the client used to connect
+     * @param port Port the client used to connect
+     */
+    public static void writeStatusRequest(ByteBuffer out, CharSequence host, int port) {
+        int start = ProtocolCodec.beginFrame(out);
+        ProtocolCodec.writeVarInt(out, HANDSHAKE_PACKET_ID);
+        ProtocolCodec.writeVarInt(out, PROTOCOL_VERSION);
+        ProtocolCodec.writeString(out, host);
+        ProtocolCodec.writeUnsignedShort(out, port);
+        ProtocolCodec.writeVarInt(out, NEXT_STATE_STATUS);
+        ProtocolCodec.endFrame(out, start);
+
+        start = ProtocolCodec.beginFrame(out);
+        ProtocolCodec.writeVarInt(out, STATUS_REQUEST_PACKET_ID);
+        ProtocolCodec.endFrame(out, start);
+    }
+
+    /**
+     * Reads the header of a status response, leaving the frame positioned at the start of the JSON response so that
+     * it can be parsed without copying.
+     * @param frame Frame returned by {@link FrameDecoder#nextFrame()}
+     * @return Length of the JSON response in bytes
+     * @throws ProtocolException If the frame isn't a status response
+     */
+    public static int readStatusResponse(ByteBuffer frame) throws ProtocolException {
+        int packetId = ProtocolCodec.readVarInt(frame);
+        if (packetId != STATUS_RESPONSE_PACKET_ID) {
+            throw new ProtocolException("Response packet id did not match; expected "
+                    + STATUS_RESPONSE_PACKET_ID + ", but was " + packetId);
+        }
+        int length = ProtocolCodec.readVarInt(frame);
+        if (length < 0 || length > frame.remaining()) {
+            throw new ProtocolException("Response length " + length + " does not match the packet");
+        }
+        return length;
+    }
+}
@@ -0,0 +1,228 @@
+package fi.jannetahkola.palikka.game.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fi.jannetahkola.palikka.game.api.status.model.FleetStatusResponse;
+import fi.jannetahkola.palikka.game.api.status.model.GameStatusResponse;
+import fi.jannetahkola.palikka.game.config.properties.GameProperties;
+import fi.jannetahkola.palikka.game.protocol.StatusProber;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32C;
+
+/**
+ * Keeps the latest status of the game servers configured as fleet targets. Like {@link GameStatusService}, the status
+ * is probed in the background at a fixed interval and probes are single flight.
+ * <p>
+ * All servers are probed at the same time by a {@link StatusProber}, so a probe takes about as long as the slowest
+ * server, at most the timeout, and uses the same two threads whether there are two servers or hundreds.
+ */
+@Slf4j
+@Service
+public class FleetStatusService {
+    private final GameProperties.FleetProperties fleetProperties;
+    private final ObjectMapper objectMapper;
+    private final Clock clock;
+    private final List<Target> targets;
+    private final ScheduledExecutorService executor;
+    private final AtomicReference<CompletableFuture<Snapshot>> inFlightProbe = new AtomicReference<>();
+
+    private StatusProber prober;
+    private volatile Snapshot snapshot;
+
+    public FleetStatusService(GameProperties gameProperties, ObjectMapper objectMapper) {
+        this(gameProperties, objectMapper, Clock.systemUTC());
+    }
+
+    FleetStatusService(GameProperties gameProperties, ObjectMapper objectMapper, Clock clock) {
+        this.fleetProperties = gameProperties.getFleet();
+        this.objectMapper = objectMapper;
+        this.clock = clock;
+        this.targets = fleetProperties.getTargets().stream()
+                .map(target -> new Target(target.getHost(), target.getPort()))
+                .toList();
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "fleet-status-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    void postConstruct() throws IOException {
+        if (targets.isEmpty()) {
+            snapshot = toSnapshot(null, toFleetStatus(List.of()));
+            return;
+        }
+        prober = new StatusProber(fleetProperties.getMaxConcurrentProbes(), "fleet-status-prober");
+        long intervalMillis = fleetProperties.getPollInterval().toMillis();
+        // Runs the probe on the poller thread directly, it would never start if queued behind the poll itself
+        executor.scheduleWithFixedDelay(() -> refresh(Runnable::run), 0, intervalMillis, TimeUnit.MILLISECONDS);
+        log.info("Polling status of {} fleet servers every {}", targets.size(), fleetProperties.getPollInterval());
+    }
+
+    @PreDestroy
+    void preDestroy() {
+        executor.shutdownNow();
+        if (prober != null) prober.close();
+    }
+
+    /**
+     * @return The latest status. Waits for the first probe if none has completed yet.
+     */
+    public Snapshot getSnapshot() {
+        return getSnapshotAsync().join();
+    }
+
+    /**
+     * @return The latest status, or the first probe if none has completed yet, so that callers that shouldn't block
+     * can wait for it without a thread
+     */
+    public CompletableFuture<Snapshot> getSnapshotAsync() {
+        Snapshot current = snapshot;
+        return current != null ? CompletableFuture.completedFuture(current) : refresh();
+    }
+
+    /**
+     * Probes all servers, or joins the probe already running.
+     * @return The status after the probe. Servers that can't be reached, respond unexpectedly or don't respond in
+     * time are reported offline.
+     */
+    public CompletableFuture<Snapshot> refresh() {
+        if (prober == null) return CompletableFuture.completedFuture(snapshot);
+        return refresh(executor);
+    }
+
+    private CompletableFuture<Snapshot> refresh(Executor probeExecutor) {
+        CompletableFuture<Snapshot> probe = new CompletableFuture<>();
+        CompletableFuture<Snapshot> running = inFlightProbe.compareAndExchange(null, probe);
+        if (running != null) return running;
+
+        probeExecutor.execute(() -> {
+            try {
+                Snapshot result = toSnapshot(snapshot, probe());
+                snapshot = result;
+                // Completed last so that a caller refreshing again after this starts a new probe
+                inFlightProbe.compareAndSet(probe, null);
+                probe.complete(result);
+            } catch (RuntimeException e) {
+                log.error("Failed to probe fleet status", e);
+                inFlightProbe.compareAndSet(probe, null);
+                probe.completeExceptionally(e);
+            }
+        });
+        return probe;
+    }
+
+    FleetStatusResponse probe() {
+        log.debug("Probing status of {} fleet servers", targets.size());
+        long start = System.nanoTime();
+
+        List<CompletableFuture<byte[]>> responses = new ArrayList<>(targets.size());
+        for (Target target : targets) {
+            responses.add(probe(target));
+        }
+        // Parsed here instead of on the prober thread, which should only wait for the servers
+        List<GameStatusResponse> servers = new ArrayList<>(targets.size());
+        for (int i = 0; i < targets.size(); i++) {
+            servers.add(toGameStatus(targets.get(i), responses.get(i)));
+        }
+
+        FleetStatusResponse fleetStatus = toFleetStatus(servers);
+        log.debug("Probed status of {} fleet servers in {}ms, {} online", fleetStatus.getTotal(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), fleetStatus.getOnline());
+        return fleetStatus;
+    }
+
+    private CompletableFuture<byte[]> probe(Target target) {
+        InetSocketAddress address = target.address;
+        if (address == null) {
+            // Resolved once as it may be slow, and again after a failed probe in case the address has changed
+            address = new InetSocketAddress(target.host, target.port);
+            if (address.isUnresolved()) {
+                return CompletableFuture.failedFuture(new IOException("Failed to resolve " + target.host));
+            }
+            target.address = address;
+        }
+        return prober.probe(address, target.host, target.port, fleetProperties.getTimeout());
+    }
+
+    private GameStatusResponse toGameStatus(Target target, CompletableFuture<byte[]> response) {
+        GameStatusResponse status;
+        try {
+            status = objectMapper.readValue(response.join(), GameStatusResponse.class);
+        } catch (CompletionException | IOException e) {
+            // It's not uncommon for this to fail because a server is down
+            log.debug("Failed to get status of fleet server {}:{}", target.host, target.port, e);
+            target.address = null;
+            status = new GameStatusResponse();
+            status.setOnline(false);
+        }
+        status.setHost(target.host);
+        status.setPort(target.port);
+        return status;
+    }
+
+    private static FleetStatusResponse toFleetStatus(List<GameStatusResponse> servers) {
+        FleetStatusResponse fleetStatus = new FleetStatusResponse();
+        fleetStatus.setTotal(servers.size());
+        fleetStatus.setOnline((int) servers.stream().filter(GameStatusResponse::isOnline).count());
+        fleetStatus.setServers(servers);
+        return fleetStatus;
+    }
+
+    private Snapshot toSnapshot(Snapshot previous, FleetStatusResponse status) {
+        String etag;
+        try {
+            CRC32C checksum = new CRC32C();
+            checksum.update(objectMapper.writeValueAsBytes(status));
+            etag = HexFormat.of().toHexDigits(checksum.getValue(), 8);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize fleet status", e);
+        }
+        if (previous != null && previous.etag().equals(etag)) {
+            return new Snapshot(previous.status(), etag, clock.instant());
+        }
+        return new Snapshot(status, etag, clock.instant());
+    }
+
+    private static class Target {
+        private final String host;
+        private final int port;
+        private InetSocketAddress address; // Only accessed on the poller thread
+
+        Target(String host, int port) {
+            this.host = host;
+            this.port = port;
+        }
+    }
+
+    /**
+     * @param etag Checksum of the status content. Stays the same as long as the status doesn't change.
+     * @param probedAt Time of the probe that produced the status
+     */
+    public record Snapshot(FleetStatusResponse status, String etag, Instant probedAt) {
+        public Duration age(Clock clock) {
+            Duration age = Duration.between(probedAt, clock.instant());
+            return age.isNegative() ? Duration.ZERO : age;
+        }
+    }
+}
@@ -1,42 +1,130 @@
 package fi.jannetahkola.palikka.game.service;
 
 import fi.jannetahkola.palikka.game.config.properties.GameProperties;
+import fi.jannetahkola.palikka.game.process.ConsoleEvent;
+import fi.jannetahkola.palikka.game.process.ConsoleEventExtractor;
+import fi.jannetahkola.palikka.game.process.ConsoleEventPattern;
 import fi.jannetahkola.palikka.game.process.GameProcess;
+import fi.jannetahkola.palikka.game.process.RepeatedLineCollapser;
+import fi.jannetahkola.palikka.game.process.log.ConsoleLog;
+import fi.jannetahkola.palikka.game.process.log.ConsoleLogRecord;
+import fi.jannetahkola.palikka.game.process.task.OutputCommand;
+import fi.jannetahkola.palikka.game.process.task.OutputWriterMetrics;
 import fi.jannetahkola.palikka.game.service.factory.ProcessFactory;
 import fi.jannetahkola.palikka.game.service.validator.PathValidator;
-import fi.jannetahkola.palikka.game.util.SynchronizedLimitedQueue;
-import lombok.RequiredArgsConstructor;
+import fi.jannetahkola.palikka.game.util.DispatchQueue;
+import fi.jannetahkola.palikka.game.util.ConsoleHistory;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
 import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class GameProcessService {
     private static final GameProcessLogger GAME_PROCESS_LOGGER = new GameProcessLogger();
+    private static final int EVENT_QUEUE_CAPACITY = 1000;
+    private static final int EVENT_BATCH_SIZE = 100;
+    private static final int CONSOLE_LOG_BATCH_SIZE = 1000;
 
     // Re-subscription needed if this bean is created again
-    private final List<Consumer<String>> gameProcessInputListeners = new ArrayList<>();
-    private final List<Consumer<String>> gameProcessLifecycleListeners = new ArrayList<>();
+    private final List<Consumer<List<ConsoleHistory.Entry>>> gameProcessInputListeners = new CopyOnWriteArrayList<>();
+    private final List<Consumer<String>> gameProcessLifecycleListeners = new CopyOnWriteArrayList<>();
+    private final List<Consumer<ConsoleEvent>> gameProcessEventListeners = new CopyOnWriteArrayList<>();
 
     private final AtomicReference<GameProcessStatus> gameProcessStatus = new AtomicReference<>(GameProcessStatus.DOWN);
-    private final BlockingQueue<String> outputQueue = new LinkedBlockingQueue<>();
-    private final SynchronizedLimitedQueue inputList = new SynchronizedLimitedQueue(100);
+    private final BlockingQueue<OutputCommand> outputQueue = new LinkedBlockingQueue<>();
+    private final Object inputLock = new Object();
+    private final ConsoleHistory inputHistory; // Only added to while holding inputLock
+    private final DispatchQueue<ConsoleHistory.Entry> inputDispatchQueue;
+    private final ConsoleEventExtractor eventExtractor;
+    private final DispatchQueue<ConsoleEvent> eventDispatchQueue;
 
     private final GameProperties gameProperties;
     private final ProcessFactory processFactory;
     private final PathValidator pathValidator;
 
-    private GameProcess gameProcess;
+    private volatile GameProcess gameProcess;
+
+    /**
+     * Null if repeated lines are not collapsed.
+     */
+    private final RepeatedLineCollapser inputCollapser;
+
+    /**
+     * Null if the console log is disabled.
+     */
+    private final ConsoleLog consoleLog;
+
+    /**
+     * Null if the console log is disabled.
+     */
+    private final DispatchQueue<ConsoleLogRecord> consoleLogQueue;
+
+    public GameProcessService(GameProperties gameProperties,
+                              ProcessFactory processFactory,
+                              PathValidator pathValidator,
+                              ObjectProvider<ConsoleLog> consoleLogProvider) {
+        this.gameProperties = gameProperties;
+        this.processFactory = processFactory;
+        this.pathValidator = pathValidator;
+        this.consoleLog = consoleLogProvider.getIfAvailable();
+        GameProperties.HistoryProperties historyProperties = gameProperties.getHistory();
+        // Continue the sequence from the console log so that sequence numbers stay unique across restarts
+        long firstSequence = consoleLog != null ? consoleLog.getLastSequence() + 1 : 1;
+        this.inputHistory = new ConsoleHistory(
+                historyProperties.getMaxLines(), historyProperties.getMaxSize().toBytes(), firstSequence);
+        GameProperties.LogBatchProperties logBatchProperties = gameProperties.getLogBatch();
+        this.inputDispatchQueue = new DispatchQueue<>(
+                logBatchProperties.getQueueCapacity(),
+                logBatchProperties.getMaxLines(),
+                logBatchProperties.getMaxDelay(),
+                logBatchProperties.getOverflowPolicy(),
+                "game-input-dispatcher",
+                batch -> gameProcessInputListeners.forEach(listener -> listener.accept(batch)));
+        this.eventExtractor = newEventExtractor(gameProperties.getEvents());
+        this.eventDispatchQueue = new DispatchQueue<>(
+                EVENT_QUEUE_CAPACITY,
+                EVENT_BATCH_SIZE,
+                Duration.ZERO,
+                DispatchQueue.OverflowPolicy.DROP_OLDEST,
+                "game-event-dispatcher",
+                batch -> batch.forEach(event ->
+                        gameProcessEventListeners.forEach(listener -> listener.accept(event))));
+        this.consoleLogQueue = consoleLog != null
+                ? new DispatchQueue<>(
+                        gameProperties.getConsoleLog().getQueueCapacity(),
+                        CONSOLE_LOG_BATCH_SIZE,
+                        Duration.ZERO,
+                        DispatchQueue.OverflowPolicy.BLOCK,
+                        "game-console-log-writer",
+                        this::appendToConsoleLog)
+                : null;
+        GameProperties.DedupProperties dedupProperties = gameProperties.getDedup();
+        this.inputCollapser = dedupProperties.getEnabled()
+                ? new RepeatedLineCollapser(
+                        dedupProperties.getWindow(), dedupProperties.getIgnoreTimestamp(), this::storeInputAndPublish)
+                : null;
+    }
+
+    @PreDestroy
+    void preDestroy() {
+        if (inputCollapser != null) inputCollapser.close();
+        inputDispatchQueue.close();
+        eventDispatchQueue.close();
+        if (consoleLogQueue != null) consoleLogQueue.close();
+    }
 
     public boolean isUp() {
         return GameProcessStatus.UP.equals(gameProcessStatus.get());
@@ -99,8 +187,11 @@ public class GameProcessService {
                 .onProcessStarted(() -> setStatusAndPublish(GameProcessStatus.STARTING))
                 .onGameStarted(() -> setStatusAndPublish(GameProcessStatus.UP))
                 .onGameExited(() -> setStatusAndPublish(GameProcessStatus.STOPPING))
-                .onProcessExited(() -> setStatusAndPublish(GameProcessStatus.DOWN))
-                .onInput(this::storeInputAndPublish)
+                .onProcessExited(() -> {
+                    if (inputCollapser != null) inputCollapser.flush();
+                    setStatusAndPublish(GameProcessStatus.DOWN);
+                })
+                .onInput(this::acceptInput)
                 .build();
         gameProcess = processFactory.newGameProcess(
                 fileProperties.getStartCommand(),
@@ -154,25 +245,59 @@ public class GameProcessService {
         return gameProcessStatus.get().getValue();
     }
 
-    public BlockingQueue<String> getOutputQueue() {
+    public BlockingQueue<OutputCommand> getOutputQueue() {
         return outputQueue;
     }
 
     public void addOutput(String output) {
         log.debug("Adding output={}", output);
-        outputQueue.add(output);
+        outputQueue.add(OutputCommand.of(output));
         log.debug("Added output={}", output);
     }
 
     /**
-     * @return A copy of the underlying input history list.
+     * Doesn't block new input from being added.
+     * @param sequence Sequence number of the last input already seen. If it's newer than any input in history,
+     *                 e.g. because it was received before this service restarted, the whole history is returned.
+     * @return A snapshot of the input history after the given sequence number, in sequence order
+     */
+    public InputHistorySnapshot copyInputHistoryAfter(long sequence) {
+        long firstSequence = inputHistory.getFirstSequence();
+        if (sequence > inputHistory.getLastSequence()) {
+            log.debug("Input history requested after unknown sequence={}, copying all", sequence);
+            return new InputHistorySnapshot(inputHistory.snapshot(), firstSequence, true);
+        }
+        List<ConsoleHistory.Entry> entries = inputHistory.snapshotAfter(sequence);
+        // The oldest retained line only moves forward, so an empty snapshot can only have missed lines if the ones
+        // right after the given sequence were already gone before copying
+        long nextSequence = entries.isEmpty() ? firstSequence : entries.get(0).sequence();
+        if (nextSequence > sequence + 1) {
+            log.debug("Input history requested after evicted sequence={}, first retained={}", sequence, nextSequence);
+        }
+        return new InputHistorySnapshot(entries, firstSequence, nextSequence > sequence + 1);
+    }
+
+    public long getLastInputSequence() {
+        return inputHistory.getLastSequence();
+    }
+
+    public DispatchQueue.Stats getInputDispatchStats() {
+        return inputDispatchQueue.getStats();
+    }
+
+    /**
+     * @return Metrics of writing commands to the current game process, or empty metrics if it hasn't been started
      */
-    public List<String> copyInputList() {
-        log.debug("Input history list copied");
-        return inputList.copy();
+    public OutputWriterMetrics.Snapshot getOutputWriterMetrics() {
+        GameProcess current = gameProcess;
+        return current != null ? current.getOutputWriterMetrics().snapshot() : OutputWriterMetrics.Snapshot.EMPTY;
     }
 
-    public void registerInputListener(Consumer<String> listener) {
+    /**
+     * @param listener Receives the input in batches of lines, in sequence order. Called on a single thread, so it
+     *                 must not block for long. Lines are dropped if the listeners fall too far behind the game.
+     */
+    public void registerInputListener(Consumer<List<ConsoleHistory.Entry>> listener) {
         gameProcessInputListeners.add(listener);
     }
 
@@ -180,6 +305,14 @@ public class GameProcessService {
         gameProcessLifecycleListeners.add(listener);
     }
 
+    /**
+     * @param listener Receives the events extracted from the input, in input order. Called on a single thread, so it
+     *                 must not block for long.
+     */
+    public void registerEventListener(Consumer<ConsoleEvent> listener) {
+        gameProcessEventListeners.add(listener);
+    }
+
     public enum GameProcessStatus {
         UP("up"),
         DOWN("down"),
@@ -215,12 +348,62 @@ public class GameProcessService {
                         listener.accept(currentStatus.getValue())));
     }
 
-    private void storeInputAndPublish(String input) {
-        GAME_PROCESS_LOGGER.log(input);
-        CompletableFuture.runAsync(() -> {
-            inputList.add(input);
-            gameProcessInputListeners
-                    .forEach(listener -> listener.accept(input));
-        });
+    private void acceptInput(String input) {
+        if (inputCollapser != null) {
+            inputCollapser.accept(input); // Passes the collapsed lines on to storeInputAndPublish
+        } else {
+            storeInputAndPublish(input, 0);
+        }
+    }
+
+    /**
+     * Called from the thread reading the game output, the thread echoing commands and the collapser timer, so the
+     * input is serialized here. The history only supports a single writer, and the entries must reach the console
+     * log and the listeners in sequence order.
+     * @param repeats Number of collapsed repeats the input stands for. Shown with the stored line, but events are
+     *                extracted from the line as the game printed it.
+     */
+    private void storeInputAndPublish(String input, int repeats) {
+        synchronized (inputLock) {
+            String line = RepeatedLineCollapser.withRepeatCount(input, repeats);
+            GAME_PROCESS_LOGGER.log(line);
+            ConsoleHistory.Entry entry = inputHistory.add(line);
+            // Every line must reach the console log, so a disk that falls too far behind holds up the game output.
+            // Slow listeners can't, the lines they miss are still in history.
+            if (consoleLogQueue != null) {
+                consoleLogQueue.offer(new ConsoleLogRecord(entry.sequence(), System.currentTimeMillis(), entry.line()));
+            }
+            inputDispatchQueue.offer(entry);
+            eventExtractor.extract(input).ifPresent(eventDispatchQueue::offer);
+        }
+    }
+
+    private void appendToConsoleLog(List<ConsoleLogRecord> batch) {
+        try {
+            consoleLog.append(batch);
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to append input to console log, sequences={}-{}",
+                    batch.get(0).sequence(), batch.get(batch.size() - 1).sequence(), e);
+        }
+    }
+
+    private static ConsoleEventExtractor newEventExtractor(GameProperties.EventsProperties eventsProperties) {
+        List<ConsoleEventPattern> patterns = new ArrayList<>();
+        eventsProperties.getPatterns().forEach(pattern -> patterns.add(new ConsoleEventPattern(
+                pattern.getType(), pattern.getThread(), pattern.getLevel(), pattern.getLiteral(), pattern.getRegex())));
+        ConsoleEventPattern.defaults().stream()
+                .filter(pattern -> !eventsProperties.getDisabledTypes().contains(pattern.getType()))
+                .forEach(patterns::add);
+        log.info("Extracting console events with {} patterns", patterns.size());
+        return new ConsoleEventExtractor(patterns);
+    }
+
+    /**
+     * @param entries       Copied entries in sequence order
+     * @param firstSequence Sequence number of the oldest line still retained in history when copying
+     * @param truncated     Whether lines after the requested sequence number were no longer retained, or the
+     *                      sequence number was unknown, so the entries don't continue from it
+     */
+    public record InputHistorySnapshot(List<ConsoleHistory.Entry> entries, long firstSequence, boolean truncated) {
     }
 }
@@ -0,0 +1,249 @@
+package fi.jannetahkola.palikka.game.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fi.jannetahkola.palikka.game.api.status.model.GameStatusResponse;
+import fi.jannetahkola.palikka.game.config.properties.GameProperties;
+import fi.jannetahkola.palikka.game.protocol.BufferPool;
+import fi.jannetahkola.palikka.game.protocol.FrameDecoder;
+import fi.jannetahkola.palikka.game.protocol.StatusProtocol;
+import fi.jannetahkola.palikka.game.service.factory.SocketFactory;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Keeps the latest game status in memory. The status is probed in the background at a fixed interval so that reading
+ * it never blocks on the game, which may take the full connect timeout when the game is down.
+ * <p>
+ * Probes are single flight: forcing a probe while one is already running returns the running probe instead of
+ * starting another one, so any number of concurrent requests result in at most one connection to the game.
+ */
+@Slf4j
+@Service
+public class GameStatusService {
+    private final GameProperties.StatusProperties statusProperties;
+    private final SocketFactory socketFactory;
+    private final ObjectMapper objectMapper;
+    private final Clock clock;
+    private final ScheduledExecutorService executor;
+    private final AtomicReference<CompletableFuture<Snapshot>> inFlightProbe = new AtomicReference<>();
+    private final List<BiConsumer<Snapshot, Snapshot>> statusListeners = new CopyOnWriteArrayList<>();
+    // Heap buffers so that the response can be parsed straight from the array. Probes run one at a time.
+    private final BufferPool bufferPool = new BufferPool(StatusProtocol.MAX_RESPONSE_FRAME_SIZE, 1, false);
+
+    private volatile Snapshot snapshot;
+    private volatile InetSocketAddress address;
+
+    public GameStatusService(GameProperties gameProperties, SocketFactory socketFactory, ObjectMapper objectMapper) {
+        this(gameProperties, socketFactory, objectMapper, Clock.systemUTC());
+    }
+
+    GameStatusService(GameProperties gameProperties, SocketFactory socketFactory, ObjectMapper objectMapper, Clock clock) {
+        this.statusProperties = gameProperties.getStatus();
+        this.socketFactory = socketFactory;
+        this.objectMapper = objectMapper;
+        this.clock = clock;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "game-status-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    void postConstruct() {
+        long intervalMillis = statusProperties.getPollInterval().toMillis();
+        // Runs the probe on the poller thread directly, it would never start if queued behind the poll itself
+        executor.scheduleWithFixedDelay(() -> refresh(Runnable::run), 0, intervalMillis, TimeUnit.MILLISECONDS);
+        log.info("Polling game status every {}", statusProperties.getPollInterval());
+    }
+
+    @PreDestroy
+    void preDestroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * @return The latest status. Waits for the first probe if none has completed yet.
+     */
+    public Snapshot getSnapshot() {
+        return getSnapshotAsync().join();
+    }
+
+    /**
+     * @return The latest status, or the first probe if none has completed yet, so that callers that shouldn't block
+     * can wait for it without a thread
+     */
+    public CompletableFuture<Snapshot> getSnapshotAsync() {
+        Snapshot current = snapshot;
+        return current != null ? CompletableFuture.completedFuture(current) : refresh();
+    }
+
+    /**
+     * Probes the status, or joins the probe already running.
+     * @return The status after the probe. A game that can't be reached or responds unexpectedly is reported offline.
+     */
+    public CompletableFuture<Snapshot> refresh() {
+        return refresh(executor);
+    }
+
+    private CompletableFuture<Snapshot> refresh(Executor probeExecutor) {
+        CompletableFuture<Snapshot> probe = new CompletableFuture<>();
+        CompletableFuture<Snapshot> running = inFlightProbe.compareAndExchange(null, probe);
+        if (running != null) return running;
+
+        probeExecutor.execute(() -> {
+            try {
+                Snapshot previous = snapshot;
+                Snapshot result = toSnapshot(previous, probe());
+                snapshot = result;
+                if (previous == null || previous.status() != result.status()) {
+                    notifyStatusListeners(previous, result);
+                }
+                // Completed last so that a caller refreshing again after this starts a new probe
+                inFlightProbe.compareAndSet(probe, null);
+                probe.complete(result);
+            } catch (RuntimeException e) {
+                log.error("Failed to probe game status", e);
+                inFlightProbe.compareAndSet(probe, null);
+                probe.completeExceptionally(e);
+            }
+        });
+        return probe;
+    }
+
+    /**
+     * @param listener Receives the previous and the new snapshot when a probe finds that the status has changed. The
+     *                 previous snapshot is null after the first probe. Called on the poller thread, so it must not
+     *                 block for long.
+     */
+    public void registerStatusListener(BiConsumer<Snapshot, Snapshot> listener) {
+        statusListeners.add(listener);
+    }
+
+    GameStatusResponse probe() {
+        // See https://wiki.vg/Server_List_Ping
+        log.debug("Fetching game status with config={}", statusProperties);
+
+        String host = statusProperties.getHost();
+        int port = statusProperties.getPort();
+        int timeoutMillis = (int) statusProperties.getConnectTimeout().toMillis();
+
+        GameStatusResponse status = new GameStatusResponse();
+
+        ByteBuffer buffer = bufferPool.acquire();
+        try (Socket socket = socketFactory.newSocket()) {
+            socket.connect(getAddress(), timeoutMillis);
+            socket.setSoTimeout(timeoutMillis); // Don't wait forever for a game that accepted but doesn't respond
+            StatusProtocol.writeStatusRequest(buffer, host, port);
+            socket.getOutputStream().write(buffer.array(), buffer.arrayOffset(), buffer.position());
+            // Read in chunks instead of a read per byte
+            status = readGameStatus(Channels.newChannel(socket.getInputStream()), buffer, objectMapper);
+        } catch (IOException | IllegalStateException e) {
+            // It's not uncommon for this to fail because the game is down
+            log.debug("Failed to get game status", e);
+            status.setOnline(false);
+        } finally {
+            bufferPool.release(buffer);
+        }
+
+        status.setHost(host);
+        status.setPort(port);
+
+        log.debug("Probed game status={}", status);
+
+        return status;
+    }
+
+    private InetSocketAddress getAddress() throws IOException {
+        InetSocketAddress current = address;
+        if (current == null) {
+            // Game server runs on the same host by necessity so always use localhost. Resolved once as it may be slow.
+            current = new InetSocketAddress(InetAddress.getLocalHost(), statusProperties.getPort());
+            address = current;
+        }
+        return current;
+    }
+
+    private void notifyStatusListeners(Snapshot previous, Snapshot current) {
+        for (BiConsumer<Snapshot, Snapshot> listener : statusListeners) {
+            try {
+                listener.accept(previous, current);
+            } catch (RuntimeException e) {
+                log.error("Game status listener failed", e);
+            }
+        }
+    }
+
+    private Snapshot toSnapshot(Snapshot previous, GameStatusResponse status) {
+        String etag;
+        try {
+            CRC32C checksum = new CRC32C();
+            checksum.update(objectMapper.writeValueAsBytes(status));
+            etag = HexFormat.of().toHexDigits(checksum.getValue(), 8);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize game status", e);
+        }
+        if (previous != null && previous.etag().equals(etag)) {
+            // Keep the same instance so that listeners are only notified of actual changes
+            return new Snapshot(previous.status(), etag, clock.instant());
+        }
+        return new Snapshot(status, etag, clock.instant());
+    }
+
+    private static GameStatusResponse readGameStatus(ReadableByteChannel in,
+                                                     ByteBuffer buffer,
+                                                     ObjectMapper objectMapper) throws IOException {
+        log.debug("Reading server status from stream");
+        FrameDecoder decoder = new FrameDecoder(buffer);
+        ByteBuffer frame;
+        while ((frame = decoder.nextFrame()) == null) {
+            if (decoder.readFrom(in) < 0) {
+                throw new EOFException("Connection closed before the status was received");
+            }
+        }
+        int length = StatusProtocol.readStatusResponse(frame);
+        int offset = frame.arrayOffset() + frame.position();
+        if (log.isDebugEnabled()) {
+            log.debug("Received status from server={}", new String(frame.array(), offset, length, StandardCharsets.UTF_8));
+        }
+        return objectMapper.readValue(frame.array(), offset, length, GameStatusResponse.class);
+    }
+
+    /**
+     * @param etag Checksum of the status content. Stays the same as long as the status doesn't change.
+     * @param probedAt Time of the probe that produced the status
+     */
+    public record Snapshot(GameStatusResponse status, String etag, Instant probedAt) {
+        public Duration age(Clock clock) {
+            Duration age = Duration.between(probedAt, clock.instant());
+            return age.isNegative() ? Duration.ZERO : age;
+        }
+    }
+}
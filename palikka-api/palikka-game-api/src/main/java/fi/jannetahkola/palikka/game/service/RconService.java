@@ -0,0 +1,420 @@
+package fi.jannetahkola.palikka.game.service;
+
+import fi.jannetahkola.palikka.game.config.properties.GameProperties;
+import fi.jannetahkola.palikka.game.protocol.ProtocolCodec;
+import fi.jannetahkola.palikka.game.protocol.ProtocolException;
+import fi.jannetahkola.palikka.game.protocol.RconProtocol;
+import fi.jannetahkola.palikka.game.service.factory.SocketFactory;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends commands to the game over a persistent RCON connection, so that the output of each command can be returned to
+ * whoever sent it instead of ending up in the game log.
+ * <p>
+ * The connection is kept open in the background. When it fails, it's re-established with an increasing delay, or
+ * right away once the game has started. Commands are sent without waiting for the output of earlier commands up to
+ * the configured pipeline depth, and the responses are matched to the commands by request id. The server splits long
+ * output into several response packets, which are joined before the command completes.
+ */
+@Slf4j
+@Service
+public class RconService {
+    private final GameProperties.RconProperties rconProperties;
+    private final SocketFactory socketFactory;
+    private final GameProcessService gameProcessService;
+    private final Thread connectionThread;
+    private final AtomicInteger lastRequestId = new AtomicInteger();
+    private final Object reconnectLock = new Object();
+
+    private volatile Connection connection;
+    private volatile boolean closed;
+    private boolean reconnectRequested; // Guarded by reconnectLock
+
+    public RconService(GameProperties gameProperties,
+                       SocketFactory socketFactory,
+                       GameProcessService gameProcessService) {
+        this.rconProperties = gameProperties.getRcon();
+        this.socketFactory = socketFactory;
+        this.gameProcessService = gameProcessService;
+        this.connectionThread = new Thread(this::maintainConnection, "game-rcon");
+        this.connectionThread.setDaemon(true);
+    }
+
+    @PostConstruct
+    void postConstruct() {
+        if (!rconProperties.getEnabled()) return;
+        if (!StringUtils.hasText(rconProperties.getPassword())) {
+            throw new IllegalStateException("RCON password must be set when RCON is enabled");
+        }
+        gameProcessService.registerLifecycleListener(status -> {
+            // The RCON server starts with the game, so no need to wait for the next attempt
+            if (GameProcessService.GameProcessStatus.UP.getValue().equals(status)) reconnect();
+        });
+        connectionThread.start();
+        log.info("Connecting to RCON at {}:{}", rconProperties.getHost(), rconProperties.getPort());
+    }
+
+    @PreDestroy
+    void preDestroy() {
+        closed = true;
+        connectionThread.interrupt();
+        Connection current = connection;
+        if (current != null) current.close(new IOException("RCON client closed"));
+    }
+
+    public boolean isConnected() {
+        Connection current = connection;
+        return current != null && !current.isClosed();
+    }
+
+    /**
+     * Connects right away if not connected, instead of waiting for the next attempt.
+     */
+    public void reconnect() {
+        if (isConnected()) return;
+        synchronized (reconnectLock) {
+            reconnectRequested = true;
+            reconnectLock.notifyAll();
+        }
+    }
+
+    /**
+     * @param command Command with or without the leading slash, e.g. /weather clear
+     * @return Output of the command. Fails with {@link IOException} if RCON is not connected or the connection fails
+     * before the output is received, and with {@link TimeoutException} if the output isn't received in time.
+     */
+    public CompletableFuture<String> execute(String command) {
+        String body = command.startsWith("/") ? command.substring(1) : command;
+        if (ProtocolCodec.utf8Length(body) > RconProtocol.MAX_REQUEST_BODY_LENGTH) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Command is too long for RCON"));
+        }
+        Connection current = connection;
+        if (current == null) {
+            return CompletableFuture.failedFuture(new IOException("RCON is not connected"));
+        }
+        PendingCommand pending = new PendingCommand(nextRequestId(), body);
+        CompletableFuture.delayedExecutor(rconProperties.getCommandTimeout().toMillis(), TimeUnit.MILLISECONDS)
+                .execute(() -> {
+                    if (!pending.future.isDone()) current.timeOut(pending);
+                });
+        current.submit(pending);
+        return pending.future;
+    }
+
+    private void maintainConnection() {
+        Duration delay = rconProperties.getReconnectDelay();
+        while (!closed) {
+            try (Socket socket = socketFactory.newSocket()) {
+                Connection current = connect(socket);
+                connection = current;
+                delay = rconProperties.getReconnectDelay();
+                log.info("Connected to RCON");
+                current.readResponses();
+                log.info("RCON connection closed by the server");
+            } catch (AuthenticationException e) {
+                log.error("RCON authentication failed, check the RCON password");
+                delay = rconProperties.getMaxReconnectDelay();
+            } catch (IOException e) {
+                if (connection != null) {
+                    log.info("RCON connection failed: {}", e.getMessage());
+                } else {
+                    // Expected while the game is down
+                    log.debug("Failed to connect to RCON", e);
+                }
+            } finally {
+                Connection current = connection;
+                connection = null;
+                if (current != null) current.close(new IOException("RCON connection closed"));
+            }
+            if (awaitReconnect(delay)) {
+                delay = rconProperties.getReconnectDelay();
+            } else {
+                delay = min(delay.multipliedBy(2), rconProperties.getMaxReconnectDelay());
+            }
+        }
+    }
+
+    private Connection connect(Socket socket) throws IOException {
+        int timeoutMillis = (int) rconProperties.getConnectTimeout().toMillis();
+        socket.connect(new InetSocketAddress(rconProperties.getHost(), rconProperties.getPort()), timeoutMillis);
+        socket.setTcpNoDelay(true);
+        socket.setSoTimeout(timeoutMillis);
+        Connection current = new Connection(socket);
+        current.authenticate(rconProperties.getPassword(), nextRequestId());
+        socket.setSoTimeout(0); // Commands time out on their own, the connection may be idle for any time
+        return current;
+    }
+
+    /**
+     * @return True if a reconnect was requested before the delay passed
+     */
+    private boolean awaitReconnect(Duration delay) {
+        long deadline = System.nanoTime() + delay.toNanos();
+        synchronized (reconnectLock) {
+            try {
+                while (!reconnectRequested && !closed) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) return false;
+                    TimeUnit.NANOSECONDS.timedWait(reconnectLock, remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                closed = true;
+                return false;
+            }
+            boolean requested = reconnectRequested;
+            reconnectRequested = false;
+            return requested;
+        }
+    }
+
+    private int nextRequestId() {
+        // Positive ids only, -1 means failed authentication and 0 no marker
+        return lastRequestId.updateAndGet(id -> id == Integer.MAX_VALUE ? 1 : id + 1);
+    }
+
+    private static Duration min(Duration a, Duration b) {
+        return a.compareTo(b) <= 0 ? a : b;
+    }
+
+    private class Connection {
+        private final Socket socket;
+        private final OutputStream out;
+        private final ReadableByteChannel in;
+        private final ByteBuffer writeBuffer = ByteBuffer.allocate(RconProtocol.MAX_PACKET_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(RconProtocol.MAX_PACKET_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN)
+                .flip();
+
+        /**
+         * Commands sent and waiting for output, by request id and by marker id.
+         */
+        private final Map<Integer, PendingCommand> pending = new ConcurrentHashMap<>();
+
+        // Guarded by this
+        private final Queue<PendingCommand> queued = new ArrayDeque<>();
+        private int inFlight;
+        private volatile boolean closed;
+
+        Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.out = socket.getOutputStream();
+            this.in = Channels.newChannel(socket.getInputStream());
+        }
+
+        boolean isClosed() {
+            return closed;
+        }
+
+        void authenticate(String password, int requestId) throws IOException {
+            synchronized (this) {
+                send(requestId, RconProtocol.TYPE_AUTH, password);
+            }
+            while (true) {
+                RconProtocol.Packet packet = readPacket();
+                if (packet == null) {
+                    throw new EOFException("Connection closed during RCON authentication");
+                }
+                if (packet.type() != RconProtocol.TYPE_AUTH_RESPONSE) {
+                    continue; // Some servers send an empty response before the auth response
+                }
+                if (packet.requestId() == RconProtocol.AUTH_FAILED_REQUEST_ID) {
+                    throw new AuthenticationException();
+                }
+                if (packet.requestId() != requestId) {
+                    throw new ProtocolException("Unexpected RCON auth response id " + packet.requestId());
+                }
+                return;
+            }
+        }
+
+        synchronized void submit(PendingCommand command) {
+            if (closed) {
+                command.future.completeExceptionally(new IOException("RCON connection closed"));
+            } else if (inFlight < rconProperties.getPipelineDepth()) {
+                sendCommand(command);
+            } else {
+                queued.add(command);
+            }
+        }
+
+        /**
+         * Reads responses until the server closes the connection.
+         */
+        void readResponses() throws IOException {
+            RconProtocol.Packet packet;
+            while ((packet = readPacket()) != null) {
+                PendingCommand command = pending.get(packet.requestId());
+                if (command == null) {
+                    log.debug("Ignoring RCON response to unknown request id={}", packet.requestId());
+                } else if (packet.requestId() == command.markerId) {
+                    complete(command);
+                } else {
+                    command.append(packet.body());
+                    if (packet.body().length >= RconProtocol.MAX_RESPONSE_BODY_LENGTH) {
+                        if (command.markerId == 0) {
+                            // The output may continue in the next packet. The server handles requests in order, so
+                            // the response to a request sent now comes after the rest of the output.
+                            command.markerId = nextRequestId();
+                            pending.put(command.markerId, command);
+                            synchronized (this) {
+                                send(command.markerId, RconProtocol.TYPE_RESPONSE, "");
+                            }
+                        }
+                    } else if (command.markerId == 0) {
+                        complete(command);
+                    }
+                }
+            }
+        }
+
+        /**
+         * The output may still come later, so the connection is closed to not mix it up with the output of later
+         * commands. Closed before failing the command, so that the next command isn't sent on this connection.
+         */
+        void timeOut(PendingCommand command) {
+            pending.remove(command.requestId);
+            synchronized (this) {
+                queued.remove(command);
+            }
+            close(new IOException("RCON connection closed after a command timed out"));
+            command.future.completeExceptionally(new TimeoutException("Timed out waiting for RCON command output"));
+        }
+
+        void close(IOException cause) {
+            synchronized (this) {
+                if (closed) return;
+                closed = true;
+            }
+            try {
+                socket.close(); // Fails the read on the connection thread
+            } catch (IOException e) {
+                log.debug("Failed to close RCON connection", e);
+            }
+            List<PendingCommand> failed = new ArrayList<>(pending.values());
+            pending.clear();
+            synchronized (this) {
+                failed.addAll(queued);
+                queued.clear();
+            }
+            failed.forEach(command -> command.future.completeExceptionally(cause));
+        }
+
+        private void complete(PendingCommand command) {
+            pending.remove(command.requestId);
+            if (command.markerId != 0) pending.remove(command.markerId);
+            command.complete();
+            synchronized (this) {
+                inFlight--;
+                while (!closed && inFlight < rconProperties.getPipelineDepth() && !queued.isEmpty()) {
+                    sendCommand(queued.poll());
+                }
+            }
+        }
+
+        // Called with the lock held
+        private void sendCommand(PendingCommand command) {
+            pending.put(command.requestId, command);
+            inFlight++;
+            try {
+                send(command.requestId, RconProtocol.TYPE_COMMAND, command.command);
+            } catch (IOException e) {
+                close(e);
+            }
+        }
+
+        // Called with the lock held
+        private void send(int requestId, int type, String body) throws IOException {
+            writeBuffer.clear();
+            RconProtocol.writePacket(writeBuffer, requestId, type, body);
+            out.write(writeBuffer.array(), 0, writeBuffer.position());
+            out.flush();
+        }
+
+        /**
+         * @return Next packet, or null if the server closed the connection
+         */
+        private RconProtocol.Packet readPacket() throws IOException {
+            RconProtocol.Packet packet;
+            while ((packet = RconProtocol.readPacket(readBuffer)) == null) {
+                readBuffer.compact();
+                int read;
+                try {
+                    read = in.read(readBuffer);
+                } finally {
+                    readBuffer.flip();
+                }
+                if (read < 0) return null;
+            }
+            return packet;
+        }
+    }
+
+    private static class PendingCommand {
+        private final int requestId;
+        private final String command;
+        private final CompletableFuture<String> future = new CompletableFuture<>();
+
+        // Only accessed on the connection thread once sent
+        private int markerId;
+        private byte[] output;
+        private ByteArrayOutputStream splitOutput;
+
+        PendingCommand(int requestId, String command) {
+            this.requestId = requestId;
+            this.command = command;
+        }
+
+        void append(byte[] body) {
+            if (output == null) {
+                output = body;
+                return;
+            }
+            if (splitOutput == null) {
+                splitOutput = new ByteArrayOutputStream();
+                splitOutput.writeBytes(output);
+            }
+            // Joined as bytes as the server may have split a multibyte character
+            splitOutput.writeBytes(body);
+        }
+
+        void complete() {
+            if (splitOutput != null) {
+                future.complete(splitOutput.toString(StandardCharsets.UTF_8));
+            } else {
+                future.complete(output != null ? new String(output, StandardCharsets.UTF_8) : "");
+            }
+        }
+    }
+
+    private static class AuthenticationException extends IOException {
+    }
+}
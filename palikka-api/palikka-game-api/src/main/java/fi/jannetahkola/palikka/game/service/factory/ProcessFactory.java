@@ -2,6 +2,7 @@ package fi.jannetahkola.palikka.game.service.factory;
 
 import fi.jannetahkola.palikka.game.process.GameProcess;
 import fi.jannetahkola.palikka.game.process.GameProcessExecutable;
+import fi.jannetahkola.palikka.game.process.task.OutputCommand;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
@@ -26,7 +27,7 @@ public class ProcessFactory {
     public GameProcess newGameProcess(String command,
                                       Path pathToFileDirectory,
                                       GameProcess.GameProcessHooks hooks,
-                                      BlockingQueue<String> outputQueue) {
+                                      BlockingQueue<OutputCommand> outputQueue) {
         GameProcessExecutable executable =
                 () -> newProcess(command, pathToFileDirectory);
         return new GameProcess(executable, hooks, outputQueue);
@@ -0,0 +1,164 @@
+package fi.jannetahkola.palikka.game.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded history of console lines backed by a preallocated ring buffer. Lines are bounded both by count and by their
+ * total size in UTF-8 bytes, evicting the oldest lines first. Every line gets a monotonically increasing sequence
+ * number, by default starting from 1.
+ * <p>
+ * Lines must be added by one writer at a time. Threads that add lines concurrently, e.g. the threads reading the
+ * process output and echoing commands, must serialize their calls. Any number of threads may take snapshots
+ * concurrently without locking and without blocking the writer. Entries are immutable, and a snapshot
+ * re-checks the retained range after copying so that entries evicted or overwritten during the copy are dropped.
+ */
+public class ConsoleHistory {
+    private final AtomicReferenceArray<Entry> slots;
+    private final int maxLines;
+    private final long maxBytes;
+
+    /**
+     * Sequence number of the next line to add. Written only by the writer, published after the slot is written.
+     */
+    private volatile long head = 1;
+
+    /**
+     * Sequence number of the oldest retained line. Written only by the writer, published before a slot is reused.
+     */
+    private volatile long tail = 1;
+
+    /**
+     * Total bytes of the retained lines. Written only by the writer.
+     */
+    private volatile long bytes;
+
+    public ConsoleHistory(int maxLines, long maxBytes) {
+        this(maxLines, maxBytes, 1);
+    }
+
+    /**
+     * @param firstSequence Sequence number of the first line to add, e.g. to continue from a persisted log
+     */
+    public ConsoleHistory(int maxLines, long maxBytes, long firstSequence) {
+        if (maxLines < 1) throw new IllegalArgumentException("Max lines must be positive");
+        if (maxBytes < 1) throw new IllegalArgumentException("Max bytes must be positive");
+        if (firstSequence < 1) throw new IllegalArgumentException("First sequence must be positive");
+        this.slots = new AtomicReferenceArray<>(maxLines);
+        this.maxLines = maxLines;
+        this.maxBytes = maxBytes;
+        this.head = firstSequence;
+        this.tail = firstSequence;
+    }
+
+    /**
+     * Adds a line, evicting the oldest lines if needed. The newest line is always retained even if it alone exceeds
+     * the byte limit. Not thread safe, concurrent callers must serialize their calls.
+     * @return The added entry
+     */
+    public Entry add(String line) {
+        long sequence = head;
+        Entry entry = new Entry(sequence, line, utf8Length(line));
+
+        long oldest = tail;
+        long retainedBytes = bytes + entry.bytes();
+        while (oldest < sequence
+                && (sequence - oldest >= maxLines || retainedBytes > maxBytes)) {
+            retainedBytes -= slots.get(index(oldest)).bytes();
+            oldest++;
+        }
+        tail = oldest; // Publish eviction before the slot of an evicted line is reused
+        bytes = retainedBytes;
+
+        slots.set(index(sequence), entry);
+        head = sequence + 1;
+        return entry;
+    }
+
+    /**
+     * @return Retained entries in sequence order
+     */
+    public List<Entry> snapshot() {
+        return snapshotAfter(0);
+    }
+
+    /**
+     * @param sequence Sequence number of the last entry already seen
+     * @return Retained entries with a sequence number greater than the given one, in sequence order
+     */
+    public List<Entry> snapshotAfter(long sequence) {
+        long end = head;
+        long start = Math.max(tail, sequence + 1);
+        if (start >= end) return List.of();
+
+        List<Entry> entries = new ArrayList<>((int) (end - start));
+        for (long s = start; s < end; s++) {
+            Entry entry = slots.get(index(s));
+            if (entry != null && entry.sequence() == s) {
+                entries.add(entry);
+            }
+        }
+
+        // Drop entries that were evicted while copying. Overwritten slots were already skipped above.
+        long retainedFrom = tail;
+        if (!entries.isEmpty() && entries.get(0).sequence() < retainedFrom) {
+            entries.removeIf(entry -> entry.sequence() < retainedFrom);
+        }
+        return entries;
+    }
+
+    /**
+     * @return Retained lines in sequence order
+     */
+    public List<String> lines() {
+        return snapshot().stream().map(Entry::line).toList();
+    }
+
+    /**
+     * @return Sequence number of the newest line, or 0 if nothing has been added
+     */
+    public long getLastSequence() {
+        return head - 1;
+    }
+
+    /**
+     * @return Sequence number of the oldest retained line. Equals {@link #getLastSequence()} + 1 when empty.
+     */
+    public long getFirstSequence() {
+        return tail;
+    }
+
+    public int size() {
+        return (int) (head - tail);
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    private int index(long sequence) {
+        return (int) (sequence % maxLines);
+    }
+
+    static int utf8Length(String s) {
+        int length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    public record Entry(long sequence, String line, int bytes) {
+    }
+}
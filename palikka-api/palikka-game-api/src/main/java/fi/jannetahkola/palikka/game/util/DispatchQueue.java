@@ -0,0 +1,231 @@
+package fi.jannetahkola.palikka.game.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Bounded queue with a dedicated consumer thread that delivers the queued items in batches, in the order they were
+ * offered. A batch is delivered when it reaches the maximum size, or when the maximum delay has passed since its
+ * oldest item was offered, whichever comes first.
+ * <p>
+ * When the queue is full, items are dropped according to the {@link OverflowPolicy} so that a slow consumer can't stall
+ * the producer, unless the policy is {@link OverflowPolicy#BLOCK}, in which case offering waits for room instead.
+ */
+@Slf4j
+public class DispatchQueue<T> implements Closeable {
+    private static final long CLOSE_POLL_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final ArrayBlockingQueue<Pending<T>> queue;
+    private final int capacity;
+    private final int maxBatchSize;
+    private final long maxBatchDelayNanos;
+    private final OverflowPolicy overflowPolicy;
+    private final Consumer<List<T>> consumer;
+    private final Thread consumerThread;
+
+    private final AtomicLong offered = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private volatile long lastLagNanos;
+    private volatile long maxLagNanos;
+    private volatile boolean closed;
+
+    /**
+     * @param capacity Maximum number of queued items
+     * @param maxBatchSize Maximum number of items in a batch
+     * @param maxBatchDelay Maximum time to wait for a batch to fill up. With zero, a batch contains whatever was
+     *                      queued when the consumer became free.
+     * @param threadName Name of the consumer thread
+     */
+    public DispatchQueue(int capacity,
+                         int maxBatchSize,
+                         Duration maxBatchDelay,
+                         OverflowPolicy overflowPolicy,
+                         String threadName,
+                         Consumer<List<T>> consumer) {
+        if (capacity < 1) throw new IllegalArgumentException("Capacity must be positive");
+        if (maxBatchSize < 1) throw new IllegalArgumentException("Max batch size must be positive");
+        if (maxBatchDelay.isNegative()) throw new IllegalArgumentException("Max batch delay must not be negative");
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.capacity = capacity;
+        this.maxBatchSize = maxBatchSize;
+        this.maxBatchDelayNanos = maxBatchDelay.toNanos();
+        this.overflowPolicy = overflowPolicy;
+        this.consumer = consumer;
+        this.consumerThread = new Thread(this::consume, threadName);
+        this.consumerThread.setDaemon(true);
+        this.consumerThread.start();
+    }
+
+    /**
+     * Queues an item. Only blocks if the queue is full and the overflow policy is {@link OverflowPolicy#BLOCK}.
+     * @return False if the item was dropped because the queue is full or closed, or the thread was interrupted while
+     * waiting for room
+     */
+    public boolean offer(T item) {
+        if (closed) {
+            log.debug("Dispatch queue closed, dropping item");
+            return false;
+        }
+        offered.incrementAndGet();
+        Pending<T> pending = new Pending<>(item, System.nanoTime());
+        if (!queue.offer(pending)) {
+            if (overflowPolicy == OverflowPolicy.BLOCK) {
+                return put(pending);
+            }
+            if (overflowPolicy == OverflowPolicy.DROP_NEWEST) {
+                dropped.incrementAndGet();
+                return false;
+            }
+            do {
+                if (queue.poll() != null) dropped.incrementAndGet();
+            } while (!queue.offer(pending));
+        }
+        return true;
+    }
+
+    private boolean put(Pending<T> pending) {
+        try {
+            // Give up if the queue is closed while waiting, the consumer may already be gone
+            while (!queue.offer(pending, CLOSE_POLL_INTERVAL_NANOS, TimeUnit.NANOSECONDS)) {
+                if (closed) {
+                    dropped.incrementAndGet();
+                    return false;
+                }
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            dropped.incrementAndGet();
+            return false;
+        }
+    }
+
+    public Stats getStats() {
+        return new Stats(
+                queue.size(),
+                capacity,
+                offered.get(),
+                dropped.get(),
+                delivered.get(),
+                Duration.ofNanos(lastLagNanos),
+                Duration.ofNanos(maxLagNanos));
+    }
+
+    /**
+     * Stops accepting items and waits for the queued items to be delivered.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            consumerThread.join(TimeUnit.SECONDS.toMillis(5));
+            if (consumerThread.isAlive()) {
+                log.warn("Timed out waiting for {} queued items to be delivered", queue.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void consume() {
+        List<Pending<T>> batch = new ArrayList<>(Math.min(maxBatchSize, 64));
+        long reportedDropped = 0;
+        try {
+            while (true) {
+                Pending<T> first = queue.poll(CLOSE_POLL_INTERVAL_NANOS, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    if (closed) return;
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - batch.size());
+                long deadline = first.offeredNanos() + maxBatchDelayNanos;
+                while (batch.size() < maxBatchSize && !closed) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) break;
+                    // Wake up periodically so that closing doesn't wait for the batch delay
+                    Pending<T> next = queue.poll(Math.min(remaining, CLOSE_POLL_INTERVAL_NANOS), TimeUnit.NANOSECONDS);
+                    if (next == null) continue;
+                    batch.add(next);
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                }
+
+                deliver(batch);
+                batch.clear();
+
+                long droppedNow = dropped.get();
+                if (droppedNow != reportedDropped) {
+                    log.warn("Dispatch queue full, dropped {} items", droppedNow - reportedDropped);
+                    reportedDropped = droppedNow;
+                }
+            }
+        } catch (InterruptedException e) {
+            log.warn("Dispatch queue consumer interrupted, {} items not delivered", queue.size());
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void deliver(List<Pending<T>> batch) {
+        long lag = System.nanoTime() - batch.get(0).offeredNanos();
+        lastLagNanos = lag;
+        if (lag > maxLagNanos) maxLagNanos = lag;
+
+        List<T> items = new ArrayList<>(batch.size());
+        for (Pending<T> pending : batch) {
+            items.add(pending.item());
+        }
+        try {
+            consumer.accept(items);
+        } catch (Exception e) {
+            log.error("Failed to deliver batch of {} items", items.size(), e);
+        }
+        delivered.addAndGet(items.size());
+    }
+
+    public enum OverflowPolicy {
+        /**
+         * Drop the oldest queued items to make room, favoring recent items.
+         */
+        DROP_OLDEST,
+
+        /**
+         * Drop the offered item, favoring items already queued.
+         */
+        DROP_NEWEST,
+
+        /**
+         * Don't drop anything, offering waits until there is room. Only for consumers that must see every item and
+         * are allowed to slow down the producer.
+         */
+        BLOCK
+    }
+
+    /**
+     * @param depth Number of queued items
+     * @param offered Total number of items offered. Equals the number of delivered, dropped and queued items.
+     * @param dropped Total number of items dropped due to the queue being full, or closed while waiting for room
+     * @param delivered Total number of items delivered to the consumer
+     * @param lastLag Time the oldest item of the last batch spent in the queue
+     * @param maxLag Longest time an item has spent in the queue
+     */
+    public record Stats(int depth,
+                        int capacity,
+                        long offered,
+                        long dropped,
+                        long delivered,
+                        Duration lastLag,
+                        Duration maxLag) {
+    }
+
+    private record Pending<T>(T item, long offeredNanos) {
+    }
+}
@@ -0,0 +1,202 @@
+package fi.jannetahkola.palikka.game.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads UTF-8 lines from a stream without per-line allocations. Bytes are read into a reusable buffer, decoded
+ * into a reusable char buffer, and lines are split on <code>\n</code> with an optional preceding <code>\r</code>
+ * removed. Malformed input is replaced rather than failing the read.
+ * <p>
+ * Streams are read straight into the array of a heap buffer. Channels are read into a direct buffer, as a channel
+ * would otherwise copy the bytes to a temporary direct buffer of its own.
+ * <p>
+ * Lines longer than the max line length are split, so that a process writing without line feeds can't grow the
+ * line buffer without limit. A split line may be one char longer than the max to keep a surrogate pair or a
+ * <code>\r\n</code> together.
+ * <p>
+ * Each line is returned as a view over an internal buffer that is only valid until the next read, so consumers that
+ * only inspect the line don't need to create a string. Not thread safe.
+ */
+public class Utf8LineReader {
+    static final int DEFAULT_BUFFER_SIZE = 8192;
+    static final int DEFAULT_MAX_LINE_LENGTH = 32_768;
+
+    private final InputStream in;
+    private final ReadableByteChannel channel;
+    private final int maxLineLength;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final ByteBuffer bytes;
+    private final CharBuffer chars;
+    private final Line line = new Line();
+
+    private boolean endOfInput;
+    private boolean flushed;
+
+    public Utf8LineReader(InputStream in) {
+        this(in, DEFAULT_BUFFER_SIZE, DEFAULT_MAX_LINE_LENGTH);
+    }
+
+    /**
+     * @param bufferSize Size of the byte and char buffers
+     * @param maxLineLength Number of chars after which a line is split
+     */
+    public Utf8LineReader(InputStream in, int bufferSize, int maxLineLength) {
+        this(in, null, ByteBuffer.allocate(bufferSize), maxLineLength);
+    }
+
+    public Utf8LineReader(ReadableByteChannel channel, int bufferSize) {
+        this(channel, bufferSize, DEFAULT_MAX_LINE_LENGTH);
+    }
+
+    /**
+     * @param bufferSize Size of the byte and char buffers
+     * @param maxLineLength Number of chars after which a line is split
+     */
+    public Utf8LineReader(ReadableByteChannel channel, int bufferSize, int maxLineLength) {
+        this(null, channel, ByteBuffer.allocateDirect(bufferSize), maxLineLength);
+    }
+
+    private Utf8LineReader(InputStream in, ReadableByteChannel channel, ByteBuffer bytes, int maxLineLength) {
+        if (maxLineLength < 1) throw new IllegalArgumentException("Max line length must be positive");
+        this.in = in;
+        this.channel = channel;
+        this.maxLineLength = maxLineLength;
+        this.bytes = bytes.flip();
+        this.chars = CharBuffer.allocate(bytes.capacity()).flip();
+    }
+
+    /**
+     * Blocks until a full line has been read or the stream ends.
+     * @return The next line without the line terminator, or null if the stream has ended. The returned view is only
+     * valid until the next call.
+     */
+    public CharSequence readLine() throws IOException {
+        line.length = 0;
+        boolean read = false;
+        while (true) {
+            char[] array = chars.array();
+            int position = chars.position();
+            int limit = chars.limit();
+            for (int i = position; i < limit; i++) {
+                if (array[i] == '\n') {
+                    line.append(array, position, i - position);
+                    chars.position(i + 1);
+                    if (line.length > 0 && line.chars[line.length - 1] == '\r') {
+                        line.length--;
+                    }
+                    return line;
+                }
+                if (line.length + i - position >= maxLineLength && array[i] != '\r'
+                        && !Character.isLowSurrogate(array[i])) {
+                    // Too long, the rest is returned as the next line
+                    line.append(array, position, i - position);
+                    chars.position(i);
+                    return line;
+                }
+            }
+            if (limit > position) {
+                line.append(array, position, limit - position);
+                read = true;
+            }
+            chars.position(limit);
+            if (!fill()) {
+                // Last line without a terminator
+                return read ? line : null;
+            }
+        }
+    }
+
+    /**
+     * Decodes more chars into the empty char buffer, reading from the channel when needed.
+     * @return False if the stream has ended and every char has been returned
+     */
+    private boolean fill() throws IOException {
+        chars.clear();
+        try {
+            while (true) {
+                if (!endOfInput) {
+                    decoder.decode(bytes, chars, false);
+                    if (chars.position() > 0) return true;
+                    bytes.compact();
+                    int n;
+                    try {
+                        n = read();
+                    } finally {
+                        bytes.flip();
+                    }
+                    if (n < 0) endOfInput = true;
+                } else {
+                    if (flushed) return false;
+                    CoderResult result = decoder.decode(bytes, chars, true);
+                    if (result.isUnderflow()) {
+                        result = decoder.flush(chars);
+                        flushed = result.isUnderflow();
+                    }
+                    return chars.position() > 0 || !flushed;
+                }
+            }
+        } finally {
+            chars.flip();
+        }
+    }
+
+    /**
+     * Reads from the source into the remaining space of the byte buffer.
+     * @return Number of bytes read, or -1 if the stream has ended
+     */
+    private int read() throws IOException {
+        if (channel != null) return channel.read(bytes);
+        int n = in.read(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+        if (n > 0) bytes.position(bytes.position() + n);
+        return n;
+    }
+
+    /**
+     * Reusable view of the current line.
+     */
+    private static class Line implements CharSequence {
+        private char[] chars = new char[256];
+        private int length;
+
+        private void append(char[] source, int offset, int count) {
+            if (length + count > chars.length) {
+                chars = Arrays.copyOf(chars, Math.max(chars.length * 2, length + count));
+            }
+            System.arraycopy(source, offset, chars, length, count);
+            length += count;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length) throw new IndexOutOfBoundsException(index);
+            return chars[index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > length || start > end) throw new IndexOutOfBoundsException();
+            return new String(chars, start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, 0, length);
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package fi.jannetahkola.palikka.game.websocket;
 
-import fi.jannetahkola.palikka.core.integration.users.UsersClient;
 import fi.jannetahkola.palikka.game.api.game.model.GameOutputMessage;
 import fi.jannetahkola.palikka.game.service.GameProcessService;
 import fi.jannetahkola.palikka.game.util.GameCommandUtil;
@@ -25,7 +24,6 @@ public class GameMessageValidator {
     }
 
     private final GameProcessService gameProcessService;
-    private final UsersClient usersClient;
 
     public void validateMessageIsValid(GameOutputMessage msg) throws GameCommandProcessingException {
         Set<ConstraintViolation<GameOutputMessage>> violations = VALIDATOR.validate(msg);
@@ -45,7 +43,7 @@ public class GameMessageValidator {
 
     public void validateUserIsAuthorizedForCommand(GameOutputMessage msg, Authentication authentication) throws GameCommandProcessingException {
         String normalizedCommand = GameCommandUtil.normalizeCommand(msg.getData());
-        if (!GameCommandUtil.authorizeCommand(usersClient, authentication, normalizedCommand)) {
+        if (!GameCommandUtil.authorizeCommand(authentication, normalizedCommand)) {
             throw new GameCommandProcessingException("Access denied to command='" + msg.getData() + "'");
         }
     }
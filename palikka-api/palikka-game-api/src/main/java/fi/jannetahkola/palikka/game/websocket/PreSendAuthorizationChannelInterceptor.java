@@ -18,6 +18,9 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import java.util.Objects;
 
 /**
+ * Replaces the authentication of the message with the one refreshed in {@link SessionStore}, if the authorities of the
+ * user have changed after the session was established.
+ * <br><br>
  * Checks that the JWT that was used to establish the connection is not expired before passing the received message
  * forward. If it is expired, access is revoked by removing the expired authentication token from the message. Spring
  * will then close the connection automatically when authorization fails in the following security interceptors.
@@ -36,12 +39,16 @@ import java.util.Objects;
 @RequiredArgsConstructor
 public class PreSendAuthorizationChannelInterceptor implements ChannelInterceptor {
     private final JwtService jwtService;
+    private final SessionStore sessionStore;
 
     @Override
     public Message<?> preSend(@Nonnull Message<?> message, @Nonnull MessageChannel channel) {
         // Note that using StompHeaderAccessor directly will not work as it won't mutate the headers
         StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
-        if (accessor != null && Objects.equals(accessor.getCommand(), StompCommand.SEND)) {
+        if (accessor != null && isAuthorizedCommand(accessor.getCommand())) {
+            if (accessor.getSessionId() != null) {
+                sessionStore.getRefreshedAuthentication(accessor.getSessionId()).ifPresent(accessor::setUser);
+            }
             // Token type is known at this point so cast without checks
             var authenticationToken = (UsernamePasswordAuthenticationToken) accessor.getUser();
             if (authenticationToken != null
@@ -55,4 +62,8 @@ public class PreSendAuthorizationChannelInterceptor implements ChannelIntercepto
         }
         return message;
     }
+
+    private static boolean isAuthorizedCommand(StompCommand command) {
+        return Objects.equals(command, StompCommand.SEND) || Objects.equals(command, StompCommand.SUBSCRIBE);
+    }
 }
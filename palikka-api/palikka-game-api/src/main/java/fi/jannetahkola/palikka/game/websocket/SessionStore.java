@@ -1,24 +1,67 @@
 package fi.jannetahkola.palikka.game.websocket;
 
 import fi.jannetahkola.palikka.core.auth.PalikkaAuthenticationDetails;
+import fi.jannetahkola.palikka.core.auth.PalikkaPrincipal;
+import fi.jannetahkola.palikka.core.auth.authenticator.UserJwtAuthenticator;
 import fi.jannetahkola.palikka.core.auth.jwt.JwtService;
-import lombok.RequiredArgsConstructor;
+import fi.jannetahkola.palikka.core.integration.users.UserAuthorizationSnapshot;
+import fi.jannetahkola.palikka.core.integration.users.UsersClient;
+import fi.jannetahkola.palikka.core.integration.users.UsersClientException;
+import fi.jannetahkola.palikka.core.integration.users.events.UserAuthorizationChangedEvent;
+import fi.jannetahkola.palikka.core.integration.users.events.UserAuthorizationEventListener;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.web.socket.WebSocketSession;
 
 import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Predicate;
 
 /**
  * Additional session store to mitigate the issue mentioned in {@link PreSendAuthorizationChannelInterceptor}.
+ * <br><br>
+ * Also keeps the authorities of open sessions up to date. The authentication of a WebSocket session is fixed once
+ * the connection is established, so when the users API reports a change, the user is loaded again and the refreshed
+ * authentication is stored here for {@link PreSendAuthorizationChannelInterceptor} to use instead. Sessions of users
+ * that no longer exist or are inactive, and sessions established with a token that has since been revoked, are closed.
+ * If the user can't be loaded, e.g. because the users API is unavailable, the session keeps its current authentication.
+ * Sessions are refreshed on a dedicated thread, one event at a time, so that loading users doesn't hold up the thread
+ * delivering the events.
  */
 @Slf4j
-@RequiredArgsConstructor
-public class SessionStore {
+public class SessionStore implements UserAuthorizationEventListener {
     private final JwtService jwtService;
+    private final UsersClient usersClient;
+    private final Executor refreshExecutor;
     private final Map<String, WebSocketSession> sessions = new ConcurrentHashMap<>(new HashMap<>());
+    private final Map<String, UsernamePasswordAuthenticationToken> refreshedAuthentications = new ConcurrentHashMap<>();
+
+    public SessionStore(JwtService jwtService, UsersClient usersClient) {
+        this(jwtService, usersClient, Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "session-refresher");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    SessionStore(JwtService jwtService, UsersClient usersClient, Executor refreshExecutor) {
+        this.jwtService = jwtService;
+        this.usersClient = usersClient;
+        this.refreshExecutor = refreshExecutor;
+    }
+
+    @PreDestroy
+    void preDestroy() {
+        if (refreshExecutor instanceof ExecutorService executorService) {
+            executorService.shutdownNow();
+        }
+    }
 
     public int sessionCount() {
         return sessions.size();
@@ -30,6 +73,7 @@ public class SessionStore {
     }
 
     public void removeSession(String sessionId) {
+        refreshedAuthentications.remove(sessionId);
         try (var removedSession = sessions.remove(sessionId)) {
             log.debug("Session removed with id={}", sessionId);
         } catch (IOException e) {
@@ -37,6 +81,84 @@ public class SessionStore {
         }
     }
 
+    /**
+     * @param sessionId Identifier of the session
+     * @return Authentication refreshed after the session was established, or empty if not refreshed
+     */
+    public Optional<UsernamePasswordAuthenticationToken> getRefreshedAuthentication(String sessionId) {
+        return Optional.ofNullable(refreshedAuthentications.get(sessionId));
+    }
+
+    @Override
+    public void onUserAuthorizationChanged(UserAuthorizationChangedEvent event) {
+        refreshExecutor.execute(() -> refreshSessions(event.userIds()::contains));
+    }
+
+    @Override
+    public void onEventsMissed() {
+        refreshExecutor.execute(() -> refreshSessions(userId -> true));
+    }
+
+    private void refreshSessions(Predicate<Integer> userFilter) {
+        for (WebSocketSession session : sessions.values()) {
+            try {
+                var authenticationToken = (UsernamePasswordAuthenticationToken) session.getPrincipal();
+                if (authenticationToken != null
+                        && authenticationToken.getPrincipal() instanceof PalikkaPrincipal principal
+                        && userFilter.test(principal.getId())) {
+                    refreshSession(session, authenticationToken, principal);
+                }
+            } catch (RuntimeException e) {
+                log.error("Failed to refresh session id={}, continuing with the other sessions", session.getId(), e);
+            }
+        }
+    }
+
+    private void refreshSession(WebSocketSession session,
+                                UsernamePasswordAuthenticationToken authenticationToken,
+                                PalikkaPrincipal principal) {
+        Optional<UserAuthorizationSnapshot> snapshot;
+        try {
+            snapshot = usersClient.getUserAuthorization(principal.getId());
+        } catch (UsersClientException e) {
+            log.warn("Failed to refresh session authorities, keeping the current ones, " +
+                    "session id={}, principal={}", session.getId(), principal.getName(), e);
+            return;
+        }
+        if (snapshot.isEmpty()
+                || Boolean.FALSE.equals(snapshot.get().getUser().getActive())
+                || isTokenRevoked(authenticationToken, snapshot.get())) {
+            try {
+                session.close();
+                log.debug("Closed session of a removed or inactive user, or of a revoked token, " +
+                        "session id={}, principal={}", session.getId(), principal.getName());
+            } catch (IOException e) {
+                log.error("Failed to close session id={}", session.getId());
+            } finally {
+                removeSession(session.getId());
+            }
+            return;
+        }
+        var refreshed = new UsernamePasswordAuthenticationToken(
+                principal,
+                null,
+                snapshot.get().getAuthorities().stream().map(SimpleGrantedAuthority::new).toList());
+        refreshed.setDetails(authenticationToken.getDetails());
+        refreshedAuthentications.put(session.getId(), refreshed);
+        log.debug("Refreshed session authorities, session id={}, principal={}, authorities={}",
+                session.getId(), principal.getName(), refreshed.getAuthorities());
+    }
+
+    private boolean isTokenRevoked(UsernamePasswordAuthenticationToken authenticationToken,
+                                   UserAuthorizationSnapshot snapshot) {
+        if (!(authenticationToken.getDetails() instanceof PalikkaAuthenticationDetails details)) {
+            return false;
+        }
+        return jwtService.getClaims(details.getToken())
+                .map(claims -> !UserJwtAuthenticator.isCurrentGeneration(claims, snapshot.getUser()))
+                .orElse(false);
+    }
+
     /**
      * Goes through the sessions map to find any session established with a now-expired JWT. All such
      * sessions are closed (disconnected) and removed from the map.
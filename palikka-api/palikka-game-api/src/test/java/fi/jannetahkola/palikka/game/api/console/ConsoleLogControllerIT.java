@@ -0,0 +1,145 @@
+package fi.jannetahkola.palikka.game.api.console;
+
+import fi.jannetahkola.palikka.game.process.log.ConsoleLog;
+import fi.jannetahkola.palikka.game.testutils.IntegrationTest;
+import io.restassured.RestAssured;
+import io.restassured.http.Header;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.nio.file.Files;
+
+import static fi.jannetahkola.palikka.game.testutils.Stubs.stubForAdminUser;
+import static fi.jannetahkola.palikka.game.testutils.Stubs.stubForViewerUser;
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ConsoleLogControllerIT extends IntegrationTest {
+    static final String CONSOLE_LOG_DIRECTORY = createTempDirectory();
+
+    @Autowired
+    ConsoleLog consoleLog;
+
+    Header authorizationHeader;
+
+    @DynamicPropertySource
+    static void dynamicPropertySource(DynamicPropertyRegistry registry) {
+        registry.add("palikka.integration.users-api.base-uri", () -> wireMockServer.baseUrl());
+        registry.add("palikka.game.console-log.enabled", () -> true);
+        registry.add("palikka.game.console-log.directory", () -> CONSOLE_LOG_DIRECTORY);
+    }
+
+    @BeforeAll
+    @SneakyThrows
+    void beforeAll() {
+        for (long sequence = 1; sequence <= 250; sequence++) {
+            consoleLog.append(sequence, "line " + sequence);
+        }
+    }
+
+    @BeforeEach
+    void beforeEach(@LocalServerPort int localServerPort) {
+        RestAssured.basePath = "/game-api";
+        RestAssured.port = localServerPort;
+        RestAssured.enableLoggingOfRequestAndResponseIfValidationFails();
+        stubForAdminUser(wireMockServer);
+        authorizationHeader = new Header(HttpHeaders.AUTHORIZATION, testTokenGenerator.generateBearerToken(1));
+    }
+
+    @Test
+    void givenGetConsoleLogRequest_whenNoParameters_thenLatestPageReturned() {
+        given()
+                .header(authorizationHeader)
+                .get("/game/console-log")
+                .then().assertThat()
+                .statusCode(200)
+                .body("first_seq", equalTo(1))
+                .body("last_seq", equalTo(250))
+                .body("lines", hasSize(100))
+                .body("lines[0].seq", equalTo(151))
+                .body("lines[99].seq", equalTo(250))
+                .body("lines[99].data", equalTo("line 250"))
+                .body("lines[99].timestamp", notNullValue());
+    }
+
+    @Test
+    void givenGetConsoleLogRequest_whenAfterGiven_thenNextPageReturned() {
+        given()
+                .header(authorizationHeader)
+                .queryParam("after", 10)
+                .queryParam("limit", 5)
+                .get("/game/console-log")
+                .then().assertThat()
+                .statusCode(200)
+                .body("lines.seq", contains(11, 12, 13, 14, 15));
+    }
+
+    @Test
+    void givenGetConsoleLogRequest_whenBeforeGiven_thenPreviousPageReturned() {
+        given()
+                .header(authorizationHeader)
+                .queryParam("before", 10)
+                .queryParam("limit", 3)
+                .get("/game/console-log")
+                .then().assertThat()
+                .statusCode(200)
+                .body("lines.seq", contains(7, 8, 9));
+    }
+
+    @Test
+    void givenGetConsoleLogRequest_whenViewerRole_thenOkResponse() {
+        stubForViewerUser(wireMockServer);
+        given()
+                .header(HttpHeaders.AUTHORIZATION, testTokenGenerator.generateBearerToken(3))
+                .get("/game/console-log")
+                .then().assertThat()
+                .statusCode(200);
+    }
+
+    @Test
+    void givenGetConsoleLogRequest_whenNoToken_thenForbiddenResponse() {
+        given()
+                .get("/game/console-log")
+                .then().assertThat()
+                .statusCode(403);
+    }
+
+    @Test
+    void givenGetConsoleLogRequest_whenSeveralPositionsGiven_thenBadRequestResponse() {
+        given()
+                .header(authorizationHeader)
+                .queryParam("after", 10)
+                .queryParam("before", 20)
+                .get("/game/console-log")
+                .then().assertThat()
+                .statusCode(400);
+    }
+
+    @Test
+    void givenGetConsoleLogRequest_whenLimitTooLarge_thenBadRequestResponse() {
+        given()
+                .header(authorizationHeader)
+                .queryParam("limit", ConsoleLogController.MAX_LIMIT + 1)
+                .get("/game/console-log")
+                .then().assertThat()
+                .statusCode(400);
+    }
+
+    @SneakyThrows
+    static String createTempDirectory() {
+        return Files.createTempDirectory("console-log").toString();
+    }
+}
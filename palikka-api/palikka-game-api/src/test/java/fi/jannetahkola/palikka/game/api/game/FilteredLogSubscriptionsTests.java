@@ -0,0 +1,74 @@
+package fi.jannetahkola.palikka.game.api.game;
+
+import fi.jannetahkola.palikka.game.process.ConsoleLineFilter;
+import fi.jannetahkola.palikka.game.util.ConsoleHistory;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FilteredLogSubscriptionsTests {
+    static final List<ConsoleHistory.Entry> LINES = List.of(
+            entry(1, "[20:00:00] [Server thread/INFO]: Preparing spawn area: 42%"),
+            entry(2, "[20:01:00] [Server thread/ERROR]: Encountered an unexpected exception"),
+            entry(3, "java.lang.IllegalStateException: oops"),
+            entry(4, "\tat net.minecraft.server.MinecraftServer.run(MinecraftServer.java:1)"),
+            entry(5, "[20:01:01] [Server thread/INFO]: Steve joined the game"),
+            entry(6, "[20:01:02] [Server thread/WARN]: Steve moved too quickly!"));
+
+    final FilteredLogSubscriptions subscriptions = new FilteredLogSubscriptions();
+
+    @Test
+    void testEqualFiltersAreMatchedOnce() {
+        var first = new FilteredLogSubscriptions.Subscription("s1", "sub-0", "admin", ConsoleLineFilter.of("WARN", null, null));
+        var second = new FilteredLogSubscriptions.Subscription("s2", "sub-0", "viewer", ConsoleLineFilter.of("WARN", null, null));
+        subscriptions.add(first);
+        subscriptions.add(second);
+
+        List<Set<FilteredLogSubscriptions.Subscription>> groups = new ArrayList<>();
+        List<List<ConsoleHistory.Entry>> matched = new ArrayList<>();
+        subscriptions.match(LINES, (group, lines) -> {
+            groups.add(Set.copyOf(group));
+            matched.add(lines);
+        });
+        assertThat(groups).containsExactly(Set.of(first, second));
+        assertThat(matched).containsExactly(List.of(LINES.get(5)));
+    }
+
+    @Test
+    void testLinesWithoutPrefixFollowPreviousLine() {
+        subscriptions.add(new FilteredLogSubscriptions.Subscription("s1", "sub-0", "admin", ConsoleLineFilter.of("ERROR", null, null)));
+
+        List<ConsoleHistory.Entry> matched = new ArrayList<>();
+        subscriptions.match(LINES.subList(0, 3), (group, lines) -> matched.addAll(lines));
+        // The rest of the stack trace arrives in the next batch
+        subscriptions.match(LINES.subList(3, 6), (group, lines) -> matched.addAll(lines));
+        assertThat(matched).containsExactly(LINES.get(1), LINES.get(2), LINES.get(3));
+    }
+
+    @Test
+    void testSubscriptionIsReplacedAndRemoved() {
+        subscriptions.add(new FilteredLogSubscriptions.Subscription("s1", "sub-0", "admin", ConsoleLineFilter.of("ERROR", null, null)));
+        subscriptions.add(new FilteredLogSubscriptions.Subscription("s1", "sub-1", "admin", ConsoleLineFilter.of("WARN", null, null)));
+        assertThat(subscriptions.size()).isEqualTo(1);
+
+        List<ConsoleHistory.Entry> matched = new ArrayList<>();
+        subscriptions.match(LINES, (group, lines) -> matched.addAll(lines));
+        assertThat(matched).containsExactly(LINES.get(5));
+
+        subscriptions.remove("s1", "sub-0"); // Already replaced
+        assertThat(subscriptions.size()).isEqualTo(1);
+        subscriptions.remove("s1", "sub-1");
+        assertThat(subscriptions.size()).isZero();
+
+        subscriptions.match(LINES, (group, lines) -> matched.addAll(lines));
+        assertThat(matched).hasSize(1);
+    }
+
+    static ConsoleHistory.Entry entry(long sequence, String line) {
+        return new ConsoleHistory.Entry(sequence, line, line.length());
+    }
+}
@@ -3,6 +3,7 @@ package fi.jannetahkola.palikka.game.api.game;
 import fi.jannetahkola.palikka.game.api.game.model.GameLifecycleMessage;
 import fi.jannetahkola.palikka.game.api.game.model.GameLogMessage;
 import fi.jannetahkola.palikka.game.api.game.model.GameOutputMessage;
+import fi.jannetahkola.palikka.game.api.game.model.GameStatusMessage;
 import fi.jannetahkola.palikka.game.api.game.model.GameUserReplyMessage;
 import fi.jannetahkola.palikka.game.testutils.TestStompSessionHandlerAdapter;
 import fi.jannetahkola.palikka.game.testutils.GameProcessIntegrationTest;
@@ -15,6 +16,7 @@ import org.springframework.boot.test.system.CapturedOutput;
 import org.springframework.boot.test.system.OutputCaptureExtension;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.messaging.simp.stomp.StompHeaders;
 import org.springframework.messaging.simp.stomp.StompSession;
 import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
 import org.springframework.test.context.ActiveProfiles;
@@ -165,6 +167,144 @@ class GameControllerIT extends GameProcessIntegrationTest {
         stop(session);
     }
 
+    @SneakyThrows
+    @Test
+    void testSubscribeToGameWithSinceHeader_thenOnlyMissedHistoryReceived_andLiveLogsHaveNextSequence() {
+        mockGameProcess();
+
+        stubForAdminUser(wireMockServer);
+        String token = testTokenGenerator.generateToken(1);
+        HttpHeaders httpHeaders = newAuthHeader(token);
+
+        given()
+                .headers(httpHeaders)
+                .contentType(MediaType.APPLICATION_JSON_VALUE)
+                .body(new JSONObject().put("action", "start").toString())
+                .post("/game/process")
+                .then().assertThat()
+                .statusCode(200);
+
+        outputAsServerProcess(SERVER_START_LOG_QUIET);
+        await().atMost(getTestTimeout()).until(() -> gameProcessService.getLastInputSequence() > 0);
+        long seenSequence = gameProcessService.getLastInputSequence();
+        outputAsServerProcess(SERVER_START_LOG);
+        assertThat(gameStartLatch.await(testTimeoutMillis, TimeUnit.MILLISECONDS)).isTrue();
+        await().atMost(getTestTimeout()).until(() -> gameProcessService.getLastInputSequence() > seenSequence);
+
+        StompSessionHandlerAdapter sessionHandler = newStompSessionHandler();
+        StompSession session = newSession(token, sessionHandler);
+        session.subscribe("/user/queue/reply", sessionHandler);
+        StompHeaders logsHeaders = new StompHeaders();
+        logsHeaders.setDestination("/topic/game/logs");
+        logsHeaders.add("since", String.valueOf(seenSequence));
+        session.subscribe(logsHeaders, sessionHandler);
+
+        TestStompSessionHandlerAdapter.Frame userReplyFrame = userReplyQueue.poll(testTimeoutMillis, TimeUnit.MILLISECONDS);
+        assertThat(userReplyFrame).isNotNull();
+        GameUserReplyMessage historyMsg = userReplyFrame.getPayloadAs(GameUserReplyMessage.class);
+        assertThat(historyMsg.getTyp()).isEqualTo(GameUserReplyMessage.Type.HISTORY);
+        assertThat(historyMsg.getData()).isEqualTo(SERVER_START_LOG);
+        assertThat(historyMsg.getSeq()).isEqualTo(seenSequence + 1);
+        assertThat(historyMsg.getTruncated()).isFalse();
+
+        GameOutputMessage msg = GameOutputMessage.builder().data("/weather clear").build();
+        session.send("/app/game", msg);
+
+        TestStompSessionHandlerAdapter.Frame logFrame = logMessageQueue.poll(testTimeoutMillis, TimeUnit.MILLISECONDS);
+        assertThat(logFrame).isNotNull();
+        GameLogMessage logMsg = logFrame.getPayloadAs(GameLogMessage.class);
+        assertThat(logMsg.getData()).isEqualTo("/weather clear");
+        assertThat(logMsg.getSeq()).isEqualTo(seenSequence + 2);
+
+        stop(session);
+    }
+
+    @SneakyThrows
+    @Test
+    void testSubscribeToFilteredGameLogs_thenOnlyMatchingLinesReceived() {
+        mockGameProcess();
+
+        stubForAdminUser(wireMockServer);
+        String token = testTokenGenerator.generateToken(1);
+        HttpHeaders httpHeaders = newAuthHeader(token);
+
+        StompSessionHandlerAdapter sessionHandler = newStompSessionHandler();
+        StompSession session = newSession(token, sessionHandler);
+        session.subscribe("/user/queue/reply", sessionHandler);
+        StompHeaders logsHeaders = new StompHeaders();
+        logsHeaders.setDestination("/user/queue/game/logs");
+        logsHeaders.add("level", "WARN,ERROR");
+        session.subscribe(logsHeaders, sessionHandler);
+
+        given()
+                .headers(httpHeaders)
+                .contentType(MediaType.APPLICATION_JSON_VALUE)
+                .body(new JSONObject().put("action", "start").toString())
+                .post("/game/process")
+                .then().assertThat()
+                .statusCode(200);
+
+        outputAsServerProcess(SERVER_START_LOG);
+        assertThat(gameStartLatch.await(testTimeoutMillis, TimeUnit.MILLISECONDS)).isTrue();
+        String warnLog = "[19:59:00] [Server thread/WARN]: Can't keep up! Is the server overloaded?";
+        outputAsServerProcess(warnLog);
+
+        TestStompSessionHandlerAdapter.Frame logFrame = logMessageQueue.poll(testTimeoutMillis, TimeUnit.MILLISECONDS);
+        assertThat(logFrame).isNotNull();
+        GameLogMessage logMsg = logFrame.getPayloadAs(GameLogMessage.class);
+        assertThat(logMsg.getData()).isEqualTo(warnLog);
+        assertThat(logMsg.getSeq()).isEqualTo(gameProcessService.getLastInputSequence());
+        assertThat(logMessageQueue.poll(200, TimeUnit.MILLISECONDS)).isNull();
+
+        stop(session);
+    }
+
+    @SneakyThrows
+    @Test
+    void testSubscribeToFilteredGameLogs_whenRegexInvalid_thenErrorMessageReceived() {
+        stubForAdminUser(wireMockServer);
+        String token = testTokenGenerator.generateToken(1);
+
+        StompSessionHandlerAdapter sessionHandler = newStompSessionHandler();
+        StompSession session = newSession(token, sessionHandler);
+        session.subscribe("/user/queue/reply", sessionHandler);
+        StompHeaders logsHeaders = new StompHeaders();
+        logsHeaders.setDestination("/user/queue/game/logs");
+        logsHeaders.add("regex", "(unclosed");
+        session.subscribe(logsHeaders, sessionHandler);
+
+        TestStompSessionHandlerAdapter.Frame userReplyFrame = userReplyQueue.poll(testTimeoutMillis, TimeUnit.MILLISECONDS);
+        assertThat(userReplyFrame).isNotNull();
+        GameUserReplyMessage reply = userReplyFrame.getPayloadAs(GameUserReplyMessage.class);
+        assertThat(reply.getTyp()).isEqualTo(GameUserReplyMessage.Type.ERROR);
+        assertThat(reply.getData()).startsWith("Invalid regex");
+
+        session.disconnect();
+        await().atMost(Duration.ofSeconds(1)).until(() -> sessionStore.sessionCount() == 0);
+    }
+
+    @SneakyThrows
+    @Test
+    void testSubscribeToGameStatus_thenFullStatusReceived() {
+        stubForAdminUser(wireMockServer);
+        String token = testTokenGenerator.generateToken(1);
+
+        StompSessionHandlerAdapter sessionHandler = newStompSessionHandler();
+        StompSession session = newSession(token, sessionHandler);
+        session.subscribe("/topic/game/status", sessionHandler);
+
+        TestStompSessionHandlerAdapter.Frame statusFrame = statusMessageQueue.poll(testTimeoutMillis, TimeUnit.MILLISECONDS);
+        assertThat(statusFrame).isNotNull();
+        GameStatusMessage statusMsg = statusFrame.getPayloadAs(GameStatusMessage.class);
+        assertThat(statusMsg.getOnline()).isFalse(); // Nothing listening on the game port in tests
+        assertThat(statusMsg.getEtag()).isNotBlank();
+        assertThat(statusMsg.getPreviousEtag()).isNull();
+        assertThat(statusMessageQueue.poll(200, TimeUnit.MILLISECONDS)).isNull(); // No changes
+
+        session.disconnect();
+        await().atMost(Duration.ofSeconds(1)).until(() -> sessionStore.sessionCount() == 0);
+    }
+
     @SneakyThrows
     @Test
     @Disabled("duplicate and does not test the case correctly")
@@ -0,0 +1,74 @@
+package fi.jannetahkola.palikka.game.api.game.model;
+
+import fi.jannetahkola.palikka.game.api.status.model.GameStatusResponse;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GameStatusMessageTests {
+    @Test
+    void testFullMessageContainsEveryField() {
+        GameStatusMessage msg = GameStatusMessage.full(newStatus(3), "a");
+        assertThat(msg.getEtag()).isEqualTo("a");
+        assertThat(msg.getPreviousEtag()).isNull();
+        assertThat(msg.getOnline()).isTrue();
+        assertThat(msg.getVersion()).isEqualTo("1.20.4");
+        assertThat(msg.getFavicon()).isEqualTo("data:image/png;base64,AAAA");
+        assertThat(msg.getPlayers().getOnline()).isEqualTo(3);
+    }
+
+    @Test
+    void testDeltaContainsChangedFieldsOnly() {
+        GameStatusMessage msg = GameStatusMessage.delta(newStatus(3), "a", newStatus(4), "b");
+        assertThat(msg).isEqualTo(GameStatusMessage.builder()
+                .etag("b")
+                .previousEtag("a")
+                .players(newStatus(4).getPlayers())
+                .build());
+
+        GameStatusResponse online = newStatus(4);
+        online.setFavicon("data:image/png;base64,BBBB");
+        msg = GameStatusMessage.delta(newStatus(4), "b", online, "c");
+        assertThat(msg).isEqualTo(GameStatusMessage.builder()
+                .etag("c")
+                .previousEtag("b")
+                .favicon("data:image/png;base64,BBBB")
+                .build());
+    }
+
+    @Test
+    void testFullMessageWhenGoingOffline() {
+        GameStatusResponse offline = new GameStatusResponse();
+        offline.setOnline(false);
+        GameStatusMessage msg = GameStatusMessage.delta(newStatus(4), "b", offline, "c");
+        assertThat(msg).isEqualTo(GameStatusMessage.full(offline, "c"));
+        assertThat(msg.getPreviousEtag()).isNull(); // Replaces the status known to the client
+        assertThat(msg.getOnline()).isFalse();
+        assertThat(msg.getVersion()).isNull();
+        assertThat(msg.getPlayers()).isNull();
+        assertThat(msg.getFavicon()).isNull();
+
+        // Coming back online only adds fields
+        msg = GameStatusMessage.delta(offline, "c", newStatus(0), "d");
+        assertThat(msg.getPreviousEtag()).isEqualTo("c");
+        assertThat(msg.getOnline()).isTrue();
+        assertThat(msg.getVersion()).isEqualTo("1.20.4");
+    }
+
+    @Test
+    void testDeltaIsNullWhenNothingChanged() {
+        assertThat(GameStatusMessage.delta(newStatus(3), "a", newStatus(3), "a")).isNull();
+    }
+
+    static GameStatusResponse newStatus(int playersOnline) {
+        GameStatusResponse status = new GameStatusResponse();
+        status.setVersion("1.20.4");
+        status.setDescription("A Minecraft Server");
+        status.setFavicon("data:image/png;base64,AAAA");
+        GameStatusResponse.Players players = new GameStatusResponse.Players();
+        players.setMax(20);
+        players.setOnline(playersOnline);
+        status.setPlayers(players);
+        return status;
+    }
+}
@@ -90,6 +90,15 @@ class GameProcessControllerIT extends GameProcessIntegrationTest {
             );
         }
 
+        @Test
+        void givenGetDispatchMetricsRequest_whenNotAdmin_thenForbiddenResponse() {
+            given()
+                    .header(authorizationHeader)
+                    .get("/game/process/dispatch")
+                    .then().assertThat()
+                    .statusCode(403);
+        }
+
         @SneakyThrows
         @Test
         void givenProcessControlRequest_whenNoTokenOrRoles_thenForbiddenResponse() {
@@ -128,6 +137,17 @@ class GameProcessControllerIT extends GameProcessIntegrationTest {
                     .body("status", equalTo("down"));
         }
 
+        @Test
+        void givenGetDispatchMetricsRequest_thenOkResponse() {
+            given()
+                    .header(authorizationHeader)
+                    .get("/game/process/dispatch")
+                    .then().assertThat()
+                    .statusCode(200)
+                    .body("queue_capacity", equalTo(10000))
+                    .body("dropped", equalTo(0));
+        }
+
         @SneakyThrows
         @Test
         void givenProcessControlRequestWithInvalidParams_thenBadRequestResponse() {
@@ -1,6 +1,9 @@
 package fi.jannetahkola.palikka.game.api.status;
 
+import fi.jannetahkola.palikka.game.api.status.model.FleetStatusResponse;
 import fi.jannetahkola.palikka.game.api.status.model.GameStatusResponse;
+import fi.jannetahkola.palikka.game.service.FleetStatusService;
+import fi.jannetahkola.palikka.game.service.GameStatusService;
 import fi.jannetahkola.palikka.game.testutils.IntegrationTest;
 import lombok.SneakyThrows;
 import org.apache.http.HttpHeaders;
@@ -15,15 +18,27 @@ import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 
 import static fi.jannetahkola.palikka.game.testutils.Stubs.stubForAdminUser;
 import static org.assertj.core.api.Assertions.assertThat;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 /**
- * Integration test tests only access, see {@link GameStatusControllerTests}.
+ * Integration test tests access and caching headers, see {@link fi.jannetahkola.palikka.game.service.GameStatusServiceTests} for the status probe.
  */
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.MOCK)
 @ActiveProfiles("test")
@@ -33,7 +48,10 @@ class GameStatusControllerIT extends IntegrationTest {
     MockMvc mockMvc;
 
     @MockBean
-    GameStatusController gameStatusController;
+    GameStatusService gameStatusService;
+
+    @MockBean
+    FleetStatusService fleetStatusService;
 
     @DynamicPropertySource
     static void dynamicPropertySource(DynamicPropertyRegistry registry) {
@@ -50,11 +68,122 @@ class GameStatusControllerIT extends IntegrationTest {
         GameStatusResponse gameStatus = new GameStatusResponse();
         gameStatus.setOnline(false);
 
-        when(gameStatusController.getGameStatus()).thenReturn(gameStatus);
+        when(gameStatusService.getSnapshotAsync()).thenReturn(CompletableFuture.completedFuture(
+                new GameStatusService.Snapshot(gameStatus, "abc", Instant.now())));
+
+        performAsync(
+                get("/game/status")
+                        .header(HttpHeaders.AUTHORIZATION, testTokenGenerator.generateBearerToken(1))
+        ).andExpect(status().isOk());
+    }
+
+    @SneakyThrows
+    @Test
+    void givenGetGameStatusRequest_whenETagMatches_thenNotModifiedResponse() {
+        stubForAdminUser(wireMockServer);
+
+        GameStatusResponse gameStatus = new GameStatusResponse();
+        gameStatus.setOnline(false);
+
+        when(gameStatusService.getSnapshotAsync()).thenReturn(CompletableFuture.completedFuture(
+                new GameStatusService.Snapshot(gameStatus, "abc", Instant.now().minusSeconds(3))));
+
+        performAsync(
+                get("/game/status")
+                        .header(HttpHeaders.AUTHORIZATION, testTokenGenerator.generateBearerToken(1))
+        )
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"abc\""))
+                .andExpect(header().string(HttpHeaders.AGE, "3"))
+                .andExpect(jsonPath("$.online").value(false));
+
+        performAsync(
+                get("/game/status")
+                        .header(HttpHeaders.AUTHORIZATION, testTokenGenerator.generateBearerToken(1))
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"abc\"")
+        ).andExpect(status().isNotModified());
 
-        mockMvc.perform(
+        performAsync(
                 get("/game/status")
                         .header(HttpHeaders.AUTHORIZATION, testTokenGenerator.generateBearerToken(1))
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"old\"")
         ).andExpect(status().isOk());
     }
+
+    @SneakyThrows
+    @Test
+    void givenGetGameStatusRequest_whenRefresh_thenStatusProbed() {
+        stubForAdminUser(wireMockServer);
+
+        GameStatusResponse gameStatus = new GameStatusResponse();
+        gameStatus.setOnline(true);
+
+        CompletableFuture<GameStatusService.Snapshot> probe = new CompletableFuture<>();
+        when(gameStatusService.refresh()).thenReturn(probe);
+
+        // Returns without waiting for the probe
+        MvcResult result = mockMvc.perform(
+                get("/game/status")
+                        .param("refresh", "true")
+                        .header(HttpHeaders.AUTHORIZATION, testTokenGenerator.generateBearerToken(1))
+        )
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        verify(gameStatusService).refresh();
+
+        probe.complete(new GameStatusService.Snapshot(gameStatus, "def", Instant.now()));
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.online").value(true));
+    }
+
+    @SneakyThrows
+    @Test
+    void givenGetFleetStatusRequest_thenOkResponse() {
+        stubForAdminUser(wireMockServer);
+
+        GameStatusResponse online = new GameStatusResponse();
+        online.setHost("mc1.example.com");
+        online.setPort(25565);
+        GameStatusResponse offline = new GameStatusResponse();
+        offline.setHost("mc2.example.com");
+        offline.setPort(25565);
+        offline.setOnline(false);
+        FleetStatusResponse fleetStatus = new FleetStatusResponse();
+        fleetStatus.setTotal(2);
+        fleetStatus.setOnline(1);
+        fleetStatus.setServers(List.of(online, offline));
+
+        when(fleetStatusService.getSnapshotAsync()).thenReturn(CompletableFuture.completedFuture(
+                new FleetStatusService.Snapshot(fleetStatus, "abc", Instant.now().minusSeconds(3))));
+
+        performAsync(
+                get("/game/status/fleet")
+                        .header(HttpHeaders.AUTHORIZATION, testTokenGenerator.generateBearerToken(1))
+        )
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"abc\""))
+                .andExpect(header().string(HttpHeaders.AGE, "3"))
+                .andExpect(jsonPath("$.total").value(2))
+                .andExpect(jsonPath("$.online").value(1))
+                .andExpect(jsonPath("$.servers[0].host").value("mc1.example.com"))
+                .andExpect(jsonPath("$.servers[1].online").value(false));
+
+        performAsync(
+                get("/game/status/fleet")
+                        .header(HttpHeaders.AUTHORIZATION, testTokenGenerator.generateBearerToken(1))
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"abc\"")
+        ).andExpect(status().isNotModified());
+    }
+
+    /**
+     * Performs a request handled asynchronously by the controller and dispatches its result.
+     */
+    @SneakyThrows
+    ResultActions performAsync(MockHttpServletRequestBuilder requestBuilder) {
+        MvcResult result = mockMvc.perform(requestBuilder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(result));
+    }
 }
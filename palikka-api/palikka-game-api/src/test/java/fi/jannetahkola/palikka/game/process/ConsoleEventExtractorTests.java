@@ -0,0 +1,167 @@
+package fi.jannetahkola.palikka.game.process;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+class ConsoleEventExtractorTests {
+    final ConsoleEventExtractor extractor = new ConsoleEventExtractor(ConsoleEventPattern.defaults());
+
+    @Test
+    void testServerStartedEvent() {
+        ConsoleEvent event = extract("[19:56:37] [Server thread/INFO]: Done (13.324s)! For help, type \"help\"");
+        assertThat(event.type()).isEqualTo(ConsoleEvent.Type.SERVER_STARTED);
+        assertThat(event.time()).isEqualTo("19:56:37");
+        assertThat(event.thread()).isEqualTo("Server thread");
+        assertThat(event.level()).isEqualTo("INFO");
+        assertThat(event.message()).isEqualTo("Done (13.324s)! For help, type \"help\"");
+        assertThat(event.attributes()).containsExactly(Map.entry("startupTime", "13.324"));
+    }
+
+    @Test
+    void testServerStartedEventWithLocaleSpecificStartupTime() {
+        ConsoleEvent event = extract("[19:56:37] [Server thread/INFO]: Done (5,123s)! For help, type \"help\"");
+        assertThat(event.type()).isEqualTo(ConsoleEvent.Type.SERVER_STARTED);
+        assertThat(event.attributes()).containsExactly(Map.entry("startupTime", "5,123"));
+
+        event = extract("[19:56:37] [Server thread/INFO]: Done (5 123 s)! For help, type \"help\"");
+        assertThat(event.type()).isEqualTo(ConsoleEvent.Type.SERVER_STARTED);
+        assertThat(event.attributes()).isEmpty();
+    }
+
+    @Test
+    void testServerStoppingEvent() {
+        assertThat(extract("[19:58:01] [Server thread/INFO]: Stopping server").type())
+                .isEqualTo(ConsoleEvent.Type.SERVER_STOPPING);
+        assertThat(extract("[19:58:01] [Server thread/INFO]: Stopping the server").type())
+                .isEqualTo(ConsoleEvent.Type.SERVER_STOPPING);
+    }
+
+    @Test
+    void testPlayerEvents() {
+        ConsoleEvent joined = extract("[19:57:12] [Server thread/INFO]: Steve joined the game");
+        assertThat(joined.type()).isEqualTo(ConsoleEvent.Type.PLAYER_JOINED);
+        assertThat(joined.attributes()).containsExactly(Map.entry("player", "Steve"));
+
+        ConsoleEvent left = extract("[19:57:40] [Server thread/INFO]: Steve left the game");
+        assertThat(left.type()).isEqualTo(ConsoleEvent.Type.PLAYER_LEFT);
+        assertThat(left.attributes()).containsExactly(Map.entry("player", "Steve"));
+    }
+
+    @Test
+    void testChatEvent() {
+        ConsoleEvent event = extract("[19:57:20] [Async Chat Thread - #0/INFO]: <Steve> hello <there>");
+        assertThat(event.type()).isEqualTo(ConsoleEvent.Type.CHAT);
+        assertThat(event.thread()).isEqualTo("Async Chat Thread - #0");
+        assertThat(event.attributes()).containsOnly(Map.entry("player", "Steve"), Map.entry("text", "hello <there>"));
+
+        assertThat(extract("[19:57:21] [Server thread/INFO]: [Not Secure] <Alex> hi").attributes())
+                .containsOnly(Map.entry("player", "Alex"), Map.entry("text", "hi"));
+    }
+
+    @Test
+    void testTickLagEvent() {
+        ConsoleEvent event = extract("[19:59:00] [Server thread/WARN]: Can't keep up! Is the server overloaded? "
+                + "Running 2503ms or 50 ticks behind");
+        assertThat(event.type()).isEqualTo(ConsoleEvent.Type.TICK_LAG);
+        assertThat(event.attributes()).containsOnly(Map.entry("behindMs", "2503"), Map.entry("behindTicks", "50"));
+    }
+
+    @Test
+    void testErrorEvents() {
+        ConsoleEvent error = extract("[20:01:00] [Server thread/ERROR]: Encountered an unexpected exception");
+        assertThat(error.type()).isEqualTo(ConsoleEvent.Type.ERROR);
+        assertThat(error.attributes()).isEmpty();
+
+        assertThat(extract("[20:01:00] [main/FATAL]: Failed to start the minecraft server").type())
+                .isEqualTo(ConsoleEvent.Type.ERROR);
+    }
+
+    @Test
+    void testLinesNotMatchingPrefilterProduceNoEvents() {
+        // Right message on the wrong thread or level
+        assertThat(extractor.extract("[19:56:37] [Worker-Main-1/INFO]: Done (13.324s)! For help, type \"help\""))
+                .isEmpty();
+        assertThat(extractor.extract("[19:57:12] [Server thread/WARN]: Steve joined the game")).isEmpty();
+        // Literal found but regex doesn't match
+        assertThat(extractor.extract("[19:57:12] [Server thread/INFO]: Steve and Alex joined the game")).isEmpty();
+        assertThat(extractor.extract("[19:56:30] [Server thread/INFO]: Preparing spawn area: 83%")).isEmpty();
+    }
+
+    @Test
+    void testLinesWithoutPrefixProduceNoEvents() {
+        assertThat(extractor.extract("Starting net.minecraft.server.Main")).isEmpty();
+        assertThat(extractor.extract("\tat net.minecraft.server.MinecraftServer.run(MinecraftServer.java:1)")).isEmpty();
+        assertThat(extractor.extract("[19:56:37] [Server thread/ERROR]")).isEmpty();
+        assertThat(extractor.extract("[19:56:37] [Server thread]: Done (1.0s)! \"")).isEmpty();
+        assertThat(extractor.extract("[1:56:37] [Server thread/ERROR]: Oops")).isEmpty();
+        assertThat(extractor.extract("")).isEmpty();
+    }
+
+    @Test
+    void testCustomPatternsAreTriedInOrder() {
+        List<ConsoleEventPattern> patterns = new ArrayList<>();
+        patterns.add(new ConsoleEventPattern(ConsoleEvent.Type.PLAYER_JOINED, "Server thread", "INFO", "logged in",
+                "(?<player>\\w+)\\[/(?<address>[\\d.:]+)] logged in with entity id \\d+ at .*"));
+        patterns.addAll(ConsoleEventPattern.defaults());
+        ConsoleEventExtractor customExtractor = new ConsoleEventExtractor(patterns);
+
+        ConsoleEvent event = customExtractor.extract("[19:57:12] [Server thread/INFO]: "
+                + "Steve[/127.0.0.1:51234] logged in with entity id 42 at (0.5, 64.0, 0.5)").orElseThrow();
+        assertThat(event.type()).isEqualTo(ConsoleEvent.Type.PLAYER_JOINED);
+        assertThat(event.attributes())
+                .containsOnly(Map.entry("player", "Steve"), Map.entry("address", "127.0.0.1:51234"));
+        assertThat(customExtractor.extract("[19:57:12] [Server thread/INFO]: Steve joined the game")).isPresent();
+    }
+
+    @Test
+    void testServerStartedPatternMatchesLine() {
+        assertThat(ConsoleEventPattern.SERVER_STARTED
+                .test("[19:56:37] [Server thread/INFO]: Done (13.324s)! For help, type \"help\"")).isTrue();
+        assertThat(ConsoleEventPattern.SERVER_STARTED.test("Starting net.minecraft.server.Main")).isFalse();
+    }
+
+    /**
+     * Rough lines per second on typical output where few lines produce events, logged for reference. Worth running
+     * with the benchmark profile after changing the patterns or how lines are matched against them.
+     */
+    @Test
+    @Tag("benchmark")
+    void measureThroughput() {
+        String[] lines = {
+                "[12:34:56] [Server thread/INFO]: Preparing spawn area: 42%",
+                "[12:34:56] [Worker-Main-3/INFO]: Loaded 7 recipes",
+                "[12:34:56] [Server thread/INFO]: Steve joined the game",
+                "[12:34:56] [Async Chat Thread - #3/INFO]: <Steve> anyone seen my diamonds?",
+                "[12:34:56] [Server thread/WARN]: Steve moved too quickly! 12.3,0.0,4.5",
+                "[12:34:56] [Server thread/INFO]: Saving chunks for level 'ServerLevel[world]'/minecraft:overworld",
+                "\tat net.minecraft.server.MinecraftServer.run(MinecraftServer.java:1)",
+                "[12:34:56] [Server thread/WARN]: Can't keep up! Is the server overloaded? Running 2000ms or 40 ticks behind",
+        };
+        int count = 1_000_000;
+        for (int round = 0; round < 5; round++) { // First rounds warm up
+            long events = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                Optional<ConsoleEvent> event = extractor.extract(lines[i & 7]);
+                if (event.isPresent()) events++;
+            }
+            long nanos = System.nanoTime() - start;
+            assertThat(events).isEqualTo(count / 8 * 3);
+            long linesPerSecond = count * 1_000_000_000L / Math.max(nanos, 1);
+            log.info("Extracted events from {} lines/s", linesPerSecond);
+        }
+    }
+
+    ConsoleEvent extract(String line) {
+        return extractor.extract(line).orElseThrow();
+    }
+}
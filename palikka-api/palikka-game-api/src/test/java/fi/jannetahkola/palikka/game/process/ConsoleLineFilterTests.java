@@ -0,0 +1,72 @@
+package fi.jannetahkola.palikka.game.process;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+class ConsoleLineFilterTests {
+    static final String INFO_LINE = "[19:57:12] [Server thread/INFO]: Steve joined the game";
+    static final String WARN_LINE = "[19:59:00] [Server thread/WARN]: Can't keep up! Is the server overloaded?";
+    static final String ERROR_LINE = "[20:01:00] [Worker-Main-2/ERROR]: Failed to load chunk";
+    static final String CHAT_LINE = "[19:57:20] [Async Chat Thread - #0/INFO]: <Steve> hello";
+
+    @Test
+    void testLevelFilter() {
+        ConsoleLineFilter filter = ConsoleLineFilter.of(" warn, ERROR ,", null, null);
+        assertThat(matches(filter, INFO_LINE)).isFalse();
+        assertThat(matches(filter, WARN_LINE)).isTrue();
+        assertThat(matches(filter, ERROR_LINE)).isTrue();
+        assertThat(filter).isEqualTo(ConsoleLineFilter.of("ERROR,WARN", "", ""));
+    }
+
+    @Test
+    void testThreadFilter() {
+        ConsoleLineFilter filter = ConsoleLineFilter.of(null, "Async Chat Thread", null);
+        assertThat(matches(filter, CHAT_LINE)).isTrue();
+        assertThat(matches(filter, INFO_LINE)).isFalse();
+    }
+
+    @Test
+    void testRegexIsOnlyFoundInMessage() {
+        ConsoleLineFilter filter = ConsoleLineFilter.of(null, null, "^<\\w+>");
+        assertThat(matches(filter, CHAT_LINE)).isTrue();
+        assertThat(matches(filter, INFO_LINE)).isFalse();
+        assertThat(matches(ConsoleLineFilter.of(null, null, "Server thread"), INFO_LINE)).isFalse();
+    }
+
+    @Test
+    void testAllConditionsMustMatch() {
+        ConsoleLineFilter filter = ConsoleLineFilter.of("INFO", "Server thread", "joined");
+        assertThat(matches(filter, INFO_LINE)).isTrue();
+        assertThat(matches(filter, CHAT_LINE)).isFalse();
+    }
+
+    @Test
+    void testEmptyFilterIsNull() {
+        assertThat(ConsoleLineFilter.of(null, null, null)).isNull();
+        assertThat(ConsoleLineFilter.of(" , ", "", "")).isNull();
+    }
+
+    @Test
+    void testInvalidRegexIsRejected() {
+        assertThatIllegalArgumentException().isThrownBy(() -> ConsoleLineFilter.of(null, null, "(unclosed"))
+                .withMessageStartingWith("Invalid regex");
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> ConsoleLineFilter.of(null, null, "a".repeat(ConsoleLineFilter.MAX_REGEX_LENGTH + 1)))
+                .withMessageContaining("at most");
+    }
+
+    @Test
+    void testCatastrophicBacktrackingIsBounded() {
+        ConsoleLineFilter filter = ConsoleLineFilter.of(null, null, "^(a+)+$");
+        String line = "[20:01:00] [Server thread/INFO]: " + "a".repeat(40) + "!";
+        long start = System.nanoTime();
+        assertThat(matches(filter, line)).isFalse();
+        assertThat(System.nanoTime() - start).isLessThan(1_000_000_000L);
+    }
+
+    static boolean matches(ConsoleLineFilter filter, String line) {
+        return filter.matches(line, ConsoleLinePrefix.parse(line));
+    }
+}
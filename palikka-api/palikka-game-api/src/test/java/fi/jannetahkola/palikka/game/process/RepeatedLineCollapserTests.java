@@ -0,0 +1,116 @@
+package fi.jannetahkola.palikka.game.process;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class RepeatedLineCollapserTests {
+    static final String LAG = "[12:00:0%d] [Server thread/WARN]: Can't keep up! Is the server overloaded?";
+
+    final List<String> output = new CopyOnWriteArrayList<>();
+    final AtomicLong nanos = new AtomicLong();
+
+    @Test
+    void testRepeatsAreCollapsedWhenRunEnds() {
+        try (RepeatedLineCollapser collapser = newCollapser(Duration.ofHours(1), false)) {
+            collapser.accept("a");
+            collapser.accept("a");
+            collapser.accept("a");
+            collapser.accept("b");
+            collapser.accept("a");
+            assertThat(output).containsExactly("a", "a [repeated 2 more times]", "b", "a");
+
+            collapser.accept("a");
+            collapser.flush();
+            assertThat(output).containsExactly("a", "a [repeated 2 more times]", "b", "a", "a [repeated 1 more time]");
+
+            collapser.accept("a"); // New run after flush
+            assertThat(output).hasSize(6).last().isEqualTo("a");
+        }
+    }
+
+    @Test
+    void testTimestampIsIgnored() {
+        try (RepeatedLineCollapser collapser = newCollapser(Duration.ofHours(1), true)) {
+            collapser.accept(LAG.formatted(1));
+            collapser.accept(LAG.formatted(2));
+            collapser.accept(LAG.formatted(3));
+            collapser.flush();
+            // The last repeat is passed on to keep its timestamp
+            assertThat(output).containsExactly(LAG.formatted(1), LAG.formatted(3) + " [repeated 2 more times]");
+        }
+    }
+
+    @Test
+    void testTimestampIsComparedWhenNotIgnored() {
+        try (RepeatedLineCollapser collapser = newCollapser(Duration.ofHours(1), false)) {
+            collapser.accept(LAG.formatted(1));
+            collapser.accept(LAG.formatted(2));
+            collapser.accept(LAG.formatted(2));
+            collapser.flush();
+            assertThat(output).containsExactly(
+                    LAG.formatted(1), LAG.formatted(2), LAG.formatted(2) + " [repeated 1 more time]");
+        }
+    }
+
+    @Test
+    void testRunIsPassedOnAgainAfterWindow() {
+        try (RepeatedLineCollapser collapser = newCollapser(Duration.ofHours(1), false)) {
+            collapser.accept("a");
+            collapser.accept("a");
+            nanos.addAndGet(Duration.ofHours(1).toNanos());
+            collapser.accept("a");
+            assertThat(output).containsExactly("a", "a [repeated 1 more time]", "a");
+        }
+    }
+
+    @Test
+    void testRepeatCountIsPassedOnWithoutNewLines() {
+        try (RepeatedLineCollapser collapser = new RepeatedLineCollapser(Duration.ofMillis(50), false, this::collect)) {
+            collapser.accept("a");
+            collapser.accept("a");
+            await().atMost(Duration.ofSeconds(1)).until(() -> output.size() == 2);
+            assertThat(output).containsExactly("a", "a [repeated 1 more time]");
+        }
+    }
+
+    @Test
+    void testCloseFlushesRepeats() {
+        RepeatedLineCollapser collapser = newCollapser(Duration.ofHours(1), false);
+        collapser.accept("a");
+        collapser.accept("a");
+        collapser.close();
+        assertThat(output).containsExactly("a", "a [repeated 1 more time]");
+    }
+
+    @Test
+    void testRepeatedLineIsPassedOnUnchangedWithCount() {
+        List<Integer> counts = new CopyOnWriteArrayList<>();
+        List<String> lines = new CopyOnWriteArrayList<>();
+        try (RepeatedLineCollapser collapser = new RepeatedLineCollapser(Duration.ofHours(1), true, (line, repeats) -> {
+            lines.add(line);
+            counts.add(repeats);
+        }, nanos::get)) {
+            collapser.accept(LAG.formatted(1));
+            collapser.accept(LAG.formatted(2));
+            collapser.accept(LAG.formatted(3));
+            collapser.flush();
+        }
+        assertThat(lines).containsExactly(LAG.formatted(1), LAG.formatted(3));
+        assertThat(counts).containsExactly(0, 2);
+    }
+
+    RepeatedLineCollapser newCollapser(Duration window, boolean ignoreTimestamp) {
+        return new RepeatedLineCollapser(window, ignoreTimestamp, this::collect, nanos::get);
+    }
+
+    void collect(String line, int repeats) {
+        output.add(RepeatedLineCollapser.withRepeatCount(line, repeats));
+    }
+}
@@ -0,0 +1,214 @@
+package fi.jannetahkola.palikka.game.process.log;
+
+import fi.jannetahkola.palikka.core.testutils.time.MutableClock;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ConsoleLogTests {
+    @TempDir
+    Path directory;
+
+    final MutableClock clock = new MutableClock(Instant.parse("2024-01-01T00:00:00Z"));
+
+    @Test
+    void testReadAfterAndBefore() throws Exception {
+        try (ConsoleLog log = open(1024, 1024 * 1024, 2)) {
+            append(log, 1, 10);
+
+            assertThat(sequences(log.readAfter(0, 3))).containsExactly(1L, 2L, 3L);
+            assertThat(sequences(log.readAfter(8, 100))).containsExactly(9L, 10L);
+            assertThat(log.readAfter(10, 100)).isEmpty();
+            assertThat(sequences(log.readBefore(11, 3))).containsExactly(8L, 9L, 10L);
+            assertThat(sequences(log.readBefore(3, 100))).containsExactly(1L, 2L);
+            assertThat(log.readAfter(4, 1).get(0).line()).isEqualTo("line 5");
+            assertThat(log.getFirstSequence()).isEqualTo(1);
+            assertThat(log.getLastSequence()).isEqualTo(10);
+        }
+    }
+
+    @Test
+    void testReadBeforeWithGapsInSequence() throws Exception {
+        try (ConsoleLog log = open(1024, 1024 * 1024, 1)) {
+            for (long sequence = 10; sequence <= 5000; sequence += 10) {
+                log.append(sequence, "line " + sequence);
+            }
+            log.awaitMaintenance();
+            assertThat(log.getSegments()).anyMatch(segment -> segment.compressed);
+
+            assertThat(sequences(log.readBefore(5001, 3))).containsExactly(4980L, 4990L, 5000L);
+            assertThat(sequences(log.readBefore(4995, 3))).containsExactly(4970L, 4980L, 4990L);
+            assertThat(sequences(log.readBefore(35, 100))).containsExactly(10L, 20L, 30L);
+            assertThat(log.readBefore(10, 100)).isEmpty();
+
+            // Crosses index entries, segments and compressed segments
+            List<Long> expected = LongStream.rangeClosed(1, 400).map(i -> i * 10).boxed().toList();
+            assertThat(sequences(log.readBefore(4001, 400))).containsExactlyElementsOf(expected);
+            assertThat(sequences(log.readBefore(4001, 1000))).containsExactlyElementsOf(expected);
+        }
+    }
+
+    @Test
+    void testBatchRecordsKeepTheirTimestamps() throws Exception {
+        try (ConsoleLog log = open(1024, 1024 * 1024, 2)) {
+            long start = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+            log.append(List.of(
+                    new ConsoleLogRecord(1, start, "line 1"),
+                    new ConsoleLogRecord(2, start + 1000, "line 2"),
+                    new ConsoleLogRecord(3, start + 2000, "line 3")));
+
+            assertThat(log.readAfter(0, 10)).extracting(ConsoleLogRecord::timestamp)
+                    .containsExactly(start, start + 1000, start + 2000);
+            assertThat(sequences(log.readFrom(Instant.ofEpochMilli(start + 1000), 10))).containsExactly(2L, 3L);
+        }
+    }
+
+    @Test
+    void testReadFromTimestamp() throws Exception {
+        try (ConsoleLog log = open(1024, 1024 * 1024, 2)) {
+            append(log, 1, 100);
+
+            List<ConsoleLogRecord> records = log.readFrom(Instant.parse("2024-01-01T00:00:50Z"), 5);
+            assertThat(sequences(records)).containsExactly(50L, 51L, 52L, 53L, 54L);
+            assertThat(log.readFrom(Instant.parse("2024-01-02T00:00:00Z"), 5)).isEmpty();
+        }
+    }
+
+    @Test
+    void testSegmentsAreRolledAndCompressed() throws Exception {
+        try (ConsoleLog log = open(1024, 1024 * 1024, 2)) {
+            append(log, 1, 500);
+            log.awaitMaintenance();
+
+            List<ConsoleLogSegment> segments = log.getSegments();
+            assertThat(segments).hasSizeGreaterThan(4);
+            // Newest sealed segments and the active segment stay uncompressed
+            assertThat(segments.subList(segments.size() - 3, segments.size()))
+                    .noneMatch(segment -> segment.compressed);
+            assertThat(segments.subList(0, segments.size() - 3))
+                    .allMatch(segment -> segment.compressed);
+
+            assertThat(sequences(log.readAfter(0, 1000)))
+                    .containsExactlyElementsOf(LongStream.rangeClosed(1, 500).boxed().toList());
+        }
+    }
+
+    @Test
+    void testOldestSegmentsAreDeletedWhenMaxSizeReached() throws Exception {
+        try (ConsoleLog log = open(1024, 8 * 1024, 100)) {
+            append(log, 1, 1000);
+            log.awaitMaintenance();
+
+            assertThat(log.getFirstSequence()).isGreaterThan(1);
+            assertThat(log.getLastSequence()).isEqualTo(1000);
+            assertThat(log.readAfter(0, 1).get(0).sequence()).isEqualTo(log.getFirstSequence());
+            long diskSize = log.getSegments().stream().mapToLong(segment -> segment.diskSize).sum();
+            assertThat(diskSize).isLessThanOrEqualTo(8 * 1024);
+        }
+    }
+
+    @Test
+    void testLogIsRecoveredWhenReopened() throws Exception {
+        try (ConsoleLog log = open(1024, 1024 * 1024, 2)) {
+            append(log, 1, 200);
+        }
+        try (ConsoleLog log = open(1024, 1024 * 1024, 2)) {
+            assertThat(log.getFirstSequence()).isEqualTo(1);
+            assertThat(log.getLastSequence()).isEqualTo(200);
+            append(log, 201, 210);
+            assertThat(sequences(log.readBefore(211, 20)))
+                    .containsExactlyElementsOf(LongStream.rangeClosed(191, 210).boxed().toList());
+        }
+    }
+
+    @Test
+    void testIncompleteRecordIsIgnoredWhenReopened() throws Exception {
+        try (ConsoleLog log = open(1024 * 1024, 1024 * 1024, 2)) {
+            append(log, 1, 5);
+        }
+        // Simulate a crash while writing a record
+        try (var files = Files.list(directory)) {
+            Path segment = files.filter(path -> path.toString().endsWith(".log")).findFirst().orElseThrow();
+            Files.deleteIfExists(segment.resolveSibling(segment.getFileName().toString().replace(".log", ".idx")));
+            Files.write(segment, "6\t1704067206000\tpart".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        }
+        try (ConsoleLog log = open(1024 * 1024, 1024 * 1024, 2)) {
+            assertThat(log.getLastSequence()).isEqualTo(5);
+            log.append(6, "line 6");
+            assertThat(sequences(log.readAfter(0, 100))).containsExactly(1L, 2L, 3L, 4L, 5L, 6L);
+        }
+    }
+
+    @Test
+    void testAppendRejectsNonIncreasingSequence() throws Exception {
+        try (ConsoleLog log = open(1024, 1024 * 1024, 2)) {
+            log.append(1, "line");
+            assertThatThrownBy(() -> log.append(1, "line")).isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    void testBatchIsSplitAcrossSegments() throws Exception {
+        try (ConsoleLog log = open(1024, 1024 * 1024, 100)) {
+            log.append(LongStream.rangeClosed(1, 200)
+                    .mapToObj(sequence -> new ConsoleLogRecord(sequence, sequence, "line " + sequence))
+                    .toList());
+
+            assertThat(log.getSegments()).hasSizeGreaterThan(2);
+            assertThat(log.getSegments()).allMatch(segment -> segment.size < 1024 + 32);
+            assertThat(sequences(log.readAfter(0, 1000)))
+                    .containsExactlyElementsOf(LongStream.rangeClosed(1, 200).boxed().toList());
+            assertThat(log.readAfter(99, 1).get(0).line()).isEqualTo("line 100");
+        }
+    }
+
+    @Test
+    void testBatchWithNonIncreasingSequenceIsRejected() throws Exception {
+        try (ConsoleLog log = open(1024, 1024 * 1024, 2)) {
+            log.append(1, "line");
+            List<ConsoleLogRecord> records = List.of(
+                    new ConsoleLogRecord(2, 0, "line"),
+                    new ConsoleLogRecord(2, 0, "line"));
+            assertThatThrownBy(() -> log.append(records)).isInstanceOf(IllegalArgumentException.class);
+            assertThat(log.getLastSequence()).isEqualTo(1); // Nothing appended
+        }
+    }
+
+    @Test
+    void testLineBreaksAreReplaced() throws Exception {
+        try (ConsoleLog log = open(1024, 1024 * 1024, 2)) {
+            log.append(1, "a\nb\r\nc");
+            log.append(2, "ä€😀");
+            List<ConsoleLogRecord> records = log.readAfter(0, 10);
+            assertThat(records).hasSize(2);
+            assertThat(records.get(0).line()).doesNotContain("\n", "\r");
+            assertThat(records.get(1).line()).isEqualTo("ä€😀");
+        }
+    }
+
+    ConsoleLog open(long segmentSize, long maxSize, int uncompressedSegments) throws IOException {
+        return new ConsoleLog(directory, segmentSize, maxSize, uncompressedSegments, 128, clock);
+    }
+
+    void append(ConsoleLog log, long from, long to) throws IOException {
+        for (long sequence = from; sequence <= to; sequence++) {
+            clock.setInstant(Instant.parse("2024-01-01T00:00:00Z").plusSeconds(sequence));
+            log.append(sequence, "line " + sequence);
+        }
+    }
+
+    static List<Long> sequences(List<ConsoleLogRecord> records) {
+        return records.stream().map(ConsoleLogRecord::sequence).toList();
+    }
+}
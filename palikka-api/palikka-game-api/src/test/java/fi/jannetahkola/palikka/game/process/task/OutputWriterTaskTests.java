@@ -0,0 +1,80 @@
+package fi.jannetahkola.palikka.game.process.task;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class OutputWriterTaskTests {
+    final CountingOutputStream out = new CountingOutputStream();
+    final BlockingQueue<OutputCommand> outputQueue = new LinkedBlockingQueue<>();
+    final BlockingQueue<String> written = new LinkedBlockingQueue<>();
+    final OutputWriterMetrics metrics = new OutputWriterMetrics();
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @Test
+    void testQueuedCommandsAreWrittenInOneFlush() throws Exception {
+        List<String> commands = IntStream.range(0, 50).mapToObj(i -> "say " + i).toList();
+        commands.forEach(command -> outputQueue.add(OutputCommand.of(command)));
+
+        Future<?> task = executor.submit(new OutputWriterTask(out, outputQueue, written::add, metrics));
+        try {
+            await().atMost(2, TimeUnit.SECONDS).until(() -> written.size() == commands.size());
+
+            assertThat(written).containsExactlyElementsOf(commands);
+            assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo(String.join(System.lineSeparator(), commands)
+                    + System.lineSeparator());
+            assertThat(out.writes.get()).isEqualTo(1);
+            assertThat(out.flushes.get()).isEqualTo(1);
+
+            OutputWriterMetrics.Snapshot snapshot = metrics.snapshot();
+            assertThat(snapshot.commands()).isEqualTo(50);
+            assertThat(snapshot.writes()).isEqualTo(1);
+            assertThat(snapshot.maxBatchSize()).isEqualTo(50);
+            assertThat(snapshot.maxWait()).isGreaterThanOrEqualTo(snapshot.averageWait());
+        } finally {
+            task.cancel(true);
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testCommandsAreWrittenAsTheyArrive() throws Exception {
+        Future<?> task = executor.submit(new OutputWriterTask(out, outputQueue, written::add, metrics));
+        try {
+            outputQueue.add(OutputCommand.of("first"));
+            assertThat(written.poll(2, TimeUnit.SECONDS)).isEqualTo("first");
+            outputQueue.add(OutputCommand.of("second"));
+            assertThat(written.poll(2, TimeUnit.SECONDS)).isEqualTo("second");
+
+            assertThat(out.flushes.get()).isEqualTo(2);
+            assertThat(metrics.snapshot().writes()).isEqualTo(2);
+        } finally {
+            task.cancel(true);
+            executor.shutdownNow();
+        }
+    }
+
+    static class CountingOutputStream extends ByteArrayOutputStream {
+        final AtomicInteger writes = new AtomicInteger();
+        final AtomicInteger flushes = new AtomicInteger();
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            writes.incrementAndGet();
+            super.write(b, off, len);
+        }
+
+        @Override
+        public void flush() {
+            flushes.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package fi.jannetahkola.palikka.game.protocol;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BufferPoolTests {
+    @Test
+    void testBufferPoolReusesBuffers() {
+        BufferPool pool = new BufferPool(64, 2, true);
+        ByteBuffer first = pool.acquire();
+        ByteBuffer second = pool.acquire();
+        first.put((byte) 1);
+        pool.release(first);
+        pool.release(second);
+        pool.release(ByteBuffer.allocateDirect(64)); // Pool is full, discarded
+
+        assertThat(pool.acquire()).isSameAs(first).satisfies(buffer -> assertThat(buffer.position()).isZero());
+        assertThat(pool.acquire()).isSameAs(second);
+        assertThat(pool.acquire()).isNotNull();
+        assertThat(pool.getAllocatedCount()).isEqualTo(3);
+        assertThatThrownBy(() -> pool.release(ByteBuffer.allocate(64)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,122 @@
+package fi.jannetahkola.palikka.game.protocol;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FrameDecoderTests {
+    @Test
+    void testFramesAreReturnedOnceComplete() throws IOException {
+        byte[] bytes = frames(new byte[]{1, 2, 3}, new byte[0], new byte[300]);
+        TrickleChannel channel = new TrickleChannel(bytes, 1);
+        FrameDecoder decoder = new FrameDecoder(ByteBuffer.allocateDirect(512));
+
+        List<byte[]> frames = new ArrayList<>();
+        int reads = 0;
+        while (decoder.readFrom(channel) >= 0) {
+            reads++;
+            ByteBuffer frame;
+            while ((frame = decoder.nextFrame()) != null) {
+                byte[] packet = new byte[frame.remaining()];
+                frame.get(packet);
+                frames.add(packet);
+            }
+        }
+        assertThat(reads).isGreaterThan(bytes.length);
+        assertThat(frames).hasSize(3);
+        assertThat(frames.get(0)).containsExactly(1, 2, 3);
+        assertThat(frames.get(1)).isEmpty();
+        assertThat(frames.get(2)).hasSize(300);
+        assertThat(decoder.hasPartialFrame()).isFalse();
+    }
+
+    @Test
+    void testFramesAreReturnedFromSingleRead() throws IOException {
+        FrameDecoder decoder = new FrameDecoder(ByteBuffer.allocate(512));
+        decoder.readFrom(new TrickleChannel(frames(new byte[]{1}, new byte[]{2, 3}, new byte[]{4}), 512));
+
+        assertThat(decoder.nextFrame().get()).isEqualTo((byte) 1);
+        ByteBuffer second = decoder.nextFrame();
+        assertThat(second.remaining()).isEqualTo(2);
+        assertThat(second.get(second.position() + 1)).isEqualTo((byte) 3);
+        assertThat(decoder.nextFrame().get()).isEqualTo((byte) 4);
+        assertThat(decoder.nextFrame()).isNull();
+    }
+
+    @Test
+    void testPartialFrameIsKept() throws IOException {
+        byte[] bytes = frames(new byte[100]);
+        FrameDecoder decoder = new FrameDecoder(ByteBuffer.allocate(128));
+        decoder.readFrom(new TrickleChannel(bytes, bytes.length - 1));
+        assertThat(decoder.nextFrame()).isNull();
+        assertThat(decoder.hasPartialFrame()).isTrue();
+    }
+
+    @Test
+    void testFramesNotFittingBufferFail() throws IOException {
+        FrameDecoder decoder = new FrameDecoder(ByteBuffer.allocate(64));
+        decoder.readFrom(new TrickleChannel(frames(new byte[100]), 64));
+        assertThatThrownBy(decoder::nextFrame)
+                .isInstanceOf(ProtocolException.class)
+                .hasMessageContaining("doesn't fit");
+
+        FrameDecoder tooLong = new FrameDecoder(ByteBuffer.allocate(64));
+        tooLong.readFrom(new TrickleChannel(new byte[]{-1, -1, -1}, 64));
+        assertThatThrownBy(tooLong::nextFrame)
+                .isInstanceOf(ProtocolException.class)
+                .hasMessage("Frame length is too big");
+    }
+
+    static byte[] frames(byte[]... packets) {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        for (byte[] packet : packets) {
+            int start = ProtocolCodec.beginFrame(buffer);
+            buffer.put(packet);
+            ProtocolCodec.endFrame(buffer, start);
+        }
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    /**
+     * Returns at most the given number of bytes per read, and nothing on every other read like a non-blocking channel
+     * that has no data available.
+     */
+    static class TrickleChannel implements ReadableByteChannel {
+        private final ByteBuffer bytes;
+        private final int maxRead;
+        private boolean idle = true;
+
+        TrickleChannel(byte[] bytes, int maxRead) {
+            this.bytes = ByteBuffer.wrap(bytes);
+            this.maxRead = maxRead;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) {
+            if (!bytes.hasRemaining()) return -1;
+            idle = !idle;
+            if (idle) return 0;
+            int count = Math.min(Math.min(maxRead, bytes.remaining()), dst.remaining());
+            dst.put(dst.position(), bytes, bytes.position(), count).position(dst.position() + count);
+            bytes.position(bytes.position() + count);
+            return count;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
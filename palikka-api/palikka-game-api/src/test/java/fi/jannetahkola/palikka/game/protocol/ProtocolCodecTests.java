@@ -0,0 +1,215 @@
+package fi.jannetahkola.palikka.game.protocol;
+
+import fi.jannetahkola.palikka.game.service.PacketService;
+import fi.jannetahkola.palikka.game.util.VarIntUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class ProtocolCodecTests {
+    static final int[] VAR_INTS = {0, 1, 127, 128, 255, 25565, 2097151, 2097152, Integer.MAX_VALUE, -1, Integer.MIN_VALUE};
+
+    @Test
+    void testVarIntsMatchVarIntUtil() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(ProtocolCodec.MAX_VAR_INT_SIZE);
+        for (int value : VAR_INTS) {
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            VarIntUtil.write(new DataOutputStream(expected), value);
+
+            ProtocolCodec.writeVarInt(buffer.clear(), value);
+            assertThat(Arrays.copyOf(buffer.array(), buffer.position())).as("%d", value).isEqualTo(expected.toByteArray());
+            assertThat(ProtocolCodec.varIntSize(value)).isEqualTo(expected.size());
+            assertThat(ProtocolCodec.readVarInt(buffer.flip())).isEqualTo(value);
+            assertThat(buffer.hasRemaining()).isFalse();
+        }
+    }
+
+    @Test
+    void testVarLongsAreEncodedAndDecoded() throws IOException {
+        long[] values = {0, 1, 127, 128, 2147483647, 9223372036854775807L, -1, -2147483648, -9223372036854775808L};
+        int[] sizes = {1, 1, 1, 2, 5, 9, 10, 10, 10};
+        ByteBuffer buffer = ByteBuffer.allocate(ProtocolCodec.MAX_VAR_LONG_SIZE);
+        for (int i = 0; i < values.length; i++) {
+            ProtocolCodec.writeVarLong(buffer.clear(), values[i]);
+            assertThat(buffer.position()).as("%d", values[i]).isEqualTo(sizes[i]);
+            assertThat(ProtocolCodec.varLongSize(values[i])).isEqualTo(sizes[i]);
+            assertThat(ProtocolCodec.readVarLong(buffer.flip())).isEqualTo(values[i]);
+        }
+    }
+
+    @Test
+    void testInvalidVarIntsFail() {
+        assertThatThrownBy(() -> ProtocolCodec.readVarInt(ByteBuffer.wrap(new byte[]{-1, -1, -1, -1, -1, 1})))
+                .isInstanceOf(ProtocolException.class)
+                .hasMessage("VarInt is too big");
+        assertThatThrownBy(() -> ProtocolCodec.readVarInt(ByteBuffer.wrap(new byte[]{-116})))
+                .isInstanceOf(ProtocolException.class)
+                .hasMessage("VarInt is incomplete");
+        assertThatThrownBy(() -> ProtocolCodec.readVarLong(ByteBuffer.wrap(new byte[]{-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 1})))
+                .isInstanceOf(ProtocolException.class);
+    }
+
+    @Test
+    void testStringsMatchUtf8Encoding() throws IOException {
+        String[] values = {"", "localhost", "ä€😀 hei 👋", "x".repeat(300), "unpaired \uD83D surrogate \uDE00"};
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1024);
+        for (String value : values) {
+            byte[] expected = value.getBytes(StandardCharsets.UTF_8);
+            assertThat(ProtocolCodec.utf8Length(value)).as(value).isEqualTo(expected.length);
+
+            ProtocolCodec.writeString(buffer.clear(), value);
+            buffer.flip();
+            assertThat(ProtocolCodec.readVarInt(buffer.duplicate())).isEqualTo(expected.length);
+            assertThat(ProtocolCodec.readString(buffer, 1024)).isEqualTo(new String(expected, StandardCharsets.UTF_8));
+            assertThat(buffer.hasRemaining()).isFalse();
+        }
+        ProtocolCodec.writeString(buffer.clear(), "too long");
+        assertThatThrownBy(() -> ProtocolCodec.readString(buffer.flip(), 4))
+                .isInstanceOf(ProtocolException.class);
+    }
+
+    @Test
+    void testFramesAreLengthPrefixed() throws IOException {
+        for (ByteBuffer buffer : new ByteBuffer[]{ByteBuffer.allocate(32768), ByteBuffer.allocateDirect(32768)}) {
+            for (int length : new int[]{0, 1, 127, 128, 16383, 16384, 20000}) {
+                buffer.clear().put((byte) 42); // Something written before the frame
+                int start = ProtocolCodec.beginFrame(buffer);
+                for (int i = 0; i < length; i++) {
+                    buffer.put((byte) i);
+                }
+                ProtocolCodec.endFrame(buffer, start);
+                assertThat(buffer.position()).isEqualTo(1 + ProtocolCodec.varIntSize(length) + length);
+
+                buffer.flip();
+                assertThat(buffer.get()).isEqualTo((byte) 42);
+                assertThat(ProtocolCodec.readVarInt(buffer)).isEqualTo(length);
+                for (int i = 0; i < length; i++) {
+                    assertThat(buffer.get()).as("byte %d of %d", i, length).isEqualTo((byte) i);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testStatusRequestMatchesPacketService() {
+        byte[] expected = new PacketService().newHandshakePacket("localhost", 25565).getBytes();
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        StatusProtocol.writeStatusRequest(buffer, "localhost", 25565);
+        assertThat(Arrays.copyOf(buffer.array(), buffer.position())).isEqualTo(expected);
+    }
+
+    @Test
+    void testStatusResponseIsRead() throws IOException {
+        String json = "{\"description\":\"A Minecraft Server\"}";
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        int start = ProtocolCodec.beginFrame(buffer);
+        ProtocolCodec.writeVarInt(buffer, StatusProtocol.STATUS_RESPONSE_PACKET_ID);
+        ProtocolCodec.writeString(buffer, json);
+        ProtocolCodec.endFrame(buffer, start);
+
+        FrameDecoder decoder = new FrameDecoder(ByteBuffer.allocate(256));
+        decoder.readFrom(Channels.newChannel(new ByteArrayInputStream(Arrays.copyOf(buffer.array(), buffer.position()))));
+        ByteBuffer frame = decoder.nextFrame();
+        int length = StatusProtocol.readStatusResponse(frame);
+        assertThat(new String(frame.array(), frame.arrayOffset() + frame.position(), length, StandardCharsets.UTF_8))
+                .isEqualTo(json);
+
+        assertThatThrownBy(() -> StatusProtocol.readStatusResponse(ByteBuffer.wrap(new byte[]{5})))
+                .isInstanceOf(ProtocolException.class);
+        assertThatThrownBy(() -> StatusProtocol.readStatusResponse(ByteBuffer.wrap(new byte[]{0, 10, '{', '}'})))
+                .isInstanceOf(ProtocolException.class);
+    }
+
+    /**
+     * Rough comparison of VarInts per second against {@link VarIntUtil}, logged for reference.
+     */
+    @Test
+    @Tag("benchmark")
+    void compareVarIntThroughputWithVarIntUtil() throws IOException {
+        int count = 1_000_000;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(count * ProtocolCodec.MAX_VAR_INT_SIZE);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(count * ProtocolCodec.MAX_VAR_INT_SIZE);
+
+        for (int round = 0; round < 5; round++) { // First rounds warm up
+            long start = System.nanoTime();
+            bytes.reset();
+            DataOutputStream out = new DataOutputStream(bytes);
+            for (int i = 0; i < count; i++) {
+                VarIntUtil.write(out, i * 31);
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+            long utilSum = 0;
+            for (int i = 0; i < count; i++) {
+                utilSum += VarIntUtil.read(in);
+            }
+            long utilNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            buffer.clear();
+            for (int i = 0; i < count; i++) {
+                ProtocolCodec.writeVarInt(buffer, i * 31);
+            }
+            buffer.flip();
+            long codecSum = 0;
+            for (int i = 0; i < count; i++) {
+                codecSum += ProtocolCodec.readVarInt(buffer);
+            }
+            long codecNanos = System.nanoTime() - start;
+
+            assertThat(codecSum).isEqualTo(utilSum);
+            log.info("VarIntUtil {} VarInts/s, ProtocolCodec {} VarInts/s",
+                    perSecond(count, utilNanos), perSecond(count, codecNanos));
+        }
+    }
+
+    /**
+     * Rough comparison of status requests per second against {@link PacketService}, logged for reference.
+     */
+    @Test
+    @Tag("benchmark")
+    void compareStatusRequestThroughputWithPacketService() {
+        int count = 200_000;
+        PacketService packetService = new PacketService();
+        // Like a connection that keeps its buffer for as long as it's open
+        ByteBuffer buffer = ByteBuffer.allocateDirect(256);
+
+        for (int round = 0; round < 5; round++) { // First rounds warm up
+            long start = System.nanoTime();
+            long serviceBytes = 0;
+            for (int i = 0; i < count; i++) {
+                serviceBytes += packetService.newHandshakePacket("localhost", 25565).getBytes().length;
+            }
+            long serviceNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long codecBytes = 0;
+            for (int i = 0; i < count; i++) {
+                StatusProtocol.writeStatusRequest(buffer.clear(), "localhost", 25565);
+                codecBytes += buffer.position();
+            }
+            long codecNanos = System.nanoTime() - start;
+
+            assertThat(codecBytes).isEqualTo(serviceBytes);
+            log.info("PacketService {} requests/s, StatusProtocol {} requests/s",
+                    perSecond(count, serviceNanos), perSecond(count, codecNanos));
+        }
+    }
+
+    static long perSecond(long count, long nanos) {
+        return count * 1_000_000_000L / Math.max(nanos, 1);
+    }
+}
@@ -0,0 +1,60 @@
+package fi.jannetahkola.palikka.game.protocol;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RconProtocolTests {
+    @Test
+    void testPacketIsWrittenAndRead() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(RconProtocol.MAX_PACKET_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        RconProtocol.writePacket(buffer, 7, RconProtocol.TYPE_COMMAND, "say hei 👋");
+        RconProtocol.writePacket(buffer, 8, RconProtocol.TYPE_RESPONSE, "");
+        buffer.flip();
+
+        assertThat(buffer.getInt(0)).isEqualTo(4 + 4 + "say hei 👋".getBytes(StandardCharsets.UTF_8).length + 2);
+        RconProtocol.Packet first = RconProtocol.readPacket(buffer);
+        assertThat(first.requestId()).isEqualTo(7);
+        assertThat(first.type()).isEqualTo(RconProtocol.TYPE_COMMAND);
+        assertThat(first.bodyAsString()).isEqualTo("say hei 👋");
+
+        RconProtocol.Packet second = RconProtocol.readPacket(buffer);
+        assertThat(second.requestId()).isEqualTo(8);
+        assertThat(second.body()).isEmpty();
+        assertThat(buffer.hasRemaining()).isFalse();
+        assertThat(RconProtocol.readPacket(buffer)).isNull();
+    }
+
+    @Test
+    void testPartialPacketIsNotConsumed() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(64).order(ByteOrder.LITTLE_ENDIAN);
+        RconProtocol.writePacket(buffer, 1, RconProtocol.TYPE_AUTH, "password");
+        int length = buffer.position();
+
+        for (int available = 0; available < length; available++) {
+            buffer.limit(available).position(0);
+            assertThat(RconProtocol.readPacket(buffer)).isNull();
+            assertThat(buffer.position()).isZero();
+        }
+        buffer.limit(length);
+        assertThat(RconProtocol.readPacket(buffer).bodyAsString()).isEqualTo("password");
+    }
+
+    @Test
+    void testInvalidLengthFails() {
+        ByteBuffer tooShort = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN).putInt(0, 9);
+        assertThatThrownBy(() -> RconProtocol.readPacket(tooShort))
+                .isInstanceOf(ProtocolException.class)
+                .hasMessage("Invalid RCON packet length 9");
+
+        ByteBuffer tooLong = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN).putInt(0, RconProtocol.MAX_PACKET_SIZE);
+        assertThatThrownBy(() -> RconProtocol.readPacket(tooLong))
+                .isInstanceOf(ProtocolException.class);
+    }
+}
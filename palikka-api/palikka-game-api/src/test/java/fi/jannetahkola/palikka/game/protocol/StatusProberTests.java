@@ -0,0 +1,129 @@
+package fi.jannetahkola.palikka.game.protocol;
+
+import fi.jannetahkola.palikka.game.testutils.FakeStatusServer;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class StatusProberTests {
+    static final Duration TIMEOUT = Duration.ofMillis(500);
+
+    StatusProber prober;
+
+    @BeforeEach
+    void beforeEach() throws IOException {
+        prober = new StatusProber(16, "test-status-prober");
+    }
+
+    @AfterEach
+    void afterEach() {
+        prober.close();
+    }
+
+    @Test
+    void givenRespondingServer_thenStatusReturned() throws Exception {
+        try (FakeStatusServer server = new FakeStatusServer(true)) {
+            byte[] status = prober.probe(address(server.getPort()), "localhost", server.getPort(), TIMEOUT)
+                    .get(1, TimeUnit.SECONDS);
+            assertThat(new String(status, StandardCharsets.UTF_8)).isEqualTo(FakeStatusServer.STATUS);
+        }
+    }
+
+    @Test
+    void givenSilentServer_thenOnlyThatProbeTimesOut() throws Exception {
+        try (FakeStatusServer silent = new FakeStatusServer(false);
+             FakeStatusServer responding = new FakeStatusServer(true)) {
+            long start = System.nanoTime();
+            CompletableFuture<byte[]> silentProbe =
+                    prober.probe(address(silent.getPort()), "localhost", silent.getPort(), TIMEOUT);
+            CompletableFuture<byte[]> respondingProbe =
+                    prober.probe(address(responding.getPort()), "localhost", responding.getPort(), TIMEOUT);
+
+            assertThat(respondingProbe.get(1, TimeUnit.SECONDS)).isNotEmpty();
+            assertThat(silentProbe).isNotDone();
+            assertThatThrownBy(silentProbe::join)
+                    .isInstanceOf(CompletionException.class)
+                    .hasCauseInstanceOf(SocketTimeoutException.class);
+            assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(TIMEOUT);
+            assertThat(silent.getRequestCount()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void givenClosedPort_thenProbeFails() throws Exception {
+        int port;
+        try (ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            port = serverSocket.getLocalPort();
+        }
+        CompletableFuture<byte[]> probe = prober.probe(address(port), "localhost", port, TIMEOUT);
+        assertThatThrownBy(() -> probe.get(1, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(IOException.class);
+    }
+
+    @Test
+    void givenManyServers_thenProbedConcurrentlyWithBoundedConnections() throws Exception {
+        int count = 300;
+        try (FakeStatusServer server = new FakeStatusServer(true)) {
+            long start = System.nanoTime();
+            List<CompletableFuture<byte[]>> probes = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                probes.add(prober.probe(address(server.getPort()), "localhost", server.getPort(), TIMEOUT));
+            }
+            CompletableFuture.allOf(probes.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+            log.info("Probed {} servers in {}ms", count, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+            assertThat(server.getRequestCount()).isEqualTo(count);
+            assertThat(prober.getAllocatedBufferCount()).isLessThanOrEqualTo(16);
+        }
+    }
+
+    @Test
+    void givenMoreSilentServersThanConnections_thenWaitingProbesStartAsOthersTimeOut() throws Exception {
+        try (FakeStatusServer silent = new FakeStatusServer(false)) {
+            Duration timeout = Duration.ofMillis(200);
+            long start = System.nanoTime();
+            List<CompletableFuture<byte[]>> probes = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                probes.add(prober.probe(address(silent.getPort()), "localhost", silent.getPort(), timeout));
+            }
+            for (CompletableFuture<byte[]> probe : probes) {
+                assertThatThrownBy(() -> probe.get(2, TimeUnit.SECONDS))
+                        .hasCauseInstanceOf(SocketTimeoutException.class);
+            }
+            // Two rounds of 16 connections
+            assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(timeout.multipliedBy(2));
+            assertThat(silent.getRequestCount()).isEqualTo(32);
+        }
+    }
+
+    @Test
+    void givenClosedProber_thenProbesFail() {
+        prober.close();
+        CompletableFuture<byte[]> probe = prober.probe(address(25565), "localhost", 25565, TIMEOUT);
+        assertThatThrownBy(() -> probe.get(1, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(IOException.class)
+                .hasMessageContaining("Status prober closed");
+    }
+
+    static InetSocketAddress address(int port) {
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+    }
+}
@@ -0,0 +1,85 @@
+package fi.jannetahkola.palikka.game.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fi.jannetahkola.palikka.game.api.status.model.FleetStatusResponse;
+import fi.jannetahkola.palikka.game.api.status.model.GameStatusResponse;
+import fi.jannetahkola.palikka.game.config.properties.GameProperties;
+import fi.jannetahkola.palikka.game.testutils.FakeStatusServer;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FleetStatusServiceTests {
+    FleetStatusService service;
+
+    @AfterEach
+    void afterEach() {
+        if (service != null) service.preDestroy();
+    }
+
+    @SneakyThrows
+    @Test
+    void givenTargets_thenStatusAggregated() {
+        int closedPort;
+        try (ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            closedPort = serverSocket.getLocalPort();
+        }
+        try (FakeStatusServer responding = new FakeStatusServer(true);
+             FakeStatusServer silent = new FakeStatusServer(false)) {
+            service = newService(responding.getPort(), silent.getPort(), closedPort);
+
+            FleetStatusService.Snapshot snapshot = service.refresh().get(2, TimeUnit.SECONDS);
+            FleetStatusResponse fleetStatus = snapshot.status();
+            assertThat(fleetStatus.getTotal()).isEqualTo(3);
+            assertThat(fleetStatus.getOnline()).isEqualTo(1);
+            assertThat(fleetStatus.getServers()).extracting(GameStatusResponse::getPort)
+                    .containsExactly(responding.getPort(), silent.getPort(), closedPort);
+            assertThat(fleetStatus.getServers()).extracting(GameStatusResponse::isOnline)
+                    .containsExactly(true, false, false);
+
+            GameStatusResponse online = fleetStatus.getServers().get(0);
+            assertThat(online.getHost()).isEqualTo("127.0.0.1");
+            assertThat(online.getVersion()).isEqualTo("1.20.4");
+            assertThat(online.getPlayers().getOnline()).isEqualTo(3);
+            assertThat(service.getSnapshot()).isSameAs(snapshot);
+
+            FleetStatusService.Snapshot next = service.refresh().get(2, TimeUnit.SECONDS);
+            assertThat(next.etag()).isEqualTo(snapshot.etag()); // Status didn't change
+            assertThat(next.status()).isSameAs(fleetStatus);
+        }
+    }
+
+    @SneakyThrows
+    @Test
+    void givenNoTargets_thenEmptyStatus() {
+        service = newService();
+
+        FleetStatusResponse fleetStatus = service.getSnapshot().status();
+        assertThat(fleetStatus.getTotal()).isZero();
+        assertThat(fleetStatus.getServers()).isEmpty();
+        assertThat(service.refresh().get(1, TimeUnit.SECONDS).status()).isSameAs(fleetStatus);
+    }
+
+    @SneakyThrows
+    static FleetStatusService newService(int... ports) {
+        GameProperties gameProperties = new GameProperties();
+        gameProperties.getFleet().setTimeout(Duration.ofMillis(500));
+        gameProperties.getFleet().setPollInterval(Duration.ofMinutes(1)); // Probed by the tests
+        for (int port : ports) {
+            GameProperties.FleetProperties.TargetProperties target = new GameProperties.FleetProperties.TargetProperties();
+            target.setHost("127.0.0.1");
+            target.setPort(port);
+            gameProperties.getFleet().getTargets().add(target);
+        }
+        FleetStatusService fleetStatusService = new FleetStatusService(gameProperties, new ObjectMapper());
+        fleetStatusService.postConstruct();
+        return fleetStatusService;
+    }
+}
@@ -0,0 +1,181 @@
+package fi.jannetahkola.palikka.game.service;
+
+import fi.jannetahkola.palikka.game.config.properties.GameProperties;
+import fi.jannetahkola.palikka.game.process.ConsoleEvent;
+import fi.jannetahkola.palikka.game.process.GameProcess;
+import fi.jannetahkola.palikka.game.process.log.ConsoleLog;
+import fi.jannetahkola.palikka.game.service.factory.ProcessFactory;
+import fi.jannetahkola.palikka.game.service.validator.PathValidator;
+import fi.jannetahkola.palikka.game.util.ConsoleHistory;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class GameProcessServiceTests {
+    Process process;
+    CompletableFuture<Process> processExit;
+    PipedOutputStream gameOut;
+    GameProperties gameProperties;
+    ProcessFactory processFactory;
+    PathValidator pathValidator;
+    GameProcessService service;
+
+    @SneakyThrows
+    @BeforeEach
+    void beforeEach() {
+        gameOut = new PipedOutputStream();
+        processExit = new CompletableFuture<>();
+        process = mock(Process.class);
+        when(process.getInputStream()).thenReturn(new PipedInputStream(gameOut, 64 * 1024));
+        when(process.getOutputStream()).thenReturn(new ByteArrayOutputStream());
+        when(process.onExit()).thenReturn(processExit);
+
+        pathValidator = mock(PathValidator.class);
+        when(pathValidator.validatePathExistsAndIsAFile(any())).thenReturn(true);
+        processFactory = mock(ProcessFactory.class);
+        when(processFactory.newGameProcess(any(), any(), any(), any())).thenAnswer(invocation -> new GameProcess(
+                () -> process, invocation.getArgument(2), invocation.getArgument(3)));
+
+        gameProperties = new GameProperties();
+        GameProperties.FileProperties fileProperties = new GameProperties.FileProperties();
+        fileProperties.setPath("/game");
+        fileProperties.setName("server.jar");
+        fileProperties.setStartCommand("java -jar server.jar");
+        gameProperties.setFile(fileProperties);
+        service = newService();
+    }
+
+    @AfterEach
+    void afterEach() {
+        processExit.complete(process); // Stops the I/O tasks
+        service.preDestroy();
+    }
+
+    @SneakyThrows
+    @Test
+    void givenOutputAndCommandEchoAtTheSameTime_thenEachLineGetsItsOwnSequenceInOrder() {
+        int count = 500;
+        List<ConsoleHistory.Entry> published = Collections.synchronizedList(new ArrayList<>());
+        service.registerInputListener(published::addAll);
+        assertThat(service.initStart()).isTrue();
+        service.startAsync();
+
+        Thread outputThread = new Thread(() -> {
+            try (PipedOutputStream out = gameOut) {
+                for (int i = 0; i < count; i++) {
+                    out.write(("[12:00:00] [Server thread/INFO]: Output " + i + "\n").getBytes(StandardCharsets.UTF_8));
+                }
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        outputThread.start();
+        for (int i = 0; i < count; i++) {
+            service.addOutput("say Command " + i); // Echoed by the writer thread while the output is read
+        }
+        outputThread.join();
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> published.size() == 2 * count);
+        List<Long> expectedSequences = LongStream.rangeClosed(1, 2L * count).boxed().toList();
+        assertThat(published).extracting(ConsoleHistory.Entry::sequence).containsExactlyElementsOf(expectedSequences);
+        assertThat(service.copyInputHistoryAfter(0).entries())
+                .extracting(ConsoleHistory.Entry::sequence).containsExactlyElementsOf(expectedSequences);
+        assertThat(service.getLastInputSequence()).isEqualTo(2L * count);
+
+        // Lines of each producer keep their order
+        assertThat(published).extracting(ConsoleHistory.Entry::line)
+                .filteredOn(line -> line.startsWith("say "))
+                .containsExactlyElementsOf(LongStream.range(0, count).mapToObj(i -> "say Command " + i).toList());
+        assertThat(published).extracting(ConsoleHistory.Entry::line)
+                .filteredOn(line -> line.startsWith("[12:00:00]"))
+                .containsExactlyElementsOf(LongStream.range(0, count)
+                        .mapToObj(i -> "[12:00:00] [Server thread/INFO]: Output " + i).toList());
+    }
+
+    @SneakyThrows
+    @Test
+    void givenRepeatedLinesCollapsed_thenEventsExtractedFromCollapsedLine() {
+        service.preDestroy();
+        gameProperties.getDedup().setEnabled(true);
+        service = newService();
+        List<ConsoleEvent> events = Collections.synchronizedList(new ArrayList<>());
+        service.registerEventListener(events::add);
+        assertThat(service.initStart()).isTrue();
+        service.startAsync();
+
+        String lag = "[12:00:0%d] [Server thread/WARN]: Can't keep up! Is the server overloaded? "
+                + "Running %d000ms or %d0 ticks behind\n";
+        try (PipedOutputStream out = gameOut) {
+            for (int i = 1; i <= 3; i++) {
+                out.write(lag.formatted(i, 2, 4).getBytes(StandardCharsets.UTF_8));
+            }
+            out.write("[12:00:04] [Server thread/INFO]: Saving chunks\n".getBytes(StandardCharsets.UTF_8));
+        }
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> events.size() == 2);
+        assertThat(events).extracting(ConsoleEvent::type)
+                .containsExactly(ConsoleEvent.Type.TICK_LAG, ConsoleEvent.Type.TICK_LAG);
+        assertThat(service.copyInputHistoryAfter(0).entries()).extracting(ConsoleHistory.Entry::line).contains(
+                "[12:00:03] [Server thread/WARN]: Can't keep up! Is the server overloaded? "
+                        + "Running 2000ms or 40 ticks behind [repeated 2 more times]");
+    }
+
+    @SneakyThrows
+    @Test
+    void givenSequenceNoLongerInHistory_thenCopyIsTruncated() {
+        service.preDestroy();
+        gameProperties.getHistory().setMaxLines(3);
+        service = newService();
+        assertThat(service.initStart()).isTrue();
+        service.startAsync();
+
+        try (PipedOutputStream out = gameOut) {
+            for (int i = 1; i <= 5; i++) {
+                out.write(("[12:00:00] [Server thread/INFO]: Output " + i + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        await().atMost(Duration.ofSeconds(5)).until(() -> service.getLastInputSequence() == 5);
+
+        GameProcessService.InputHistorySnapshot evicted = service.copyInputHistoryAfter(1);
+        assertThat(evicted.truncated()).isTrue();
+        assertThat(evicted.firstSequence()).isEqualTo(3);
+        assertThat(evicted.entries()).extracting(ConsoleHistory.Entry::sequence).containsExactly(3L, 4L, 5L);
+
+        GameProcessService.InputHistorySnapshot retained = service.copyInputHistoryAfter(2);
+        assertThat(retained.truncated()).isFalse();
+        assertThat(retained.entries()).extracting(ConsoleHistory.Entry::sequence).containsExactly(3L, 4L, 5L);
+
+        GameProcessService.InputHistorySnapshot upToDate = service.copyInputHistoryAfter(5);
+        assertThat(upToDate.truncated()).isFalse();
+        assertThat(upToDate.entries()).isEmpty();
+
+        GameProcessService.InputHistorySnapshot unknown = service.copyInputHistoryAfter(10);
+        assertThat(unknown.truncated()).isTrue();
+        assertThat(unknown.entries()).extracting(ConsoleHistory.Entry::sequence).containsExactly(3L, 4L, 5L);
+    }
+
+    @SuppressWarnings("unchecked")
+    GameProcessService newService() {
+        ObjectProvider<ConsoleLog> consoleLogProvider = mock(ObjectProvider.class); // Console log disabled
+        return new GameProcessService(gameProperties, processFactory, pathValidator, consoleLogProvider);
+    }
+}
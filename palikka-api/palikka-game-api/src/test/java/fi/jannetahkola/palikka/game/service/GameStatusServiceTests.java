@@ -0,0 +1,179 @@
+package fi.jannetahkola.palikka.game.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fi.jannetahkola.palikka.game.api.status.model.GameStatusResponse;
+import fi.jannetahkola.palikka.game.config.properties.GameProperties;
+import fi.jannetahkola.palikka.game.service.factory.SocketFactory;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests the status probe with a mocked connection instead of a Spring context because of difficulties mocking the
+ * connection with it.
+ */
+class GameStatusServiceTests {
+    static final String RESPONSE_PAYLOAD = "{\"version\":{\"name\":\"1.20.4\",\"protocol\":765},\"enforcesSecureChat\":true,\"description\":\"A Minecraft Server\",\"players\":{\"max\":20,\"online\":0}}";
+
+    final SocketFactory socketFactoryMock = mock(SocketFactory.class);
+    final GameStatusService service = new GameStatusService(newGameProperties(), socketFactoryMock, new ObjectMapper());
+
+    @AfterEach
+    void afterEach() {
+        service.preDestroy();
+    }
+
+    @SneakyThrows
+    @Test
+    void givenProbe_whenUp_thenResponseParsedCorrectly() {
+        PipedInputStream in = new PipedInputStream();
+        PipedOutputStream out = new PipedOutputStream(in);
+
+        PipedInputStream inOut = new PipedInputStream();
+        PipedOutputStream outOut = new PipedOutputStream(inOut);
+
+        Socket socketMock = mock(Socket.class);
+        when(socketMock.getInputStream()).thenReturn(in);
+        when(socketMock.getOutputStream()).thenReturn(outOut);
+        doNothing().when(socketMock).connect(any(), anyInt());
+        when(socketFactoryMock.newSocket()).thenReturn(socketMock);
+
+        byte[] responseLengthVarIntBytes = {-116, 1}; // result 140
+        out.write(responseLengthVarIntBytes);
+
+        byte[] packetIdVarIntBytes = {0}; // result 0
+        out.write(packetIdVarIntBytes);
+
+        byte[] payloadLengthVarIntBytes = {-119, 1}; // result 137
+        out.write(payloadLengthVarIntBytes);
+
+        out.write(RESPONSE_PAYLOAD.getBytes(StandardCharsets.UTF_8));
+
+        GameStatusResponse gameStatus = CompletableFuture.supplyAsync(service::probe).get(1000, TimeUnit.MILLISECONDS);
+        assertThat(gameStatus).isNotNull();
+        assertThat(gameStatus.isOnline()).isTrue();
+        assertThat(gameStatus.getVersion()).isEqualTo("1.20.4");
+        assertThat(gameStatus.getPlayers().getOnline()).isZero();
+        assertThat(gameStatus.getPlayers().getMax()).isEqualTo(20);
+        assertThat(gameStatus.getDescription()).isEqualTo("A Minecraft Server");
+        assertThat(gameStatus.getEnforcesSecureChat()).isTrue();
+    }
+
+    @SneakyThrows
+    @Test
+    void givenProbe_whenDown_thenOfflineStatus() {
+        Socket socketMock = mock(Socket.class);
+        doThrow(new IOException()).when(socketMock).connect(any(), anyInt());
+        when(socketFactoryMock.newSocket()).thenReturn(socketMock);
+
+        GameStatusResponse gameStatus = service.probe();
+
+        assertThat(gameStatus).isNotNull();
+        assertThat(gameStatus.isOnline()).isFalse();
+        assertThat(gameStatus.getHost()).isEqualTo("127.0.0.1");
+        assertThat(gameStatus.getPort()).isEqualTo(25565);
+    }
+
+    @SneakyThrows
+    @Test
+    void givenProbe_whenUnexpectedPacket_thenOfflineStatus() {
+        Socket socketMock = mock(Socket.class);
+        when(socketMock.getInputStream()).thenReturn(new ByteArrayInputStream(new byte[]{1, 5}));
+        when(socketMock.getOutputStream()).thenReturn(new ByteArrayOutputStream());
+        when(socketFactoryMock.newSocket()).thenReturn(socketMock);
+
+        assertThat(service.probe().isOnline()).isFalse();
+    }
+
+    @SneakyThrows
+    @Test
+    void givenConcurrentRefreshes_thenSingleProbe() {
+        CountDownLatch connecting = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Socket socketMock = mock(Socket.class);
+        doAnswer(invocation -> {
+            connecting.countDown();
+            release.await(1, TimeUnit.SECONDS);
+            throw new IOException("Connection refused");
+        }).when(socketMock).connect(any(), anyInt());
+        when(socketFactoryMock.newSocket()).thenReturn(socketMock);
+
+        CompletableFuture<GameStatusService.Snapshot> first = service.refresh();
+        assertThat(connecting.await(1, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<GameStatusService.Snapshot> second = service.refresh();
+        assertThat(second).isSameAs(first);
+        assertThat(service.getSnapshotAsync()).isSameAs(first); // No status yet, waits for the probe
+        release.countDown();
+
+        GameStatusService.Snapshot snapshot = first.get(1, TimeUnit.SECONDS);
+        assertThat(snapshot.status().isOnline()).isFalse();
+        assertThat(service.getSnapshot()).isSameAs(snapshot);
+        assertThat(service.getSnapshotAsync()).isCompletedWithValue(snapshot);
+        verify(socketFactoryMock, times(1)).newSocket();
+
+        // A new probe starts once the previous one has completed
+        GameStatusService.Snapshot next = service.refresh().get(1, TimeUnit.SECONDS);
+        assertThat(next).isNotSameAs(snapshot);
+        assertThat(next.etag()).isEqualTo(snapshot.etag()); // Status didn't change
+        assertThat(next.status()).isSameAs(snapshot.status());
+        verify(socketFactoryMock, times(2)).newSocket();
+    }
+
+    @SneakyThrows
+    @Test
+    void givenProbes_thenListenersNotifiedOfChangesOnly() {
+        Socket offlineSocket = mock(Socket.class);
+        doThrow(new IOException()).when(offlineSocket).connect(any(), anyInt());
+        when(socketFactoryMock.newSocket()).thenReturn(offlineSocket);
+
+        List<GameStatusService.Snapshot[]> changes = new ArrayList<>();
+        service.registerStatusListener((previous, current) ->
+                changes.add(new GameStatusService.Snapshot[]{previous, current}));
+
+        GameStatusService.Snapshot first = service.refresh().get(1, TimeUnit.SECONDS);
+        service.refresh().get(1, TimeUnit.SECONDS);
+        assertThat(changes).hasSize(1);
+        assertThat(changes.get(0)).containsExactly(null, first);
+
+        Socket onlineSocket = mock(Socket.class);
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        response.write(new byte[]{-116, 1, 0, -119, 1}); // Response length, packet id and payload length
+        response.write(RESPONSE_PAYLOAD.getBytes(StandardCharsets.UTF_8));
+        when(onlineSocket.getInputStream()).thenReturn(new ByteArrayInputStream(response.toByteArray()));
+        when(onlineSocket.getOutputStream()).thenReturn(new ByteArrayOutputStream());
+        when(socketFactoryMock.newSocket()).thenReturn(onlineSocket);
+
+        GameStatusService.Snapshot online = service.refresh().get(1, TimeUnit.SECONDS);
+        assertThat(online.status().isOnline()).isTrue();
+        assertThat(online.etag()).isNotEqualTo(first.etag());
+        assertThat(changes).hasSize(2);
+        assertThat(changes.get(1)[0].etag()).isEqualTo(first.etag());
+        assertThat(changes.get(1)[1]).isSameAs(online);
+    }
+
+    static GameProperties newGameProperties() {
+        GameProperties.StatusProperties statusProperties = new GameProperties.StatusProperties();
+        statusProperties.setHost("127.0.0.1");
+        statusProperties.setPort(25565);
+        GameProperties gameProperties = new GameProperties();
+        gameProperties.setStatus(statusProperties);
+        return gameProperties;
+    }
+}
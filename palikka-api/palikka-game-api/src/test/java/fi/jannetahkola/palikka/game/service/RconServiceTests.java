@@ -0,0 +1,183 @@
+package fi.jannetahkola.palikka.game.service;
+
+import fi.jannetahkola.palikka.game.config.properties.GameProperties;
+import fi.jannetahkola.palikka.game.protocol.RconProtocol;
+import fi.jannetahkola.palikka.game.service.factory.SocketFactory;
+import fi.jannetahkola.palikka.game.testutils.FakeRconServer;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.Mockito.mock;
+
+class RconServiceTests {
+    static final String PASSWORD = "password";
+
+    FakeRconServer server;
+    RconService service;
+
+    @BeforeEach
+    void beforeEach() throws IOException {
+        server = new FakeRconServer(PASSWORD);
+    }
+
+    @AfterEach
+    void afterEach() throws IOException {
+        if (service != null) service.preDestroy();
+        server.close();
+    }
+
+    @SneakyThrows
+    @Test
+    void givenCommand_thenOutputReturned() {
+        service = newConnectedService(newRconProperties());
+
+        assertThat(service.execute("/weather clear").get(1, TimeUnit.SECONDS)).isEqualTo("Executed weather clear");
+        assertThat(service.execute("time set day").get(1, TimeUnit.SECONDS)).isEqualTo("Executed time set day");
+        assertThat(server.getCommands()).containsExactly("weather clear", "time set day");
+    }
+
+    @SneakyThrows
+    @Test
+    void givenEmptyOutput_thenEmptyStringReturned() {
+        server.setHandler(command -> "");
+        service = newConnectedService(newRconProperties());
+
+        assertThat(service.execute("/save-all").get(1, TimeUnit.SECONDS)).isEmpty();
+    }
+
+    @SneakyThrows
+    @Test
+    void givenWrongPassword_thenNotConnected() {
+        GameProperties.RconProperties properties = newRconProperties();
+        properties.setPassword("wrong");
+        service = newService(properties);
+
+        await().during(Duration.ofMillis(300)).atMost(Duration.ofSeconds(1)).until(() -> !service.isConnected());
+        assertThatThrownBy(() -> service.execute("/weather clear").get(1, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IOException.class);
+        assertThat(server.getCommands()).isEmpty();
+    }
+
+    @SneakyThrows
+    @Test
+    void givenOutputSplitIntoPackets_thenPacketsJoined() {
+        // 3 byte characters, so the packets are split in the middle of a character
+        String longOutput = "€".repeat(RconProtocol.MAX_RESPONSE_BODY_LENGTH);
+        String exactOutput = "x".repeat(RconProtocol.MAX_RESPONSE_BODY_LENGTH);
+        server.setHandler(command -> command.equals("long") ? longOutput : exactOutput);
+        service = newConnectedService(newRconProperties());
+
+        assertThat(service.execute("/long").get(1, TimeUnit.SECONDS)).isEqualTo(longOutput);
+        assertThat(service.execute("/exact").get(1, TimeUnit.SECONDS)).isEqualTo(exactOutput);
+        assertThat(service.execute("/exact").get(1, TimeUnit.SECONDS)).isEqualTo(exactOutput);
+    }
+
+    @SneakyThrows
+    @Test
+    void givenPipelinedCommands_whenResponsesOutOfOrder_thenMatchedByRequestId() {
+        GameProperties.RconProperties properties = newRconProperties();
+        properties.setPipelineDepth(3);
+        service = newConnectedService(properties);
+        server.holdResponses();
+
+        List<CompletableFuture<String>> results = List.of(
+                service.execute("/a"), service.execute("/b"), service.execute("/c"), service.execute("/d"));
+        await().atMost(Duration.ofSeconds(1)).until(() -> server.getCommands().size() == 3);
+        assertThat(server.getCommands()).containsExactly("a", "b", "c"); // Last one waits for a response
+
+        server.releaseResponses(true);
+        assertThat(results.get(0).get(1, TimeUnit.SECONDS)).isEqualTo("Executed a");
+        assertThat(results.get(1).get(1, TimeUnit.SECONDS)).isEqualTo("Executed b");
+        assertThat(results.get(2).get(1, TimeUnit.SECONDS)).isEqualTo("Executed c");
+        assertThat(results.get(3).get(1, TimeUnit.SECONDS)).isEqualTo("Executed d");
+    }
+
+    @SneakyThrows
+    @Test
+    void givenConnectionDropped_thenReconnects() {
+        service = newConnectedService(newRconProperties());
+
+        int accepted = server.getAcceptedCount();
+        server.dropConnections();
+        // Not connected only for the reconnect delay, which is too short to poll for
+        await().atMost(Duration.ofSeconds(1)).until(() -> server.getAcceptedCount() > accepted && service.isConnected());
+        assertThat(service.execute("/weather clear").get(1, TimeUnit.SECONDS)).isEqualTo("Executed weather clear");
+    }
+
+    @SneakyThrows
+    @Test
+    void givenNoOutputInTime_thenTimesOutAndReconnects() {
+        CountDownLatch release = new CountDownLatch(1);
+        server.setHandler(command -> {
+            if (command.equals("slow")) {
+                try {
+                    release.await(1, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return "Executed " + command;
+        });
+        GameProperties.RconProperties properties = newRconProperties();
+        properties.setCommandTimeout(Duration.ofMillis(200));
+        service = newConnectedService(properties);
+
+        assertThatThrownBy(() -> service.execute("/slow").get(1, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(TimeoutException.class);
+        release.countDown();
+
+        // The output may still come, so the connection is closed to not mix it up with later commands
+        await().atMost(Duration.ofSeconds(1)).until(service::isConnected);
+        assertThat(service.execute("/fast").get(1, TimeUnit.SECONDS)).isEqualTo("Executed fast");
+        await().atMost(Duration.ofSeconds(1)).until(() -> server.getConnectionCount() == 1);
+    }
+
+    @Test
+    void givenTooLongCommand_thenFails() {
+        service = newConnectedService(newRconProperties());
+
+        assertThatThrownBy(() -> service.execute("x".repeat(RconProtocol.MAX_REQUEST_BODY_LENGTH + 1)).join())
+                .hasCauseInstanceOf(IllegalArgumentException.class);
+        assertThat(server.getCommands()).isEmpty();
+    }
+
+    RconService newConnectedService(GameProperties.RconProperties properties) {
+        RconService rconService = newService(properties);
+        await().atMost(Duration.ofSeconds(1)).until(rconService::isConnected);
+        return rconService;
+    }
+
+    RconService newService(GameProperties.RconProperties properties) {
+        GameProperties gameProperties = new GameProperties();
+        gameProperties.setRcon(properties);
+        RconService rconService = new RconService(gameProperties, new SocketFactory(), mock(GameProcessService.class));
+        rconService.postConstruct();
+        return rconService;
+    }
+
+    GameProperties.RconProperties newRconProperties() {
+        GameProperties.RconProperties properties = new GameProperties.RconProperties();
+        properties.setEnabled(true);
+        properties.setHost("127.0.0.1");
+        properties.setPort(server.getPort());
+        properties.setPassword(PASSWORD);
+        properties.setReconnectDelay(Duration.ofMillis(50));
+        return properties;
+    }
+}
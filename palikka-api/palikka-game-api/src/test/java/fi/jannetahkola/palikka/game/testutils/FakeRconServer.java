@@ -0,0 +1,194 @@
+package fi.jannetahkola.palikka.game.testutils;
+
+import fi.jannetahkola.palikka.game.protocol.RconProtocol;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+/**
+ * RCON server for tests that behaves like the vanilla server: requests are handled one at a time in the order
+ * received, output longer than {@link RconProtocol#MAX_RESPONSE_BODY_LENGTH} bytes is split into several packets, and
+ * requests of unknown type get an "Unknown request" response.
+ */
+@Slf4j
+public class FakeRconServer implements Closeable {
+    private final String password;
+    private final ServerSocket serverSocket;
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private final List<String> commands = new CopyOnWriteArrayList<>();
+    private final AtomicInteger acceptedCount = new AtomicInteger();
+
+    private volatile UnaryOperator<String> handler = command -> "Executed " + command;
+    private volatile boolean responsesHeld;
+    private final List<byte[]> heldResponses = new ArrayList<>(); // Guarded by this
+
+    public FakeRconServer(String password) throws IOException {
+        this.password = password;
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptThread = new Thread(this::accept, "fake-rcon-accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @param handler Returns the output of a command, without the leading slash
+     */
+    public void setHandler(UnaryOperator<String> handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * @return Commands received in order, including those of closed connections
+     */
+    public List<String> getCommands() {
+        return commands;
+    }
+
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    /**
+     * @return Number of connections accepted so far, including closed ones
+     */
+    public int getAcceptedCount() {
+        return acceptedCount.get();
+    }
+
+    /**
+     * Holds back the responses until {@link #releaseResponses(boolean)} is called.
+     */
+    public synchronized void holdResponses() {
+        responsesHeld = true;
+    }
+
+    /**
+     * Sends the held responses, in reverse order if requested, and stops holding responses.
+     */
+    public synchronized void releaseResponses(boolean reversed) throws IOException {
+        responsesHeld = false;
+        List<byte[]> responses = new ArrayList<>(heldResponses);
+        heldResponses.clear();
+        if (reversed) {
+            Collections.reverse(responses);
+        }
+        for (byte[] response : responses) {
+            for (Socket connection : connections) {
+                connection.getOutputStream().write(response);
+            }
+        }
+    }
+
+    /**
+     * Closes the open connections, but keeps accepting new ones.
+     */
+    public void dropConnections() throws IOException {
+        for (Socket connection : connections) {
+            connection.close();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        dropConnections();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.add(socket);
+                acceptedCount.incrementAndGet();
+                Thread thread = new Thread(() -> handle(socket), "fake-rcon-connection");
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                log.debug("Fake RCON server stopped accepting connections", e);
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        try (socket) {
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            OutputStream out = socket.getOutputStream();
+            boolean authenticated = false;
+            while (true) {
+                ByteBuffer request = readRequest(in);
+                int requestId = request.getInt();
+                int type = request.getInt();
+                byte[] body = new byte[request.remaining() - 2];
+                request.get(body);
+                String text = new String(body, StandardCharsets.UTF_8);
+
+                if (type == RconProtocol.TYPE_AUTH) {
+                    authenticated = password.equals(text);
+                    write(out, authenticated ? requestId : RconProtocol.AUTH_FAILED_REQUEST_ID,
+                            RconProtocol.TYPE_AUTH_RESPONSE, new byte[0]);
+                } else if (!authenticated) {
+                    return;
+                } else if (type == RconProtocol.TYPE_COMMAND) {
+                    commands.add(text);
+                    byte[] output = handler.apply(text).getBytes(StandardCharsets.UTF_8);
+                    int offset = 0;
+                    do {
+                        int length = Math.min(RconProtocol.MAX_RESPONSE_BODY_LENGTH, output.length - offset);
+                        write(out, requestId, RconProtocol.TYPE_RESPONSE,
+                                Arrays.copyOfRange(output, offset, offset + length));
+                        offset += length;
+                    } while (offset < output.length);
+                } else {
+                    write(out, requestId, RconProtocol.TYPE_RESPONSE,
+                            ("Unknown request " + Integer.toHexString(type)).getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        } catch (EOFException e) {
+            log.debug("Fake RCON connection closed by the client");
+        } catch (IOException e) {
+            log.debug("Fake RCON connection failed", e);
+        } finally {
+            connections.remove(socket);
+        }
+    }
+
+    private static ByteBuffer readRequest(DataInputStream in) throws IOException {
+        int length = Integer.reverseBytes(in.readInt());
+        byte[] request = new byte[length];
+        in.readFully(request);
+        return ByteBuffer.wrap(request).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private synchronized void write(OutputStream out, int requestId, int type, byte[] body) throws IOException {
+        ByteBuffer packet = ByteBuffer.allocate(Integer.BYTES * 3 + body.length + 2).order(ByteOrder.LITTLE_ENDIAN);
+        packet.putInt(packet.capacity() - Integer.BYTES).putInt(requestId).putInt(type).put(body).put((byte) 0).put((byte) 0);
+        if (responsesHeld) {
+            heldResponses.add(packet.array());
+        } else {
+            out.write(packet.array());
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package fi.jannetahkola.palikka.game.testutils;
+
+import fi.jannetahkola.palikka.game.protocol.FrameDecoder;
+import fi.jannetahkola.palikka.game.protocol.ProtocolCodec;
+import fi.jannetahkola.palikka.game.protocol.StatusProtocol;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Game server for tests that answers status requests like the vanilla server, or accepts connections without ever
+ * responding.
+ */
+@Slf4j
+public class FakeStatusServer implements Closeable {
+    public static final String STATUS = "{\"version\":{\"name\":\"1.20.4\",\"protocol\":765},\"description\":\"A Minecraft Server\",\"players\":{\"max\":20,\"online\":3}}";
+
+    private final boolean responding;
+    private final ServerSocket serverSocket;
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger requestCount = new AtomicInteger();
+
+    /**
+     * @param responding Whether to respond to status requests, or to keep the connections open without responding
+     */
+    public FakeStatusServer(boolean responding) throws IOException {
+        this.responding = responding;
+        this.serverSocket = new ServerSocket(0, 1000, InetAddress.getLoopbackAddress());
+        Thread acceptThread = new Thread(this::accept, "fake-status-accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return Number of status requests received, whether responded to or not
+     */
+    public int getRequestCount() {
+        return requestCount.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        for (Socket connection : connections) {
+            connection.close();
+        }
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.add(socket);
+                Thread thread = new Thread(() -> handle(socket), "fake-status-connection");
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                log.debug("Fake status server stopped accepting connections", e);
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        try {
+            ReadableByteChannel in = Channels.newChannel(socket.getInputStream());
+            FrameDecoder decoder = new FrameDecoder(ByteBuffer.allocate(1024));
+            for (int frames = 0; frames < 2; frames++) { // Handshake and status request
+                while (decoder.nextFrame() == null) {
+                    if (decoder.readFrom(in) < 0) throw new EOFException();
+                }
+            }
+            requestCount.incrementAndGet();
+            if (!responding) return; // Left open until closed by the client or the server
+
+            ByteBuffer response = ByteBuffer.allocate(1024);
+            int start = ProtocolCodec.beginFrame(response);
+            ProtocolCodec.writeVarInt(response, StatusProtocol.STATUS_RESPONSE_PACKET_ID);
+            ProtocolCodec.writeString(response, STATUS);
+            ProtocolCodec.endFrame(response, start);
+            socket.getOutputStream().write(Arrays.copyOf(response.array(), response.position()));
+            socket.close();
+        } catch (IOException e) {
+            log.debug("Fake status connection failed", e);
+        } finally {
+            if (responding) connections.remove(socket);
+        }
+    }
+}
@@ -79,6 +79,7 @@ public abstract class GameProcessIntegrationTest extends IntegrationTest {
     protected final BlockingQueue<TestStompSessionHandlerAdapter.Frame> userReplyQueue = new LinkedBlockingQueue<>();
     protected final BlockingQueue<TestStompSessionHandlerAdapter.Frame> logMessageQueue = new LinkedBlockingDeque<>();
     protected final BlockingQueue<TestStompSessionHandlerAdapter.Frame> lifecycleMessageQueue = new LinkedBlockingDeque<>();
+    protected final BlockingQueue<TestStompSessionHandlerAdapter.Frame> statusMessageQueue = new LinkedBlockingDeque<>();
 
     protected static String webSocketUrl;
 
@@ -93,6 +94,7 @@ public abstract class GameProcessIntegrationTest extends IntegrationTest {
         userReplyQueue.clear();
         logMessageQueue.clear();
         lifecycleMessageQueue.clear();;
+        statusMessageQueue.clear();
 
         webSocketUrl = "ws://localhost:" + localServerPort + "/game-api/ws";
     }
@@ -246,6 +248,6 @@ public abstract class GameProcessIntegrationTest extends IntegrationTest {
     }
 
     protected StompSessionHandlerAdapter newStompSessionHandler() {
-        return new TestStompSessionHandlerAdapter(userReplyQueue, logMessageQueue, lifecycleMessageQueue);
+        return new TestStompSessionHandlerAdapter(userReplyQueue, logMessageQueue, lifecycleMessageQueue, statusMessageQueue);
     }
 }
@@ -1,9 +1,9 @@
 package fi.jannetahkola.palikka.game.testutils;
 
 import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
-import org.springframework.hateoas.MediaTypes;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
 import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
@@ -22,26 +22,24 @@ public class Stubs {
     public static void stubForUser(Integer userId, WireMockExtension wireMockServer) {
         String file = null;
         if (userId == USER_ID_ADMIN) {
-            file = "user_ok_admin.json";
+            file = "user_authorization_ok_admin.json";
         }
         if (userId == USER_ID_USER) {
-            file = "user_ok_user.json";
+            file = "user_authorization_ok_user.json";
         }
         if (userId == USER_ID_VIEWER) {
-            file = "user_ok_viewer.json";
+            file = "user_authorization_ok_viewer.json";
         }
         if (file == null) {
             throw new IllegalArgumentException("Unknown user id " + userId);
         }
-        stubForUsers(wireMockServer);
-        stubForUserRoles(wireMockServer, userId);
         wireMockServer.stubFor(
-                get(urlMatching("/users-api/users/" + userId))
+                get(urlMatching(String.format("/users-api/users/%d/authorization", userId)))
                         .willReturn(
                                 aResponse()
                                         .withStatus(200)
                                         .withBodyFile(file)
-                                        .withHeader(HttpHeaders.CONTENT_TYPE, MediaTypes.HAL_JSON_VALUE)));
+                                        .withHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)));
     }
 
     public static void stubForAdminUser(WireMockExtension wireMockServer) {
@@ -57,46 +55,12 @@ public class Stubs {
     }
 
     public static void stubForUserNotFound(WireMockExtension wireMockServer, int userId) {
-        stubForUsers(wireMockServer);
         wireMockServer.stubFor(
-                get(urlMatching("/users-api/users/" + userId))
+                get(urlMatching(String.format("/users-api/users/%d/authorization", userId)))
                         .willReturn(
                                 aResponse()
                                         .withStatus(HttpStatus.NOT_FOUND.value())
                                         .withBodyFile("user_notfound.json")
-                                        .withHeader(HttpHeaders.CONTENT_TYPE, MediaTypes.HAL_JSON_VALUE)));
-    }
-
-    public static void stubForUsers(WireMockExtension wireMockServer) {
-        wireMockServer.stubFor(
-                get(urlMatching("/users-api/users"))
-                        .willReturn(
-                                aResponse()
-                                        .withStatus(200)
-                                        .withBodyFile("users_ok.json")
-                                        .withHeader(HttpHeaders.CONTENT_TYPE, MediaTypes.HAL_JSON_VALUE)));
-    }
-
-    public static void stubForUserRoles(WireMockExtension wireMockServer, int userId) {
-        String file = null;
-        if (userId == USER_ID_ADMIN) {
-            file = "user_roles_ok_admin.json";
-        }
-        if (userId == USER_ID_USER) {
-            file = "user_roles_ok_user.json";
-        }
-        if (userId == USER_ID_VIEWER) {
-            file = "user_roles_ok_viewer.json";
-        }
-        if (file == null) {
-            throw new IllegalArgumentException("Unknown user id " + userId);
-        }
-        wireMockServer.stubFor(
-                get(urlMatching(String.format("/users-api/users/%d/roles", userId)))
-                        .willReturn(
-                                aResponse()
-                                        .withStatus(200)
-                                        .withBodyFile(file)
-                                        .withHeader(HttpHeaders.CONTENT_TYPE, MediaTypes.HAL_JSON_VALUE)));
+                                        .withHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_PROBLEM_JSON_VALUE)));
     }
 }
@@ -2,6 +2,7 @@ package fi.jannetahkola.palikka.game.testutils;
 
 import fi.jannetahkola.palikka.game.api.game.model.GameLifecycleMessage;
 import fi.jannetahkola.palikka.game.api.game.model.GameLogMessage;
+import fi.jannetahkola.palikka.game.api.game.model.GameStatusMessage;
 import fi.jannetahkola.palikka.game.api.game.model.GameUserReplyMessage;
 import jakarta.annotation.Nonnull;
 import lombok.AllArgsConstructor;
@@ -21,13 +22,16 @@ public class TestStompSessionHandlerAdapter extends StompSessionHandlerAdapter {
     private final BlockingQueue<Frame> userReplyQueue;
     private final BlockingQueue<Frame> logMessageQueue;
     private final BlockingQueue<Frame> lifecycleMessageQueue;
+    private final BlockingQueue<Frame> statusMessageQueue;
 
     public TestStompSessionHandlerAdapter(BlockingQueue<Frame> userReplyQueue,
                                           BlockingQueue<Frame> logMessageQueue,
-                                          BlockingQueue<Frame> lifecycleMessageQueue) {
+                                          BlockingQueue<Frame> lifecycleMessageQueue,
+                                          BlockingQueue<Frame> statusMessageQueue) {
         this.userReplyQueue = userReplyQueue;
         this.logMessageQueue = logMessageQueue;
         this.lifecycleMessageQueue = lifecycleMessageQueue;
+        this.statusMessageQueue = statusMessageQueue;
     }
 
     @Override
@@ -61,12 +65,15 @@ public class TestStompSessionHandlerAdapter extends StompSessionHandlerAdapter {
                 case "/user/queue/reply" -> {
                     return GameUserReplyMessage.class;
                 }
-                case "/topic/game/logs" -> {
+                case "/topic/game/logs", "/user/queue/game/logs" -> {
                     return GameLogMessage.class;
                 }
                 case "/topic/game/lifecycle" -> {
                     return GameLifecycleMessage.class;
                 }
+                case "/topic/game/status" -> {
+                    return GameStatusMessage.class;
+                }
             }
         }
         throw new IllegalArgumentException("Unknown destination in STOMP headers, destination=" + destination);
@@ -88,7 +95,7 @@ public class TestStompSessionHandlerAdapter extends StompSessionHandlerAdapter {
                                 log.error("Failed to add user reply message to queue");
                             }
                         }
-                        case "/topic/game/logs" -> {
+                        case "/topic/game/logs", "/user/queue/game/logs" -> {
                             if (!logMessageQueue.offer(frame, 1000, TimeUnit.MILLISECONDS)) {
                                 log.error("Failed to add game log message to queue");
                             }
@@ -98,6 +105,11 @@ public class TestStompSessionHandlerAdapter extends StompSessionHandlerAdapter {
                                 log.error("Failed to add game lifecycle message to queue");
                             }
                         }
+                        case "/topic/game/status" -> {
+                            if (!statusMessageQueue.offer(frame, 1000, TimeUnit.MILLISECONDS)) {
+                                log.error("Failed to add game status message to queue");
+                            }
+                        }
                     }
                 } else {
                     log.error("Frame is missing destination");
@@ -0,0 +1,96 @@
+package fi.jannetahkola.palikka.game.util;
+
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConsoleHistoryTests {
+    @Test
+    void testOldestEntryIsEvictedWhenLineLimitReached() {
+        ConsoleHistory history = new ConsoleHistory(2, 1024);
+        history.add("test");
+        history.add("test2");
+        history.add("test3");
+
+        assertThat(history.size()).isEqualTo(2);
+        assertThat(history.lines()).containsExactly("test2", "test3");
+        assertThat(history.getFirstSequence()).isEqualTo(2);
+        assertThat(history.getLastSequence()).isEqualTo(3);
+    }
+
+    @Test
+    void testOldestEntriesAreEvictedWhenByteLimitReached() {
+        ConsoleHistory history = new ConsoleHistory(100, 10);
+        history.add("aaaa");
+        history.add("bbbb");
+        history.add("cccccc");
+
+        assertThat(history.lines()).containsExactly("bbbb", "cccccc");
+        assertThat(history.getBytes()).isEqualTo(10);
+    }
+
+    @Test
+    void testNewestEntryIsRetainedWhenLargerThanByteLimit() {
+        ConsoleHistory history = new ConsoleHistory(100, 4);
+        history.add("a");
+        history.add("too long");
+
+        assertThat(history.lines()).containsExactly("too long");
+    }
+
+    @Test
+    void testSnapshotAfterSequence() {
+        ConsoleHistory history = new ConsoleHistory(10, 1024);
+        for (int i = 1; i <= 5; i++) {
+            history.add("line" + i);
+        }
+
+        assertThat(history.snapshotAfter(3))
+                .extracting(ConsoleHistory.Entry::line)
+                .containsExactly("line4", "line5");
+        assertThat(history.snapshotAfter(5)).isEmpty();
+        assertThat(history.snapshotAfter(0)).hasSize(5);
+    }
+
+    @Test
+    void testUtf8Length() {
+        assertThat(ConsoleHistory.utf8Length("abc")).isEqualTo(3);
+        assertThat(ConsoleHistory.utf8Length("ä")).isEqualTo(2);
+        assertThat(ConsoleHistory.utf8Length("€")).isEqualTo(3);
+        assertThat(ConsoleHistory.utf8Length("😀")).isEqualTo(4);
+    }
+
+    @SneakyThrows
+    @Test
+    void testSnapshotsDuringConcurrentWritesAreContiguous() {
+        ConsoleHistory history = new ConsoleHistory(64, 64 * 8);
+        AtomicBoolean done = new AtomicBoolean();
+        CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < 200_000; i++) {
+                history.add("line" + i);
+            }
+            done.set(true);
+        });
+        CompletableFuture<Void> reader = CompletableFuture.runAsync(() -> {
+            while (!done.get()) {
+                List<ConsoleHistory.Entry> snapshot = history.snapshot();
+                assertThat(snapshot.size()).isLessThanOrEqualTo(64);
+                for (int i = 1; i < snapshot.size(); i++) {
+                    assertThat(snapshot.get(i).sequence()).isEqualTo(snapshot.get(i - 1).sequence() + 1);
+                }
+                for (ConsoleHistory.Entry entry : snapshot) {
+                    assertThat(entry.line()).isEqualTo("line" + (entry.sequence() - 1));
+                }
+            }
+        });
+        CompletableFuture.allOf(writer, reader).get(30, TimeUnit.SECONDS);
+
+        assertThat(history.getLastSequence()).isEqualTo(200_000);
+    }
+}
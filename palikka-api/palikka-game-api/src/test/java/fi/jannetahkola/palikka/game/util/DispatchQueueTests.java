@@ -0,0 +1,197 @@
+package fi.jannetahkola.palikka.game.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DispatchQueueTests {
+    final BlockingQueue<List<Integer>> batches = new LinkedBlockingQueue<>();
+
+    @Test
+    void testBatchIsDeliveredWhenMaxSizeReached() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        try (DispatchQueue<Integer> queue = newQueue(100, 3, Duration.ofHours(1), DispatchQueue.OverflowPolicy.DROP_OLDEST,
+                batch -> {
+                    awaitQuietly(release);
+                    batches.add(batch);
+                })) {
+            for (int i = 1; i <= 6; i++) queue.offer(i);
+            release.countDown();
+
+            assertThat(batches.poll(1, TimeUnit.SECONDS)).containsExactly(1, 2, 3);
+            assertThat(batches.poll(1, TimeUnit.SECONDS)).containsExactly(4, 5, 6);
+
+            queue.offer(7);
+            assertThat(batches.poll(100, TimeUnit.MILLISECONDS)).isNull();
+        }
+        assertThat(batches.poll()).containsExactly(7); // Delivered on close
+    }
+
+    @Test
+    void testBatchIsDeliveredWhenMaxDelayReached() throws Exception {
+        try (DispatchQueue<Integer> queue = newQueue(100, 100, Duration.ofMillis(50), DispatchQueue.OverflowPolicy.DROP_OLDEST,
+                batches::add)) {
+            long start = System.nanoTime();
+            queue.offer(1);
+            queue.offer(2);
+
+            assertThat(batches.poll(1, TimeUnit.SECONDS)).containsExactly(1, 2);
+            assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(Duration.ofMillis(50));
+
+            queue.offer(3);
+            assertThat(batches.poll(1, TimeUnit.SECONDS)).containsExactly(3);
+        }
+    }
+
+    @Test
+    void testOldestItemsAreDroppedWhenFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        try (DispatchQueue<Integer> queue = newQueue(3, 100, Duration.ZERO, DispatchQueue.OverflowPolicy.DROP_OLDEST,
+                batch -> {
+                    awaitQuietly(release);
+                    batches.add(batch);
+                })) {
+            queue.offer(0);
+            awaitDepth(queue, 0); // Consumer is blocked delivering the first item
+
+            for (int i = 1; i <= 5; i++) {
+                assertThat(queue.offer(i)).isTrue();
+            }
+            assertThat(queue.getStats().depth()).isEqualTo(3);
+            assertThat(queue.getStats().dropped()).isEqualTo(2);
+            release.countDown();
+
+            assertThat(batches.poll(1, TimeUnit.SECONDS)).containsExactly(0);
+            assertThat(batches.poll(1, TimeUnit.SECONDS)).containsExactly(3, 4, 5);
+        }
+    }
+
+    @Test
+    void testNewestItemsAreDroppedWhenFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        try (DispatchQueue<Integer> queue = newQueue(3, 100, Duration.ZERO, DispatchQueue.OverflowPolicy.DROP_NEWEST,
+                batch -> {
+                    awaitQuietly(release);
+                    batches.add(batch);
+                })) {
+            queue.offer(0);
+            awaitDepth(queue, 0);
+
+            for (int i = 1; i <= 3; i++) {
+                assertThat(queue.offer(i)).isTrue();
+            }
+            assertThat(queue.offer(4)).isFalse();
+            assertThat(queue.offer(5)).isFalse();
+            release.countDown();
+
+            assertThat(batches.poll(1, TimeUnit.SECONDS)).containsExactly(0);
+            assertThat(batches.poll(1, TimeUnit.SECONDS)).containsExactly(1, 2, 3);
+        }
+    }
+
+    @Test
+    void testOfferBlocksWhenFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        try (DispatchQueue<Integer> queue = newQueue(3, 100, Duration.ZERO, DispatchQueue.OverflowPolicy.BLOCK,
+                batch -> {
+                    awaitQuietly(release);
+                    batches.add(batch);
+                })) {
+            queue.offer(0);
+            awaitDepth(queue, 0);
+            for (int i = 1; i <= 3; i++) {
+                assertThat(queue.offer(i)).isTrue();
+            }
+
+            CompletableFuture<Boolean> blocked = CompletableFuture.supplyAsync(() -> queue.offer(4));
+            assertThatThrownBy(() -> blocked.get(200, TimeUnit.MILLISECONDS)).isInstanceOf(TimeoutException.class);
+            release.countDown();
+            assertThat(blocked.get(1, TimeUnit.SECONDS)).isTrue();
+
+            List<Integer> received = new ArrayList<>();
+            while (received.size() < 5) {
+                received.addAll(batches.poll(1, TimeUnit.SECONDS));
+            }
+            assertThat(received).containsExactly(0, 1, 2, 3, 4);
+            assertThat(queue.getStats().dropped()).isZero();
+        }
+    }
+
+    @Test
+    void testSlowConsumerDoesNotBlockProducer() {
+        CountDownLatch release = new CountDownLatch(1);
+        try (DispatchQueue<Integer> queue = newQueue(1000, 100, Duration.ZERO, DispatchQueue.OverflowPolicy.DROP_OLDEST,
+                batch -> awaitQuietly(release))) {
+            long start = System.nanoTime();
+            for (int i = 0; i < 1_000_000; i++) {
+                queue.offer(i);
+            }
+            assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+
+            DispatchQueue.Stats stats = queue.getStats();
+            assertThat(stats.offered()).isEqualTo(1_000_000);
+            assertThat(stats.depth()).isEqualTo(1000);
+            // The consumer is stuck delivering the first batch of at most 100 items, the rest are queued or dropped
+            assertThat(stats.dropped()).isGreaterThanOrEqualTo(1_000_000 - 1000 - 100);
+            release.countDown();
+        }
+    }
+
+    @Test
+    void testItemsAreDeliveredInOrderUnderLoad() {
+        int count = 200_000;
+        List<Integer> received = new ArrayList<>(count);
+        DispatchQueue.Stats stats;
+        try (DispatchQueue<Integer> queue = newQueue(count, 64, Duration.ofMillis(1), DispatchQueue.OverflowPolicy.DROP_OLDEST,
+                received::addAll)) {
+            for (int i = 0; i < count; i++) {
+                queue.offer(i);
+            }
+            queue.close();
+            stats = queue.getStats();
+        }
+        assertThat(received).hasSize(count);
+        for (int i = 0; i < count; i++) {
+            assertThat(received.get(i)).isEqualTo(i);
+        }
+        assertThat(stats.delivered()).isEqualTo(count);
+        assertThat(stats.dropped()).isZero();
+        assertThat(stats.maxLag()).isGreaterThanOrEqualTo(stats.lastLag());
+    }
+
+    static DispatchQueue<Integer> newQueue(int capacity,
+                                           int maxBatchSize,
+                                           Duration maxBatchDelay,
+                                           DispatchQueue.OverflowPolicy overflowPolicy,
+                                           Consumer<List<Integer>> consumer) {
+        return new DispatchQueue<>(capacity, maxBatchSize, maxBatchDelay, overflowPolicy, "test-dispatcher", consumer);
+    }
+
+    static void awaitDepth(DispatchQueue<?> queue, int depth) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (queue.getStats().depth() != depth && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertThat(queue.getStats().depth()).isEqualTo(depth);
+    }
+
+    static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
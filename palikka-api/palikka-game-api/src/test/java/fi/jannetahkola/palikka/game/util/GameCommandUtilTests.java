@@ -1,40 +1,18 @@
 package fi.jannetahkola.palikka.game.util;
 
 import fi.jannetahkola.palikka.core.auth.PalikkaPrincipal;
-import fi.jannetahkola.palikka.core.integration.users.Privilege;
-import fi.jannetahkola.palikka.core.integration.users.Role;
-import fi.jannetahkola.palikka.core.integration.users.User;
-import fi.jannetahkola.palikka.core.integration.users.UsersClient;
-import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
-import org.mockito.Mockito;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 
 import java.util.List;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.mockito.ArgumentMatchers.any;
 
 class GameCommandUtilTests {
-    UsersClient mockUsersClient;
-
-    @BeforeEach
-    void beforeEach() {
-        mockUsersClient = Mockito.mock(UsersClient.class);
-        Mockito.when(mockUsersClient.getUser(any())).thenReturn(
-                User.builder()
-                        .id(1)
-                        .active(true)
-                        .root(true)
-                        .username("user")
-                        .build()
-        );
-    }
 
     @ParameterizedTest
     @MethodSource("normalizeCommandParams")
@@ -50,23 +28,7 @@ class GameCommandUtilTests {
         PalikkaPrincipal principal = new PalikkaPrincipal(1, "mock-user");
         UsernamePasswordAuthenticationToken authentication =
                 new UsernamePasswordAuthenticationToken(principal, null, mappedAuthorities);
-        Mockito.when(mockUsersClient.getUserRoles(any())).thenReturn(List.of(
-                Role.builder()
-                        .id(1)
-                        .name("ROLE_USER")
-                        .privileges(
-                                authorities.stream().map(a -> {
-                                    String[] s = a.split("_");
-                                    return Privilege.builder()
-                                            .domain(s[0])
-                                            .name(s[1])
-                                            .build();
-                                })
-                                .collect(Collectors.toSet())
-                        )
-                        .build()
-        ));
-        boolean authorized = GameCommandUtil.authorizeCommand(mockUsersClient, authentication, normalizedCommand);
+        boolean authorized = GameCommandUtil.authorizeCommand(authentication, normalizedCommand);
         assertThat(authorized).isEqualTo(expectedResult);
     }
 
@@ -85,7 +47,9 @@ class GameCommandUtilTests {
                 Arguments.of(List.of("COMMAND_weather"), "weather", true),
                 Arguments.of(List.of("COMMAND_op", "COMMAND_weather"), "weather", true),
                 Arguments.of(List.of(), "weather", false),
-                Arguments.of(List.of("COMMAND_op"), "weather", false)
+                Arguments.of(List.of("COMMAND_op"), "weather", false),
+                Arguments.of(List.of("ROLE_ADMIN", "COMMAND_weather"), "weather", true),
+                Arguments.of(List.of("ROLE_COMMAND_weather"), "weather", false)
         );
     }
 }
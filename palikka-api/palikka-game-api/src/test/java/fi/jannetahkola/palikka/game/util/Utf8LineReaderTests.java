@@ -0,0 +1,142 @@
+package fi.jannetahkola.palikka.game.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+class Utf8LineReaderTests {
+    @Test
+    void testLinesAreSplitOnLineFeeds() throws IOException {
+        assertThat(readAll("first\nsecond\r\n\nlast", 8192))
+                .containsExactly("first", "second", "", "last");
+        assertThat(readAll("first\n", 8192)).containsExactly("first");
+        assertThat(readAll("", 8192)).isEmpty();
+    }
+
+    @Test
+    void testLinesLongerThanBufferAreRead() throws IOException {
+        String longLine = "x".repeat(10_000);
+        assertThat(readAll(longLine + "\nshort\n" + longLine, 16))
+                .containsExactly(longLine, "short", longLine);
+    }
+
+    @Test
+    void testMultiByteCharactersSplitAcrossBuffersAreDecoded() throws IOException {
+        String text = "ä€😀 [Server thread/INFO]: <Pelaaja> hei 👋\nåäö";
+        for (int bufferSize = 4; bufferSize <= 16; bufferSize++) {
+            assertThat(readAll(text, bufferSize))
+                    .as("buffer size %d", bufferSize)
+                    .containsExactly("ä€😀 [Server thread/INFO]: <Pelaaja> hei 👋", "åäö");
+            assertThat(readAll(new Utf8LineReader(stream(text), bufferSize, 1000)))
+                    .as("stream, buffer size %d", bufferSize)
+                    .containsExactly("ä€😀 [Server thread/INFO]: <Pelaaja> hei 👋", "åäö");
+        }
+    }
+
+    @Test
+    void testLinesLongerThanMaxLengthAreSplit() throws IOException {
+        String text = "x".repeat(25) + "\nshort\n" + "y".repeat(10) + "\r\n" + "z".repeat(9) + "😀end";
+        List<String> expected = List.of(
+                "x".repeat(10), "x".repeat(10), "x".repeat(5), "short", "y".repeat(10), "z".repeat(9) + "😀", "end");
+        for (int bufferSize = 4; bufferSize <= 16; bufferSize++) {
+            assertThat(readAll(new Utf8LineReader(stream(text), bufferSize, 10)))
+                    .as("stream, buffer size %d", bufferSize)
+                    .containsExactlyElementsOf(expected);
+            assertThat(readAll(new Utf8LineReader(Channels.newChannel(stream(text)), bufferSize, 10)))
+                    .as("channel, buffer size %d", bufferSize)
+                    .containsExactlyElementsOf(expected);
+        }
+    }
+
+    @Test
+    void testMalformedInputIsReplaced() throws IOException {
+        byte[] bytes = {'a', (byte) 0xC3, '\n', 'b', (byte) 0xE2, (byte) 0x82};
+        Utf8LineReader reader = new Utf8LineReader(new ByteArrayInputStream(bytes));
+        assertThat(reader.readLine().toString()).isEqualTo("a�");
+        assertThat(reader.readLine().toString()).isEqualTo("b�");
+        assertThat(reader.readLine()).isNull();
+    }
+
+    @Test
+    void testLineViewIsReusedBetweenReads() throws IOException {
+        Utf8LineReader reader = new Utf8LineReader(new ByteArrayInputStream("one\ntwo\n".getBytes(StandardCharsets.UTF_8)));
+        CharSequence first = reader.readLine();
+        assertThat(first.toString()).isEqualTo("one");
+        assertThat(first.subSequence(1, 3).toString()).isEqualTo("ne");
+        CharSequence second = reader.readLine();
+        assertThat(second).isSameAs(first);
+        assertThat(second.toString()).isEqualTo("two");
+    }
+
+    /**
+     * Rough comparison of lines per second against the previously used {@link Scanner}, logged for reference. Only
+     * runs with the benchmark profile.
+     */
+    @Test
+    @Tag("benchmark")
+    void compareThroughputWithScanner() throws IOException {
+        StringBuilder output = new StringBuilder();
+        for (int i = 0; i < 200_000; i++) {
+            output.append("[12:34:56] [Server thread/INFO]: Preparing spawn area: ").append(i % 100).append("%\n");
+        }
+        byte[] bytes = output.toString().getBytes(StandardCharsets.UTF_8);
+
+        for (int round = 0; round < 5; round++) { // First rounds warm up
+            long start = System.nanoTime();
+            long scannerLines = 0;
+            Scanner scanner = new Scanner(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8);
+            while (scanner.hasNextLine()) {
+                scanner.nextLine();
+                scannerLines++;
+            }
+            long scannerNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long readerLines = 0;
+            Utf8LineReader reader = new Utf8LineReader(new ByteArrayInputStream(bytes));
+            CharSequence line;
+            while ((line = reader.readLine()) != null) {
+                line.toString(); // Materialized like in the input listener
+                readerLines++;
+            }
+            long readerNanos = System.nanoTime() - start;
+
+            assertThat(readerLines).isEqualTo(scannerLines).isEqualTo(200_000);
+            log.info("Scanner {} lines/s, Utf8LineReader {} lines/s",
+                    linesPerSecond(scannerLines, scannerNanos), linesPerSecond(readerLines, readerNanos));
+        }
+    }
+
+    static List<String> readAll(String text, int bufferSize) throws IOException {
+        return readAll(new Utf8LineReader(Channels.newChannel(stream(text)), bufferSize));
+    }
+
+    static List<String> readAll(Utf8LineReader reader) throws IOException {
+        List<String> lines = new ArrayList<>();
+        CharSequence line;
+        while ((line = reader.readLine()) != null) {
+            lines.add(line.toString());
+        }
+        return lines;
+    }
+
+    static InputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static long linesPerSecond(long lines, long nanos) {
+        return lines * 1_000_000_000L / Math.max(nanos, 1);
+    }
+}
@@ -0,0 +1,195 @@
+package fi.jannetahkola.palikka.game.websocket;
+
+import fi.jannetahkola.palikka.core.auth.PalikkaAuthenticationDetails;
+import com.nimbusds.jwt.JWTClaimsSet;
+import fi.jannetahkola.palikka.core.auth.PalikkaPrincipal;
+import fi.jannetahkola.palikka.core.auth.authenticator.UserJwtAuthenticator;
+import fi.jannetahkola.palikka.core.auth.jwt.JwtService;
+import fi.jannetahkola.palikka.core.integration.users.Privilege;
+import fi.jannetahkola.palikka.core.integration.users.Role;
+import fi.jannetahkola.palikka.core.integration.users.User;
+import fi.jannetahkola.palikka.core.integration.users.UserAuthorizationSnapshot;
+import fi.jannetahkola.palikka.core.integration.users.UsersClient;
+import fi.jannetahkola.palikka.core.integration.users.UsersClientException;
+import fi.jannetahkola.palikka.core.integration.users.events.UserAuthorizationChangedEvent;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class SessionStoreTests {
+    JwtService jwtService;
+    UsersClient usersClient;
+    SessionStore sessionStore;
+    WebSocketSession session;
+
+    @BeforeEach
+    void beforeEach() {
+        jwtService = mock(JwtService.class);
+        usersClient = mock(UsersClient.class);
+        sessionStore = new SessionStore(jwtService, usersClient, Runnable::run);
+
+        PalikkaAuthenticationDetails details = new PalikkaAuthenticationDetails();
+        details.setToken("token");
+        var authentication = new UsernamePasswordAuthenticationToken(
+                new PalikkaPrincipal(1, "user"), null, List.of(new SimpleGrantedAuthority("ROLE_VIEWER")));
+        authentication.setDetails(details);
+
+        session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn("session-1");
+        when(session.getPrincipal()).thenReturn(authentication);
+        sessionStore.addSession(session);
+    }
+
+    @Test
+    void givenAuthorizationChanged_thenSessionAuthenticationRefreshed() {
+        when(usersClient.getUserAuthorization(1)).thenReturn(Optional.of(snapshot(true)));
+
+        sessionStore.onUserAuthorizationChanged(event(1));
+
+        var refreshed = sessionStore.getRefreshedAuthentication("session-1").orElseThrow();
+        assertThat(refreshed.getAuthorities().stream().map(GrantedAuthority::getAuthority))
+                .containsExactlyInAnyOrder("ROLE_USER", "COMMAND_weather");
+        assertThat(refreshed.getDetails()).isInstanceOf(PalikkaAuthenticationDetails.class);
+        assertThat(sessionStore.sessionCount()).isEqualTo(1);
+    }
+
+    @Test
+    void givenAuthorizationChanged_thenSessionRefreshedOnExecutor() {
+        List<Runnable> tasks = new ArrayList<>();
+        sessionStore = new SessionStore(jwtService, usersClient, tasks::add);
+        sessionStore.addSession(session);
+        when(usersClient.getUserAuthorization(1)).thenReturn(Optional.of(snapshot(true)));
+
+        sessionStore.onUserAuthorizationChanged(event(1));
+        verifyNoInteractions(usersClient);
+
+        assertThat(tasks).hasSize(1);
+        tasks.get(0).run();
+        assertThat(sessionStore.getRefreshedAuthentication("session-1")).isPresent();
+    }
+
+    @Test
+    void givenRefreshFailsForOneSession_whenEventsMissed_thenOtherSessionsRefreshed() {
+        WebSocketSession brokenSession = mock(WebSocketSession.class);
+        when(brokenSession.getId()).thenReturn("session-0");
+        when(brokenSession.getPrincipal()).thenThrow(new IllegalStateException("Session closed"));
+        sessionStore.addSession(brokenSession);
+        when(usersClient.getUserAuthorization(1)).thenReturn(Optional.of(snapshot(true)));
+
+        sessionStore.onEventsMissed();
+
+        assertThat(sessionStore.getRefreshedAuthentication("session-1")).isPresent();
+    }
+
+    @Test
+    void givenAuthorizationChangedForOtherUser_thenSessionNotRefreshed() {
+        sessionStore.onUserAuthorizationChanged(event(2));
+
+        verifyNoInteractions(usersClient);
+        assertThat(sessionStore.getRefreshedAuthentication("session-1")).isEmpty();
+    }
+
+    @SneakyThrows
+    @Test
+    void givenUserDeactivated_thenSessionClosed() {
+        when(usersClient.getUserAuthorization(1)).thenReturn(Optional.of(snapshot(false)));
+
+        sessionStore.onUserAuthorizationChanged(event(1));
+
+        verify(session, atLeastOnce()).close();
+        assertThat(sessionStore.sessionCount()).isZero();
+        assertThat(sessionStore.getRefreshedAuthentication("session-1")).isEmpty();
+    }
+
+    @SneakyThrows
+    @Test
+    void givenUserNotFound_thenSessionClosed() {
+        when(usersClient.getUserAuthorization(1)).thenReturn(Optional.empty());
+
+        sessionStore.onUserAuthorizationChanged(event(1));
+
+        verify(session, atLeastOnce()).close();
+        assertThat(sessionStore.sessionCount()).isZero();
+    }
+
+    @SneakyThrows
+    @Test
+    void givenUsersApiUnavailable_whenEventsMissed_thenSessionKept() {
+        when(usersClient.getUserAuthorization(1)).thenThrow(new UsersClientException("Connection refused"));
+
+        sessionStore.onEventsMissed();
+
+        verify(session, never()).close();
+        assertThat(sessionStore.sessionCount()).isEqualTo(1);
+        assertThat(sessionStore.getRefreshedAuthentication("session-1")).isEmpty();
+    }
+
+    @SneakyThrows
+    @Test
+    void givenTokensRevoked_thenSessionClosed() {
+        when(jwtService.getClaims("token")).thenReturn(Optional.of(new JWTClaimsSet.Builder()
+                .subject("1")
+                .claim(UserJwtAuthenticator.TOKEN_GENERATION_CLAIM, 0L)
+                .build()));
+        when(usersClient.getUserAuthorization(1)).thenReturn(Optional.of(snapshot(true, 1L)));
+
+        sessionStore.onUserAuthorizationChanged(
+                new UserAuthorizationChangedEvent(Set.of(1), UserAuthorizationChangedEvent.Reason.TOKENS_REVOKED));
+
+        verify(session, atLeastOnce()).close();
+        assertThat(sessionStore.sessionCount()).isZero();
+    }
+
+    @Test
+    void givenTokenOfCurrentGeneration_thenSessionKept() {
+        when(jwtService.getClaims("token")).thenReturn(Optional.of(new JWTClaimsSet.Builder()
+                .subject("1")
+                .claim(UserJwtAuthenticator.TOKEN_GENERATION_CLAIM, 1L)
+                .build()));
+        when(usersClient.getUserAuthorization(1)).thenReturn(Optional.of(snapshot(true, 1L)));
+
+        sessionStore.onUserAuthorizationChanged(event(1));
+
+        assertThat(sessionStore.getRefreshedAuthentication("session-1")).isPresent();
+        assertThat(sessionStore.sessionCount()).isEqualTo(1);
+    }
+
+    private static UserAuthorizationChangedEvent event(Integer userId) {
+        return new UserAuthorizationChangedEvent(Set.of(userId), UserAuthorizationChangedEvent.Reason.ROLES_CHANGED);
+    }
+
+    private static UserAuthorizationSnapshot snapshot(boolean active) {
+        return snapshot(active, 0L);
+    }
+
+    private static UserAuthorizationSnapshot snapshot(boolean active, Long tokenGeneration) {
+        return UserAuthorizationSnapshot.builder()
+                .user(User.builder()
+                        .id(1)
+                        .username("user")
+                        .active(active)
+                        .root(false)
+                        .tokenGeneration(tokenGeneration)
+                        .build())
+                .roles(List.of(Role.builder()
+                        .id(2)
+                        .name("ROLE_USER")
+                        .privileges(Set.of(new Privilege(1, "COMMAND", "weather")))
+                        .build()))
+                .loadedAt(Instant.now())
+                .build();
+    }
+}
@@ -24,6 +24,7 @@ public class LocalUsersClient implements UsersClient {
                         .id(e.getId())
                         .username(e.getUsername())
                         .active(e.getActive())
+                        .tokenGeneration(e.getTokenGeneration())
                         .build())
                 .orElse(null);
     }
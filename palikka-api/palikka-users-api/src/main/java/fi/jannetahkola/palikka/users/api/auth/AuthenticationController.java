@@ -4,11 +4,16 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.databind.PropertyNamingStrategies;
 import com.fasterxml.jackson.databind.annotation.JsonNaming;
 import com.nimbusds.jwt.JWTClaimsSet;
-import fi.jannetahkola.palikka.core.auth.data.RevokedTokenEntity;
-import fi.jannetahkola.palikka.core.auth.data.RevokedTokenRepository;
+import fi.jannetahkola.palikka.core.auth.authenticator.UserJwtAuthenticator;
+import fi.jannetahkola.palikka.core.auth.data.RevokedTokenService;
 import fi.jannetahkola.palikka.core.auth.jwt.JwtService;
 import fi.jannetahkola.palikka.core.auth.jwt.PalikkaJwtType;
+import fi.jannetahkola.palikka.core.auth.jwt.UserAuthorityClaims;
+import fi.jannetahkola.palikka.core.integration.users.events.UserAuthorizationChangedEvent;
+import fi.jannetahkola.palikka.core.integration.users.events.UserAuthorizationEventPublisher;
 import fi.jannetahkola.palikka.users.api.user.CurrentUserController;
+import fi.jannetahkola.palikka.users.data.privilege.PrivilegeEntity;
+import fi.jannetahkola.palikka.users.data.role.RoleEntity;
 import fi.jannetahkola.palikka.users.data.user.UserEntity;
 import fi.jannetahkola.palikka.users.data.user.UserRepository;
 import fi.jannetahkola.palikka.users.exception.UsersLoginFailedException;
@@ -36,13 +41,19 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ProblemDetail;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
 import java.text.ParseException;
+import java.time.Duration;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
@@ -56,7 +67,8 @@ import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
 public class AuthenticationController {
     private final UserRepository userRepository;
     private final JwtService jwtService;
-    private final RevokedTokenRepository revokedTokenRepository;
+    private final RevokedTokenService revokedTokenService;
+    private final UserAuthorizationEventPublisher userAuthorizationEventPublisher;
 
     @SecurityRequirements
     @Operation(
@@ -84,8 +96,12 @@ public class AuthenticationController {
                 .filter(user -> passwordMatches(loginRequest).test(user))
                 .filter(user -> isUserActive(loginRequest).test(user))
                 .map(user -> {
-                    JWTClaimsSet.Builder initialClaims =
-                            new JWTClaimsSet.Builder().subject(String.valueOf(user.getId()));
+                    JWTClaimsSet.Builder initialClaims = new JWTClaimsSet.Builder()
+                            .subject(String.valueOf(user.getId()))
+                            .claim(UserJwtAuthenticator.TOKEN_GENERATION_CLAIM, user.getTokenGeneration());
+                    if (Boolean.TRUE.equals(jwtService.getProperties().getToken().getUser().getEmbedAuthorities())) {
+                        embedAuthorities(initialClaims, user.getId());
+                    }
                     return jwtService.sign(initialClaims, PalikkaJwtType.USER)
                             .map(signedToken -> {
                                 try {
@@ -122,17 +138,12 @@ public class AuthenticationController {
         // Only get claims instead of verifying since we are already authenticated
         jwtService.getClaims(token).ifPresentOrElse(claims -> {
             String jwtId = claims.getJWTID();
-            if (!revokedTokenRepository.existsById(jwtId)) {
-                RevokedTokenEntity revokedTokenEntity = new RevokedTokenEntity();
-                revokedTokenEntity.setTokenId(jwtId);
-                revokedTokenEntity.setTtlSeconds(
-                        jwtService.getProperties()
-                                .getToken()
-                                .getUser()
-                                .getSigning()
-                                .getValidityTime()
-                                .getSeconds());
-                revokedTokenRepository.save(revokedTokenEntity);
+            Duration validityTime = jwtService.getProperties()
+                    .getToken()
+                    .getUser()
+                    .getSigning()
+                    .getValidityTime();
+            if (revokedTokenService.revoke(jwtId, validityTime)) {
                 log.debug("Successfully revoked token={}", token);
             } else {
                 log.debug("Failed to revoke token - already revoked, token={}", token);
@@ -143,6 +154,39 @@ public class AuthenticationController {
         ));
     }
 
+    @Operation(
+            summary = "Log out everywhere",
+            description = "Revokes all tokens issued to the current user, including the one used for this request")
+    @PostMapping(
+            value = "/logout-all",
+            produces = MediaTypes.HAL_JSON_VALUE)
+    @PreAuthorize("not hasRole('ROLE_SYSTEM')")
+    @SuppressWarnings("squid:S1452") // No model type, links only
+    public ResponseEntity<RepresentationModel<?>> logoutAll(Authentication authentication) {
+        Integer userId = Integer.valueOf(authentication.getName());
+        userRepository.incrementTokenGeneration(userId);
+        log.debug("Successfully revoked all tokens of user id={}", userId);
+        userAuthorizationEventPublisher.publish(Set.of(userId), UserAuthorizationChangedEvent.Reason.TOKENS_REVOKED);
+        return ResponseEntity.ok(new RepresentationModel<>().add(
+                linkTo(methodOn(AuthenticationController.class).logoutAll(null)).withSelfRel()
+        ));
+    }
+
+    private void embedAuthorities(JWTClaimsSet.Builder claims, Integer userId) {
+        userRepository.findWithRolesAndPrivilegesById(userId).ifPresent(user -> {
+            List<String> roles = user.getRoles().stream()
+                    .map(RoleEntity::getName)
+                    .toList();
+            Map<String, List<String>> privileges = user.getRoles().stream()
+                    .flatMap(role -> role.getPrivileges().stream())
+                    .distinct()
+                    .collect(Collectors.groupingBy(
+                            PrivilegeEntity::getDomain,
+                            Collectors.mapping(PrivilegeEntity::getName, Collectors.toList())));
+            UserAuthorityClaims.embed(claims, user.getUsername(), roles, privileges);
+        });
+    }
+
     private static Predicate<UserEntity> passwordMatches(LoginRequest loginRequest) {
         return user -> {
             boolean valid = CryptoUtils.validatePassword(loginRequest.getPassword(), user.getSalt(), user.getPassword());
@@ -1,5 +1,7 @@
 package fi.jannetahkola.palikka.users.api.role;
 
+import fi.jannetahkola.palikka.core.integration.users.events.UserAuthorizationChangedEvent;
+import fi.jannetahkola.palikka.core.integration.users.events.UserAuthorizationEventPublisher;
 import fi.jannetahkola.palikka.core.util.AuthorizationUtil;
 import fi.jannetahkola.palikka.users.api.privilege.model.PrivilegeModel;
 import fi.jannetahkola.palikka.users.api.privilege.model.PrivilegeModelAssembler;
@@ -8,6 +10,7 @@ import fi.jannetahkola.palikka.users.data.privilege.PrivilegeEntity;
 import fi.jannetahkola.palikka.users.data.privilege.PrivilegeRepository;
 import fi.jannetahkola.palikka.users.data.role.RoleEntity;
 import fi.jannetahkola.palikka.users.data.role.RoleRepository;
+import fi.jannetahkola.palikka.users.data.user.UserEntity;
 import fi.jannetahkola.palikka.users.exception.UsersNotFoundException;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -34,6 +37,8 @@ import org.springframework.web.bind.annotation.*;
 
 import java.util.Comparator;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.*;
 
@@ -46,6 +51,7 @@ import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.*;
 public class RolePrivilegeController {
     private final RoleRepository roleRepository;
     private final PrivilegeRepository privilegeRepository;
+    private final UserAuthorizationEventPublisher userAuthorizationEventPublisher;
 
     private final PrivilegeModelAssembler privilegeModelAssembler;
 
@@ -164,6 +170,7 @@ public class RolePrivilegeController {
                                     .toList();
                         })
                         .orElseThrow(() -> UsersNotFoundException.ofPrivilege(postModel.getPrivilegeId()));
+        publishPrivilegesChanged(roleEntity);
         return ResponseEntity
                 .status(201)
                 .body(CollectionModel.of(updatedRolePrivileges,
@@ -210,9 +217,19 @@ public class RolePrivilegeController {
 
         roleEntity.getPrivileges().stream()
                 .filter(privilege -> privilege.getId().equals(privilegeId))
-                .findAny().ifPresent(roleEntity::removePrivilege);
-        roleRepository.save(roleEntity);
+                .findAny().ifPresent(privilegeEntity -> {
+                    roleEntity.removePrivilege(privilegeEntity);
+                    roleRepository.save(roleEntity);
+                    publishPrivilegesChanged(roleEntity);
+                });
 
         return ResponseEntity.noContent().build();
     }
+
+    private void publishPrivilegesChanged(RoleEntity roleEntity) {
+        Set<Integer> userIds = roleEntity.getUsers().stream()
+                .map(UserEntity::getId)
+                .collect(Collectors.toSet());
+        userAuthorizationEventPublisher.publish(userIds, UserAuthorizationChangedEvent.Reason.PRIVILEGES_CHANGED);
+    }
 }
@@ -0,0 +1,106 @@
+package fi.jannetahkola.palikka.users.api.user;
+
+import fi.jannetahkola.palikka.users.api.user.model.UserAuthorizationModel;
+import fi.jannetahkola.palikka.users.data.privilege.PrivilegeEntity;
+import fi.jannetahkola.palikka.users.data.role.RoleEntity;
+import fi.jannetahkola.palikka.users.data.user.UserEntity;
+import fi.jannetahkola.palikka.users.data.user.UserRepository;
+import fi.jannetahkola.palikka.users.exception.UsersNotFoundException;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.enums.ParameterIn;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Comparator;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Returns the user, its roles and privileges in one response so that other services can authenticate and authorize
+ * a user with a single request instead of traversing the HAL resources.
+ */
+@Tag(name = "Users")
+@RestController
+@RequestMapping("/users")
+@RequiredArgsConstructor
+public class UserAuthorizationController {
+    private final UserRepository userRepository;
+
+    @Operation(summary = "Get a user with its roles and privileges")
+    @Parameter(
+            in = ParameterIn.PATH,
+            name = "id",
+            description = "Identifier of the user",
+            example = "1")
+    @ApiResponse(
+            responseCode = "200",
+            description = "OK",
+            content = @Content(schema = @Schema(implementation = UserAuthorizationModel.class)))
+    @ApiResponse(
+            responseCode = "404",
+            description = "Not Found",
+            content = @Content(
+                    schema = @Schema(implementation = ProblemDetail.class),
+                    mediaType = MediaType.APPLICATION_PROBLEM_JSON_VALUE))
+    @GetMapping(
+            value = "/{id}/authorization",
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize(
+            "hasAnyRole('ROLE_SYSTEM', 'ROLE_ADMIN') " +
+                    "or (hasAnyRole('ROLE_USER', 'ROLE_VIEWER') " +
+                    "and #userId == authentication.principal.id)"
+    )
+    public ResponseEntity<UserAuthorizationModel> getUserAuthorization(@PathVariable("id") Integer userId) {
+        UserAuthorizationModel model = userRepository.findWithRolesAndPrivilegesById(userId)
+                .map(this::toModel)
+                .orElseThrow(() -> UsersNotFoundException.ofUser(userId));
+        return ResponseEntity
+                .ok()
+                .body(model);
+    }
+
+    private UserAuthorizationModel toModel(UserEntity userEntity) {
+        return UserAuthorizationModel.builder()
+                .id(userEntity.getId())
+                .username(userEntity.getUsername())
+                .active(userEntity.getActive())
+                .root(userEntity.getRoot())
+                .tokenGeneration(userEntity.getTokenGeneration())
+                .roles(userEntity.getRoles().stream()
+                        .sorted(Comparator.comparing(RoleEntity::getId))
+                        .map(this::toModel)
+                        .toList())
+                .privileges(userEntity.getRoles().stream()
+                        .flatMap(role -> role.getPrivileges().stream())
+                        .map(PrivilegeEntity::getAsAuthority)
+                        .collect(Collectors.toCollection(TreeSet::new)))
+                .build();
+    }
+
+    private UserAuthorizationModel.Role toModel(RoleEntity roleEntity) {
+        return UserAuthorizationModel.Role.builder()
+                .id(roleEntity.getId())
+                .name(roleEntity.getName())
+                .privileges(roleEntity.getPrivileges().stream()
+                        .sorted(Comparator.comparing(PrivilegeEntity::getId))
+                        .map(privilege -> UserAuthorizationModel.Privilege.builder()
+                                .id(privilege.getId())
+                                .domain(privilege.getDomain())
+                                .name(privilege.getName())
+                                .build())
+                        .toList())
+                .build();
+    }
+}
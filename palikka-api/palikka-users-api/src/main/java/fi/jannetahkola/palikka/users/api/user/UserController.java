@@ -2,6 +2,8 @@ package fi.jannetahkola.palikka.users.api.user;
 
 import fi.jannetahkola.palikka.core.api.exception.BadRequestException;
 import fi.jannetahkola.palikka.core.api.exception.ConflictException;
+import fi.jannetahkola.palikka.core.integration.users.events.UserAuthorizationChangedEvent;
+import fi.jannetahkola.palikka.core.integration.users.events.UserAuthorizationEventPublisher;
 import fi.jannetahkola.palikka.core.util.AuthorizationUtil;
 import fi.jannetahkola.palikka.users.api.user.model.UserModel;
 import fi.jannetahkola.palikka.users.api.user.model.UserModelAssembler;
@@ -36,6 +38,7 @@ import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.time.ZoneId;
 import java.util.List;
+import java.util.Set;
 
 @Tag(name = "Users")
 @Slf4j
@@ -46,6 +49,7 @@ import java.util.List;
 public class UserController {
     private final UserRepository userRepository;
     private final UserModelAssembler userModelAssembler;
+    private final UserAuthorizationEventPublisher userAuthorizationEventPublisher;
 
     @Operation(summary = "Get all users")
     @GetMapping(produces = {MediaTypes.HAL_JSON_VALUE, MediaTypes.HAL_FORMS_JSON_VALUE})
@@ -204,8 +208,15 @@ public class UserController {
         userEntity.setPassword(existingUserEntity.getPassword());
         userEntity.setCreatedAt(existingUserEntity.getCreatedAt());
         userEntity.setLastUpdatedAt(nowUtcTime());
+        userEntity.setTokenGeneration(existingUserEntity.getTokenGeneration());
         existingUserEntity.getRoles().forEach(userEntity::addRole);
 
+        if (Boolean.TRUE.equals(existingUserEntity.getActive()) && Boolean.FALSE.equals(isActive)) {
+            // Deactivated users shouldn't be able to keep using the tokens they already have
+            log.info("Revoking all tokens of deactivated user id '{}'", userId);
+            userEntity.setTokenGeneration(existingUserEntity.getTokenGeneration() + 1);
+        }
+
         if (userToPut.getPassword() != null) {
             // New password can be the same as before, but new salt is generated
             log.info("Updating password for user id '{}'", userEntity.getId());
@@ -218,6 +229,11 @@ public class UserController {
 
         UserModel updatedUser = userModelAssembler.toModel(userRepository.save(userEntity));
 
+        if (!existingUserEntity.getActive().equals(isActive)) {
+            userAuthorizationEventPublisher.publish(
+                    Set.of(userId), UserAuthorizationChangedEvent.Reason.ACTIVE_CHANGED);
+        }
+
         return ResponseEntity
                 .accepted()
                 .body(updatedUser);
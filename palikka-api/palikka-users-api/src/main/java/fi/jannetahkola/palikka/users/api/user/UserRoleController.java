@@ -1,6 +1,8 @@
 package fi.jannetahkola.palikka.users.api.user;
 
 import fi.jannetahkola.palikka.core.api.exception.BadRequestException;
+import fi.jannetahkola.palikka.core.integration.users.events.UserAuthorizationChangedEvent;
+import fi.jannetahkola.palikka.core.integration.users.events.UserAuthorizationEventPublisher;
 import fi.jannetahkola.palikka.users.api.role.model.RoleModel;
 import fi.jannetahkola.palikka.users.api.role.model.RoleModelAssembler;
 import fi.jannetahkola.palikka.users.api.user.model.UserRolePostModel;
@@ -56,6 +58,7 @@ import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.*;
 public class UserRoleController {
     private final UserRepository userRepository;
     private final RoleRepository roleRepository;
+    private final UserAuthorizationEventPublisher userAuthorizationEventPublisher;
 
     private final RoleModelAssembler roleModelAssembler;
 
@@ -189,6 +192,7 @@ public class UserRoleController {
                             .toList();
                 })
                 .orElseThrow(() -> UsersNotFoundException.ofRole(postModel.getRoleId()));
+        userAuthorizationEventPublisher.publish(Set.of(userId), UserAuthorizationChangedEvent.Reason.ROLES_CHANGED);
 
         return ResponseEntity
                 .status(201)
@@ -237,8 +241,12 @@ public class UserRoleController {
 
         userEntity.getRoles().stream()
                 .filter(role -> role.getId().equals(roleId))
-                .findAny().ifPresent(userEntity::removeRole);
-        userRepository.save(userEntity);
+                .findAny().ifPresent(roleEntity -> {
+                    userEntity.removeRole(roleEntity);
+                    userRepository.save(userEntity);
+                    userAuthorizationEventPublisher.publish(
+                            Set.of(userId), UserAuthorizationChangedEvent.Reason.ROLES_CHANGED);
+                });
 
         return ResponseEntity.noContent().build();
     }
@@ -0,0 +1,72 @@
+package fi.jannetahkola.palikka.users.api.user.model;
+
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+@Schema(description = "Everything needed to authorize a user in a single response")
+@Value
+@Builder
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+public class UserAuthorizationModel {
+    @Schema(description = "Identifier of the user", example = "1234")
+    Integer id;
+
+    @Schema(description = "Unique username of the user")
+    String username;
+
+    @Schema(description = "Whether the user is active, i.e. they can log in")
+    Boolean active;
+
+    @Schema(description = "Whether the user is a root user, i.e. not modifiable")
+    Boolean root;
+
+    @Schema(description = "Generation that the user's tokens need to have to be accepted", example = "0")
+    Long tokenGeneration;
+
+    @Schema(description = "Roles associated with the user, including their privileges")
+    @Builder.Default
+    List<Role> roles = new ArrayList<>();
+
+    @Schema(
+            description = "Privileges of all associated roles flattened into authorities",
+            example = "[\"COMMAND_weather\"]")
+    @Builder.Default
+    Set<String> privileges = new TreeSet<>();
+
+    @Value
+    @Builder
+    @JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+    public static class Role {
+        @Schema(description = "Identifier of the role", example = "1234")
+        Integer id;
+
+        @Schema(description = "Unique name of the role", example = "ROLE_USER")
+        String name;
+
+        @Schema(description = "Privileges associated with the role")
+        @Builder.Default
+        List<Privilege> privileges = new ArrayList<>();
+    }
+
+    @Value
+    @Builder
+    @JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+    public static class Privilege {
+        @Schema(description = "Identifier of the privilege", example = "1234")
+        Integer id;
+
+        @Schema(description = "Domain of the privilege", example = "COMMAND")
+        String domain;
+
+        @Schema(description = "Name of the privilege", example = "weather")
+        String name;
+    }
+}
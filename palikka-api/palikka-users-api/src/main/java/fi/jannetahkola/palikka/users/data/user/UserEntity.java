@@ -40,6 +40,12 @@ public class UserEntity {
     @Column(columnDefinition = "timestamp")
     private OffsetDateTime lastUpdatedAt;
 
+    /**
+     * Bumped to revoke all tokens issued to the user so far. Tokens carry the generation they were issued with.
+     */
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private Long tokenGeneration = 0L;
+
     @Setter(AccessLevel.NONE)
     @ManyToMany(cascade = {CascadeType.PERSIST, CascadeType.MERGE})
     @JoinTable(
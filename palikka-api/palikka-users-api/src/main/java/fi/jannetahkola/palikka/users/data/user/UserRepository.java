@@ -1,8 +1,11 @@
 package fi.jannetahkola.palikka.users.data.user;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 
@@ -14,4 +17,12 @@ public interface UserRepository extends JpaRepository<UserEntity, Integer> {
     boolean existsByUsernameExcept(String username, String except);
 
     Optional<UserEntity> findByUsername(String username);
+
+    @EntityGraph(attributePaths = {"roles", "roles.privileges"})
+    Optional<UserEntity> findWithRolesAndPrivilegesById(Integer id);
+
+    @Transactional
+    @Modifying
+    @Query("update UserEntity u set u.tokenGeneration = u.tokenGeneration + 1 where u.id = :id")
+    int incrementTokenGeneration(Integer id);
 }
@@ -3,6 +3,8 @@ package fi.jannetahkola.palikka.users.api.auth;
 import fi.jannetahkola.palikka.core.auth.data.RevokedTokenEntity;
 import fi.jannetahkola.palikka.core.auth.data.RevokedTokenRepository;
 import fi.jannetahkola.palikka.core.config.properties.JwtProperties;
+import fi.jannetahkola.palikka.core.integration.users.events.UserAuthorizationChangedEvent;
+import fi.jannetahkola.palikka.core.integration.users.events.UserAuthorizationEventPublisher;
 import fi.jannetahkola.palikka.users.testutils.IntegrationTest;
 import io.restassured.http.Header;
 import lombok.SneakyThrows;
@@ -13,21 +15,27 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.SpyBean;
 import org.springframework.hateoas.MediaTypes;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 
+import java.util.Set;
 import java.util.stream.Stream;
 
 import static io.restassured.RestAssured.given;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.*;
+import static org.mockito.Mockito.verify;
 
 class AuthenticationControllerIT extends IntegrationTest {
 
     @Autowired
     RevokedTokenRepository revokedTokenRepository;
 
+    @SpyBean
+    UserAuthorizationEventPublisher userAuthorizationEventPublisher;
+
     @SneakyThrows
     @Test
     void givenLoginRequest_whenCredentialsValid_thenOkResponse() {
@@ -104,6 +112,45 @@ class AuthenticationControllerIT extends IntegrationTest {
                 .isEqualTo(jwtProperties.getToken().getUser().getSigning().getValidityTime().getSeconds());
     }
 
+    @SneakyThrows
+    @Test
+    void givenLogoutAllRequest_thenAllTokensRevoked_andOkResponse() {
+        String json = new JSONObject()
+                .put("username", "user")
+                .put("password", "password")
+                .toString();
+        Header firstToken = login(json);
+        Header secondToken = login(json);
+        given()
+                .header(secondToken)
+                .get("/current-user")
+                .then().assertThat()
+                .statusCode(200);
+
+        given()
+                .header(firstToken)
+                .post("/auth/logout-all")
+                .then().assertThat()
+                .statusCode(200)
+                .body("_links.self.href", endsWith("/users-api/auth/logout-all"))
+                .header(HttpHeaders.CONTENT_TYPE, MediaTypes.HAL_JSON_VALUE);
+        verify(userAuthorizationEventPublisher)
+                .publish(Set.of(USER_ID_USER), UserAuthorizationChangedEvent.Reason.TOKENS_REVOKED);
+        given()
+                .header(secondToken)
+                .get("/current-user")
+                .then().assertThat()
+                .statusCode(403)
+                .body("detail", equalTo("Full authentication is required to access this resource"));
+
+        // Tokens issued after revoking are accepted again
+        given()
+                .header(login(json))
+                .get("/current-user")
+                .then().assertThat()
+                .statusCode(200);
+    }
+
     @Test
     void givenLogoutRequest_withoutToken_thenForbiddenResponse() {
         given()
@@ -229,4 +276,15 @@ class AuthenticationControllerIT extends IntegrationTest {
                 )
         );
     }
+
+    private Header login(String json) {
+        String token = given()
+                .contentType(MediaType.APPLICATION_JSON_VALUE)
+                .body(json)
+                .post("/auth/login")
+                .then().assertThat()
+                .statusCode(200)
+                .extract().path("token");
+        return new Header(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+    }
 }
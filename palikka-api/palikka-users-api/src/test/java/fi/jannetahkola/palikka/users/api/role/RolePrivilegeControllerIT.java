@@ -2,6 +2,8 @@ package fi.jannetahkola.palikka.users.api.role;
 
 import fi.jannetahkola.palikka.core.integration.users.Privilege;
 import fi.jannetahkola.palikka.core.integration.users.Role;
+import fi.jannetahkola.palikka.core.integration.users.events.UserAuthorizationChangedEvent;
+import fi.jannetahkola.palikka.core.integration.users.events.UserAuthorizationEventPublisher;
 import fi.jannetahkola.palikka.users.api.role.model.RolePrivilegePostModel;
 import fi.jannetahkola.palikka.users.data.privilege.PrivilegeEntity;
 import fi.jannetahkola.palikka.users.data.privilege.PrivilegeRepository;
@@ -16,6 +18,7 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.SpyBean;
 import org.springframework.hateoas.EntityModel;
 import org.springframework.hateoas.MediaTypes;
 import org.springframework.hateoas.client.Traverson;
@@ -31,9 +34,13 @@ import java.util.stream.Stream;
 import static io.restassured.RestAssured.given;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.*;
+import static org.mockito.Mockito.verify;
 import static org.springframework.hateoas.client.Hop.rel;
 
 class RolePrivilegeControllerIT extends IntegrationTest {
+    @SpyBean
+    UserAuthorizationEventPublisher userAuthorizationEventPublisher;
+
     @Test
     void givenGetRolePrivilegesOptionsRequest_thenAllowedMethodsReturned() {
         given()
@@ -232,6 +239,8 @@ class RolePrivilegeControllerIT extends IntegrationTest {
                 .then().assertThat()
                 .statusCode(200)
                 .body("_embedded.privileges", hasSize(allAssociatedPrivileges.size() - 1));
+        verify(userAuthorizationEventPublisher)
+                .publish(Set.of(USER_ID_USER), UserAuthorizationChangedEvent.Reason.PRIVILEGES_CHANGED);
     }
 
     @Test
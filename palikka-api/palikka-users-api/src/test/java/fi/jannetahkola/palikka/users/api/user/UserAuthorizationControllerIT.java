@@ -0,0 +1,74 @@
+package fi.jannetahkola.palikka.users.api.user;
+
+import fi.jannetahkola.palikka.users.testutils.IntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+import static fi.jannetahkola.palikka.users.testutils.ResponseSpecs.accessDeniedResponse;
+import static fi.jannetahkola.palikka.users.testutils.ResponseSpecs.fullAuthenticationRequiredResponse;
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.*;
+
+class UserAuthorizationControllerIT extends IntegrationTest {
+    @Test
+    void givenGetUserAuthorizationRequest_thenOkResponse() {
+        given()
+                .header(newSystemBearerTokenHeader())
+                .get("/users/" + USER_ID_ADMIN + "/authorization")
+                .then().assertThat()
+                .statusCode(200)
+                .body("id", equalTo(USER_ID_ADMIN))
+                .body("username", not(emptyOrNullString()))
+                .body("active", equalTo(true))
+                .body("root", notNullValue())
+                .body("token_generation", equalTo(0))
+                .body("roles", hasSize(1))
+                .body("roles[0].id", equalTo(1))
+                .body("roles[0].name", equalTo("ROLE_ADMIN"))
+                .body("roles[0].privileges", not(empty()))
+                .body("roles[0].privileges[0].domain", not(emptyOrNullString()))
+                .body("roles[0].privileges[0].name", not(emptyOrNullString()))
+                .body("privileges", hasItem(startsWith("COMMAND_")))
+                .body("_links", nullValue())
+                .header(HttpHeaders.CONTENT_TYPE, equalTo(MediaType.APPLICATION_JSON_VALUE));
+    }
+
+    @Test
+    void givenGetUserAuthorizationRequest_whenUserNotFound_thenNotFoundResponse() {
+        given()
+                .header(newSystemBearerTokenHeader())
+                .get("/users/999/authorization")
+                .then().assertThat()
+                .statusCode(404)
+                .body("detail", equalTo("User with id '999' not found"))
+                .header(HttpHeaders.CONTENT_TYPE, equalTo(MediaType.APPLICATION_PROBLEM_JSON_VALUE));
+    }
+
+    @Test
+    void givenGetUserAuthorizationRequest_whenNoToken_thenForbiddenResponse() {
+        given()
+                .get("/users/" + USER_ID_ADMIN + "/authorization")
+                .then().assertThat()
+                .spec(fullAuthenticationRequiredResponse());
+    }
+
+    @Test
+    void givenGetUserAuthorizationRequest_whenNoAllowedRole_thenForbiddenResponse() {
+        given()
+                .header(newUserToken())
+                .get("/users/" + USER_ID_ADMIN + "/authorization")
+                .then().assertThat()
+                .spec(accessDeniedResponse());
+    }
+
+    @Test
+    void givenGetUserAuthorizationRequest_whenLimitedRoleButRequestedForSelf_thenOkResponse() {
+        given()
+                .header(newViewerToken())
+                .get("/users/" + USER_ID_VIEWER + "/authorization")
+                .then().assertThat()
+                .statusCode(200)
+                .body("id", equalTo(USER_ID_VIEWER));
+    }
+}
@@ -221,6 +221,7 @@ class UserControllerIT extends IntegrationTest {
         String salt = updatedUser.getSalt();
         String expectedPassword = updatedUser.getPassword();
         assertThat(CryptoUtils.validatePassword("new-pass".toCharArray(), salt, expectedPassword)).isTrue();
+        assertThat(updatedUser.getTokenGeneration()).isEqualTo(1L); // Deactivated
     }
 
     @SneakyThrows
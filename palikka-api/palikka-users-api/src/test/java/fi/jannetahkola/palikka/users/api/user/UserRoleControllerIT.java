@@ -1,5 +1,7 @@
 package fi.jannetahkola.palikka.users.api.user;
 
+import fi.jannetahkola.palikka.core.integration.users.events.UserAuthorizationChangedEvent;
+import fi.jannetahkola.palikka.core.integration.users.events.UserAuthorizationEventPublisher;
 import fi.jannetahkola.palikka.users.api.user.model.UserRolePostModel;
 import fi.jannetahkola.palikka.users.testutils.IntegrationTest;
 import io.restassured.http.Header;
@@ -10,16 +12,24 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.boot.test.mock.mockito.SpyBean;
 import org.springframework.hateoas.MediaTypes;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 
+import java.util.Set;
 import java.util.stream.Stream;
 
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.Matchers.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
 class UserRoleControllerIT extends IntegrationTest {
+    @SpyBean
+    UserAuthorizationEventPublisher userAuthorizationEventPublisher;
+
     @Test
     void givenGetUserRolesOptionsRequest_thenAllowedMethodsReturned() {
         given()
@@ -151,6 +161,8 @@ class UserRoleControllerIT extends IntegrationTest {
                 .body("_embedded.roles[1]._links.self.href", endsWith("/users-api/users/" + USER_ID_USER + "/roles/2"))
                 .body("_links.self.href", endsWith("/users/" + USER_ID_USER + "/roles"))
                 .header(HttpHeaders.CONTENT_TYPE, equalTo(MediaTypes.HAL_JSON_VALUE));
+        verify(userAuthorizationEventPublisher)
+                .publish(Set.of(USER_ID_USER), UserAuthorizationChangedEvent.Reason.ROLES_CHANGED);
     }
 
     @Test
@@ -244,6 +256,8 @@ class UserRoleControllerIT extends IntegrationTest {
                 .then().assertThat()
                 .statusCode(200)
                 .body("_embedded.roles", is(nullValue()));
+        verify(userAuthorizationEventPublisher)
+                .publish(Set.of(USER_ID_USER), UserAuthorizationChangedEvent.Reason.ROLES_CHANGED);
     }
 
     @Test
@@ -260,6 +274,7 @@ class UserRoleControllerIT extends IntegrationTest {
                 .then().assertThat()
                 .statusCode(200)
                 .body("_embedded.roles", hasSize(1));
+        verify(userAuthorizationEventPublisher, never()).publish(any(), any());
     }
 
     @Test
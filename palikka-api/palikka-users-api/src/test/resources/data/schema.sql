@@ -162,6 +162,7 @@ CREATE TABLE public.palikka_user (
     password character varying(255) NOT NULL,
     root boolean DEFAULT false NOT NULL,
     salt character varying(255) NOT NULL,
+    token_generation bigint DEFAULT 0 NOT NULL,
     username character varying(255) NOT NULL
 );
 